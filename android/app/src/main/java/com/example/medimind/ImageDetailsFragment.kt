@@ -13,6 +13,7 @@ import android.view.ViewGroup
 import android.widget.Button
 import android.widget.ImageView
 import android.widget.Toast
+import androidx.appcompat.app.AlertDialog
 import androidx.core.app.ActivityCompat
 import androidx.core.content.edit
 import androidx.fragment.app.Fragment
@@ -188,6 +189,14 @@ class ImageDetailsFragment : Fragment() {
                             instructionInput.setText(prediction.instructions ?: "")
                             noteInput.setText(prediction.notes ?: "")
                             Toast.makeText(requireContext(), "Prediction successful!", Toast.LENGTH_SHORT).show()
+                            prediction.suggestedName?.let { suggested ->
+                                AlertDialog.Builder(requireContext())
+                                    .setTitle("Check medication name")
+                                    .setMessage("The label was read as \"${prediction.medicationName}\". Did you mean $suggested?")
+                                    .setPositiveButton("Use $suggested") { _, _ -> nameInput.setText(suggested) }
+                                    .setNegativeButton("Keep as read", null)
+                                    .show()
+                            }
                         }
                     } else {
                         Toast.makeText(requireContext(), "Prediction failed: ${response.code()}", Toast.LENGTH_SHORT).show()
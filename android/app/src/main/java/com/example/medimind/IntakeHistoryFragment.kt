@@ -16,6 +16,7 @@ import androidx.recyclerview.widget.RecyclerView
 import com.example.medimind.adapters.HistoryRow
 import com.example.medimind.adapters.IntakeHistoryStyledAdapter
 import com.example.medimind.network.ApiClient
+import com.example.medimind.network.getIntakeHistory
 import com.example.medimind.service.IntakeHistoryResponse
 import com.google.android.material.textfield.MaterialAutoCompleteTextView
 import kotlinx.coroutines.launch
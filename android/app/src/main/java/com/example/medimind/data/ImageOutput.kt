@@ -5,5 +5,8 @@ data class ImageOutput (
     val intakeQuantity: String,
     val frequency: Int,
     val instructions: String,
-    val notes: String
+    val notes: String,
+    // drug the server thinks medicationName stands for; only used once the user accepts it
+    val suggestedName: String? = null,
+    val matchDistance: Int? = null
 )
@@ -8,6 +8,7 @@ import com.example.medimind.service.IntakeHistoryResponse
 
 import okhttp3.MultipartBody
 import okhttp3.ResponseBody
+import retrofit2.HttpException
 import retrofit2.Response
 import retrofit2.http.Body
 import retrofit2.http.GET
@@ -16,6 +17,7 @@ import retrofit2.http.POST
 import retrofit2.http.PUT
 import retrofit2.http.Part
 import retrofit2.http.Path
+import retrofit2.http.Query
 
 
 
@@ -187,8 +189,13 @@ interface ApiService {
     suspend fun getClinics(): ClinicListResponse
 
     // Get intake history for a patient
+    // One page of intake history; the next page's cursor comes back in the X-Next-Cursor header
     @GET("api/patients/{patientId}/intake-history")
-    suspend fun getIntakeHistory(@Path("patientId") patientId: String): List<IntakeHistoryResponse>
+    suspend fun getIntakeHistoryPage(
+        @Path("patientId") patientId: String,
+        @Query("cursor") cursor: String?,
+        @Query("limit") limit: Int
+    ): Response<List<IntakeHistoryResponse>>
 
     //LST: deactivate medication
     @PUT("api/medication/{medicationId}/deactivate")
@@ -223,3 +230,16 @@ interface ApiService {
     @GET("/api/patient/profile")
     suspend fun getProfile(): PatientResponse
 }
+
+// Whole intake history, fetched a page at a time so no single request grows with the history
+suspend fun ApiService.getIntakeHistory(patientId: String, pageSize: Int = 200): List<IntakeHistoryResponse> {
+    val history = mutableListOf<IntakeHistoryResponse>()
+    var cursor: String? = null
+    do {
+        val response = getIntakeHistoryPage(patientId, cursor, pageSize)
+        if (!response.isSuccessful) throw HttpException(response)
+        history += response.body().orEmpty()
+        cursor = response.headers()["X-Next-Cursor"]
+    } while (cursor != null)
+    return history
+}
@@ -3,6 +3,7 @@ package com.example.medimind.viewmodel
 import androidx.lifecycle.*
 import com.example.medimind.service.IntakeHistoryResponse
 import com.example.medimind.network.ApiClient
+import com.example.medimind.network.getIntakeHistory
 import kotlinx.coroutines.launch
 
 class IntakeHistoryViewModel : ViewModel() {
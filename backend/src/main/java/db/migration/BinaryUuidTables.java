@@ -0,0 +1,57 @@
+package db.migration;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The UUID columns that V5 and V6 move from VARCHAR to BINARY(16). Clinic keeps its VARCHAR key:
+ * it holds a handful of rows and only Doctor and Patient point at it.
+ */
+final class BinaryUuidTables {
+
+    /**
+     * @param chunkKey indexed column the backfill walks the table by
+     */
+    record Table(String name, String chunkKey, List<String> uuidColumns) {
+    }
+
+    static final List<Table> TABLES = List.of(
+            new Table("Patient", "Id", List.of("Id")),
+            new Table("Medication", "Id", List.of("Id")),
+            // no primary key; chunks are whole patients, through the foreign key index
+            new Table("Patient_Medication", "Patient_Id", List.of("Patient_Id", "Medication_Id")),
+            new Table("Schedule", "Id", List.of("Id", "Medication_Id", "Patient_Id")),
+            new Table("Medication_Intake_History", "Id", List.of("Id", "Patient_Id", "Schedule_Id")),
+            new Table("Schedule_Adherence_Monthly", "Id", List.of("Id", "Schedule_Id")),
+            new Table("Medication_Intake_History_Archive", "Id", List.of("Id", "Patient_Id", "Schedule_Id", "Medication_Id")));
+
+    private BinaryUuidTables() {
+    }
+
+    // the BINARY(16) copy of a column while both exist
+    static String shadow(String column) {
+        return column + "_Bin";
+    }
+
+    static String trigger(Table table, String event) {
+        return "TRG_" + table.name() + "_Uuid_" + event;
+    }
+
+    static boolean isMySql(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+    }
+
+    // H2 keeps unquoted identifiers in upper case, MySQL as written
+    static String stored(DatabaseMetaData metaData, String identifier) throws SQLException {
+        return metaData.storesUpperCaseIdentifiers() ? identifier.toUpperCase(Locale.ROOT) : identifier;
+    }
+
+    static int placeholder(Map<String, String> placeholders, String name, int defaultValue) {
+        String value = placeholders.get(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
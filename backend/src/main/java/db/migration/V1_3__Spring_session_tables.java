@@ -0,0 +1,62 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static db.migration.BinaryUuidTables.stored;
+
+/**
+ * Spring Session JDBC tables, which used to come from schema.sql (spring.session.jdbc.initialize-schema=always).
+ * A baselined database may or may not have them depending on how it was started, and MySQL has no
+ * CREATE INDEX IF NOT EXISTS, so each table is created only when the catalog does not list it yet.
+ */
+public class V1_3__Spring_session_tables extends BaseJavaMigration {
+    private static final Logger logger = LoggerFactory.getLogger(V1_3__Spring_session_tables.class);
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            if (!exists(connection, "SPRING_SESSION")) {
+                statement.execute("CREATE TABLE SPRING_SESSION (" +
+                        "PRIMARY_ID CHAR(36) NOT NULL, " +
+                        "SESSION_ID CHAR(36) NOT NULL, " +
+                        "CREATION_TIME BIGINT NOT NULL, " +
+                        "LAST_ACCESS_TIME BIGINT NOT NULL, " +
+                        "MAX_INACTIVE_INTERVAL INT NOT NULL, " +
+                        "EXPIRY_TIME BIGINT NOT NULL, " +
+                        "PRINCIPAL_NAME VARCHAR(100), " +
+                        "CONSTRAINT SPRING_SESSION_PK PRIMARY KEY (PRIMARY_ID))");
+                statement.execute("CREATE UNIQUE INDEX SPRING_SESSION_IX1 ON SPRING_SESSION (SESSION_ID)");
+                statement.execute("CREATE INDEX SPRING_SESSION_IX2 ON SPRING_SESSION (EXPIRY_TIME)");
+                statement.execute("CREATE INDEX SPRING_SESSION_IX3 ON SPRING_SESSION (PRINCIPAL_NAME)");
+                logger.info("Created SPRING_SESSION");
+            }
+            if (!exists(connection, "SPRING_SESSION_ATTRIBUTES")) {
+                statement.execute("CREATE TABLE SPRING_SESSION_ATTRIBUTES (" +
+                        "SESSION_PRIMARY_ID CHAR(36) NOT NULL, " +
+                        "ATTRIBUTE_NAME VARCHAR(200) NOT NULL, " +
+                        "ATTRIBUTE_BYTES BLOB NOT NULL, " +
+                        "CONSTRAINT SPRING_SESSION_ATTRIBUTES_PK PRIMARY KEY (SESSION_PRIMARY_ID, ATTRIBUTE_NAME), " +
+                        "CONSTRAINT SPRING_SESSION_ATTRIBUTES_FK FOREIGN KEY (SESSION_PRIMARY_ID) " +
+                        "REFERENCES SPRING_SESSION (PRIMARY_ID) ON DELETE CASCADE)");
+                logger.info("Created SPRING_SESSION_ATTRIBUTES");
+            }
+        }
+    }
+
+    private static boolean exists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet rs = metaData.getTables(connection.getCatalog(), null, stored(metaData, table), new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package db.migration;
+
+import db.migration.BinaryUuidTables.Table;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static db.migration.BinaryUuidTables.TABLES;
+import static db.migration.BinaryUuidTables.isMySql;
+import static db.migration.BinaryUuidTables.placeholder;
+import static db.migration.BinaryUuidTables.shadow;
+import static db.migration.BinaryUuidTables.trigger;
+
+/**
+ * First half of the VARCHAR(255) to BINARY(16) key migration (expand); V6 is the cutover.
+ *
+ * Adds a nullable BINARY(16) shadow column next to every UUID column, installs insert/update triggers that
+ * keep the shadows in step with whatever the running release writes, then fills the existing rows in
+ * short, separately committed chunks. Nothing here locks a table for longer than one chunk, and the
+ * release that is still serving never sees the new columns.
+ *
+ * On a large database apply this ahead of the release (flyway migrate -target=5 with the release's
+ * classes on the classpath), so the release itself only waits for V6. Creating triggers with binary logging on needs log_bin_trust_function_creators=1
+ * (or SUPER). Chunk size and pause come from the Flyway placeholders binaryUuidChunkSize and
+ * binaryUuidChunkPauseMillis. Safe to re-run after an interruption: existing shadow columns are kept
+ * and the backfill simply starts over.
+ */
+public class V5__Binary_uuid_expand extends BaseJavaMigration {
+    private static final Logger logger = LoggerFactory.getLogger(V5__Binary_uuid_expand.class);
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        // every chunk commits on its own
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        if (!isMySql(connection)) {
+            // H2 (tests) is migrated before anything is seeded; V6 converts its empty columns in place
+            return;
+        }
+        Map<String, String> placeholders = context.getConfiguration().getPlaceholders();
+        int chunkSize = placeholder(placeholders, "binaryUuidChunkSize", 5000);
+        int pauseMillis = placeholder(placeholders, "binaryUuidChunkPauseMillis", 100);
+
+        try (Statement statement = connection.createStatement()) {
+            for (Table table : TABLES) {
+                addShadowColumns(connection, statement, table);
+                // before the backfill, so a row written while it runs is converted either way
+                createTrigger(statement, table, "INSERT", "Ins");
+                createTrigger(statement, table, "UPDATE", "Upd");
+            }
+        }
+        for (Table table : TABLES) {
+            long rows = backfill(connection, table, chunkSize, pauseMillis);
+            logger.info("Binary UUID backfill: {} rows of {} converted", rows, table.name());
+        }
+    }
+
+    private void addShadowColumns(Connection connection, Statement statement, Table table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        List<String> adds = new ArrayList<>();
+        for (String column : table.uuidColumns()) {
+            try (ResultSet rs = metaData.getColumns(connection.getCatalog(), null, table.name(), shadow(column))) {
+                if (!rs.next()) {
+                    adds.add("ADD COLUMN " + shadow(column) + " BINARY(16) NULL");
+                }
+            }
+        }
+        if (!adds.isEmpty()) {
+            // appended nullable columns are a metadata-only change
+            statement.execute("ALTER TABLE " + table.name() + " " + String.join(", ", adds) + ", ALGORITHM=INSTANT");
+        }
+    }
+
+    private void createTrigger(Statement statement, Table table, String event, String suffix) throws SQLException {
+        String assignments = table.uuidColumns().stream()
+                .map(column -> "NEW." + shadow(column) + " = UUID_TO_BIN(NEW." + column + ")")
+                .collect(Collectors.joining(", "));
+        statement.execute("DROP TRIGGER IF EXISTS " + trigger(table, suffix));
+        statement.execute("CREATE TRIGGER " + trigger(table, suffix) + " BEFORE " + event + " ON " + table.name()
+                + " FOR EACH ROW SET " + assignments);
+    }
+
+    /**
+     * Walks the table in key order, one committed range update per chunk, so row locks are held for
+     * one chunk only and concurrent writes interleave with the backfill.
+     */
+    private long backfill(Connection connection, Table table, int chunkSize, int pauseMillis)
+            throws SQLException, InterruptedException {
+        String key = table.chunkKey();
+        String assignments = table.uuidColumns().stream()
+                .map(column -> shadow(column) + " = UUID_TO_BIN(" + column + ")")
+                .collect(Collectors.joining(", "));
+        String firstChunk = "SELECT DISTINCT " + key + " FROM " + table.name() + " ORDER BY " + key + " LIMIT ?";
+        String nextChunk = "SELECT DISTINCT " + key + " FROM " + table.name() + " WHERE " + key + " > ? ORDER BY " + key + " LIMIT ?";
+        String update = "UPDATE " + table.name() + " SET " + assignments + " WHERE " + key + " >= ? AND " + key + " <= ?";
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        long total = 0;
+        try (PreparedStatement first = connection.prepareStatement(firstChunk);
+             PreparedStatement next = connection.prepareStatement(nextChunk);
+             PreparedStatement range = connection.prepareStatement(update)) {
+            String after = null;
+            while (true) {
+                PreparedStatement select = after == null ? first : next;
+                int p = 1;
+                if (after != null) {
+                    select.setString(p++, after);
+                }
+                select.setInt(p, chunkSize);
+                String low = null;
+                String high = null;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        high = rs.getString(1);
+                        if (low == null) {
+                            low = high;
+                        }
+                    }
+                }
+                if (low == null) {
+                    break;
+                }
+                range.setString(1, low);
+                range.setString(2, high);
+                total += range.executeUpdate();
+                connection.commit();
+                after = high;
+                Thread.sleep(pauseMillis);
+            }
+        } catch (SQLException | InterruptedException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return total;
+    }
+}
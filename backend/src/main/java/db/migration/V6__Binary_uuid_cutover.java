@@ -0,0 +1,206 @@
+package db.migration;
+
+import db.migration.BinaryUuidTables.Table;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static db.migration.BinaryUuidTables.TABLES;
+import static db.migration.BinaryUuidTables.isMySql;
+import static db.migration.BinaryUuidTables.shadow;
+import static db.migration.BinaryUuidTables.stored;
+import static db.migration.BinaryUuidTables.trigger;
+
+/**
+ * Second half of the VARCHAR(255) to BINARY(16) key migration (cutover), run by the release that maps
+ * the ids as BINARY(16). Expects V5's shadow columns to be complete.
+ *
+ * On MySQL every table is rebuilt once with ALGORITHM=INPLACE, LOCK=NONE: the old columns are dropped,
+ * the shadows take their place in the primary key and in every index that used them, and then get the
+ * old names. The statements fail rather than fall back to a blocking table copy, and a shadow that V5
+ * left NULL fails the NOT NULL change instead of losing the row's key. Foreign keys are dropped first
+ * and re-added without re-validation (foreign_key_checks=0), since the values are converted 1:1.
+ * Index and foreign key names are read from the catalog, because databases baselined at V1 carry
+ * Hibernate's generated names.
+ *
+ * H2 (tests) has no shadows and no rows yet, so its columns just change type in place.
+ */
+public class V6__Binary_uuid_cutover extends BaseJavaMigration {
+    private static final Logger logger = LoggerFactory.getLogger(V6__Binary_uuid_cutover.class);
+
+    private record ForeignKey(String table, String name, List<String> columns,
+                              String referencedTable, List<String> referencedColumns) {
+    }
+
+    private record Index(String name, boolean unique, List<String> columns) {
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        // MySQL commits each ALTER anyway
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        boolean mySql = isMySql(connection);
+        try (Statement statement = connection.createStatement()) {
+            if (mySql) {
+                for (Table table : TABLES) {
+                    statement.execute("DROP TRIGGER IF EXISTS " + trigger(table, "Ins"));
+                    statement.execute("DROP TRIGGER IF EXISTS " + trigger(table, "Upd"));
+                }
+            }
+            List<ForeignKey> foreignKeys = new ArrayList<>();
+            for (Table table : TABLES) {
+                foreignKeys.addAll(foreignKeysOn(connection, table));
+            }
+            for (ForeignKey fk : foreignKeys) {
+                statement.execute("ALTER TABLE " + fk.table() + (mySql ? " DROP FOREIGN KEY " : " DROP CONSTRAINT ") + fk.name());
+            }
+            for (Table table : TABLES) {
+                if (mySql) {
+                    swapColumns(connection, statement, table);
+                } else {
+                    for (String column : table.uuidColumns()) {
+                        statement.execute("ALTER TABLE " + table.name() + " ALTER COLUMN " + column + " SET DATA TYPE BINARY(16)");
+                    }
+                }
+                logger.info("Binary UUID cutover: {} done", table.name());
+            }
+            if (mySql) {
+                statement.execute("SET foreign_key_checks = 0");
+            }
+            try {
+                for (ForeignKey fk : foreignKeys) {
+                    statement.execute("ALTER TABLE " + fk.table() + " ADD CONSTRAINT " + fk.name()
+                            + " FOREIGN KEY (" + String.join(", ", fk.columns()) + ") REFERENCES "
+                            + fk.referencedTable() + " (" + String.join(", ", fk.referencedColumns()) + ")"
+                            + (mySql ? ", ALGORITHM=INPLACE, LOCK=NONE" : ""));
+                }
+            } finally {
+                if (mySql) {
+                    statement.execute("SET foreign_key_checks = 1");
+                }
+            }
+        }
+    }
+
+    /**
+     * One rebuild: drop the old columns, move the primary key and indexes onto the shadows, make the
+     * shadows NOT NULL where the originals were. The renames after it only touch metadata.
+     */
+    private void swapColumns(Connection connection, Statement statement, Table table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String catalog = connection.getCatalog();
+        Map<String, String> toShadow = new LinkedHashMap<>();
+        table.uuidColumns().forEach(column -> toShadow.put(column.toLowerCase(), shadow(column)));
+
+        List<String> primaryKey = primaryKey(metaData, catalog, table.name());
+        List<Index> indexes = new ArrayList<>();
+        for (Index index : indexes(metaData, catalog, table.name())) {
+            if (index.columns().stream().anyMatch(column -> toShadow.containsKey(column.toLowerCase()))) {
+                indexes.add(index);
+            }
+        }
+
+        List<String> changes = new ArrayList<>();
+        for (Index index : indexes) {
+            changes.add("DROP INDEX " + index.name());
+        }
+        if (primaryKey.stream().anyMatch(column -> toShadow.containsKey(column.toLowerCase()))) {
+            changes.add("DROP PRIMARY KEY");
+            changes.add("ADD PRIMARY KEY (" + String.join(", ", mapColumns(primaryKey, toShadow)) + ")");
+        }
+        for (String column : table.uuidColumns()) {
+            changes.add("DROP COLUMN " + column);
+            changes.add("MODIFY COLUMN " + shadow(column) + " BINARY(16)"
+                    + (isNullable(metaData, catalog, table.name(), column) ? " NULL" : " NOT NULL"));
+        }
+        for (Index index : indexes) {
+            changes.add("ADD " + (index.unique() ? "UNIQUE " : "") + "INDEX " + index.name()
+                    + " (" + String.join(", ", mapColumns(index.columns(), toShadow)) + ")");
+        }
+        statement.execute("ALTER TABLE " + table.name() + " " + String.join(", ", changes) + ", ALGORITHM=INPLACE, LOCK=NONE");
+
+        List<String> renames = new ArrayList<>();
+        for (String column : table.uuidColumns()) {
+            renames.add("RENAME COLUMN " + shadow(column) + " TO " + column);
+        }
+        statement.execute("ALTER TABLE " + table.name() + " " + String.join(", ", renames) + ", ALGORITHM=INPLACE, LOCK=NONE");
+    }
+
+    private static List<String> mapColumns(List<String> columns, Map<String, String> toShadow) {
+        return columns.stream().map(column -> toShadow.getOrDefault(column.toLowerCase(), column)).toList();
+    }
+
+    private List<ForeignKey> foreignKeysOn(Connection connection, Table table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        Map<String, ForeignKey> byName = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getImportedKeys(connection.getCatalog(), null, stored(metaData, table.name()))) {
+            while (rs.next()) {
+                String column = rs.getString("FKCOLUMN_NAME");
+                if (table.uuidColumns().stream().noneMatch(column::equalsIgnoreCase)) {
+                    continue;
+                }
+                // rows come ordered by referenced table and KEY_SEQ
+                String name = rs.getString("FK_NAME");
+                ForeignKey fk = byName.get(name);
+                if (fk == null) {
+                    fk = new ForeignKey(table.name(), name, new ArrayList<>(), rs.getString("PKTABLE_NAME"), new ArrayList<>());
+                    byName.put(name, fk);
+                }
+                fk.columns().add(column);
+                fk.referencedColumns().add(rs.getString("PKCOLUMN_NAME"));
+            }
+        }
+        return new ArrayList<>(byName.values());
+    }
+
+    private List<String> primaryKey(DatabaseMetaData metaData, String catalog, String table) throws SQLException {
+        Map<Short, String> columns = new TreeMap<>();
+        try (ResultSet rs = metaData.getPrimaryKeys(catalog, null, table)) {
+            while (rs.next()) {
+                columns.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+        }
+        return new ArrayList<>(columns.values());
+    }
+
+    private List<Index> indexes(DatabaseMetaData metaData, String catalog, String table) throws SQLException {
+        Map<String, Boolean> unique = new LinkedHashMap<>();
+        Map<String, Map<Short, String>> columns = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(catalog, null, table, false, false)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                if (name == null || rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic || name.equals("PRIMARY")) {
+                    continue;
+                }
+                unique.put(name, !rs.getBoolean("NON_UNIQUE"));
+                columns.computeIfAbsent(name, n -> new TreeMap<>()).put(rs.getShort("ORDINAL_POSITION"), rs.getString("COLUMN_NAME"));
+            }
+        }
+        List<Index> result = new ArrayList<>();
+        unique.forEach((name, isUnique) -> result.add(new Index(name, isUnique, new ArrayList<>(columns.get(name).values()))));
+        return result;
+    }
+
+    private boolean isNullable(DatabaseMetaData metaData, String catalog, String table, String column) throws SQLException {
+        try (ResultSet rs = metaData.getColumns(catalog, null, table, column)) {
+            return !rs.next() || rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package nus.iss.backend.config;
+
+import nus.iss.backend.util.PatientTokens;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class PatientTokenConfig {
+
+    /**
+     * Token check for /api calls, after the Spring Session filter (a call without a token may still be a
+     * portal call with a session) and SecurityHeadersFilter (rejections get the headers too).
+     */
+    @Bean
+    public FilterRegistrationBean<PatientTokenFilter> patientTokenFilter(PatientTokens tokens,
+                                                                         @Value("${app.auth.token.required:false}") boolean required) {
+        FilterRegistrationBean<PatientTokenFilter> registration = new FilterRegistrationBean<>(new PatientTokenFilter(tokens, required));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(2);
+        return registration;
+    }
+}
@@ -0,0 +1,100 @@
+package nus.iss.backend.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import nus.iss.backend.exceptions.InvalidTokenException;
+import nus.iss.backend.util.LogSanitizer;
+import nus.iss.backend.util.PatientTokens;
+import nus.iss.backend.util.VerifiedPatient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Checks the Bearer token of Android calls (see PatientTokens) in memory and leaves its claims on the request
+ * for VerifiedPatient. A bad or expired token is answered with 401, a token used on another patient's path
+ * with 403. Calls without a token go on as before (the portal's session calls, older app versions) unless
+ * app.auth.token.required is set; then the app's endpoints need a token or a session.
+ */
+public class PatientTokenFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(PatientTokenFilter.class);
+    private static final String BEARER = "Bearer ";
+
+    // app endpoints with the patient id in the path
+    private static final List<PathPattern> PATIENT_PATHS = parse(
+            "/api/patient/{patientId}", "/api/patient/{patientId}/**",
+            "/api/patients/{patientId}/intake-history", "/api/schedule/daily/{patientId}");
+    // app endpoints with the patient id in the body, checked by the service
+    private static final List<PathPattern> APP_PATHS = parse(
+            "/api/intakeHistory/**", "/api/schedule/find", "/api/medication/medList");
+
+    private final PatientTokens tokens;
+    private final boolean required;
+
+    public PatientTokenFilter(PatientTokens tokens, boolean required) {
+        this.tokens = tokens;
+        this.required = required;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER)) {
+            PatientTokens.Claims claims;
+            try {
+                claims = tokens.verify(header.substring(BEARER.length()).trim());
+            } catch (InvalidTokenException e) {
+                logger.warn("Rejected patient token on {}: {}", LogSanitizer.sanitizeForLog(request.getRequestURI()),
+                        LogSanitizer.sanitizeForLog(e.getMessage()));
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+                return;
+            }
+            UUID pathPatient = pathPatientId(path);
+            if (pathPatient != null && !pathPatient.equals(claims.patientId())) {
+                response.sendError(HttpServletResponse.SC_FORBIDDEN);
+                return;
+            }
+            request.setAttribute(VerifiedPatient.ATTRIBUTE, claims);
+        } else if (required && isAppPath(path) && request.getSession(false) == null) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static UUID pathPatientId(PathContainer path) {
+        for (PathPattern pattern : PATIENT_PATHS) {
+            PathPattern.PathMatchInfo match = pattern.matchAndExtract(path);
+            if (match != null) {
+                try {
+                    return UUID.fromString(match.getUriVariables().get("patientId"));
+                } catch (IllegalArgumentException e) {
+                    // /api/patient/login, /api/patient/register
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAppPath(PathContainer path) {
+        return pathPatientId(path) != null || APP_PATHS.stream().anyMatch(pattern -> pattern.matches(path));
+    }
+
+    private static List<PathPattern> parse(String... patterns) {
+        return Arrays.stream(patterns).map(PathPatternParser.defaultInstance::parse).toList();
+    }
+}
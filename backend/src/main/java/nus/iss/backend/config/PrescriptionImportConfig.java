@@ -0,0 +1,157 @@
+package nus.iss.backend.config;
+
+import nus.iss.backend.dto.PrescriptionImportItem;
+import nus.iss.backend.dto.PrescriptionImportRow;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.exceptions.InvalidTimeFormatException;
+import nus.iss.backend.job.PrescriptionImportPartitioner;
+import nus.iss.backend.job.PrescriptionImportSkipListener;
+import nus.iss.backend.job.PrescriptionImportWriter;
+import nus.iss.backend.job.PrescriptionRowProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.core.step.skip.LimitCheckingItemSkipPolicy;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Bulk prescription import (POST /api/medication/import/{mcrNo}): a CSV with a header line and the columns
+ *   patient, medication, dosage, frequency, times[, instructions, notes]
+ * where patient is the patient's id or NRIC and times holds HHmm / HH:mm times separated by ';', '|' or spaces.
+ *
+ * The job is one partitioned step. Each worker partition owns a share of the patients
+ * ({@link PrescriptionImportPartitioner}) and runs on its own virtual thread, in chunks of chunk-size lines,
+ * each chunk one transaction. Reader position and counters are saved per partition with every chunk, so
+ * a failed import restarted with the same parameters skips finished partitions and resumes the others
+ * after their last committed chunk. Bad lines are skipped and reported in Prescription_Import_Error.
+ */
+@Configuration
+public class PrescriptionImportConfig {
+    private static final Logger logger = LoggerFactory.getLogger(PrescriptionImportConfig.class);
+
+    public static final String JOB_NAME = "prescriptionImportJob";
+    private static final String WORKER_STEP = "prescriptionImportWorkerStep";
+    private static final String[] COLUMNS = {"patient", "medicationName", "dosage", "frequency", "times", "instructions", "notes"};
+
+    @Value("${app.import.prescriptions.chunk-size:100}")
+    private int chunkSize;
+
+    // every partition holds a pooled connection while it writes, so keep this below the Hikari pool size
+    @Value("${app.import.prescriptions.partitions:4}")
+    private int partitions;
+
+    // per partition; an import with more bad lines than this fails instead of reporting them all
+    @Value("${app.import.prescriptions.skip-limit:10000}")
+    private int skipLimit;
+
+    @Bean
+    public Job prescriptionImportJob(JobRepository jobRepository, Step prescriptionImportStep) {
+        return new JobBuilder(JOB_NAME, jobRepository)
+                .start(prescriptionImportStep)
+                .listener(new JobExecutionListener() {
+                    @Override
+                    public void afterJob(JobExecution jobExecution) {
+                        // the upload is kept for restarts until the import has gone through
+                        if (jobExecution.getStatus() == BatchStatus.COMPLETED) {
+                            deleteUpload(jobExecution.getJobParameters().getString("file"));
+                        }
+                    }
+                })
+                .build();
+    }
+
+    @Bean
+    public Step prescriptionImportStep(JobRepository jobRepository, Step prescriptionImportWorkerStep,
+                                       @Qualifier("virtualThreadExecutor") ExecutorService virtualThreadExecutor) {
+        return new StepBuilder("prescriptionImportStep", jobRepository)
+                .partitioner(WORKER_STEP, new PrescriptionImportPartitioner())
+                .step(prescriptionImportWorkerStep)
+                .gridSize(partitions)
+                .taskExecutor(new TaskExecutorAdapter(virtualThreadExecutor))
+                .build();
+    }
+
+    @Bean
+    public Step prescriptionImportWorkerStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                                             FlatFileItemReader<PrescriptionImportRow> prescriptionCsvReader,
+                                             PrescriptionRowProcessor processor, PrescriptionImportWriter writer,
+                                             PrescriptionImportSkipListener skipListener) {
+        // line-level problems are reported and skipped; anything else fails the partition (and can be restarted)
+        LimitCheckingItemSkipPolicy skipPolicy = new LimitCheckingItemSkipPolicy(skipLimit, Map.of(
+                FlatFileParseException.class, true,
+                BadRequestException.class, true,
+                InvalidTimeFormatException.class, true,
+                DataIntegrityViolationException.class, true));
+        return new StepBuilder(WORKER_STEP, jobRepository)
+                .<PrescriptionImportRow, PrescriptionImportItem>chunk(chunkSize, transactionManager)
+                .reader(prescriptionCsvReader)
+                .processor(processor)
+                .writer(writer)
+                .faultTolerant()
+                .skipPolicy(skipPolicy)
+                .listener(skipListener)
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public FlatFileItemReader<PrescriptionImportRow> prescriptionCsvReader(@Value("#{jobParameters['file']}") String file) {
+        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+        tokenizer.setNames(COLUMNS);
+        // instructions and notes may be left off
+        tokenizer.setStrict(false);
+        return new FlatFileItemReaderBuilder<PrescriptionImportRow>()
+                .name("prescriptionCsvReader")
+                .resource(new FileSystemResource(file))
+                .linesToSkip(1)
+                .lineMapper((line, lineNumber) -> toRow(tokenizer.tokenize(line), lineNumber))
+                .build();
+    }
+
+    private static PrescriptionImportRow toRow(FieldSet fields, int lineNumber) {
+        PrescriptionImportRow row = new PrescriptionImportRow();
+        row.setLineNumber(lineNumber);
+        row.setPatient(fields.readRawString("patient"));
+        row.setMedicationName(fields.readRawString("medicationName"));
+        row.setDosage(fields.readRawString("dosage"));
+        row.setFrequency(fields.readRawString("frequency"));
+        row.setTimes(fields.readRawString("times"));
+        row.setInstructions(fields.readRawString("instructions"));
+        row.setNotes(fields.readRawString("notes"));
+        return row;
+    }
+
+    private static void deleteUpload(String file) {
+        try {
+            Files.deleteIfExists(Path.of(file));
+        } catch (IOException e) {
+            logger.warn("Could not delete imported file {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
 
+// WriteBehindSessionRepository (@Primary) sits in front of the JDBC session repository enabled here
 @Configuration
 @EnableScheduling
 @EnableJdbcHttpSession
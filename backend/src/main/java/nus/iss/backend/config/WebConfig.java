@@ -1,4 +1,5 @@
 package nus.iss.backend.config;
+import nus.iss.backend.util.PatientTokens;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
@@ -15,6 +16,7 @@ public class WebConfig implements WebMvcConfigurer {
         registry.addMapping("/api/**") // match your endpoints
                 .allowedOrigins(allowedOrigin)
                 .allowedMethods("GET", "POST", "PUT", "DELETE")
+                .exposedHeaders("X-Next-Cursor", "ETag", PatientTokens.RESPONSE_HEADER)
                 .allowCredentials(true);
     }
 }
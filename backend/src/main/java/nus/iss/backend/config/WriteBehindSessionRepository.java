@@ -0,0 +1,285 @@
+package nus.iss.backend.config;
+
+import jakarta.annotation.PreDestroy;
+import nus.iss.backend.util.LogSanitizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Session repository in front of the JDBC one that @EnableJdbcHttpSession sets up, used by the session filter
+ * because it is @Primary. Active sessions stay in a bounded in-memory LRU map, so a portal request that only
+ * reads its session (the common case: look up doctorMcr, touch the last-access time) costs no SQL:
+ * - new sessions and changes to attributes, id or timeout are written through to SPRING_SESSION on save,
+ *   by the JDBC repository, so another node can take over the session at once
+ * - last-access times are only queued, and SessionAccessFlushJob writes them in one batched UPDATE per
+ *   flush-interval (and once more on shutdown); they must reach the table well within the session timeout,
+ *   or the cleanup of another node deletes the session as expired
+ * - a cached session is re-read from the table after revalidate-after, which bounds how long a logout or
+ *   attribute change made on another node goes unseen here
+ * Concurrent requests of one session share its cached object, so every access to it is synchronized.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "app.session.write-behind.enabled", havingValue = "true", matchIfMissing = true)
+public class WriteBehindSessionRepository implements FindByIndexNameSessionRepository<WriteBehindSessionRepository.CachedSession> {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindSessionRepository.class);
+
+    // the JDBC repository typed on Session: its own session class is not public
+    private final FindByIndexNameSessionRepository<Session> jdbc;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, CachedSession> sessions;
+    private final long revalidateMillis;
+    private final int batchSize;
+    private final String updateAccessSql;
+    // newest last-access time per session id that is not in the table yet
+    private final Map<String, Access> pendingAccess = new ConcurrentHashMap<>();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public WriteBehindSessionRepository(JdbcIndexedSessionRepository jdbcRepository,
+                                        JdbcTemplate jdbcTemplate,
+                                        @Value("${app.session.cache.max-sessions:20000}") int capacity,
+                                        @Value("${app.session.cache.revalidate-after:1m}") Duration revalidateAfter,
+                                        @Value("${app.session.write-behind.batch-size:500}") int batchSize,
+                                        @Value("${spring.session.jdbc.table-name:SPRING_SESSION}") String tableName) {
+        this.jdbc = (FindByIndexNameSessionRepository) jdbcRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.revalidateMillis = revalidateAfter.toMillis();
+        this.batchSize = batchSize;
+        // never moves a session's expiry backwards, e.g. over a newer time written through by another node
+        this.updateAccessSql = "UPDATE " + tableName + " SET LAST_ACCESS_TIME = ?, MAX_INACTIVE_INTERVAL = ?, EXPIRY_TIME = ? "
+                + "WHERE SESSION_ID = ? AND LAST_ACCESS_TIME < ?";
+        this.sessions = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSession> eldest) {
+                // a queued access time outlives the eviction, it is written by the next flush all the same
+                return size() > capacity;
+            }
+        });
+    }
+
+    @Override
+    public CachedSession createSession() {
+        return new CachedSession(jdbc.createSession(), false);
+    }
+
+    @Override
+    public void save(CachedSession session) {
+        synchronized (session) {
+            if (!session.persisted || session.changed) {
+                String previousId = session.savedId;
+                jdbc.save(session.delegate);
+                session.persisted = true;
+                session.changed = false;
+                session.accessed = false;
+                session.savedId = session.delegate.getId();
+                session.verifiedAt = System.currentTimeMillis();
+                // the write included the last-access time
+                pendingAccess.remove(session.savedId);
+                if (previousId != null && !previousId.equals(session.savedId)) {
+                    sessions.remove(previousId);
+                    pendingAccess.remove(previousId);
+                }
+                sessions.put(session.savedId, session);
+            } else if (session.accessed) {
+                session.accessed = false;
+                pendingAccess.put(session.savedId, new Access(session.delegate.getLastAccessedTime().toEpochMilli(),
+                        (int) session.delegate.getMaxInactiveInterval().toSeconds()));
+            }
+        }
+    }
+
+    @Override
+    public CachedSession findById(String id) {
+        CachedSession cached = sessions.get(id);
+        if (cached != null) {
+            synchronized (cached) {
+                if (cached.delegate.isExpired()) {
+                    deleteById(id);
+                    return null;
+                }
+                if (System.currentTimeMillis() - cached.verifiedAt < revalidateMillis) {
+                    return cached;
+                }
+            }
+        }
+        // also deletes the row if it has expired
+        Session loaded = jdbc.findById(id);
+        if (loaded == null) {
+            sessions.remove(id);
+            pendingAccess.remove(id);
+            return null;
+        }
+        CachedSession fresh = new CachedSession(loaded, true);
+        sessions.put(id, fresh);
+        return fresh;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        sessions.remove(id);
+        pendingAccess.remove(id);
+        jdbc.deleteById(id);
+    }
+
+    @Override
+    public Map<String, CachedSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        Map<String, CachedSession> found = new LinkedHashMap<>();
+        jdbc.findByIndexNameAndIndexValue(indexName, indexValue).forEach((id, session) -> {
+            CachedSession cached = sessions.get(id);
+            found.put(id, cached != null ? cached : new CachedSession(session, true));
+        });
+        return found;
+    }
+
+    /**
+     * Writes the queued last-access times in batched UPDATEs. Returns how many were written; on a database
+     * error they stay queued for the next flush.
+     */
+    public int flushAccessTimes() {
+        if (pendingAccess.isEmpty()) {
+            return 0;
+        }
+        List<Map.Entry<String, Access>> batch = new ArrayList<>();
+        pendingAccess.forEach((id, access) -> batch.add(Map.entry(id, access)));
+        try {
+            jdbcTemplate.batchUpdate(updateAccessSql, batch, batchSize, (ps, entry) -> {
+                Access access = entry.getValue();
+                ps.setLong(1, access.lastAccessedTime());
+                ps.setInt(2, access.maxInactiveSeconds());
+                ps.setLong(3, access.expiryTime());
+                ps.setString(4, entry.getKey());
+                ps.setLong(5, access.lastAccessedTime());
+            });
+        } catch (DataAccessException e) {
+            logger.error("Writing {} session access times failed: {}", batch.size(), LogSanitizer.sanitizeForLog(e.getMessage()));
+            return 0;
+        }
+        // a session touched again meanwhile keeps its newer entry for the next flush
+        batch.forEach(entry -> pendingAccess.remove(entry.getKey(), entry.getValue()));
+        logger.debug("Wrote {} session access times", batch.size());
+        return batch.size();
+    }
+
+    public int pendingAccessCount() {
+        return pendingAccess.size();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        flushAccessTimes();
+    }
+
+    private record Access(long lastAccessedTime, int maxInactiveSeconds) {
+        long expiryTime() {
+            return maxInactiveSeconds < 0 ? Long.MAX_VALUE : lastAccessedTime + maxInactiveSeconds * 1000L;
+        }
+    }
+
+    /**
+     * A session of the JDBC repository plus what has happened to it since it was last written.
+     */
+    public static final class CachedSession implements Session {
+        private final Session delegate;
+        private boolean persisted;
+        // anything but the last-access time changed
+        private boolean changed;
+        private boolean accessed;
+        private String savedId;
+        private long verifiedAt;
+
+        private CachedSession(Session delegate, boolean persisted) {
+            this.delegate = delegate;
+            this.persisted = persisted;
+            this.savedId = persisted ? delegate.getId() : null;
+            this.verifiedAt = System.currentTimeMillis();
+        }
+
+        @Override
+        public synchronized String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public synchronized String changeSessionId() {
+            changed = true;
+            return delegate.changeSessionId();
+        }
+
+        @Override
+        public synchronized <T> T getAttribute(String attributeName) {
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public synchronized Set<String> getAttributeNames() {
+            return Set.copyOf(delegate.getAttributeNames());
+        }
+
+        @Override
+        public synchronized void setAttribute(String attributeName, Object attributeValue) {
+            changed = true;
+            delegate.setAttribute(attributeName, attributeValue);
+        }
+
+        @Override
+        public synchronized void removeAttribute(String attributeName) {
+            changed = true;
+            delegate.removeAttribute(attributeName);
+        }
+
+        @Override
+        public synchronized Instant getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public synchronized void setLastAccessedTime(Instant lastAccessedTime) {
+            accessed = true;
+            delegate.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public synchronized Instant getLastAccessedTime() {
+            return delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public synchronized void setMaxInactiveInterval(Duration interval) {
+            changed = true;
+            delegate.setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public synchronized Duration getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        @Override
+        public synchronized boolean isExpired() {
+            return delegate.isExpired();
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package nus.iss.backend.controller;
 
 import nus.iss.backend.dao.DoctorUpdateReqWeb;
+import nus.iss.backend.dao.IntakeBatchItemResult;
 import nus.iss.backend.dao.IntakeReqMobile;
 import nus.iss.backend.dao.UpdateDoctorNotesReq;
+import nus.iss.backend.dto.IntakeHistoryPage;
 import nus.iss.backend.dto.IntakeHistoryResponse;            // DTO for intake history
 import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.model.IntakeHistory;
@@ -12,11 +14,14 @@ import nus.iss.backend.util.LogSanitizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import nus.iss.backend.exceptions.*;
 
+import java.time.LocalDate;
 import java.util.List;                                       // for List<>
 import java.util.UUID;                                      // for UUID
                                                                  
@@ -32,6 +37,17 @@ public class IntakeHistoryController {
     @Autowired
     PatientService patientService;
 
+    @Value("${app.intake.batch.max-size:500}")
+    private int maxBatchSize;
+
+    @Value("${app.intake.history.page-size:100}")
+    private int historyPageSize;
+
+    @Value("${app.intake.history.max-page-size:500}")
+    private int historyMaxPageSize;
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     /**
      * Existing PUT endpoint for saving doctor notes on an intake log.
      */
@@ -52,16 +68,35 @@ public class IntakeHistoryController {
     }
 
     /**
-     * New GET endpoint to retrieve intake-history for a given patient.
+     * GET endpoint to retrieve one page of intake-history for a given patient, oldest first.
+     * The next page's cursor is returned in the X-Next-Cursor header (absent on the last page).
+     * Without any of from, to, cursor and limit the whole history is returned, as before paging existed:
+     * older app versions make that call and would otherwise only ever see the oldest page.
      */
     @GetMapping("/patients/{patientId}/intake-history")      // Maps GET /api/patients/{patientId}/intake-history
     public ResponseEntity<List<IntakeHistoryResponse>> getIntakeHistory(
-            @PathVariable("patientId") UUID patientId) {
+            @PathVariable("patientId") UUID patientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
-            // Delegate to service to fetch and map entity to DTO
-            List<IntakeHistoryResponse> history =
-                    patientService.getIntakeHistoryByPatientId(patientId);
-            return ResponseEntity.ok(history);
+            if (from == null && to == null && cursor == null && limit == null) {
+                return ResponseEntity.ok(patientService.getFullIntakeHistory(patientId, historyMaxPageSize));
+            }
+            if (limit != null && limit < 1) throw new BadRequestException("limit must be positive");
+            int pageSize = limit == null ? historyPageSize : Math.min(limit, historyMaxPageSize);
+
+            IntakeHistoryPage page = patientService.getIntakeHistoryPage(patientId, from, to, cursor, pageSize);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getItems());
+
+        } catch (BadRequestException e) {
+            logger.warn("Intake history bad request: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
 
         } catch (ItemNotFound e) {
             logger.error("Patient not found: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
@@ -85,6 +120,10 @@ public class IntakeHistoryController {
             intakeHistoryService.createIntakeHistory(req);
             return ResponseEntity.ok().build();
 
+        } catch (DuplicationException e) {
+            // lost a race with a retry of the same request; the log is stored, so acknowledge it
+            logger.info("Intake duplicate request: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+            return ResponseEntity.ok().build();
         } catch (ItemNotFound e) {
             logger.warn("Intake not found: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
@@ -96,4 +135,30 @@ public class IntakeHistoryController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    /**
+     * Batch endpoint for offline replay: accepts a list of logs and returns one result per item.
+     */
+    @PostMapping("/intakeHistory/batch")
+    public ResponseEntity<?> createMedicationLogBatch(@RequestBody List<IntakeReqMobile> reqs) {
+        try {
+            if (reqs == null || reqs.isEmpty()) throw new BadRequestException("Batch cannot be empty");
+            if (reqs.size() > maxBatchSize) throw new BadRequestException("Batch cannot exceed " + maxBatchSize + " logs");
+            logger.info("Received intake batch of {} logs", reqs.size());
+
+            List<IntakeBatchItemResult> results = intakeHistoryService.createIntakeHistoryBatch(reqs);
+            return ResponseEntity.ok(results);
+
+        } catch (BadRequestException e) {
+            logger.warn("Intake batch bad request: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (DuplicationException e) {
+            // overlapping replay rolled the batch back; a retry will report those items as DUPLICATE
+            logger.warn("Intake batch conflict: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Intake batch unexpected error: {}", LogSanitizer.sanitizeForLog(e.getMessage()), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 }
@@ -1,11 +1,18 @@
 package nus.iss.backend.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import nus.iss.backend.dao.*;
 import nus.iss.backend.dto.EditMedicationRequest;
+import nus.iss.backend.dto.PrescriptionImportReport;
+import nus.iss.backend.dto.RecognitionJobResponse;
 import nus.iss.backend.dto.newMedicationReq;
 import nus.iss.backend.exceptions.InvalidTimeFormatException;
 import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.exceptions.DuplicationException;
+import nus.iss.backend.exceptions.OcrUnavailableException;
 import nus.iss.backend.model.IntakeHistory;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
@@ -13,19 +20,27 @@ import nus.iss.backend.model.Schedule;
 import nus.iss.backend.service.IntakeHistoryService;
 import nus.iss.backend.service.MedicationService;
 import nus.iss.backend.service.PatientService;
+import nus.iss.backend.service.PrescriptionImportService;
+import nus.iss.backend.service.RecognitionJobService;
 import nus.iss.backend.service.ScheduleService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import nus.iss.backend.util.LogSanitizer;
 import nus.iss.backend.exceptions.BadRequestException;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
@@ -34,6 +49,8 @@ import java.util.UUID;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @CrossOrigin
@@ -41,6 +58,7 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/medication")
 public class MedicationController {
     private static final Logger logger = LoggerFactory.getLogger(MedicationController.class);
+    private static final int MAX_NAME_SUGGESTIONS = 50;
 
     @Autowired
     private MedicationService medicationService;
@@ -50,6 +68,13 @@ public class MedicationController {
     private ScheduleService scheduleService;
     @Autowired
     private IntakeHistoryService intakeHistoryService;
+    @Autowired
+    private PrescriptionImportService prescriptionImportService;
+    @Autowired
+    private RecognitionJobService recognitionJobService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @PostMapping("/medList")
     public ResponseEntity<List<MedicationResponse>> getMedications(@RequestBody MedicationIdList MedIds) {
@@ -145,6 +170,38 @@ public class MedicationController {
         }
     }
 
+    // Streaming variant of /logs for long-running prescriptions: rows go from a forward-only cursor straight
+    // into the response through Jackson's generator, so heap stays flat and the first bytes leave before the query ends.
+    // Once streaming has started the status is already 200; a failure midway truncates the JSON array.
+    @GetMapping(value = "/{medicationId}/logs/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMedicationLog(@PathVariable UUID medicationId) {
+        // per-row writer that leaves flushing to the generator's buffer instead of flushing every log
+        ObjectWriter rowWriter = objectMapper.writerFor(IntakeLogResponseWeb.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+            try {
+                gen.writeStartArray();
+                long count = intakeHistoryService.streamIntakeLogsForMedication(medicationId, row -> {
+                    try {
+                        rowWriter.writeValue(gen, row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                gen.writeEndArray();
+                logger.info("Streamed {} logs for medication({}).", count, LogSanitizer.sanitizeForLog(medicationId.toString()));
+            } catch (RuntimeException e) {
+                logger.error("Error in streaming logs for medication({}): {}", LogSanitizer.sanitizeForLog(medicationId.toString()),
+                        LogSanitizer.sanitizeForLog(e.getMessage()));
+                throw e;
+            } finally {
+                gen.flush();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @PostMapping("/save")
     public ResponseEntity<?> saveMedication(@RequestBody newMedicationReq req) {
         logger.info(">>> /save API hit, request received: {}", LogSanitizer.sanitizeForLog(req.toString()));
@@ -201,12 +258,7 @@ public class MedicationController {
                 throw new ItemNotFound("Medication not found");
             }
 
-            med.setActive(false);
-            medicationService.saveMedication(med);
-
-            List<Schedule> schedules = scheduleService.findActiveSchedulesByMedication(med);
-
-            scheduleService.deactivateSchedules(schedules);
+            medicationService.deactivateMedication(med);
 
             return ResponseEntity.ok("Medication and related schedules deactivated successfully");
         } catch (ItemNotFound e) {
@@ -218,10 +270,111 @@ public class MedicationController {
     }
 
     // Pris: prediction from the ML model
+    // Answered asynchronously: the Tomcat thread is free while the model runs. 503 when the OCR service is
+    // slow, down or saturated (see OcrClient), so the app can ask the user to retry.
     @PostMapping(value = "/predict_image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<ImageOutput> predict(@RequestParam("file") MultipartFile file) throws IOException {
-        ImageOutput result = medicationService.sendToFastAPI(file);
-        return ResponseEntity.ok(result);
+    public CompletableFuture<ResponseEntity<?>> predict(@RequestParam("file") MultipartFile file) throws IOException {
+        return medicationService.sendToFastAPI(file)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof OcrUnavailableException) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(cause.getMessage());
+                    }
+                    if (cause instanceof BadRequestException) {
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(cause.getMessage());
+                    }
+                    logger.error("Error in image prediction: {}", LogSanitizer.sanitizeForLog(cause.getMessage()), cause);
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error in image prediction");
+                });
+    }
+
+    // Autocomplete for entering a medication by hand: drug names (DrugBank) starting with q, shortest first,
+    // or the one q is a misspelling of. The names only change with a new build, so clients may keep them.
+    @GetMapping("/names")
+    public ResponseEntity<List<String>> suggestMedicationNames(@RequestParam("q") String q,
+                                                               @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        List<String> names = medicationService.suggestMedicationNames(q, Math.max(1, Math.min(limit, MAX_NAME_SUGGESTIONS)));
+        return ResponseEntity.ok().cacheControl(CacheControl.maxAge(Duration.ofHours(1))).body(names);
+    }
+
+    // Recognition as a job: returns 202 with the job id at once, whatever the model's latency. The result is
+    // polled with GET /predict_image/jobs/{jobId} or streamed by GET /predict_image/jobs/{jobId}/events.
+    // Uploading the same image again (e.g. after a dropped connection) returns the same job.
+    @PostMapping(value = "/predict_image/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> submitRecognitionJob(@RequestParam("file") MultipartFile file) {
+        try {
+            RecognitionJobResponse job = recognitionJobService.submit(file);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/medication/predict_image/jobs/" + job.getJobId()))
+                    .body(job);
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Error when submitting recognition job: {}", LogSanitizer.sanitizeForLog(e.getMessage()), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Could not start the recognition");
+        }
+    }
+
+    @GetMapping("/predict_image/jobs/{jobId}")
+    public ResponseEntity<?> getRecognitionJob(@PathVariable UUID jobId) {
+        try {
+            return ResponseEntity.ok(recognitionJobService.getJob(jobId));
+        } catch (ItemNotFound e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    // "status" events with the job, until it is SUCCEEDED or FAILED
+    @GetMapping(value = "/predict_image/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> recognitionJobEvents(@PathVariable UUID jobId) {
+        try {
+            return ResponseEntity.ok(recognitionJobService.subscribe(jobId));
+        } catch (ItemNotFound e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+    }
+
+    // Bulk import of prescriptions into the doctor's clinic from a CSV (format in PrescriptionImportConfig).
+    // Runs in the background: returns 202 with the execution id, then poll GET /import/{executionId}.
+    @PostMapping(value = "/import/{mcrNo}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importPrescriptions(@PathVariable String mcrNo, @RequestParam("file") MultipartFile file) {
+        try {
+            PrescriptionImportReport report = prescriptionImportService.startImport(mcrNo, file);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(report);
+        } catch (ItemNotFound e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Error when starting prescription import: {}", LogSanitizer.sanitizeForLog(e.getMessage()), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Could not start the import");
+        }
+    }
+
+    // status, counts and the rejected lines of an import
+    @GetMapping("/import/{executionId}")
+    public ResponseEntity<?> getImportReport(@PathVariable long executionId) {
+        try {
+            return ResponseEntity.ok(prescriptionImportService.getReport(executionId));
+        } catch (ItemNotFound e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    // resumes a failed import after its last committed chunk
+    @PostMapping("/import/{executionId}/restart")
+    public ResponseEntity<?> restartImport(@PathVariable long executionId) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(prescriptionImportService.restartImport(executionId));
+        } catch (ItemNotFound e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Error when restarting prescription import: {}", LogSanitizer.sanitizeForLog(e.getMessage()), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Could not restart the import");
+        }
     }
 
     private boolean isBlank(String s) {
@@ -1,28 +1,42 @@
 package nus.iss.backend.controller;
 
 import nus.iss.backend.dao.MissedDoseResponse;
+import nus.iss.backend.dto.DashboardSection;
+import nus.iss.backend.dto.PatientDashboard;
+import nus.iss.backend.dto.PatientRosterPage;
 import nus.iss.backend.dto.RegisterPatientRequest;
+import nus.iss.backend.dto.RosterQuery;
 import nus.iss.backend.dto.AssignPatientRequest;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.exceptions.ForbiddenException;
 import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.exceptions.DuplicateEmailException; // NEW
 import nus.iss.backend.model.Clinic;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
 import nus.iss.backend.repository.ClinicRepository;
+import nus.iss.backend.service.DashboardService;
 import nus.iss.backend.service.PatientService;
 import nus.iss.backend.util.LogSanitizer;
+import nus.iss.backend.util.PatientETag;
+import nus.iss.backend.util.PatientTokens;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @CrossOrigin
@@ -38,6 +52,18 @@ public class PatientController {
     @Autowired
     private ClinicRepository clinicRepository;
 
+    @Autowired
+    private DashboardService dashboardService;
+
+    @Autowired
+    private PatientTokens patientTokens;
+
+    @Value("${app.patient.roster.page-size:25}")
+    private int rosterPageSize;
+
+    @Value("${app.patient.roster.max-page-size:100}")
+    private int rosterMaxPageSize;
+
     /**
      * GET endpoint to fetch a patient by their UUID.
      */
@@ -56,13 +82,25 @@ public class PatientController {
     /**
      * GET endpoint to fetch a list of medications for a given patient,
      * including information on whether any doses were missed.
+     * Conditional on If-None-Match; the missed-dose flags cover the current month and are not counted in the
+     * data version, so the month and the medications with a missed dose are part of the ETag.
      */
     @GetMapping("/patient/{patientId}/medications")
-    public ResponseEntity<List<MissedDoseResponse>> getPatientMedication(@PathVariable UUID patientId) {
+    public ResponseEntity<List<MissedDoseResponse>> getPatientMedication(
+            @PathVariable UUID patientId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String etag = patientService.findDataVersion(patientId)
+                    .map(version -> medicationsETag(version, patientService.findMissedDoseMedicationIds(patientId)))
+                    .orElse(null);
+            if (PatientETag.matches(ifNoneMatch, etag)) {
+                return notModified(etag);
+            }
             List<MissedDoseResponse> response = patientService.getPatientMedicationsWithMissedDose(patientId);
-            return new ResponseEntity<>(response, HttpStatus.OK);
+            return withETag(response, etag);
 
+        } catch (ForbiddenException e) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         } catch (ItemNotFound e) {
             logger.error("Error retrieving patient medication: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
@@ -122,7 +160,8 @@ public class PatientController {
     }
 
     /**
-     * POST endpoint to login a patient.
+     * POST endpoint to login a patient. The signed token for the app's later calls comes back in the
+     * X-Patient-Token header.
      */
     @PostMapping("/patient/login")
     public ResponseEntity<Patient> loginPatient(@RequestBody Map<String, String> loginData) {
@@ -132,7 +171,10 @@ public class PatientController {
 
             Optional<Patient> patientOpt = patientService.findPatientByEmailAndPassword(email, password);
 
-            return patientOpt.map(patient -> new ResponseEntity<>(patient, HttpStatus.OK))
+            return patientOpt.map(patient -> ResponseEntity.ok()
+                            .header(PatientTokens.RESPONSE_HEADER, patientTokens.issue(patient))
+                            .cacheControl(CacheControl.noStore())
+                            .body(patient))
                              .orElseGet(() -> new ResponseEntity<>(HttpStatus.UNAUTHORIZED));
         } catch (RuntimeException e) {
             logger.error("Error during patient login: {}", LogSanitizer.sanitizeForLog(e.getMessage()), e);
@@ -194,6 +236,23 @@ public class PatientController {
         }
     }
 
+    /**
+     * GET endpoint for one page of a doctor's patient roster: name, age, last log date and this month's adherence.
+     * Filters: name (prefix), adherenceBelow (percent). Sort: name, age, lastLog or adherence, with direction asc/desc.
+     */
+    @GetMapping("/patients/by-doctor/{mcr}/roster")
+    public ResponseEntity<PatientRosterPage> getDoctorRoster(@PathVariable String mcr, RosterQuery query) {
+        return roster(mcr, false, query);
+    }
+
+    /**
+     * Same as the roster above, for the patients in the doctor's clinic that have no doctor yet.
+     */
+    @GetMapping("/patients/unassigned/{mcr}/roster")
+    public ResponseEntity<PatientRosterPage> getUnassignedRoster(@PathVariable String mcr, RosterQuery query) {
+        return roster(mcr, true, query);
+    }
+
     @PutMapping("/patients/{id}/unassign-doctor")
     public ResponseEntity<Void> unassignDoctorFromPatient(@PathVariable UUID id) {
         try {
@@ -211,11 +270,22 @@ public class PatientController {
         }
     }
 
+    /**
+     * GET endpoint for the medications assigned to a patient. Conditional on If-None-Match.
+     */
     @GetMapping("/patient/{patientId}/medList")
-    public ResponseEntity<?> getMedListForPatient(@PathVariable UUID patientId) {
+    public ResponseEntity<?> getMedListForPatient(
+            @PathVariable UUID patientId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String etag = patientService.findDataVersion(patientId).map(PatientETag::of).orElse(null);
+            if (PatientETag.matches(ifNoneMatch, etag)) {
+                return notModified(etag);
+            }
             List<Medication> medicationList = patientService.getPatientMedications(patientId);
-            return ResponseEntity.ok(medicationList);
+            return withETag(medicationList, etag);
+        } catch (ForbiddenException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         } catch (ItemNotFound e) {
             logger.error("Patient not found: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
@@ -225,6 +295,32 @@ public class PatientController {
         }
     }
 
+    /**
+     * GET endpoint for the app's home screen: profile, active medications with missed-dose flags,
+     * today's schedule and the recent intake log in one response.
+     * ?include=profile,medications,schedule,intake picks the sections (all of them when absent).
+     */
+    @GetMapping("/patient/{patientId}/dashboard")
+    public ResponseEntity<PatientDashboard> getDashboard(
+            @PathVariable UUID patientId,
+            @RequestParam(required = false) List<String> include) {
+        try {
+            Set<DashboardSection> sections = DashboardSection.parse(include);
+            return ResponseEntity.ok(dashboardService.getDashboard(patientId, sections));
+        } catch (ForbiddenException e) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        } catch (BadRequestException e) {
+            logger.warn("Dashboard bad request: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (ItemNotFound e) {
+            logger.error("Patient not found: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (RuntimeException e) {
+            logger.error("Error retrieving patient dashboard: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @PutMapping("/patients/assign")
     public ResponseEntity<Void> assignDoctorToPatient(@RequestBody AssignPatientRequest request) {
         try {
@@ -256,4 +352,39 @@ public class PatientController {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    private ResponseEntity<PatientRosterPage> roster(String mcr, boolean unassigned, RosterQuery query) {
+        try {
+            if (query.getSize() != null && query.getSize() < 1) throw new BadRequestException("size must be positive");
+            query.setSize(query.getSize() == null ? rosterPageSize : Math.min(query.getSize(), rosterMaxPageSize));
+            return ResponseEntity.ok(patientService.getDoctorRoster(mcr, unassigned, query));
+        } catch (BadRequestException e) {
+            logger.warn("Roster bad request: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (ItemNotFound e) {
+            logger.error("Doctor not found: {}", LogSanitizer.sanitizeForLog(mcr));
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (RuntimeException e) {
+            logger.error("Error retrieving roster for doctor MCR {}: {}", LogSanitizer.sanitizeForLog(mcr), LogSanitizer.sanitizeForLog(e.getMessage()));
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static String medicationsETag(long version, Set<UUID> missedMedicationIds) {
+        String missed = PatientETag.digest(missedMedicationIds);
+        return missed.isEmpty() ? PatientETag.of(version, YearMonth.now()) : PatientETag.of(version, YearMonth.now(), missed);
+    }
+
+    // The ETag is read before the body is built, so an edit racing the request can only make the tag
+    // older than the body (one extra download later), never newer. no-cache makes the app revalidate every time.
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+    }
+
+    private static <T> ResponseEntity<T> withETag(T body, String etag) {
+        if (etag == null) {
+            return ResponseEntity.ok(body);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(body);
+    }
 }
@@ -4,16 +4,19 @@ import nus.iss.backend.dao.ScheduleFindResponse;
 import nus.iss.backend.dao.ScheduleListReq;
 import nus.iss.backend.dto.ScheduleResponse; // ✅ Import the Android DTO
 import nus.iss.backend.exceptions.*;
-import nus.iss.backend.model.Schedule;
+import nus.iss.backend.service.PatientService;
 import nus.iss.backend.service.ScheduleService;
+import nus.iss.backend.util.PatientETag;
+import nus.iss.backend.util.VerifiedPatient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -26,30 +29,27 @@ public class ScheduleController {
     @Autowired
     ScheduleService scheduleService;
 
+    @Autowired
+    PatientService patientService;
+
     @PostMapping("/find")
     public ResponseEntity<List<ScheduleFindResponse>> getSchedulesByTime(@RequestBody ScheduleListReq req) {
         try {
             if (req == null) throw new BadRequestException("Request body cannot be null");
             if (req.getPatientId()==null) throw new BadRequestException("patientId is required");
             if (req.getTime() == null) throw new BadRequestException("time (HH:mm) is required");
+            // the app's token only opens its own patient's schedule
+            if (VerifiedPatient.current().filter(id -> !id.equals(req.getPatientId())).isPresent()) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
 
-            List<Schedule> schedules = scheduleService.findSchedulesByPatientIdandScheduledTime(
+            // projected straight from the query, no per-row medication load
+            List<ScheduleFindResponse> responseList = scheduleService.findScheduleSummariesByPatientIdAndScheduledTime(
                     req.getTime(), req.getPatientId());
 
-            if (schedules == null || schedules.isEmpty()) {
+            if (responseList == null || responseList.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
             }
-
-            List<ScheduleFindResponse> responseList = new ArrayList<>();
-
-            for (Schedule s : schedules) {
-                ScheduleFindResponse res = new ScheduleFindResponse();
-                res.setScheduleId(s.getId());
-                res.setScheduleTime(s.getScheduledTime());
-                res.setActive(s.getIsActive());
-                res.setMedicineId(s.getMedication().getId());
-                responseList.add(res);
-            }
             return ResponseEntity.ok(responseList);
         }catch (ItemNotFound e) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
@@ -61,15 +61,25 @@ public class ScheduleController {
             }
     }
     // ✅ [Android API] Get daily schedule for a patient (recurring daily times)
+    // Conditional on If-None-Match: an unchanged schedule is answered with 304 before the schedule query runs.
     @GetMapping("/daily/{patientId}")
     public ResponseEntity<List<ScheduleResponse>> getDailySchedule(
-            @PathVariable UUID patientId
+            @PathVariable UUID patientId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
-        List<ScheduleResponse> dailySchedule = scheduleService.getDailyScheduleForPatient(patientId);
+        Long dataVersion = patientService.findDataVersion(patientId).orElse(null);
+        String etag = dataVersion == null ? null : PatientETag.of(dataVersion);
+        if (PatientETag.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+        List<ScheduleResponse> dailySchedule = scheduleService.getDailyScheduleForPatient(patientId, dataVersion);
         if (dailySchedule.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
-        return ResponseEntity.ok(dailySchedule);
+        if (etag == null) {
+            return ResponseEntity.ok(dailySchedule);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(dailySchedule);
     }
 
 }
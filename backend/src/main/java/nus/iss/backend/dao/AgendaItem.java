@@ -0,0 +1,28 @@
+package nus.iss.backend.dao;
+
+import lombok.Getter;
+
+import java.time.LocalTime;
+import java.util.UUID;
+
+// One active schedule of a patient with its medication, as held by PatientAgendaCache.
+// Immutable, so cached lists can be handed to concurrent requests.
+@Getter
+public class AgendaItem {
+    private final UUID scheduleId;
+    private final LocalTime scheduledTime;
+    private final UUID medicationId;
+    private final String medicationName;
+    private final String quantity;
+    private final boolean medicationActive;
+
+    public AgendaItem(UUID scheduleId, LocalTime scheduledTime, UUID medicationId, String medicationName,
+                      String quantity, boolean medicationActive) {
+        this.scheduleId = scheduleId;
+        this.scheduledTime = scheduledTime;
+        this.medicationId = medicationId;
+        this.medicationName = medicationName;
+        this.quantity = quantity;
+        this.medicationActive = medicationActive;
+    }
+}
@@ -11,4 +11,7 @@ public class ImageOutput {
     private int frequency;
     private String instructions;
     private String notes;
+    // the vocabulary drug the OCR name most likely stands for, for the user to confirm; medicationName stays as read
+    private String suggestedName;
+    private Integer matchDistance;
 }
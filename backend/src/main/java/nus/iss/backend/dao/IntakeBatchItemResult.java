@@ -0,0 +1,32 @@
+package nus.iss.backend.dao;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+public class IntakeBatchItemResult {
+    public static final String CREATED = "CREATED";
+    public static final String NOT_FOUND = "NOT_FOUND";
+    public static final String BAD_REQUEST = "BAD_REQUEST";
+    // already stored by an earlier request with the same clientRequestId
+    public static final String DUPLICATE = "DUPLICATE";
+
+    // position of the log in the submitted batch
+    private int index;
+    private String clientRequestId;
+    private String status;
+    private String message;
+    private UUID intakeHistoryId;
+
+    public static IntakeBatchItemResult of(int index, IntakeReqMobile req, String status, String message) {
+        IntakeBatchItemResult result = new IntakeBatchItemResult();
+        result.setIndex(index);
+        result.setClientRequestId(req == null ? null : req.getClientRequestId());
+        result.setStatus(status);
+        result.setMessage(message);
+        return result;
+    }
+}
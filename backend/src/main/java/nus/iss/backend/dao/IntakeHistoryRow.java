@@ -0,0 +1,25 @@
+package nus.iss.backend.dao;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.UUID;
+
+// Flat projection of one intake log with its schedule time and medication name, read in a single query.
+@Getter
+public class IntakeHistoryRow {
+    private final UUID id;
+    private final LocalDate loggedDate;
+    private final LocalTime scheduledTime;
+    private final String medicationName;
+    private final boolean taken;
+
+    public IntakeHistoryRow(UUID id, LocalDate loggedDate, LocalTime scheduledTime, String medicationName, boolean taken) {
+        this.id = id;
+        this.loggedDate = loggedDate;
+        this.scheduledTime = scheduledTime;
+        this.medicationName = medicationName;
+        this.taken = taken;
+    }
+}
@@ -1,6 +1,8 @@
 package nus.iss.backend.dao;
 
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDate;
@@ -9,6 +11,8 @@ import java.util.UUID;
 
 @Getter
 @Setter
+@NoArgsConstructor
+@AllArgsConstructor
 public class IntakeLogResponseWeb {
     private LocalDate loggedDate;
     private LocalTime scheduledTime;
@@ -0,0 +1,10 @@
+package nus.iss.backend.dao;
+
+import java.util.UUID;
+
+// An active medication name of a patient, for duplicate checks over many patients at once.
+public interface PatientMedicationName {
+    UUID getPatientId();
+
+    String getMedicationName();
+}
@@ -0,0 +1,10 @@
+package nus.iss.backend.dao;
+
+import java.util.UUID;
+
+// The two ways an import file can refer to a patient.
+public interface PatientRef {
+    UUID getId();
+
+    String getNric();
+}
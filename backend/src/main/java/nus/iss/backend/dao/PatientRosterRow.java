@@ -0,0 +1,25 @@
+package nus.iss.backend.dao;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+// One row of the doctor roster aggregate. An interface projection rather than a constructor one, because
+// the roster is sorted by the select aliases (lastLogDate, adherence) and JPQL cannot alias inside "new".
+public interface PatientRosterRow {
+    UUID getId();
+
+    String getFirstName();
+
+    String getLastName();
+
+    LocalDate getDob();
+
+    LocalDate getLastLogDate();
+
+    long getTakenCount();
+
+    long getMissedCount();
+
+    // null when nothing was logged this month
+    Double getAdherence();
+}
@@ -1,6 +1,7 @@
 package nus.iss.backend.dao;
 
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalTime;
@@ -8,9 +9,18 @@ import java.util.UUID;
 
 @Getter
 @Setter
+@NoArgsConstructor
 public class ScheduleFindResponse {
     private UUID scheduleId;
     private LocalTime ScheduleTime;
     private boolean isActive;
     private UUID medicineId;
+
+    // used by the JPQL constructor projection in ScheduleRepository
+    public ScheduleFindResponse(UUID scheduleId, LocalTime scheduleTime, boolean isActive, UUID medicineId) {
+        this.scheduleId = scheduleId;
+        this.ScheduleTime = scheduleTime;
+        this.isActive = isActive;
+        this.medicineId = medicineId;
+    }
 }
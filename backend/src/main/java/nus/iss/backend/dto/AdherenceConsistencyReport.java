@@ -0,0 +1,19 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class AdherenceConsistencyReport {
+    // "scheduleId@yyyy-MM-dd" for every (schedule, month) whose rollup disagrees with raw history
+    private List<String> mismatched = new ArrayList<>();
+    private long orphanRows;
+
+    public boolean isConsistent() {
+        return mismatched.isEmpty() && orphanRows == 0;
+    }
+}
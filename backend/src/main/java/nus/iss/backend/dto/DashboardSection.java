@@ -0,0 +1,36 @@
+package nus.iss.backend.dto;
+
+import nus.iss.backend.exceptions.BadRequestException;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Parts of the patient dashboard the app can ask for with ?include=.
+ */
+public enum DashboardSection {
+    PROFILE, MEDICATIONS, SCHEDULE, INTAKE;
+
+    /**
+     * Parses the include parameter (case-insensitive names); null or empty means every section.
+     */
+    public static Set<DashboardSection> parse(Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return EnumSet.allOf(DashboardSection.class);
+        }
+        Set<DashboardSection> sections = EnumSet.noneOf(DashboardSection.class);
+        for (String name : names) {
+            if (name == null || name.isBlank()) {
+                continue;
+            }
+            try {
+                sections.add(valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unknown dashboard section: " + name);
+            }
+        }
+        return sections.isEmpty() ? EnumSet.allOf(DashboardSection.class) : sections;
+    }
+}
@@ -0,0 +1,15 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class IntakeHistoryPage {
+    private List<IntakeHistoryResponse> items = new ArrayList<>();
+    // opaque cursor for the next page; null once the history is exhausted
+    private String nextCursor;
+}
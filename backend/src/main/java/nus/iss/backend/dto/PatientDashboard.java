@@ -0,0 +1,23 @@
+package nus.iss.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+import nus.iss.backend.dao.MissedDoseResponse;
+
+import java.util.List;
+
+/**
+ * Home-screen aggregate for the Android app. Sections that were not requested stay null and are left out of the JSON.
+ */
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PatientDashboard {
+    private PatientSummary profile;
+    // active medications only, with this month's missed-dose flag
+    private List<MissedDoseResponse> medications;
+    private List<ScheduleResponse> todaySchedule;
+    // intake logs of the last few days, oldest first
+    private List<IntakeHistoryResponse> recentIntake;
+}
@@ -0,0 +1,21 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class PatientRosterEntry {
+    private UUID id;
+    private String firstName;
+    private String lastName;
+    private int age;
+    // null if the patient never logged an intake
+    private LocalDate lastLogDate;
+    // share of this month's logged doses that were taken, rounded; null when nothing was logged this month
+    private Integer adherencePercent;
+    private boolean missedDose;
+}
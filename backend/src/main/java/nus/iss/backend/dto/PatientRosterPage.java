@@ -0,0 +1,16 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class PatientRosterPage {
+    private List<PatientRosterEntry> items = new ArrayList<>();
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
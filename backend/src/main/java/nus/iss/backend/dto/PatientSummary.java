@@ -0,0 +1,34 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Getter
+public class PatientSummary {
+    private final UUID id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    private final String gender;
+    private final LocalDate dob;
+    private final String clinicName;
+    // null while the patient has no assigned doctor
+    private final String doctorMcrNo;
+    private final String doctorName;
+
+    // used by the JPQL constructor projection in PatientRepository
+    public PatientSummary(UUID id, String firstName, String lastName, String email, String gender, LocalDate dob,
+                          String doctorMcrNo, String doctorFirstName, String doctorLastName, String clinicName) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+        this.gender = gender;
+        this.dob = dob;
+        this.clinicName = clinicName;
+        this.doctorMcrNo = doctorMcrNo;
+        this.doctorName = doctorMcrNo == null ? null : doctorFirstName + " " + doctorLastName;
+    }
+}
@@ -0,0 +1,28 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// A validated import line: name normalised and times parsed, the patient not yet looked up.
+@Getter
+@Setter
+public class PrescriptionImportItem {
+    private long lineNumber;
+    // the patient column as written, for the error report
+    private String patient;
+    // set when the patient column is an id
+    private UUID patientId;
+    // set (upper-cased) when the patient column is an NRIC
+    private String nric;
+    private String medicationName;
+    private String dosage;
+    private int frequency;
+    private List<LocalTime> times = new ArrayList<>();
+    private String instructions;
+    private String notes;
+}
@@ -0,0 +1,27 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class PrescriptionImportReport {
+    // id to poll the report with; a restart returns a new one
+    private long executionId;
+    // STARTING, STARTED, COMPLETED, FAILED, STOPPED, ...
+    private String status;
+    // FAILED and STOPPED imports can be restarted; they continue after the last committed chunk
+    private boolean restartable;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    // data lines in the file (header excluded)
+    private long totalRows;
+    // medications created so far, over all executions of this import
+    private long imported;
+    private long failed;
+    private List<PrescriptionImportRowError> errors = new ArrayList<>();
+}
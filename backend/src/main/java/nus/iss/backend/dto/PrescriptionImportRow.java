@@ -0,0 +1,21 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+// One line of a prescription import CSV, as written in the file.
+@Getter
+@Setter
+public class PrescriptionImportRow {
+    // line in the file, header included, so errors can be found in an editor
+    private long lineNumber;
+    // the patient's id or NRIC
+    private String patient;
+    private String medicationName;
+    private String dosage;
+    private String frequency;
+    // one or more HHmm / HH:mm times, separated by ';', '|' or spaces
+    private String times;
+    private String instructions;
+    private String notes;
+}
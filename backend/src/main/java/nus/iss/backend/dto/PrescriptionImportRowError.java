@@ -0,0 +1,13 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class PrescriptionImportRowError {
+    private long lineNumber;
+    private String patient;
+    private String medicationName;
+    private String message;
+}
@@ -0,0 +1,23 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+import nus.iss.backend.dao.ImageOutput;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class RecognitionJobResponse {
+    private UUID jobId;
+    // PENDING, RUNNING, SUCCEEDED, FAILED
+    private String status;
+    private int attempts;
+    // set once SUCCEEDED
+    private ImageOutput result;
+    // why the last attempt failed; a PENDING job with an error is waiting for its retry
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
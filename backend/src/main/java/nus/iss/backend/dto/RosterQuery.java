@@ -0,0 +1,21 @@
+package nus.iss.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Query parameters of the roster endpoints, bound from the request.
+ */
+@Getter
+@Setter
+public class RosterQuery {
+    // case-insensitive prefix of the first or last name
+    private String name;
+    // only patients whose adherence this month is below this percentage (0-100)
+    private Double adherenceBelow;
+    // name, age, lastLog or adherence
+    private String sort = "name";
+    private String direction = "asc";
+    private int page = 0;
+    private Integer size;
+}
@@ -1,11 +1,24 @@
 package nus.iss.backend.dto;
 
+import java.time.LocalTime;
+
 public class ScheduleResponse {
     private String scheduledTime;
     private String medicationName;
     private String quantity;      //  now mapped from intakeQuantity (String)
     private boolean isActive;
 
+    public ScheduleResponse() {
+    }
+
+    // used by the JPQL constructor projection in ScheduleRepository
+    public ScheduleResponse(LocalTime scheduledTime, String medicationName, String quantity, boolean isActive) {
+        this.scheduledTime = scheduledTime.toString();
+        this.medicationName = medicationName;
+        this.quantity = quantity;
+        this.isActive = isActive;
+    }
+
     // Getters and setters
     public String getScheduledTime() {
         return scheduledTime;
@@ -0,0 +1,7 @@
+package nus.iss.backend.exceptions;
+
+public class ForbiddenException extends RuntimeException {
+    public ForbiddenException(String message) {
+        super(message);
+    }
+}
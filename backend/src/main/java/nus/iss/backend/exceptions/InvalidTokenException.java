@@ -0,0 +1,7 @@
+package nus.iss.backend.exceptions;
+
+public class InvalidTokenException extends RuntimeException {
+    public InvalidTokenException(String message) {
+        super(message);
+    }
+}
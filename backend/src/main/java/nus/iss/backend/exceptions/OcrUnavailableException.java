@@ -0,0 +1,7 @@
+package nus.iss.backend.exceptions;
+
+public class OcrUnavailableException extends RuntimeException {
+    public OcrUnavailableException(String message) { super(message); }
+
+    public OcrUnavailableException(String message, Throwable cause) { super(message, cause); }
+}
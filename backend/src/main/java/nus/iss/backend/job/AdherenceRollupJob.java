@@ -0,0 +1,62 @@
+package nus.iss.backend.job;
+
+import nus.iss.backend.dto.AdherenceConsistencyReport;
+import nus.iss.backend.service.AdherenceService;
+import nus.iss.backend.util.LogSanitizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps Schedule_Adherence_Monthly trustworthy:
+ * - optional one-off backfill at startup for databases that predate the rollup
+ * - periodic consistency check against Medication_Intake_History, with optional auto-repair
+ */
+@Component
+public class AdherenceRollupJob {
+    private static final Logger logger = LoggerFactory.getLogger(AdherenceRollupJob.class);
+
+    @Autowired
+    private AdherenceService adherenceService;
+
+    @Value("${app.adherence.backfill-on-startup:false}")
+    private boolean backfillOnStartup;
+
+    @Value("${app.adherence.consistency-check.enabled:true}")
+    private boolean consistencyCheckEnabled;
+
+    @Value("${app.adherence.consistency-check.auto-repair:false}")
+    private boolean autoRepair;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfRequested() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        logger.info("Backfilling adherence rollup from intake history...");
+        adherenceService.backfill();
+    }
+
+    @Scheduled(cron = "${app.adherence.consistency-check.cron:0 30 3 * * *}")
+    public void checkConsistency() {
+        if (!consistencyCheckEnabled) {
+            return;
+        }
+        AdherenceConsistencyReport report = adherenceService.checkConsistency();
+        if (report.isConsistent()) {
+            logger.info("Adherence rollup is consistent with intake history");
+            return;
+        }
+        logger.warn("Adherence rollup drift: {} mismatched (schedule, month) pairs, {} orphan rows. First few: {}",
+                report.getMismatched().size(), report.getOrphanRows(),
+                LogSanitizer.sanitizeForLog(report.getMismatched().stream().limit(10).toList()));
+        if (autoRepair) {
+            adherenceService.backfill();
+        }
+    }
+}
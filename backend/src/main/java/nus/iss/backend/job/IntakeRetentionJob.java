@@ -0,0 +1,73 @@
+package nus.iss.backend.job;
+
+import nus.iss.backend.service.RetentionService;
+import nus.iss.backend.util.LogSanitizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+/**
+ * Keeps Medication_Intake_History and Schedule small for the hot queries:
+ * - moves intake logs older than the retention cutoff to Medication_Intake_History_Archive
+ * - then deletes inactive schedules past the cutoff that have neither hot intake logs nor adherence rollup rows
+ * Work is done in short transactions of chunk-size rows with a pause in between, so the nightly run
+ * never holds locks for long, and a run stops after max-chunks-per-run; the next night picks up the rest.
+ */
+@Component
+public class IntakeRetentionJob {
+    private static final Logger logger = LoggerFactory.getLogger(IntakeRetentionJob.class);
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Value("${app.retention.intake-history.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.retention.intake-history.chunk-pause:200ms}")
+    private Duration chunkPause;
+
+    @Value("${app.retention.intake-history.max-chunks-per-run:500}")
+    private int maxChunksPerRun;
+
+    @Scheduled(cron = "${app.retention.intake-history.cron:0 0 4 * * *}")
+    public void run() {
+        LocalDate cutoff = retentionService.archiveCutoff();
+        if (cutoff == null) {
+            return;
+        }
+        try {
+            int archived = inChunks(cutoff, retentionService::archiveChunk);
+            int purged = inChunks(cutoff, retentionService::purgeSchedulesChunk);
+            logger.info("Retention before {}: {} intake logs archived, {} inactive schedules removed", cutoff, archived, purged);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // each chunk commits on its own, so whatever was moved so far stays moved
+            logger.error("Retention run failed: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+        }
+    }
+
+    private int inChunks(LocalDate cutoff, ChunkStep step) throws InterruptedException {
+        int total = 0;
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            int done = step.apply(cutoff, chunkSize);
+            total += done;
+            if (done < chunkSize) {
+                break;
+            }
+            Thread.sleep(chunkPause.toMillis());
+        }
+        return total;
+    }
+
+    @FunctionalInterface
+    interface ChunkStep {
+        int apply(LocalDate cutoff, int chunkSize);
+    }
+}
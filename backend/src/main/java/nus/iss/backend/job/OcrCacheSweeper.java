@@ -0,0 +1,22 @@
+package nus.iss.backend.job;
+
+import nus.iss.backend.ocr.OcrResultCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Deletes the OCR results spilled to disk once their ttl has passed. Without it an expired file is only
+ * removed when the same image is uploaded again, and the prescriptions it holds would stay on disk.
+ */
+@Component
+public class OcrCacheSweeper {
+
+    @Autowired
+    private OcrResultCache ocrResultCache;
+
+    @Scheduled(fixedDelayString = "${app.ocr.cache.sweep-interval:1h}", initialDelayString = "${app.ocr.cache.sweep-interval:1h}")
+    public void run() {
+        ocrResultCache.sweepDisk();
+    }
+}
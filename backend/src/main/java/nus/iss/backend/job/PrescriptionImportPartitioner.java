@@ -0,0 +1,42 @@
+package nus.iss.backend.job;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Splits a prescription import by patient: partition i takes the lines whose patient hashes to i, keyed by
+ * {@link PrescriptionPatientKeys} so that lines naming one patient by id and by NRIC go to the same partition.
+ * Every partition reads the whole file and skips the other lines in {@link PrescriptionRowProcessor}.
+ * Splitting by line range instead would let two threads check and write the same patient's medications
+ * at once, and the duplicate check only holds within one thread.
+ */
+public class PrescriptionImportPartitioner implements Partitioner {
+    static final String PARTITION = "partition";
+    static final String PARTITIONS = "partitions";
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        for (int i = 0; i < gridSize; i++) {
+            ExecutionContext context = new ExecutionContext();
+            context.putInt(PARTITION, i);
+            context.putInt(PARTITIONS, gridSize);
+            partitions.put(PARTITION + i, context);
+        }
+        return partitions;
+    }
+
+    /**
+     * The partition a patient key belongs to. Lines without a patient (null key) go to partition 0, which
+     * reports them.
+     */
+    static int partitionOf(String patientKey, int partitions) {
+        if (patientKey == null) {
+            return 0;
+        }
+        return Math.floorMod(patientKey.hashCode(), partitions);
+    }
+}
@@ -0,0 +1,83 @@
+package nus.iss.backend.job;
+
+import nus.iss.backend.dto.PrescriptionImportItem;
+import nus.iss.backend.dto.PrescriptionImportRow;
+import nus.iss.backend.model.PrescriptionImportError;
+import nus.iss.backend.repository.PrescriptionImportErrorRepository;
+import nus.iss.backend.util.LogSanitizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Turns the lines the import step skipped into rows of the error report. Spring Batch calls it inside the
+ * chunk transaction, so a chunk that rolls back and is retried does not report its lines twice.
+ */
+@Component
+@StepScope
+public class PrescriptionImportSkipListener implements SkipListener<PrescriptionImportRow, PrescriptionImportItem> {
+    private static final Logger logger = LoggerFactory.getLogger(PrescriptionImportSkipListener.class);
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final int MAX_MESSAGE_LENGTH = 500;
+
+    @Autowired
+    private PrescriptionImportErrorRepository errorRepo;
+
+    @Value("#{stepExecution}")
+    private StepExecution stepExecution;
+
+    @Value("#{stepExecutionContext['partition']}")
+    private int partition;
+
+    @Override
+    public void onSkipInRead(Throwable t) {
+        // every partition reads every line; only the first one reports unreadable ones
+        if (partition != 0 || !(t instanceof FlatFileParseException parseError)) {
+            return;
+        }
+        record(parseError.getLineNumber(), null, null, "Line could not be read: " + parseError.getInput());
+    }
+
+    @Override
+    public void onSkipInProcess(PrescriptionImportRow row, Throwable t) {
+        record(row.getLineNumber(), row.getPatient(), row.getMedicationName(), t.getMessage());
+    }
+
+    @Override
+    public void onSkipInWrite(PrescriptionImportItem item, Throwable t) {
+        logger.error("Prescription import could not save line {}: {}", item.getLineNumber(),
+                LogSanitizer.sanitizeForLog(t.getMessage()));
+        record(item.getLineNumber(), item.getPatient(), item.getMedicationName(), "Row could not be saved");
+    }
+
+    private void record(long lineNumber, String patient, String medicationName, String message) {
+        PrescriptionImportError error = new PrescriptionImportError();
+        error.setLineNumber(lineNumber);
+        error.setPatient(patient);
+        error.setMedicationName(medicationName);
+        error.setMessage(message == null ? "Invalid row" : message);
+        error.setCreatedAt(LocalDateTime.now());
+        errorRepo.save(fit(error, stepExecution.getJobExecution().getJobInstance().getInstanceId()));
+    }
+
+    // stamps the import and cuts the echoed file content to the column sizes
+    static PrescriptionImportError fit(PrescriptionImportError error, long jobInstanceId) {
+        error.setJobInstanceId(jobInstanceId);
+        error.setPatient(cut(error.getPatient(), MAX_TEXT_LENGTH));
+        error.setMedicationName(cut(error.getMedicationName(), MAX_TEXT_LENGTH));
+        error.setMessage(cut(error.getMessage(), MAX_MESSAGE_LENGTH));
+        return error;
+    }
+
+    private static String cut(String value, int maxLength) {
+        return value == null || value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+}
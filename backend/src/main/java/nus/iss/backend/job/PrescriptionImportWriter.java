@@ -0,0 +1,51 @@
+package nus.iss.backend.job;
+
+import nus.iss.backend.dto.PrescriptionImportItem;
+import nus.iss.backend.model.PrescriptionImportError;
+import nus.iss.backend.repository.PrescriptionImportErrorRepository;
+import nus.iss.backend.service.MedicationService;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes one chunk through MedicationService.importPrescriptions, inside the chunk's transaction, and records
+ * the items it rejected. The running count of created medications is kept in the step's execution context
+ * under {@link #IMPORTED}; it is saved with every chunk, so it carries over into a restart.
+ */
+@Component
+@StepScope
+public class PrescriptionImportWriter implements ItemWriter<PrescriptionImportItem> {
+    public static final String IMPORTED = "imported";
+
+    @Autowired
+    private MedicationService medicationService;
+
+    @Autowired
+    private PrescriptionImportErrorRepository errorRepo;
+
+    @Value("#{jobParameters['clinicId']}")
+    private String clinicId;
+
+    @Value("#{stepExecution}")
+    private StepExecution stepExecution;
+
+    @Override
+    public void write(Chunk<? extends PrescriptionImportItem> chunk) {
+        List<PrescriptionImportError> rejected = medicationService.importPrescriptions(UUID.fromString(clinicId), chunk.getItems());
+        if (!rejected.isEmpty()) {
+            long jobInstanceId = stepExecution.getJobExecution().getJobInstance().getInstanceId();
+            rejected.forEach(error -> PrescriptionImportSkipListener.fit(error, jobInstanceId));
+            errorRepo.saveAll(rejected);
+        }
+        long imported = stepExecution.getExecutionContext().getLong(IMPORTED, 0L);
+        stepExecution.getExecutionContext().putLong(IMPORTED, imported + chunk.size() - rejected.size());
+    }
+}
@@ -0,0 +1,58 @@
+package nus.iss.backend.job;
+
+import nus.iss.backend.dao.PatientRef;
+import nus.iss.backend.repository.PatientRepository;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The key a line's patient column is partitioned by: the patient's id, whether the line names the patient
+ * by id or by NRIC, so that both kinds of line for one patient land in the same partition. Each partition
+ * loads the clinic's NRICs with one query the first time it meets one. An NRIC that matches no patient of
+ * the clinic, or several, is its own key; the writer rejects those lines.
+ */
+@Component
+@StepScope
+public class PrescriptionPatientKeys {
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Value("#{jobParameters['clinicId']}")
+    private String clinicId;
+
+    private Map<String, UUID> idsByNric;
+
+    public String keyOf(String patient) {
+        if (patient == null || patient.isBlank()) {
+            return null;
+        }
+        String trimmed = patient.trim();
+        try {
+            return UUID.fromString(trimmed).toString();
+        } catch (IllegalArgumentException e) {
+            String nric = trimmed.toUpperCase(Locale.ROOT);
+            UUID id = idsByNric().get(nric);
+            return id != null ? id.toString() : nric;
+        }
+    }
+
+    private Map<String, UUID> idsByNric() {
+        if (idsByNric == null) {
+            Map<String, UUID> ids = new HashMap<>();
+            for (PatientRef ref : patientRepo.findRefsByClinic(UUID.fromString(clinicId))) {
+                // an NRIC shared by several patients maps to null and stays its own key
+                ids.merge(ref.getNric().toUpperCase(Locale.ROOT), ref.getId(), (first, second) -> null);
+            }
+            idsByNric = ids;
+        }
+        return idsByNric;
+    }
+}
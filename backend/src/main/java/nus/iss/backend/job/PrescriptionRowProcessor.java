@@ -0,0 +1,111 @@
+package nus.iss.backend.job;
+
+import nus.iss.backend.dto.PrescriptionImportItem;
+import nus.iss.backend.dto.PrescriptionImportRow;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.util.MedicationInput;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Checks one CSV line on its own (required columns, frequency, times) and normalises it the way
+ * createMedication does. Lines of other partitions are filtered out. A bad line throws
+ * BadRequestException or InvalidTimeFormatException, which the step skips and reports.
+ */
+@Component
+@StepScope
+public class PrescriptionRowProcessor implements ItemProcessor<PrescriptionImportRow, PrescriptionImportItem> {
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    @Value("#{stepExecutionContext['partition']}")
+    private int partition;
+
+    @Value("#{stepExecutionContext['partitions']}")
+    private int partitions;
+
+    @Autowired
+    private PrescriptionPatientKeys patientKeys;
+
+    @Override
+    public PrescriptionImportItem process(PrescriptionImportRow row) {
+        if (PrescriptionImportPartitioner.partitionOf(patientKeys.keyOf(row.getPatient()), partitions) != partition) {
+            return null;
+        }
+        PrescriptionImportItem item = new PrescriptionImportItem();
+        item.setLineNumber(row.getLineNumber());
+        item.setPatient(trimToNull(row.getPatient()));
+
+        String patient = required(row.getPatient(), "patient");
+        try {
+            item.setPatientId(UUID.fromString(patient));
+        } catch (IllegalArgumentException e) {
+            item.setNric(patient.toUpperCase(Locale.ROOT));
+        }
+        item.setMedicationName(MedicationInput.normalizeName(required(row.getMedicationName(), "medication")));
+        item.setDosage(required(row.getDosage(), "dosage"));
+        item.setFrequency(frequency(row.getFrequency()));
+        item.setTimes(times(row.getTimes()));
+        item.setInstructions(optional(row.getInstructions(), "instructions"));
+        item.setNotes(optional(row.getNotes(), "notes"));
+        return item;
+    }
+
+    private static int frequency(String value) {
+        String frequency = required(value, "frequency");
+        try {
+            int parsed = Integer.parseInt(frequency);
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new BadRequestException("frequency must be a positive whole number: " + frequency);
+    }
+
+    private static List<LocalTime> times(String value) {
+        List<LocalTime> times = new ArrayList<>();
+        for (String time : required(value, "times").split("[;|,\\s]+")) {
+            if (time.isEmpty()) {
+                continue;
+            }
+            LocalTime parsed = MedicationInput.parseTime(time);
+            if (!times.contains(parsed)) {
+                times.add(parsed);
+            }
+        }
+        if (times.isEmpty()) {
+            throw new BadRequestException("At least one time is required");
+        }
+        return times;
+    }
+
+    private static String required(String value, String column) {
+        String trimmed = optional(value, column);
+        if (trimmed == null) {
+            throw new BadRequestException(column + " is required");
+        }
+        return trimmed;
+    }
+
+    private static String optional(String value, String column) {
+        String trimmed = trimToNull(value);
+        if (trimmed != null && trimmed.length() > MAX_TEXT_LENGTH) {
+            throw new BadRequestException(column + " is longer than " + MAX_TEXT_LENGTH + " characters");
+        }
+        return trimmed;
+    }
+
+    private static String trimToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,23 @@
+package nus.iss.backend.job;
+
+import nus.iss.backend.service.RecognitionJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks up the recognition jobs no worker is on: queued while the pool was full, due for a retry, or left
+ * RUNNING by an instance that stopped (once their lease has run out). Also purges finished jobs.
+ * The interval is the granularity of the retry delays.
+ */
+@Component
+public class RecognitionJobSweeper {
+
+    @Autowired
+    private RecognitionJobService recognitionJobService;
+
+    @Scheduled(fixedDelayString = "${app.ocr.jobs.sweep-interval:15s}", initialDelayString = "${app.ocr.jobs.sweep-interval:15s}")
+    public void run() {
+        recognitionJobService.sweep();
+    }
+}
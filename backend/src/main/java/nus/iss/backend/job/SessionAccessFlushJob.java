@@ -0,0 +1,25 @@
+package nus.iss.backend.job;
+
+import nus.iss.backend.config.WriteBehindSessionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes the last-access times that WriteBehindSessionRepository queued since the previous run.
+ * The interval trades database writes against how far SPRING_SESSION lags behind; keep it far below
+ * the session timeout.
+ */
+@Component
+@ConditionalOnProperty(name = "app.session.write-behind.enabled", havingValue = "true", matchIfMissing = true)
+public class SessionAccessFlushJob {
+
+    @Autowired
+    private WriteBehindSessionRepository sessionRepository;
+
+    @Scheduled(fixedDelayString = "${app.session.write-behind.flush-interval:5s}")
+    public void run() {
+        sessionRepository.flushAccessTimes();
+    }
+}
@@ -4,7 +4,6 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
-import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.JdbcTypeCode;
 
 import java.sql.Types;
@@ -15,16 +14,13 @@ import java.util.UUID;
 @Entity
 @Getter
 @Setter
-@Table(name = "Medication_Intake_History")
+@Table(name = "Medication_Intake_History",
+        uniqueConstraints = @UniqueConstraint(name = "UK_Intake_Client_Request", columnNames = "Client_Request_Id"))
 public class IntakeHistory {
     @Id
-    @GeneratedValue(generator = "UUID")
-    @GenericGenerator(
-            name = "UUID",
-            strategy = "org.hibernate.id.UUIDGenerator"
-    )
-    @JdbcTypeCode(Types.VARCHAR)
-    @Column(name="Id", updatable = false, nullable = false)
+    @TimeOrderedUuid
+    @JdbcTypeCode(Types.BINARY)
+    @Column(name = "Id", length = 16, updatable = false, nullable = false)
     private UUID id;
     @Column(name = "Logged_Date")
     private LocalDate loggedDate;
@@ -32,6 +28,9 @@ public class IntakeHistory {
     private boolean isTaken;
     @Column(name = "Doctor_Note")
     private String doctorNote;
+    // mobile-generated id of the request that created this row, used to drop retried duplicates
+    @Column(name = "Client_Request_Id", length = 64)
+    private String clientRequestId;
 
     @JsonIgnore
     @ManyToOne
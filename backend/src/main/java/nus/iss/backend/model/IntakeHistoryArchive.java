@@ -0,0 +1,55 @@
+package nus.iss.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.UUID;
+
+// An intake log moved out of Medication_Intake_History by the retention job. Keeps the original id and
+// only plain columns (no associations), so it does not depend on the schedule still existing.
+@Entity
+@Getter
+@Setter
+@Table(name = "Medication_Intake_History_Archive")
+public class IntakeHistoryArchive {
+    @Id
+    @JdbcTypeCode(Types.BINARY)
+    @Column(name = "Id", length = 16, updatable = false, nullable = false)
+    private UUID id;
+
+    @JdbcTypeCode(Types.BINARY)
+    @Column(name = "Patient_Id", length = 16, nullable = false)
+    private UUID patientId;
+
+    @JdbcTypeCode(Types.BINARY)
+    @Column(name = "Schedule_Id", length = 16, nullable = false)
+    private UUID scheduleId;
+
+    @JdbcTypeCode(Types.BINARY)
+    @Column(name = "Medication_Id", length = 16, nullable = false)
+    private UUID medicationId;
+
+    @Column(name = "Medication_Name")
+    private String medicationName;
+
+    @Column(name = "Scheduled_Time")
+    private LocalTime scheduledTime;
+
+    @Column(name = "Logged_Date", nullable = false)
+    private LocalDate loggedDate;
+
+    @Column(name = "Is_Taken", nullable = false)
+    private boolean isTaken;
+
+    @Column(name = "Doctor_Note")
+    private String doctorNote;
+
+    @Column(name = "Archived_At", nullable = false)
+    private LocalDateTime archivedAt;
+}
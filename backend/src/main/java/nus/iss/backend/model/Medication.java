@@ -5,7 +5,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
-import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 
 import java.sql.Types;
@@ -15,18 +16,16 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 @Table(name = "Medication")
 public class Medication{
     @Id
-    @GeneratedValue(generator = "UUID")
-    @GenericGenerator(
-            name = "UUID",
-            strategy = "org.hibernate.id.UUIDGenerator"
-    )
-    @JdbcTypeCode(Types.VARCHAR)
-    @Column(name="Id", updatable = false, nullable = false)
+    @TimeOrderedUuid
+    @JdbcTypeCode(Types.BINARY)
+    @Column(name = "Id", length = 16, updatable = false, nullable = false)
     private UUID id;
     @Column(name = "Medication_Name",nullable = false)
     private String medicationName;
@@ -5,7 +5,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
-import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.JdbcTypeCode;
 
 import java.sql.Types;
@@ -21,13 +21,9 @@ import java.util.UUID;
 @Table(name = "Patient")
 public class Patient {
     @Id
-    @GeneratedValue(generator = "UUID")
-    @GenericGenerator(
-            name = "UUID",
-            strategy = "org.hibernate.id.UUIDGenerator"
-    )
-    @JdbcTypeCode(Types.VARCHAR)
-    @Column(name="Id", updatable = false, nullable = false)
+    @TimeOrderedUuid
+    @JdbcTypeCode(Types.BINARY)
+    @Column(name = "Id", length = 16, updatable = false, nullable = false)
     private UUID id;
     @Column(name = "Email")
     private String email;
@@ -43,6 +39,12 @@ public class Patient {
     private String gender;
     @Column(name = "DOB", nullable = false)
     private LocalDate dob;
+    // bumped with a bulk update whenever the patient's medications or schedules change (not on intake logs,
+    // which would make it a hot row); the mobile endpoints derive their ETags from it. Never written through the entity.
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "Data_Version", nullable = false, insertable = false, updatable = false)
+    private long dataVersion;
 
     @ManyToOne
     @JoinColumn(name = "Assigned_Doctor")
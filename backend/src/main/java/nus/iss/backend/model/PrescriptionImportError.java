@@ -0,0 +1,42 @@
+package nus.iss.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A CSV line the prescription import rejected, with the reason. Plain columns only: the patient and
+// medication are echoed as written in the file, since a rejected line may not match anything.
+@Entity
+@Getter
+@Setter
+@Table(name = "Prescription_Import_Error")
+public class PrescriptionImportError {
+    @Id
+    @TimeOrderedUuid
+    @JdbcTypeCode(Types.BINARY)
+    @Column(name = "Id", length = 16, updatable = false, nullable = false)
+    private UUID id;
+
+    @Column(name = "Job_Instance_Id", nullable = false)
+    private long jobInstanceId;
+
+    @Column(name = "Line_Number", nullable = false)
+    private long lineNumber;
+
+    @Column(name = "Patient")
+    private String patient;
+
+    @Column(name = "Medication_Name")
+    private String medicationName;
+
+    @Column(name = "Message", length = 500, nullable = false)
+    private String message;
+
+    @Column(name = "Created_At", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,69 @@
+package nus.iss.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One uploaded prescription image and what the OCR model made of it. PENDING jobs wait for a worker (again
+// after a failed attempt, from Next_Attempt_At); a RUNNING job whose lease ran out is taken over, since the
+// instance running it is gone. SUCCEEDED and FAILED are final, and the image is deleted then.
+@Entity
+@Getter
+@Setter
+@Table(name = "Recognition_Job")
+public class RecognitionJob {
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String SUCCEEDED = "SUCCEEDED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @TimeOrderedUuid
+    @JdbcTypeCode(Types.BINARY)
+    @Column(name = "Id", length = 16, updatable = false, nullable = false)
+    private UUID id;
+
+    // SHA-256 of the uploaded bytes, hex
+    @Column(name = "Content_Hash", length = 64, nullable = false, unique = true)
+    private String contentHash;
+
+    @Column(name = "File_Name")
+    private String fileName;
+
+    @Column(name = "Content_Type", length = 100)
+    private String contentType;
+
+    @Column(name = "Status", length = 16, nullable = false)
+    private String status;
+
+    @Column(name = "Attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "Next_Attempt_At")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "Lease_Until")
+    private LocalDateTime leaseUntil;
+
+    // ImageOutput as JSON; the model copies free text off the label into it, so no fixed length
+    @Column(name = "Result", columnDefinition = "TEXT")
+    private String result;
+
+    @Column(name = "Error", length = 500)
+    private String error;
+
+    @Column(name = "Created_At", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "Updated_At", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public boolean isFinished() {
+        return SUCCEEDED.equals(status) || FAILED.equals(status);
+    }
+}
@@ -0,0 +1,41 @@
+package nus.iss.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.UUID;
+
+// monthly taken/missed counters per schedule, kept in step with Medication_Intake_History
+@Entity
+@Getter
+@Setter
+@Table(name = "Schedule_Adherence_Monthly",
+        uniqueConstraints = @UniqueConstraint(name = "UK_Adherence_Schedule_Month",
+                columnNames = {"Schedule_Id", "Period_Month"}))
+public class ScheduleAdherence {
+    @Id
+    @TimeOrderedUuid
+    @JdbcTypeCode(Types.BINARY)
+    @Column(name = "Id", length = 16, updatable = false, nullable = false)
+    private UUID id;
+
+    // always the first day of the month
+    @Column(name = "Period_Month", nullable = false)
+    private LocalDate periodMonth;
+
+    @Column(name = "Taken_Count", nullable = false)
+    private int takenCount;
+
+    @Column(name = "Missed_Count", nullable = false)
+    private int missedCount;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "Schedule_Id", nullable = false)
+    private Schedule schedule;
+}
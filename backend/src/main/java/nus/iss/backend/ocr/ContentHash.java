@@ -0,0 +1,41 @@
+package nus.iss.backend.ocr;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 of uploaded images, the key of OcrResultCache and of recognition jobs. Computed over the stream,
+ * so a large photo is not held in memory to be hashed.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    public static String of(InputStreamSource source) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(source.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return hex(digest);
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    public static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
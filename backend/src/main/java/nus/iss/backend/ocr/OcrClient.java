@@ -0,0 +1,177 @@
+package nus.iss.backend.ocr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PreDestroy;
+import nus.iss.backend.dao.ImageOutput;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.exceptions.OcrUnavailableException;
+import nus.iss.backend.util.LogSanitizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Client of the FastAPI OCR model (ml/app.py), built so that a slow or dead model cannot take the rest of the
+ * API down with it:
+ * - calls are asynchronous: no servlet or pool thread waits while the model runs, /predict_image hands the
+ *   future to Spring MVC and its Tomcat thread goes back to the pool
+ * - one HttpClient keeps its connections alive between calls; connect-timeout bounds opening one and
+ *   read-timeout the whole call, response included
+ * - a bulkhead admits at most max-concurrent calls at a time; the next one fails at once instead of queueing
+ * - after failure-threshold failures in a row (no connection, timeout, 5xx) the circuit breaker fails calls
+ *   fast for open-for, then lets one trial call through
+ * Calls refused for any of these reasons fail with OcrUnavailableException; an image the model rejects (4xx)
+ * with BadRequestException.
+ */
+@Component
+public class OcrClient {
+    private static final Logger logger = LoggerFactory.getLogger(OcrClient.class);
+
+    private final HttpClient httpClient;
+    private final ObjectReader reader;
+    private final URI url;
+    private final Duration readTimeout;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker breaker;
+
+    public OcrClient(ObjectMapper objectMapper,
+                     @Value("${app.ocr.url:http://localhost:8000/api/medication/predict_image}") String url,
+                     @Value("${app.ocr.connect-timeout:2s}") Duration connectTimeout,
+                     @Value("${app.ocr.read-timeout:20s}") Duration readTimeout,
+                     @Value("${app.ocr.max-concurrent:8}") int maxConcurrent,
+                     @Value("${app.ocr.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                     @Value("${app.ocr.circuit-breaker.open-for:30s}") Duration openFor) {
+        // uvicorn speaks HTTP/1.1 only; asking for h2c would cost an upgrade attempt per connection
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.reader = objectMapper.readerFor(JsonNode.class);
+        this.url = URI.create(url);
+        this.readTimeout = readTimeout;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.breaker = new CircuitBreaker("ocr", failureThreshold, openFor);
+    }
+
+    /**
+     * Sends the image to the model. The future completes on an HttpClient thread.
+     */
+    public CompletableFuture<ImageOutput> recognise(byte[] image, String filename, String contentType) {
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new OcrUnavailableException("OCR service unavailable, try again later"));
+        }
+        if (!bulkhead.tryAcquire()) {
+            breaker.release();
+            return CompletableFuture.failedFuture(new OcrUnavailableException("OCR service busy, try again later"));
+        }
+        String boundary = UUID.randomUUID().toString();
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(readTimeout)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(boundary, image, filename, contentType)))
+                .build();
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        // the slot is free once the exchange itself has ended, not when the caller stops waiting for it
+        exchange.whenComplete((response, error) -> bulkhead.release());
+        // the request timeout stops at the response headers, this one covers the body as well; on a copy, so
+        // that it does not complete the exchange future while the call is still on the wire
+        return exchange.copy()
+                .orTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((response, error) -> {
+                    Throwable cause = unwrap(error);
+                    if (cause instanceof TimeoutException) {
+                        // aborts the exchange, which frees the slot
+                        exchange.cancel(true);
+                    }
+                    return complete(response, cause, System.nanoTime() - start);
+                });
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return breaker.state();
+    }
+
+    public int availableSlots() {
+        return bulkhead.availablePermits();
+    }
+
+    @PreDestroy
+    public void close() {
+        httpClient.shutdownNow();
+    }
+
+    private ImageOutput complete(HttpResponse<byte[]> response, Throwable error, long nanos) {
+        if (error != null) {
+            breaker.onFailure();
+            String reason = error instanceof TimeoutException || error instanceof HttpTimeoutException
+                    ? "timed out" : "failed";
+            logger.warn("OCR call {} after {} ms: {}", reason, nanos / 1_000_000,
+                    LogSanitizer.sanitizeForLog(String.valueOf(error.getMessage())));
+            throw new OcrUnavailableException("OCR service " + reason, error);
+        }
+        int status = response.statusCode();
+        if (status >= 500) {
+            breaker.onFailure();
+            logger.warn("OCR call answered {} after {} ms", status, nanos / 1_000_000);
+            throw new OcrUnavailableException("OCR service failed with status " + status);
+        }
+        // the model is up, whatever it thinks of this image
+        breaker.onSuccess();
+        if (status >= 400) {
+            throw new BadRequestException("Image rejected by OCR service (status " + status + ")");
+        }
+        logger.debug("OCR call took {} ms", nanos / 1_000_000);
+        try {
+            return toImageOutput(reader.readValue(response.body()));
+        } catch (IOException e) {
+            throw new OcrUnavailableException("Unreadable OCR response", e);
+        }
+    }
+
+    private static ImageOutput toImageOutput(JsonNode root) {
+        ImageOutput result = new ImageOutput();
+        result.setMedicationName(root.path("medicationName").asText(""));
+        result.setIntakeQuantity(root.path("intakeQuantity").asText(""));
+        result.setFrequency(root.path("frequency").asInt());
+        result.setInstructions(root.path("instructions").asText(""));
+        result.setNotes(root.path("notes").asText(""));
+        return result;
+    }
+
+    private static byte[] multipart(String boundary, byte[] image, String filename, String contentType) {
+        String name = filename == null || filename.isBlank() ? "image" : filename.replaceAll("[\"\\r\\n]", "_");
+        String type = contentType == null || contentType.isBlank() ? "application/octet-stream" : contentType.replaceAll("[\\r\\n]", "");
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + name + "\"\r\n"
+                + "Content-Type: " + type + "\r\n\r\n";
+        ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 256);
+        body.writeBytes(head.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(image);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -0,0 +1,344 @@
+package nus.iss.backend.ocr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import nus.iss.backend.dao.ImageOutput;
+import nus.iss.backend.util.LogSanitizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * OCR results by SHA-256 of the image bytes (ContentHash), so a pill box photographed again is answered in
+ * milliseconds without the model:
+ * - a bounded in-memory LRU map holds the hot entries; what it evicts spills to one small JSON file per
+ *   entry under dir/model-version, up to max-disk-entries (oldest files go first). The file is written by the
+ *   caller after the map is released and trimming runs on a background thread, so no lookup waits for another
+ *   one's disk writes
+ * - dir holds patient prescriptions: it is created owner-only, and OcrCacheSweeper deletes expired files
+ * - entries live for ttl, and only for the model-version they were made with: bump app.ocr.cache.model-version
+ *   when the model is retrained and the old results, memory and disk, are no longer used (old directories are
+ *   deleted at startup)
+ * - concurrent misses for the same image share one model call
+ * Only successful results are kept. Metrics: ocr.cache.requests{result=memory|disk|miss} (hit rate =
+ * (memory + disk) / all), ocr.cache.entries{tier=memory|disk}.
+ */
+@Component
+public class OcrResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(OcrResultCache.class);
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final int maxDiskEntries;
+    private final Path diskDir;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> memory;
+    private final Map<String, CompletableFuture<ImageOutput>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger diskEntries = new AtomicInteger();
+    private final AtomicBoolean trimQueued = new AtomicBoolean();
+    private final ExecutorService diskWorker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ocr-cache-trim");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public OcrResultCache(ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.ocr.cache.enabled:true}") boolean enabled,
+                          @Value("${app.ocr.cache.model-version:ner_v5}") String modelVersion,
+                          @Value("${app.ocr.cache.ttl:7d}") Duration ttl,
+                          @Value("${app.ocr.cache.max-entries:10000}") int maxEntries,
+                          @Value("${app.ocr.cache.dir:data/ocr-cache}") Path dir,
+                          @Value("${app.ocr.cache.max-disk-entries:100000}") int maxDiskEntries) {
+        this.enabled = enabled;
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.maxDiskEntries = maxDiskEntries;
+        this.objectMapper = objectMapper;
+        this.diskDir = dir.resolve(modelVersion.replaceAll("[^A-Za-z0-9._-]", "_"));
+        this.memory = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true));
+        this.memoryHits = requests(meterRegistry, "memory");
+        this.diskHits = requests(meterRegistry, "disk");
+        this.misses = requests(meterRegistry, "miss");
+        Gauge.builder("ocr.cache.entries", memory, Map::size).tag("tier", "memory").register(meterRegistry);
+        Gauge.builder("ocr.cache.entries", diskEntries, AtomicInteger::get).tag("tier", "disk").register(meterRegistry);
+        if (enabled) {
+            openDisk(dir);
+        }
+    }
+
+    /**
+     * The cached result for the image, or the loader's (kept if it succeeds). The result is a copy the
+     * caller may change.
+     */
+    public CompletableFuture<ImageOutput> get(String sha256, Supplier<CompletableFuture<ImageOutput>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        long now = System.currentTimeMillis();
+        Entry cached = memory.get(sha256);
+        if (cached != null && cached.storedAt + ttlMillis > now) {
+            memoryHits.increment();
+            return CompletableFuture.completedFuture(copy(cached.output));
+        }
+        Entry spilled = readDisk(sha256, now);
+        if (spilled != null) {
+            diskHits.increment();
+            remember(sha256, spilled);
+            return CompletableFuture.completedFuture(copy(spilled.output));
+        }
+        misses.increment();
+        CompletableFuture<ImageOutput> created = new CompletableFuture<>();
+        CompletableFuture<ImageOutput> shared = inFlight.putIfAbsent(sha256, created);
+        if (shared == null) {
+            shared = created;
+            CompletableFuture<ImageOutput> load;
+            try {
+                load = loader.get();
+            } catch (RuntimeException e) {
+                load = CompletableFuture.failedFuture(e);
+            }
+            load.whenComplete((output, error) -> {
+                if (error == null) {
+                    remember(sha256, new Entry(copy(output), System.currentTimeMillis()));
+                }
+                inFlight.remove(sha256, created);
+                if (error == null) {
+                    created.complete(output);
+                } else {
+                    created.completeExceptionally(error);
+                }
+            });
+        }
+        return shared.thenApply(OcrResultCache::copy);
+    }
+
+    public long memorySize() {
+        return memory.size();
+    }
+
+    public long diskSize() {
+        return diskEntries.get();
+    }
+
+    /**
+     * Deletes the spilled files that have expired, so results do not stay on disk past ttl when nobody asks
+     * for them again. Returns how many were deleted.
+     */
+    public synchronized int sweepDisk() {
+        if (!enabled) {
+            return 0;
+        }
+        long expiredBefore = System.currentTimeMillis() - ttlMillis;
+        int deleted = 0;
+        int kept = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(diskDir, "*.json")) {
+            for (Path file : stream) {
+                // a file's modified time is the storedAt of its entry
+                if (modified(file).toMillis() <= expiredBefore) {
+                    delete(file);
+                    deleted++;
+                } else {
+                    kept++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list OCR cache files: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+            return 0;
+        }
+        diskEntries.set(kept);
+        if (deleted > 0) {
+            logger.info("Deleted {} expired OCR cache files, {} kept", deleted, kept);
+        }
+        return deleted;
+    }
+
+    @PreDestroy
+    public void close() {
+        diskWorker.shutdownNow();
+    }
+
+    // puts the entry in memory and spills the one it pushes out, once the map is released
+    private void remember(String sha256, Entry entry) {
+        String evictedKey = null;
+        Entry evicted = null;
+        synchronized (memory) {
+            memory.put(sha256, entry);
+            if (memory.size() > maxEntries) {
+                Iterator<Map.Entry<String, Entry>> eldest = memory.entrySet().iterator();
+                Map.Entry<String, Entry> first = eldest.next();
+                evictedKey = first.getKey();
+                evicted = first.getValue();
+                eldest.remove();
+            }
+        }
+        if (evicted != null) {
+            spill(evictedKey, evicted);
+        }
+    }
+
+    private void spill(String sha256, Entry entry) {
+        if (entry.storedAt + ttlMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        Path file = diskDir.resolve(sha256 + ".json");
+        try {
+            Path temp = Files.createTempFile(diskDir, sha256, ".tmp");
+            objectMapper.writeValue(temp.toFile(), new Spilled(entry.output, entry.storedAt));
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(entry.storedAt));
+            boolean existed = Files.exists(file);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (!existed && diskEntries.incrementAndGet() > maxDiskEntries && trimQueued.compareAndSet(false, true)) {
+                try {
+                    diskWorker.execute(() -> {
+                        trimQueued.set(false);
+                        trimDisk();
+                    });
+                } catch (RejectedExecutionException e) {
+                    // shutting down
+                    trimQueued.set(false);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not spill OCR result to disk: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+        }
+    }
+
+    private Entry readDisk(String sha256, long now) {
+        Path file = diskDir.resolve(sha256 + ".json");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            Spilled spilled = objectMapper.readValue(file.toFile(), Spilled.class);
+            if (spilled.storedAt() + ttlMillis > now) {
+                return new Entry(spilled.output(), spilled.storedAt());
+            }
+        } catch (IOException e) {
+            logger.warn("Unreadable OCR cache file {}: {}", file.getFileName(), LogSanitizer.sanitizeForLog(e.getMessage()));
+        }
+        delete(file);
+        return null;
+    }
+
+    // drops the oldest tenth of the spilled files; on diskWorker, since listing and sorting them takes a while
+    private synchronized void trimDisk() {
+        if (diskEntries.get() <= maxDiskEntries) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(diskDir, "*.json")) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            logger.warn("Could not list OCR cache files: {}", LogSanitizer.sanitizeForLog(e.getMessage()));
+            return;
+        }
+        files.sort(Comparator.comparing(OcrResultCache::modified));
+        int remove = files.size() - maxDiskEntries + maxDiskEntries / 10;
+        for (int i = 0; i < remove && i < files.size(); i++) {
+            delete(files.get(i));
+        }
+        diskEntries.set(Math.max(0, files.size() - remove));
+    }
+
+    // counts this model version's files and deletes the directories of earlier ones
+    private void openDisk(Path dir) {
+        try {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.createDirectories(diskDir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(diskDir);
+            }
+            try (Stream<Path> versions = Files.list(dir)) {
+                versions.filter(Files::isDirectory).filter(path -> !path.equals(diskDir)).forEach(this::deleteTree);
+            }
+            try (Stream<Path> files = Files.list(diskDir)) {
+                diskEntries.set((int) files.filter(path -> path.toString().endsWith(".json")).count());
+            }
+        } catch (IOException e) {
+            logger.warn("OCR cache directory {} unusable: {}", dir, LogSanitizer.sanitizeForLog(e.getMessage()));
+        }
+    }
+
+    private void deleteTree(Path path) {
+        logger.info("Deleting OCR cache of another model version: {}", path.getFileName());
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(OcrResultCache::delete);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", path, LogSanitizer.sanitizeForLog(e.getMessage()));
+        }
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("ocr.cache.requests").tag("result", result).register(registry);
+    }
+
+    private static FileTime modified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Could not delete {}", path);
+        }
+    }
+
+    private static ImageOutput copy(ImageOutput output) {
+        ImageOutput copy = new ImageOutput();
+        copy.setMedicationName(output.getMedicationName());
+        copy.setIntakeQuantity(output.getIntakeQuantity());
+        copy.setFrequency(output.getFrequency());
+        copy.setInstructions(output.getInstructions());
+        copy.setNotes(output.getNotes());
+        copy.setSuggestedName(output.getSuggestedName());
+        copy.setMatchDistance(output.getMatchDistance());
+        return copy;
+    }
+
+    private record Entry(ImageOutput output, long storedAt) {
+    }
+
+    // file format of a spilled entry
+    record Spilled(ImageOutput output, long storedAt) {
+    }
+}
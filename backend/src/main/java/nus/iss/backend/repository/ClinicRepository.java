@@ -1,13 +1,23 @@
 package nus.iss.backend.repository;
 
+import jakarta.persistence.QueryHint;
 import nus.iss.backend.model.Clinic;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface ClinicRepository extends JpaRepository<Clinic, UUID> {
+    // clinic list for the login/registration pages; served from the query cache until a Clinic row changes
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Clinic> findAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Clinic findClinicByClinicName(String clinicName);
 
     Clinic findClinicById(UUID id);
@@ -1,7 +1,10 @@
 package nus.iss.backend.repository;
 
+import jakarta.persistence.QueryHint;
 import nus.iss.backend.model.Doctor;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -9,5 +12,8 @@ public interface DoctorRepository extends JpaRepository<Doctor, String> {
 
     Doctor findDoctorByMcrNoAndPassword(String mcrNo, String password);
 
+    // looked up on every portal page load (/api/web/session-info); the query cache maps the MCR to the
+    // cached Doctor entry, and any write to Doctor invalidates it
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Doctor findDoctorByMcrNo(String mcrNo);
 }
@@ -0,0 +1,65 @@
+package nus.iss.backend.repository;
+
+import nus.iss.backend.dao.IntakeHistoryRow;
+import nus.iss.backend.model.IntakeHistoryArchive;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface IntakeArchiveRepository extends JpaRepository<IntakeHistoryArchive, UUID> {
+
+    /**
+     * Copies the given hot intake rows into the archive, with their schedule time and medication name.
+     * The caller deletes them from Medication_Intake_History in the same transaction.
+     */
+    @Modifying
+    @Query("INSERT INTO IntakeHistoryArchive (id, patientId, scheduleId, medicationId, medicationName, " +
+            "scheduledTime, loggedDate, isTaken, doctorNote, archivedAt) " +
+            "SELECT h.id, h.patient.id, s.id, m.id, m.medicationName, s.scheduledTime, h.loggedDate, h.isTaken, " +
+            "h.doctorNote, CURRENT_TIMESTAMP " +
+            "FROM IntakeHistory h JOIN h.schedule s JOIN s.medication m WHERE h.id IN :ids")
+    int copyFromHistory(@Param("ids") Collection<UUID> ids);
+
+    // Latest archived log date (null while the archive is empty).
+    @Query("SELECT MAX(a.loggedDate) FROM IntakeHistoryArchive a")
+    LocalDate findLatestLoggedDate();
+
+    // Same shape and order as IntakeRepository.findHistoryRows, so the two can be merged page by page.
+    @Query("SELECT new nus.iss.backend.dao.IntakeHistoryRow(a.id, a.loggedDate, a.scheduledTime, a.medicationName, a.isTaken) " +
+            "FROM IntakeHistoryArchive a " +
+            "WHERE a.patientId = :patientId " +
+            "AND (:fromDate IS NULL OR a.loggedDate >= :fromDate) " +
+            "AND (:toDate IS NULL OR a.loggedDate <= :toDate) " +
+            "ORDER BY a.loggedDate, a.scheduledTime, a.id")
+    List<IntakeHistoryRow> findHistoryRows(@Param("patientId") UUID patientId,
+                                           @Param("fromDate") LocalDate fromDate,
+                                           @Param("toDate") LocalDate toDate,
+                                           Pageable pageable);
+
+    @Query("SELECT new nus.iss.backend.dao.IntakeHistoryRow(a.id, a.loggedDate, a.scheduledTime, a.medicationName, a.isTaken) " +
+            "FROM IntakeHistoryArchive a " +
+            "WHERE a.patientId = :patientId " +
+            "AND (:fromDate IS NULL OR a.loggedDate >= :fromDate) " +
+            "AND (:toDate IS NULL OR a.loggedDate <= :toDate) " +
+            "AND (a.loggedDate > :afterDate " +
+            "  OR (a.loggedDate = :afterDate AND a.scheduledTime > :afterTime) " +
+            "  OR (a.loggedDate = :afterDate AND a.scheduledTime = :afterTime AND a.id > :afterId)) " +
+            "ORDER BY a.loggedDate, a.scheduledTime, a.id")
+    List<IntakeHistoryRow> findHistoryRowsAfter(@Param("patientId") UUID patientId,
+                                                @Param("fromDate") LocalDate fromDate,
+                                                @Param("toDate") LocalDate toDate,
+                                                @Param("afterDate") LocalDate afterDate,
+                                                @Param("afterTime") LocalTime afterTime,
+                                                @Param("afterId") UUID afterId,
+                                                Pageable pageable);
+}
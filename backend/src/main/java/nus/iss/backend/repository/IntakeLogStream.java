@@ -0,0 +1,20 @@
+package nus.iss.backend.repository;
+
+import nus.iss.backend.dao.IntakeLogResponseWeb;
+
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Streamed read of a medication's intake logs, mixed into IntakeRepository. Implemented by hand because
+ * the fetch size is a property: the MySQL driver only streams a single statement's rows for
+ * Integer.MIN_VALUE, which other databases (H2 in tests) reject.
+ */
+public interface IntakeLogStream {
+
+    /**
+     * Forward-only read of a medication's logs straight into the web DTO.
+     * Must be consumed inside a transaction and closed; the connection can run nothing else until then.
+     */
+    Stream<IntakeLogResponseWeb> streamLogsByMedicationId(UUID medicationId);
+}
@@ -0,0 +1,31 @@
+package nus.iss.backend.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import nus.iss.backend.dao.IntakeLogResponseWeb;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.UUID;
+import java.util.stream.Stream;
+
+class IntakeLogStreamImpl implements IntakeLogStream {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.intake.logs.stream-fetch-size:500}")
+    private int fetchSize;
+
+    @Override
+    public Stream<IntakeLogResponseWeb> streamLogsByMedicationId(UUID medicationId) {
+        return entityManager.createQuery(
+                        "SELECT new nus.iss.backend.dao.IntakeLogResponseWeb(h.loggedDate, s.scheduledTime, h.isTaken, h.doctorNote, s.id, h.id) " +
+                                "FROM IntakeHistory h JOIN h.schedule s WHERE s.medication.id = :medicationId",
+                        IntakeLogResponseWeb.class)
+                .setParameter("medicationId", medicationId)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+}
@@ -1,14 +1,76 @@
 package nus.iss.backend.repository;
 
+import nus.iss.backend.dao.IntakeHistoryRow;
 import nus.iss.backend.model.IntakeHistory;
+import nus.iss.backend.model.Medication;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface IntakeRepository extends JpaRepository<IntakeHistory, UUID> {
+public interface IntakeRepository extends JpaRepository<IntakeHistory, UUID>, IntakeLogStream {
     List<IntakeHistory> findBySchedule_Medication_Id(UUID scheduleMedicationId);
     List<IntakeHistory> findByPatient_Id(UUID patientId);
+
+    boolean existsByClientRequestId(String clientRequestId);
+
+    @Query("SELECT h.clientRequestId FROM IntakeHistory h WHERE h.clientRequestId IN :clientRequestIds")
+    List<String> findExistingClientRequestIds(@Param("clientRequestIds") Collection<String> clientRequestIds);
+
+    // First page of a patient's history in (loggedDate, scheduledTime, id) order; from/to are optional bounds.
+    @Query("SELECT new nus.iss.backend.dao.IntakeHistoryRow(h.id, h.loggedDate, s.scheduledTime, m.medicationName, h.isTaken) " +
+            "FROM IntakeHistory h JOIN h.schedule s JOIN s.medication m " +
+            "WHERE h.patient.id = :patientId " +
+            "AND (:fromDate IS NULL OR h.loggedDate >= :fromDate) " +
+            "AND (:toDate IS NULL OR h.loggedDate <= :toDate) " +
+            "ORDER BY h.loggedDate, s.scheduledTime, h.id")
+    List<IntakeHistoryRow> findHistoryRows(@Param("patientId") UUID patientId,
+                                           @Param("fromDate") LocalDate fromDate,
+                                           @Param("toDate") LocalDate toDate,
+                                           Pageable pageable);
+
+    // Following pages: seeks past the last row already returned instead of skipping with OFFSET.
+    @Query("SELECT new nus.iss.backend.dao.IntakeHistoryRow(h.id, h.loggedDate, s.scheduledTime, m.medicationName, h.isTaken) " +
+            "FROM IntakeHistory h JOIN h.schedule s JOIN s.medication m " +
+            "WHERE h.patient.id = :patientId " +
+            "AND (:fromDate IS NULL OR h.loggedDate >= :fromDate) " +
+            "AND (:toDate IS NULL OR h.loggedDate <= :toDate) " +
+            "AND (h.loggedDate > :afterDate " +
+            "  OR (h.loggedDate = :afterDate AND s.scheduledTime > :afterTime) " +
+            "  OR (h.loggedDate = :afterDate AND s.scheduledTime = :afterTime AND h.id > :afterId)) " +
+            "ORDER BY h.loggedDate, s.scheduledTime, h.id")
+    List<IntakeHistoryRow> findHistoryRowsAfter(@Param("patientId") UUID patientId,
+                                                @Param("fromDate") LocalDate fromDate,
+                                                @Param("toDate") LocalDate toDate,
+                                                @Param("afterDate") LocalDate afterDate,
+                                                @Param("afterTime") LocalTime afterTime,
+                                                @Param("afterId") UUID afterId,
+                                                Pageable pageable);
+
+
+    // intake logs of the schedules ScheduleRepository.deleteInactiveByMedicationCreatedBefore is about to remove
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM IntakeHistory h WHERE h.schedule.id IN (" +
+            "SELECT s.id FROM Schedule s " +
+            "WHERE s.medication = :medication AND s.isActive = false AND s.creationDate < :cutoffDate)")
+    int deleteByInactiveSchedulesCreatedBefore(@Param("medication") Medication medication,
+                                               @Param("cutoffDate") LocalDateTime cutoffDate);
+
+    // oldest first, for the retention job; rows without a logged date are never archived
+    @Query("SELECT h.id FROM IntakeHistory h WHERE h.loggedDate < :cutoff ORDER BY h.loggedDate")
+    List<UUID> findIdsLoggedBefore(@Param("cutoff") LocalDate cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM IntakeHistory h WHERE h.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<UUID> ids);
 }
@@ -1,11 +1,13 @@
 package nus.iss.backend.repository;
 
+import nus.iss.backend.dao.PatientMedicationName;
 import nus.iss.backend.model.Medication;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 @Repository
@@ -13,6 +15,15 @@ public interface MedicationRepository extends JpaRepository<Medication,UUID> {
     Medication findMedicationById(UUID id);
     List<Medication> findAllByIdIn(List<UUID> medIds);
 
+    // the patient's medications without loading the patient first, for callers that know it exists
+    @Query("SELECT m FROM Medication m JOIN m.patients p WHERE p.id = :patientId")
+    List<Medication> findByPatientId(@Param("patientId") UUID patientId);
+
     @Query("SELECT m FROM Medication m JOIN m.patients p WHERE p.id = :patientId AND LOWER(m.medicationName) = LOWER(:medicationName) AND m.isActive = true")
     List<Medication> findByPatientIdAndMedicationNameIgnoreCase(@Param("patientId") UUID patientId, @Param("medicationName") String medicationName);
+
+    // Active medication names of many patients in one query (duplicate check of the prescription import).
+    @Query("SELECT p.id AS patientId, m.medicationName AS medicationName FROM Medication m JOIN m.patients p " +
+            "WHERE p.id IN :patientIds AND m.isActive = true")
+    List<PatientMedicationName> findActiveMedicationNames(@Param("patientIds") Collection<UUID> patientIds);
 }
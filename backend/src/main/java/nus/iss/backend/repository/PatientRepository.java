@@ -1,12 +1,20 @@
 package nus.iss.backend.repository;
 
+import nus.iss.backend.dao.PatientRef;
+import nus.iss.backend.dao.PatientRosterRow;
+import nus.iss.backend.dto.PatientSummary;
 import nus.iss.backend.model.Doctor;
 import nus.iss.backend.model.Patient;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.List;
@@ -36,8 +44,9 @@ public interface PatientRepository extends JpaRepository<Patient, UUID> {
 
     /**
      * Returns true if any Patient exists with the given email (case-insensitive).
+     * Emails are stored lower-cased, so only the parameter is folded and IDX_Patient_Email stays usable.
      */
-    @Query("select (count(p) > 0) from Patient p where lower(p.email) = lower(:email)")
+    @Query("select (count(p) > 0) from Patient p where p.email = lower(:email)")
     boolean existsEmailIgnoreCase(@Param("email") String email);
 
     /**
@@ -47,9 +56,85 @@ public interface PatientRepository extends JpaRepository<Patient, UUID> {
     @Query("""
            select (count(p) > 0)
            from Patient p
-           where lower(p.email) = lower(:email)
+           where p.email = lower(:email)
              and p.id <> :excludeId
            """)
     boolean existsEmailIgnoreCaseExcludingId(@Param("email") String email,
                                              @Param("excludeId") UUID excludeId);
+
+    /**
+     * Current change counter of a patient, without loading the entity. Empty if the patient does not exist.
+     */
+    @Query("select p.dataVersion from Patient p where p.id = :id")
+    Optional<Long> findDataVersionById(@Param("id") UUID id);
+
+    // Roster aggregate: one row per patient with the last log date and this month's adherence counters.
+    // Adherence comes from the monthly rollup (one row per schedule and month), so the join stays small.
+    String ROSTER_SELECT = "select p.id as id, p.firstName as firstName, p.lastName as lastName, p.dob as dob, " +
+            "(select max(h.loggedDate) from IntakeHistory h where h.patient = p) as lastLogDate, " +
+            "coalesce(sum(r.takenCount), 0) as takenCount, coalesce(sum(r.missedCount), 0) as missedCount, " +
+            "case when coalesce(sum(r.takenCount + r.missedCount), 0) = 0 then null " +
+            "else sum(r.takenCount) * 100.0 / sum(r.takenCount + r.missedCount) end as adherence " +
+            "from Patient p left join Schedule s on s.patient = p " +
+            "left join ScheduleAdherence r on r.schedule = s and r.periodMonth = :periodMonth ";
+
+    // :namePrefix is already lower-cased, escaped with '!' and ends with '%'
+    String ROSTER_FILTER = "and (:namePrefix is null or lower(p.firstName) like :namePrefix escape '!' " +
+            "or lower(p.lastName) like :namePrefix escape '!') " +
+            "group by p.id, p.firstName, p.lastName, p.dob " +
+            "having (:adherenceBelow is null " +
+            "or sum(r.takenCount) * 100.0 < :adherenceBelow * sum(r.takenCount + r.missedCount))";
+
+    /**
+     * One page of a doctor's patients with adherence summaries. Sortable by the select aliases.
+     */
+    @Query(ROSTER_SELECT + "where p.doctor.mcrNo = :mcrNo " + ROSTER_FILTER)
+    Slice<PatientRosterRow> findDoctorRoster(@Param("mcrNo") String mcrNo,
+                                             @Param("periodMonth") LocalDate periodMonth,
+                                             @Param("namePrefix") String namePrefix,
+                                             @Param("adherenceBelow") Double adherenceBelow,
+                                             Pageable pageable);
+
+    /**
+     * Same roster for the patients of a clinic that have no doctor yet.
+     */
+    @Query(ROSTER_SELECT + "where p.clinic.id = :clinicId and p.doctor is null " + ROSTER_FILTER)
+    Slice<PatientRosterRow> findUnassignedRoster(@Param("clinicId") UUID clinicId,
+                                                 @Param("periodMonth") LocalDate periodMonth,
+                                                 @Param("namePrefix") String namePrefix,
+                                                 @Param("adherenceBelow") Double adherenceBelow,
+                                                 Pageable pageable);
+
+    /**
+     * Profile card of the dashboard: the patient with their clinic and (optional) doctor in one select.
+     */
+    @Query("select new nus.iss.backend.dto.PatientSummary(p.id, p.firstName, p.lastName, p.email, p.gender, p.dob, " +
+            "d.mcrNo, d.firstName, d.lastName, c.clinicName) " +
+            "from Patient p join p.clinic c left join p.doctor d where p.id = :id")
+    Optional<PatientSummary> findSummaryById(@Param("id") UUID id);
+
+    /**
+     * Patients of the clinic with one of the given ids, without loading the entities (prescription import).
+     */
+    @Query("select p.id as id, p.nric as nric from Patient p where p.clinic.id = :clinicId and p.id in :ids")
+    List<PatientRef> findRefsByClinicAndIds(@Param("clinicId") UUID clinicId, @Param("ids") Collection<UUID> ids);
+
+    /**
+     * Every patient of the clinic with an NRIC (prescription import partitioning).
+     */
+    @Query("select p.id as id, p.nric as nric from Patient p where p.clinic.id = :clinicId and p.nric is not null")
+    List<PatientRef> findRefsByClinic(@Param("clinicId") UUID clinicId);
+
+    /**
+     * Patients of the clinic with one of the given NRICs; :nrics are upper-case.
+     */
+    @Query("select p.id as id, p.nric as nric from Patient p where p.clinic.id = :clinicId and upper(p.nric) in :nrics")
+    List<PatientRef> findRefsByClinicAndNrics(@Param("clinicId") UUID clinicId, @Param("nrics") Collection<String> nrics);
+
+    /**
+     * Bumps the change counter of the given patients, invalidating the ETags handed out for their data.
+     */
+    @Modifying
+    @Query("update Patient p set p.dataVersion = p.dataVersion + 1 where p.id in :ids")
+    int incrementDataVersion(@Param("ids") Collection<UUID> ids);
 }
@@ -0,0 +1,16 @@
+package nus.iss.backend.repository;
+
+import nus.iss.backend.model.PrescriptionImportError;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface PrescriptionImportErrorRepository extends JpaRepository<PrescriptionImportError, UUID> {
+
+    List<PrescriptionImportError> findByJobInstanceIdOrderByLineNumber(long jobInstanceId);
+
+    long countByJobInstanceId(long jobInstanceId);
+}
@@ -0,0 +1,54 @@
+package nus.iss.backend.repository;
+
+import nus.iss.backend.model.RecognitionJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface RecognitionJobRepository extends JpaRepository<RecognitionJob, UUID> {
+
+    Optional<RecognitionJob> findByContentHash(String contentHash);
+
+    // Takes the job for one attempt if it is due: a PENDING job past its retry time, or a RUNNING one whose
+    // lease has run out with attempts left. A single conditional UPDATE, so of several workers or instances
+    // exactly one wins.
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE RecognitionJob j SET j.status = 'RUNNING', j.attempts = j.attempts + 1, j.leaseUntil = :leaseUntil, " +
+            "j.updatedAt = :now WHERE j.id = :id AND ((j.status = 'PENDING' AND (j.nextAttemptAt IS NULL OR j.nextAttemptAt <= :now)) " +
+            "OR (j.status = 'RUNNING' AND j.leaseUntil < :now AND j.attempts < :maxAttempts))")
+    int claim(@Param("id") UUID id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil,
+              @Param("maxAttempts") int maxAttempts);
+
+    @Query("SELECT j.id FROM RecognitionJob j WHERE (j.status = 'PENDING' AND (j.nextAttemptAt IS NULL OR j.nextAttemptAt <= :now)) " +
+            "OR (j.status = 'RUNNING' AND j.leaseUntil < :now AND j.attempts < :maxAttempts) ORDER BY j.createdAt")
+    List<UUID> findDue(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts, Pageable pageable);
+
+    // RUNNING jobs whose last allowed attempt ran out of lease: the worker died on the image every time
+    @Query("SELECT j.id FROM RecognitionJob j WHERE j.status = 'RUNNING' AND j.leaseUntil < :now AND j.attempts >= :maxAttempts")
+    List<UUID> findAbandoned(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts, Pageable pageable);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE RecognitionJob j SET j.status = 'FAILED', j.leaseUntil = NULL, j.nextAttemptAt = NULL, j.error = :error, " +
+            "j.updatedAt = :now WHERE j.id = :id AND j.status = 'RUNNING' AND j.leaseUntil < :now")
+    int failAbandoned(@Param("id") UUID id, @Param("now") LocalDateTime now, @Param("error") String error);
+
+    List<RecognitionJob> findByIdInAndStatusIn(Collection<UUID> ids, Collection<String> statuses);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RecognitionJob j WHERE j.status IN ('SUCCEEDED', 'FAILED') AND j.updatedAt < :before")
+    int deleteFinishedBefore(@Param("before") LocalDateTime before);
+}
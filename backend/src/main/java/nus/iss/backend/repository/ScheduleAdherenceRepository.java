@@ -0,0 +1,112 @@
+package nus.iss.backend.repository;
+
+import nus.iss.backend.model.Medication;
+import nus.iss.backend.model.ScheduleAdherence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ScheduleAdherenceRepository extends JpaRepository<ScheduleAdherence, UUID> {
+
+    Optional<ScheduleAdherence> findBySchedule_IdAndPeriodMonth(UUID scheduleId, LocalDate periodMonth);
+
+    /**
+     * Adds to the counters of the (schedule, month) row, creating it on the first log of the month. One statement,
+     * so two first logs racing for the same month both count instead of one losing on UK_Adherence_Schedule_Month.
+     * Ids are the 16 bytes of the BINARY(16) keys; id is only used when the row is new.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO Schedule_Adherence_Monthly (Id, Schedule_Id, Period_Month, Taken_Count, Missed_Count) " +
+            "VALUES (:id, :scheduleId, :periodMonth, :takenDelta, :missedDelta) " +
+            "ON DUPLICATE KEY UPDATE Taken_Count = Taken_Count + :takenDelta, Missed_Count = Missed_Count + :missedDelta",
+            nativeQuery = true)
+    int upsertCounts(@Param("id") byte[] id,
+                     @Param("scheduleId") byte[] scheduleId,
+                     @Param("periodMonth") LocalDate periodMonth,
+                     @Param("takenDelta") int takenDelta,
+                     @Param("missedDelta") int missedDelta);
+
+    @Query("SELECT DISTINCT s.medication.id FROM ScheduleAdherence r JOIN r.schedule s " +
+            "WHERE s.medication.id IN :medicationIds " +
+            "AND r.periodMonth = :periodMonth AND r.missedCount > 0")
+    List<UUID> findMedicationIdsWithMissedDose(@Param("medicationIds") Collection<UUID> medicationIds,
+                                               @Param("periodMonth") LocalDate periodMonth);
+
+    /**
+     * Each row is [patientId, medicationId].
+     */
+    @Query("SELECT DISTINCT s.patient.id, s.medication.id FROM ScheduleAdherence r JOIN r.schedule s " +
+            "WHERE s.patient.id IN :patientIds " +
+            "AND r.periodMonth = :periodMonth AND r.missedCount > 0")
+    List<Object[]> findPatientMedicationIdsWithMissedDose(@Param("patientIds") Collection<UUID> patientIds,
+                                                          @Param("periodMonth") LocalDate periodMonth);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM ScheduleAdherence r WHERE r.schedule.id IN (" +
+            "SELECT s.id FROM Schedule s " +
+            "WHERE s.medication = :medication AND s.isActive = false AND s.creationDate < :cutoffDate)")
+    int deleteByInactiveSchedulesCreatedBefore(@Param("medication") Medication medication,
+                                               @Param("cutoffDate") LocalDateTime cutoffDate);
+
+    // --- backfill / consistency check (MySQL) ---
+    // Ids are BINARY(16); UUID_TO_BIN(UUID(), 1) moves the timestamp to the front so new keys still sort by time.
+    // Months before :since have been moved to the intake archive; their rollup rows are kept as they are.
+
+    /**
+     * Share-locks the intake rows from :since and the gaps between them (a range of IDX_Intake_Logged_Date) until
+     * the transaction ends: logs still being written are waited for, new ones wait for the rebuilt rollup.
+     */
+    @Query(value = "SELECT COUNT(*) FROM Medication_Intake_History WHERE Logged_Date >= :since FOR SHARE",
+            nativeQuery = true)
+    long lockHistorySince(@Param("since") LocalDate since);
+
+    @Modifying
+    @Query(value = "DELETE FROM Schedule_Adherence_Monthly WHERE Period_Month >= :since", nativeQuery = true)
+    int deleteRowsSince(@Param("since") LocalDate since);
+
+    @Modifying
+    @Query(value = "INSERT INTO Schedule_Adherence_Monthly (Id, Schedule_Id, Period_Month, Taken_Count, Missed_Count) " +
+            "SELECT UUID_TO_BIN(UUID(), 1), h.Schedule_Id, DATE_SUB(h.Logged_Date, INTERVAL DAYOFMONTH(h.Logged_Date) - 1 DAY), " +
+            "SUM(CASE WHEN h.Is_Taken = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN h.Is_Taken = 1 THEN 0 ELSE 1 END) " +
+            "FROM Medication_Intake_History h " +
+            "WHERE h.Logged_Date >= :since " +
+            "GROUP BY h.Schedule_Id, DATE_SUB(h.Logged_Date, INTERVAL DAYOFMONTH(h.Logged_Date) - 1 DAY)",
+            nativeQuery = true)
+    int insertFromHistorySince(@Param("since") LocalDate since);
+
+    /**
+     * (schedule, month) pairs whose raw counts differ from the rollup, or that have no rollup row.
+     * Each row is [scheduleId, periodMonth].
+     */
+    @Query(value = "SELECT BIN_TO_UUID(raw.Schedule_Id), raw.Period_Month FROM (" +
+            "  SELECT h.Schedule_Id, DATE_SUB(h.Logged_Date, INTERVAL DAYOFMONTH(h.Logged_Date) - 1 DAY) AS Period_Month, " +
+            "  SUM(CASE WHEN h.Is_Taken = 1 THEN 1 ELSE 0 END) AS Taken_Count, " +
+            "  SUM(CASE WHEN h.Is_Taken = 1 THEN 0 ELSE 1 END) AS Missed_Count " +
+            "  FROM Medication_Intake_History h WHERE h.Logged_Date >= :since " +
+            "  GROUP BY h.Schedule_Id, DATE_SUB(h.Logged_Date, INTERVAL DAYOFMONTH(h.Logged_Date) - 1 DAY)" +
+            ") raw LEFT JOIN Schedule_Adherence_Monthly r " +
+            "ON r.Schedule_Id = raw.Schedule_Id AND r.Period_Month = raw.Period_Month " +
+            "WHERE r.Id IS NULL OR r.Taken_Count <> raw.Taken_Count OR r.Missed_Count <> raw.Missed_Count",
+            nativeQuery = true)
+    List<Object[]> findMismatchedRowsSince(@Param("since") LocalDate since);
+
+    /**
+     * Rollup rows with counts but no raw intake rows behind them.
+     */
+    @Query(value = "SELECT COUNT(*) FROM Schedule_Adherence_Monthly r " +
+            "WHERE r.Period_Month >= :since AND r.Taken_Count + r.Missed_Count > 0 AND NOT EXISTS (" +
+            "  SELECT 1 FROM Medication_Intake_History h WHERE h.Schedule_Id = r.Schedule_Id " +
+            "  AND h.Logged_Date >= r.Period_Month AND h.Logged_Date < DATE_ADD(r.Period_Month, INTERVAL 1 MONTH))",
+            nativeQuery = true)
+    long countOrphanRowsSince(@Param("since") LocalDate since);
+}
@@ -1,15 +1,18 @@
 package nus.iss.backend.repository;
 
+import nus.iss.backend.dao.AgendaItem;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Schedule;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -26,7 +29,45 @@ public interface ScheduleRepository extends JpaRepository<Schedule, UUID> {
 
     List<Schedule> findByMedicationAndIsActiveFalseAndCreationDateBefore(Medication medication, LocalDateTime cutoffDate);
 
+    @Query("SELECT DISTINCT s.patient.id FROM Schedule s WHERE s.medication = :medication AND s.isActive = true")
+    List<UUID> findActivePatientIdsByMedication(@Param("medication") Medication medication);
+
+    // Bulk statements for medication edits; they bypass the persistence context, so callers must not
+    // hold loaded Schedule entities of this medication across them.
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Schedule s SET s.isActive = false WHERE s.medication = :medication AND s.isActive = true")
+    int deactivateByMedication(@Param("medication") Medication medication);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Schedule s " +
+            "WHERE s.medication = :medication AND s.isActive = false AND s.creationDate < :cutoffDate")
+    int deleteInactiveByMedicationCreatedBefore(@Param("medication") Medication medication,
+                                                @Param("cutoffDate") LocalDateTime cutoffDate);
+
+    /**
+     * Inactive schedules created before the cutoff whose intake logs have all been archived, for the retention job.
+     * Schedules with adherence rollup rows are kept: the rollup is the only per-month record left once the
+     * logs are archived, and its rows reference the schedule. Each row is [scheduleId, patientId].
+     */
+    @Query("SELECT s.id, s.patient.id FROM Schedule s " +
+            "WHERE s.isActive = false AND s.creationDate < :cutoffDate " +
+            "AND NOT EXISTS (SELECT 1 FROM IntakeHistory h WHERE h.schedule = s) " +
+            "AND NOT EXISTS (SELECT 1 FROM ScheduleAdherence r WHERE r.schedule = s)")
+    List<Object[]> findArchivedInactiveSchedules(@Param("cutoffDate") LocalDateTime cutoffDate, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Schedule s WHERE s.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<UUID> ids);
+
     //Lewis: For Android API to fetch all active schedules for a patient — used for recurring daily view
     @Query("SELECT s FROM Schedule s WHERE s.patient.id = :patientId AND s.isActive = true ORDER BY s.scheduledTime")
     List<Schedule> findActiveSchedulesByPatientId(@Param("patientId") UUID patientId);
+
+    // Everything the Android daily feed and /api/schedule/find need for one patient, in one statement:
+    // active schedules with their medication, ordered by time. Cached per patient by PatientAgendaCache.
+    @Query("SELECT new nus.iss.backend.dao.AgendaItem(s.id, s.scheduledTime, m.id, m.medicationName, m.intakeQuantity, m.isActive) " +
+            "FROM Schedule s JOIN s.medication m " +
+            "WHERE s.patient.id = :patientId AND s.isActive = true " +
+            "ORDER BY s.scheduledTime")
+    List<AgendaItem> findAgendaByPatientId(@Param("patientId") UUID patientId);
 }
@@ -5,6 +5,7 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import nus.iss.backend.model.*;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,7 +16,9 @@ import java.time.ZoneId;
 import java.util.*;
 
 
+// LoadDataGenerator takes over when load test data is wanted
 @Component
+@ConditionalOnProperty(name = "app.loadgen.enabled", havingValue = "false", matchIfMissing = true)
 public class DatabaseSeeder implements CommandLineRunner {
 
     @PersistenceContext
@@ -434,11 +437,33 @@ public class DatabaseSeeder implements CommandLineRunner {
                 }
             }
 
+            seedAdherenceRollup(patientLogs);
+
             entityManager.merge(patient);
         }
     }
 
 
+    // the seeder writes intake logs directly, so build the monthly rollup rows the same way
+    private void seedAdherenceRollup(List<IntakeHistory> logs) {
+        Map<String, ScheduleAdherence> rows = new HashMap<>();
+        for (IntakeHistory log : logs) {
+            LocalDate periodMonth = log.getLoggedDate().withDayOfMonth(1);
+            ScheduleAdherence row = rows.computeIfAbsent(log.getSchedule().getId() + "@" + periodMonth, k -> {
+                ScheduleAdherence r = new ScheduleAdherence();
+                r.setSchedule(log.getSchedule());
+                r.setPeriodMonth(periodMonth);
+                return r;
+            });
+            if (log.isTaken()) {
+                row.setTakenCount(row.getTakenCount() + 1);
+            } else {
+                row.setMissedCount(row.getMissedCount() + 1);
+            }
+        }
+        rows.values().forEach(entityManager::persist);
+    }
+
     // helper generic function to select a random item from a list
     private <T> T getRandomItem(List<T> list) {
         return list.get(random.nextInt(list.size()));
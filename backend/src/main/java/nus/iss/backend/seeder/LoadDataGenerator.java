@@ -0,0 +1,505 @@
+package nus.iss.backend.seeder;
+
+import com.github.javafaker.Faker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Production-sized test data, for load tests and query plans that only show up at volume. Replaces
+ * DatabaseSeeder while app.loadgen.enabled is set, and like it does nothing if there are clinics already.
+ *
+ * Writes straight through JDBC batches, bypassing Hibernate. Patients are cut into blocks of
+ * patients-per-block; each block gets its own connection, its own Random derived from app.seed and the block
+ * number, and its own range of time-ordered ids, so blocks run in parallel on app.loadgen.threads threads and
+ * the same settings always produce the same rows, whatever order the blocks finish in. Each patient gets an
+ * adherence rate drawn from a Beta distribution (mean and concentration configurable) and every dose in the
+ * history is taken with that probability; the monthly rollup rows are written as each month closes.
+ * History ends at app.loadgen.end-date, today if not set, which is the one input besides the settings.
+ */
+@Component
+@ConditionalOnProperty(name = "app.loadgen.enabled", havingValue = "true")
+public class LoadDataGenerator implements CommandLineRunner {
+    private static final Logger logger = LoggerFactory.getLogger(LoadDataGenerator.class);
+
+    private static final List<String> MEDICATIONS = List.of(
+            "Panadol", "Metformin", "Lipitor", "Amoxicillin", "Losartan",
+            "Omeprazole", "Amlodipine", "Ventolin", "Atorvastatin", "Insulin"
+    );
+    private static final List<String> EMAIL_DOMAINS = List.of("gmail.com", "yahoo.com", "hotmail.com", "outlook.com");
+    private static final LocalTime MORNING = LocalTime.of(8, 0);
+    private static final LocalTime AFTERNOON = LocalTime.of(14, 0);
+    private static final LocalTime EVENING = LocalTime.of(20, 0);
+
+    // ids of block n start 2^24 ms (about 4.7 hours) after those of block n - 1: room for 2^36 ids per block
+    private static final long BLOCK_ID_SPAN_MILLIS = 1L << 24;
+
+    private static final String PATIENT_SQL = "INSERT INTO Patient (Id, Email, Password, NRIC, FirstName, LastName, " +
+            "Gender, DOB, Assigned_Doctor, Clinic_UUID) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String MEDICATION_SQL = "INSERT INTO Medication (Id, Medication_Name, Intake_Quantity, Frequency, " +
+            "Timing, Instructions, Notes, Is_Active) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String LINK_SQL = "INSERT INTO Patient_Medication (Patient_Id, Medication_Id) VALUES (?, ?)";
+    private static final String SCHEDULE_SQL = "INSERT INTO Schedule (Id, Scheduled_Time, Is_Active, CreationDate, " +
+            "Medication_Id, Patient_Id) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INTAKE_SQL = "INSERT INTO Medication_Intake_History (Id, Logged_Date, Is_Taken, " +
+            "Patient_Id, Schedule_Id) VALUES (?, ?, ?, ?, ?)";
+    private static final String ROLLUP_SQL = "INSERT INTO Schedule_Adherence_Monthly (Id, Period_Month, Taken_Count, " +
+            "Missed_Count, Schedule_Id) VALUES (?, ?, ?, ?, ?)";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${app.seed:20250808}")
+    private long seed;
+
+    @Value("${app.loadgen.clinics:5}")
+    private int clinics;
+
+    @Value("${app.loadgen.doctors-per-clinic:10}")
+    private int doctorsPerClinic;
+
+    @Value("${app.loadgen.patients-per-clinic:2000}")
+    private int patientsPerClinic;
+
+    @Value("${app.loadgen.unassigned-patient-ratio:0.2}")
+    private double unassignedPatientRatio;
+
+    @Value("${app.loadgen.medications-per-patient:8}")
+    private int medicationsPerPatient;
+
+    @Value("${app.loadgen.active-medication-ratio:0.6}")
+    private double activeMedicationRatio;
+
+    @Value("${app.loadgen.history-years:2}")
+    private double historyYears;
+
+    @Value("${app.loadgen.end-date:}")
+    private String endDate;
+
+    @Value("${app.loadgen.adherence.mean:0.8}")
+    private double adherenceMean;
+
+    @Value("${app.loadgen.adherence.concentration:8}")
+    private double adherenceConcentration;
+
+    @Value("${app.loadgen.threads:4}")
+    private int threads;
+
+    @Value("${app.loadgen.patients-per-block:500}")
+    private int patientsPerBlock;
+
+    @Value("${app.loadgen.batch-size:5000}")
+    private int batchSize;
+
+    private record ClinicRow(String id, List<String> doctors) {
+    }
+
+    private record Block(int index, ClinicRow clinic, long firstPatient, int patients) {
+    }
+
+    private static final class ScheduleRow {
+        final byte[] id;
+        final byte[] patientId;
+        final double adherence;
+        final LocalDate from;
+        final LocalDate to;
+        int taken;
+        int missed;
+
+        ScheduleRow(byte[] id, byte[] patientId, double adherence, LocalDate from, LocalDate to) {
+            this.id = id;
+            this.patientId = patientId;
+            this.adherence = adherence;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        generate(dataSource);
+    }
+
+    /**
+     * Fills an empty, migrated schema. Returns the number of intake rows written (0 if clinics exist).
+     */
+    public long generate(DataSource target) throws SQLException, InterruptedException {
+        if (adherenceMean <= 0 || adherenceMean >= 1 || adherenceConcentration <= 0) {
+            throw new IllegalArgumentException("app.loadgen.adherence.mean must be in (0, 1) and concentration positive");
+        }
+        try (Connection connection = target.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM Clinic")) {
+            rs.next();
+            if (rs.getLong(1) > 0) {
+                logger.info("Load data: clinics exist, skipping");
+                return 0;
+            }
+        }
+
+        LocalDate end = endDate.isBlank() ? LocalDate.now() : LocalDate.parse(endDate);
+        LocalDate start = end.minusDays(Math.max(1, Math.round(historyYears * 365)) - 1);
+        long idBaseMillis = start.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long started = System.nanoTime();
+
+        List<ClinicRow> clinicRows = writeClinicsAndDoctors(target);
+        List<Block> blocks = new ArrayList<>();
+        long patientNumber = 0;
+        for (ClinicRow clinic : clinicRows) {
+            for (int offset = 0; offset < patientsPerClinic; offset += patientsPerBlock) {
+                int size = Math.min(patientsPerBlock, patientsPerClinic - offset);
+                blocks.add(new Block(blocks.size(), clinic, patientNumber, size));
+                patientNumber += size;
+            }
+        }
+        logger.info("Load data: {} clinics, {} patients in {} blocks, history {} to {}, {} threads",
+                clinicRows.size(), patientNumber, blocks.size(), start, end, threads);
+
+        AtomicLong intakeRows = new AtomicLong();
+        AtomicLong blocksDone = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Block block : blocks) {
+                futures.add(pool.submit(() -> {
+                    long rows = writeBlock(target, block, start, end, idBaseMillis);
+                    long total = intakeRows.addAndGet(rows);
+                    long seconds = Math.max(1, (System.nanoTime() - started) / 1_000_000_000L);
+                    logger.info("Load data: block {}/{} done, {} intake rows so far ({} rows/s)",
+                            blocksDone.incrementAndGet(), blocks.size(), total, total / seconds);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof SQLException sql ? sql : new IllegalStateException("Load data failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        logger.info("Load data: done, {} intake rows in {} s", intakeRows.get(), (System.nanoTime() - started) / 1_000_000_000L);
+        return intakeRows.get();
+    }
+
+    private List<ClinicRow> writeClinicsAndDoctors(DataSource target) throws SQLException {
+        Random random = new Random(seed);
+        Faker faker = new Faker(new Locale("en-SG"), random);
+        List<ClinicRow> rows = new ArrayList<>();
+        try (Connection connection = target.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement clinic = connection.prepareStatement("INSERT INTO Clinic (Clinic_UUID, Clinic_Name, " +
+                    "Email_Domain, Require_Email_Verification) VALUES (?, ?, ?, ?)");
+                 PreparedStatement doctor = connection.prepareStatement("INSERT INTO Doctor (MCR_No, Password, FirstName, " +
+                         "LastName, Email, Clinic_UUID) VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int c = 0; c < clinics; c++) {
+                    String id = UUID.nameUUIDFromBytes(("clinic-" + seed + "-" + c).getBytes(StandardCharsets.UTF_8)).toString();
+                    String domain = String.format("clinic%03d.example.com", c + 1);
+                    clinic.setString(1, id);
+                    clinic.setString(2, String.format("Load Test Clinic %03d", c + 1));
+                    clinic.setString(3, domain);
+                    clinic.setBoolean(4, true);
+                    clinic.addBatch();
+
+                    List<String> doctors = new ArrayList<>();
+                    for (int d = 0; d < doctorsPerClinic; d++) {
+                        // M + 5 digits + letter, unique up to 2.6 million doctors
+                        int number = c * doctorsPerClinic + d;
+                        String mcrNo = "M" + String.format("%05d", number % 100_000) + (char) ('A' + number / 100_000 % 26);
+                        String firstName = faker.name().firstName();
+                        String lastName = faker.name().lastName();
+                        doctor.setString(1, mcrNo);
+                        doctor.setString(2, faker.internet().password(8, 12));
+                        doctor.setString(3, firstName);
+                        doctor.setString(4, lastName);
+                        doctor.setString(5, mcrNo.toLowerCase(Locale.ROOT) + "@" + domain);
+                        doctor.setString(6, id);
+                        doctor.addBatch();
+                        doctors.add(mcrNo);
+                    }
+                    rows.add(new ClinicRow(id, doctors));
+                }
+                clinic.executeBatch();
+                doctor.executeBatch();
+                connection.commit();
+            }
+        }
+        return rows;
+    }
+
+    private long writeBlock(DataSource target, Block block, LocalDate start, LocalDate end, long idBaseMillis) throws SQLException {
+        Random random = new Random(seed ^ 0x9E3779B97F4A7C15L * (block.index() + 1));
+        Faker faker = new Faker(new Locale("en-SG"), random);
+        SeededUuids ids = new SeededUuids(idBaseMillis + block.index() * BLOCK_ID_SPAN_MILLIS, random);
+        int historyDays = (int) (end.toEpochDay() - start.toEpochDay()) + 1;
+
+        try (Connection connection = target.getConnection()) {
+            connection.setAutoCommit(false);
+            boolean mySql = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+            if (mySql) {
+                // the generator keeps keys unique and parents ahead of children itself
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET SESSION unique_checks = 0");
+                    statement.execute("SET SESSION foreign_key_checks = 0");
+                }
+            }
+            try (Batch patients = new Batch(connection, PATIENT_SQL);
+                 Batch medications = new Batch(connection, MEDICATION_SQL);
+                 Batch links = new Batch(connection, LINK_SQL);
+                 Batch schedules = new Batch(connection, SCHEDULE_SQL);
+                 Batch intakes = new Batch(connection, INTAKE_SQL);
+                 Batch rollups = new Batch(connection, ROLLUP_SQL)) {
+
+                List<ScheduleRow> scheduleRows = new ArrayList<>();
+                for (int i = 0; i < block.patients(); i++) {
+                    long number = block.firstPatient() + i;
+                    byte[] patientId = ids.next();
+                    double adherence = beta(random, adherenceMean * adherenceConcentration,
+                            (1 - adherenceMean) * adherenceConcentration);
+                    writePatient(patients, faker, random, block.clinic(), number, patientId, end);
+
+                    List<String> names = new ArrayList<>(MEDICATIONS);
+                    Collections.shuffle(names, random);
+                    for (int m = 0; m < medicationsPerPatient; m++) {
+                        String name = names.get(m % names.size());
+                        // a name comes round again only after all the others, and then only as a past prescription
+                        boolean active = m < names.size() && random.nextDouble() < activeMedicationRatio;
+                        LocalDate from = start.plusDays(random.nextInt(historyDays));
+                        LocalDate to = active ? end : from.plusDays(random.nextInt((int) (end.toEpochDay() - from.toEpochDay()) + 1));
+                        byte[] medicationId = ids.next();
+                        int frequency = random.nextInt(3) + 1;
+                        int quantity = random.nextInt(2) + 1;
+
+                        medications.set(1, medicationId);
+                        medications.set(2, name);
+                        medications.set(3, quantity + " tablet" + (quantity > 1 ? "s" : ""));
+                        medications.set(4, frequency);
+                        medications.set(5, random.nextInt(100) < 70 ? (random.nextBoolean() ? "Every morning" : "Every night") : null);
+                        medications.set(6, "Follow doctor's advice.");
+                        medications.set(7, null);
+                        medications.set(8, active);
+                        medications.add();
+                        links.set(1, patientId);
+                        links.set(2, medicationId);
+                        links.add();
+
+                        List<LocalTime> times = frequency == 1
+                                ? List.of(List.of(MORNING, AFTERNOON, EVENING).get(random.nextInt(3)))
+                                : frequency == 2 ? List.of(MORNING, EVENING) : List.of(MORNING, AFTERNOON, EVENING);
+                        for (LocalTime time : times) {
+                            ScheduleRow schedule = new ScheduleRow(ids.next(), patientId, adherence, from, to);
+                            schedules.set(1, schedule.id);
+                            schedules.set(2, time);
+                            schedules.set(3, active);
+                            schedules.set(4, from.atStartOfDay());
+                            schedules.set(5, medicationId);
+                            schedules.set(6, patientId);
+                            schedules.add();
+                            scheduleRows.add(schedule);
+                        }
+                    }
+                    if (i == block.patients() - 1 || patients.full() || medications.full() || links.full() || schedules.full()) {
+                        // in foreign key order, so every row finds its parents; all of them are committed
+                        // before the first intake row refers to them
+                        patients.flush();
+                        medications.flush();
+                        links.flush();
+                        schedules.flush();
+                        connection.commit();
+                    }
+                }
+
+                long rows = 0;
+                for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+                    for (ScheduleRow schedule : scheduleRows) {
+                        if (day.isBefore(schedule.from) || day.isAfter(schedule.to)) {
+                            continue;
+                        }
+                        boolean taken = random.nextDouble() < schedule.adherence;
+                        if (taken) {
+                            schedule.taken++;
+                        } else {
+                            schedule.missed++;
+                        }
+                        intakes.set(1, ids.next());
+                        intakes.set(2, day);
+                        intakes.set(3, taken);
+                        intakes.set(4, schedule.patientId);
+                        intakes.set(5, schedule.id);
+                        intakes.add();
+                        rows++;
+                        if (intakes.full()) {
+                            intakes.flush();
+                            connection.commit();
+                        }
+                    }
+                    if (day.equals(end) || day.getMonth() != day.plusDays(1).getMonth()) {
+                        LocalDate periodMonth = day.withDayOfMonth(1);
+                        for (ScheduleRow schedule : scheduleRows) {
+                            if (schedule.taken + schedule.missed > 0) {
+                                rollups.set(1, ids.next());
+                                rollups.set(2, periodMonth);
+                                rollups.set(3, schedule.taken);
+                                rollups.set(4, schedule.missed);
+                                rollups.set(5, schedule.id);
+                                rollups.add();
+                                if (rollups.full()) {
+                                    rollups.flush();
+                                    connection.commit();
+                                }
+                                schedule.taken = 0;
+                                schedule.missed = 0;
+                            }
+                        }
+                    }
+                }
+                intakes.flush();
+                rollups.flush();
+                connection.commit();
+                return rows;
+            }
+        }
+    }
+
+    private void writePatient(Batch patients, Faker faker, Random random, ClinicRow clinic, long number,
+                              byte[] patientId, LocalDate end) throws SQLException {
+        String firstName = faker.name().firstName();
+        String lastName = faker.name().lastName();
+        List<String> doctors = clinic.doctors();
+        boolean assigned = !doctors.isEmpty() && random.nextDouble() >= unassignedPatientRatio;
+
+        patients.set(1, patientId);
+        // the running patient number keeps email and NRIC unique across the whole data set
+        patients.set(2, (firstName + "." + lastName).toLowerCase(Locale.ROOT).replace(" ", ".") + number
+                + "@" + EMAIL_DOMAINS.get(random.nextInt(EMAIL_DOMAINS.size())));
+        patients.set(3, faker.internet().password(8, 12));
+        patients.set(4, "S" + String.format("%07d", number % 10_000_000) + (char) ('A' + number / 10_000_000 % 26));
+        patients.set(5, firstName);
+        patients.set(6, lastName);
+        patients.set(7, random.nextBoolean() ? "Male" : "Female");
+        patients.set(8, end.minusYears(60).minusDays(random.nextInt(30 * 365)));
+        patients.set(9, assigned ? doctors.get(random.nextInt(doctors.size())) : null);
+        patients.set(10, clinic.id());
+        patients.add();
+    }
+
+    // Beta(a, b) from two Gamma draws
+    private static double beta(Random random, double a, double b) {
+        double x = gamma(random, a);
+        double y = gamma(random, b);
+        return x / (x + y);
+    }
+
+    // Marsaglia and Tsang; shapes below 1 are boosted by one and scaled back down
+    private static double gamma(Random random, double shape) {
+        if (shape < 1) {
+            return gamma(random, shape + 1) * Math.pow(random.nextDouble(), 1 / shape);
+        }
+        double d = shape - 1.0 / 3;
+        double c = 1 / Math.sqrt(9 * d);
+        while (true) {
+            double x;
+            double v;
+            do {
+                x = random.nextGaussian();
+                v = 1 + c * x;
+            } while (v <= 0);
+            v = v * v * v;
+            double u = random.nextDouble();
+            if (u < 1 - 0.0331 * x * x * x * x || Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) {
+                return d * v;
+            }
+        }
+    }
+
+    /**
+     * Version 7 UUIDs in the layout of TimeOrderedUuidGenerator, but with the timestamp counted up from a
+     * fixed start and the random bits drawn from the block's Random, so they repeat from run to run.
+     */
+    private static final class SeededUuids {
+        private final Random random;
+        private long state;
+
+        SeededUuids(long startMillis, Random random) {
+            this.random = random;
+            this.state = startMillis << 12;
+        }
+
+        byte[] next() {
+            long current = state++;
+            long msb = (current >>> 12) << 16 | 0x7000L | (current & 0xFFFL);
+            long lsb = random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+            return ByteBuffer.allocate(16).putLong(msb).putLong(lsb).array();
+        }
+    }
+
+    /**
+     * One insert statement and the rows added to it since it was last sent.
+     */
+    private final class Batch implements AutoCloseable {
+        private final PreparedStatement statement;
+        private int pending;
+
+        Batch(Connection connection, String sql) throws SQLException {
+            this.statement = connection.prepareStatement(sql);
+        }
+
+        void set(int index, Object value) throws SQLException {
+            if (value == null) {
+                // the only nullable columns written are VARCHARs
+                statement.setNull(index, Types.VARCHAR);
+            } else {
+                statement.setObject(index, value);
+            }
+        }
+
+        void add() throws SQLException {
+            statement.addBatch();
+            pending++;
+        }
+
+        boolean full() {
+            return pending >= batchSize;
+        }
+
+        void flush() throws SQLException {
+            if (pending > 0) {
+                statement.executeBatch();
+                pending = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            statement.close();
+        }
+    }
+}
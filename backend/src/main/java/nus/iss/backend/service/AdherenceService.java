@@ -0,0 +1,52 @@
+package nus.iss.backend.service;
+
+import nus.iss.backend.dto.AdherenceConsistencyReport;
+import nus.iss.backend.model.Medication;
+import nus.iss.backend.model.Schedule;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+@Service
+@Transactional
+public interface AdherenceService {
+
+    /**
+     * Count one logged intake in the schedule's monthly rollup.
+     * Must run in the same transaction as the intake insert.
+     */
+    void recordIntake(Schedule schedule, LocalDate loggedDate, boolean isTaken);
+
+    /**
+     * Add pre-aggregated counts for one (schedule, month) pair.
+     */
+    void applyDelta(Schedule schedule, YearMonth month, int takenDelta, int missedDelta);
+
+    /**
+     * Drop rollup rows of a medication's inactive schedules created before the cutoff, in one statement.
+     */
+    void removeOldInactiveSchedules(Medication medication, LocalDateTime cutoffDate);
+
+    boolean hasMissedDose(UUID scheduleId, YearMonth month);
+
+    Set<UUID> findMedicationIdsWithMissedDose(Collection<UUID> medicationIds, YearMonth month);
+
+    Map<UUID, Set<UUID>> findMedicationIdsWithMissedDoseByPatient(Collection<UUID> patientIds, YearMonth month);
+
+    /**
+     * Rebuild the whole rollup from Medication_Intake_History. Returns the number of rows written.
+     */
+    int backfill();
+
+    /**
+     * Compare the rollup against the raw intake table.
+     */
+    AdherenceConsistencyReport checkConsistency();
+}
@@ -0,0 +1,20 @@
+package nus.iss.backend.service;
+
+import nus.iss.backend.dto.DashboardSection;
+import nus.iss.backend.dto.PatientDashboard;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.UUID;
+
+// Deliberately not @Transactional: the sections are loaded on other threads, each in its own
+// read-only transaction, and an outer one would only hold a second connection while waiting.
+@Service
+public interface DashboardService {
+
+    /**
+     * Loads the requested sections of the patient's dashboard concurrently.
+     * Throws ItemNotFound if the patient does not exist.
+     */
+    PatientDashboard getDashboard(UUID patientId, Set<DashboardSection> sections);
+}
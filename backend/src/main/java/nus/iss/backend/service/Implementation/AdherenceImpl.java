@@ -0,0 +1,123 @@
+package nus.iss.backend.service.Implementation;
+
+import nus.iss.backend.dto.AdherenceConsistencyReport;
+import nus.iss.backend.model.Medication;
+import nus.iss.backend.model.Schedule;
+import nus.iss.backend.model.TimeOrderedUuidGenerator;
+import nus.iss.backend.repository.IntakeArchiveRepository;
+import nus.iss.backend.repository.ScheduleAdherenceRepository;
+import nus.iss.backend.service.AdherenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+@Service
+@Transactional
+public class AdherenceImpl implements AdherenceService {
+    private static final Logger logger = LoggerFactory.getLogger(AdherenceImpl.class);
+
+    // first month the rollup can be rebuilt from when nothing has been archived yet
+    private static final LocalDate EPOCH = LocalDate.of(1970, 1, 1);
+
+    @Autowired
+    private ScheduleAdherenceRepository adherenceRepo;
+
+    @Autowired
+    private IntakeArchiveRepository archiveRepo;
+
+    @Override
+    public void recordIntake(Schedule schedule, LocalDate loggedDate, boolean isTaken) {
+        if (loggedDate == null) {
+            return;
+        }
+        applyDelta(schedule, YearMonth.from(loggedDate), isTaken ? 1 : 0, isTaken ? 0 : 1);
+    }
+
+    @Override
+    public void applyDelta(Schedule schedule, YearMonth month, int takenDelta, int missedDelta) {
+        adherenceRepo.upsertCounts(toBytes(TimeOrderedUuidGenerator.next()), toBytes(schedule.getId()),
+                month.atDay(1), takenDelta, missedDelta);
+    }
+
+    @Override
+    public void removeOldInactiveSchedules(Medication medication, LocalDateTime cutoffDate) {
+        adherenceRepo.deleteByInactiveSchedulesCreatedBefore(medication, cutoffDate);
+    }
+
+    @Override
+    public boolean hasMissedDose(UUID scheduleId, YearMonth month) {
+        return adherenceRepo.findBySchedule_IdAndPeriodMonth(scheduleId, month.atDay(1))
+                .map(row -> row.getMissedCount() > 0)
+                .orElse(false);
+    }
+
+    @Override
+    public Set<UUID> findMedicationIdsWithMissedDose(Collection<UUID> medicationIds, YearMonth month) {
+        if (medicationIds == null || medicationIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(adherenceRepo.findMedicationIdsWithMissedDose(medicationIds, month.atDay(1)));
+    }
+
+    @Override
+    public Map<UUID, Set<UUID>> findMedicationIdsWithMissedDoseByPatient(Collection<UUID> patientIds, YearMonth month) {
+        if (patientIds == null || patientIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<UUID, Set<UUID>> result = new HashMap<>();
+        for (Object[] row : adherenceRepo.findPatientMedicationIdsWithMissedDose(patientIds, month.atDay(1))) {
+            result.computeIfAbsent((UUID) row[0], k -> new HashSet<>()).add((UUID) row[1]);
+        }
+        return result;
+    }
+
+    @Override
+    public int backfill() {
+        LocalDate since = hotSince();
+        // without the lock a log committed between the delete and the insert would be counted twice or not at all
+        adherenceRepo.lockHistorySince(since);
+        int removed = adherenceRepo.deleteRowsSince(since);
+        int written = adherenceRepo.insertFromHistorySince(since);
+        logger.info("Adherence rollup rebuilt from {}: {} rows removed, {} rows written", since, removed, written);
+        return written;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AdherenceConsistencyReport checkConsistency() {
+        LocalDate since = hotSince();
+        AdherenceConsistencyReport report = new AdherenceConsistencyReport();
+        for (Object[] row : adherenceRepo.findMismatchedRowsSince(since)) {
+            report.getMismatched().add(row[0] + "@" + row[1]);
+        }
+        report.setOrphanRows(adherenceRepo.countOrphanRowsSince(since));
+        return report;
+    }
+
+    /**
+     * First month whose intake rows are all still in the hot table. The retention job archives whole
+     * months, so everything before it is only in the archive and its rollup rows cannot be re-derived.
+     */
+    private LocalDate hotSince() {
+        LocalDate latestArchived = archiveRepo.findLatestLoggedDate();
+        return latestArchived == null ? EPOCH : latestArchived.withDayOfMonth(1).plusMonths(1);
+    }
+
+    // the BINARY(16) form of an id, for the native upsert
+    private static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+}
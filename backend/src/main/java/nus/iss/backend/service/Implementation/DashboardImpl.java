@@ -0,0 +1,149 @@
+package nus.iss.backend.service.Implementation;
+
+import nus.iss.backend.dao.MissedDoseResponse;
+import nus.iss.backend.dto.DashboardSection;
+import nus.iss.backend.dto.IntakeHistoryResponse;
+import nus.iss.backend.dto.PatientDashboard;
+import nus.iss.backend.dto.PatientSummary;
+import nus.iss.backend.dto.ScheduleResponse;
+import nus.iss.backend.exceptions.ItemNotFound;
+import nus.iss.backend.service.DashboardService;
+import nus.iss.backend.service.PatientService;
+import nus.iss.backend.service.ScheduleService;
+import nus.iss.backend.util.VerifiedPatient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Each section is one fixed-size set of queries through the existing service methods
+ * (profile: 1, medications: 3, schedule: 1-2 via the agenda cache, intake: 1), run side by side.
+ * Every section running on its own thread holds a pooled connection, so side-by-side sections across all
+ * requests share half of the Hikari pool; a section that finds no permit free runs on the request thread.
+ */
+@Service
+public class DashboardImpl implements DashboardService {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private ScheduleService scheduleService;
+
+    @Autowired
+    @Qualifier("virtualThreadExecutor")
+    private ExecutorService executor;
+
+    @Value("${app.dashboard.recent-intake-days:7}")
+    private int recentIntakeDays;
+
+    @Value("${app.intake.history.max-page-size:500}")
+    private int recentIntakeLimit;
+
+    private Semaphore sectionPermits;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    void setPoolSize(int poolSize) {
+        sectionPermits = new Semaphore(Math.max(1, poolSize / 2));
+    }
+
+    @Override
+    public PatientDashboard getDashboard(UUID patientId, Set<DashboardSection> sections) {
+        LocalDate today = LocalDate.now();
+
+        // The profile lookup doubles as the existence check; without it the schedule and intake
+        // sections would answer an unknown id with empty lists, so fall back to the version lookup.
+        // A patient verified by the app's token needs neither.
+        CompletableFuture<PatientSummary> profile = null;
+        CompletableFuture<Boolean> exists;
+        if (sections.contains(DashboardSection.PROFILE)) {
+            profile = load(() -> patientService.findPatientSummary(patientId).orElse(null));
+            exists = profile.thenApply(Objects::nonNull);
+        } else if (VerifiedPatient.is(patientId)) {
+            exists = CompletableFuture.completedFuture(true);
+        } else {
+            exists = load(() -> patientService.findDataVersion(patientId).isPresent());
+        }
+        CompletableFuture<List<MissedDoseResponse>> medications = loadIf(sections.contains(DashboardSection.MEDICATIONS),
+                () -> patientService.getPatientMedicationsWithMissedDose(patientId).stream()
+                        .filter(MissedDoseResponse::isActive)
+                        .toList());
+        CompletableFuture<List<ScheduleResponse>> schedule = loadIf(sections.contains(DashboardSection.SCHEDULE),
+                () -> scheduleService.getDailyScheduleForPatient(patientId));
+        CompletableFuture<List<IntakeHistoryResponse>> intake = loadIf(sections.contains(DashboardSection.INTAKE),
+                () -> patientService.getIntakeHistoryPage(patientId,
+                        today.minusDays(recentIntakeDays - 1L), today, null, recentIntakeLimit).getItems());
+
+        try {
+            CompletableFuture.allOf(Stream.of(exists, medications, schedule, intake)
+                    .filter(Objects::nonNull)
+                    .toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            // rethrow the section's own exception (e.g. ItemNotFound) so the controller can map it
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        if (!exists.join()) {
+            throw new ItemNotFound("Patient not found!");
+        }
+
+        PatientDashboard dashboard = new PatientDashboard();
+        dashboard.setProfile(profile == null ? null : profile.join());
+        dashboard.setMedications(medications == null ? null : medications.join());
+        dashboard.setTodaySchedule(schedule == null ? null : schedule.join());
+        dashboard.setRecentIntake(intake == null ? null : intake.join());
+        return dashboard;
+    }
+
+    private <T> CompletableFuture<T> loadIf(boolean requested, Supplier<T> section) {
+        return requested ? load(section) : null;
+    }
+
+    private <T> CompletableFuture<T> load(Supplier<T> section) {
+        if (!sectionPermits.tryAcquire()) {
+            return loadHere(section);
+        }
+        // VerifiedPatient is read from the request attributes, which are bound to the request thread
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                RequestContextHolder.setRequestAttributes(attributes);
+                try {
+                    return section.get();
+                } finally {
+                    RequestContextHolder.resetRequestAttributes();
+                    sectionPermits.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            sectionPermits.release();
+            return loadHere(section);
+        }
+    }
+
+    private static <T> CompletableFuture<T> loadHere(Supplier<T> section) {
+        try {
+            return CompletableFuture.completedFuture(section.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
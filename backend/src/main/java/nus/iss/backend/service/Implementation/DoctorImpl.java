@@ -111,7 +111,10 @@ public class DoctorImpl implements DoctorService {
 
         // update clinic logic
         if(request.getClinic() != null){
-            Clinic newClinic = request.getClinic();
+            // use the managed clinic, not the request copy, so the cached Doctor entry and the returned
+            // doctor point at the stored clinic
+            Clinic newClinic = clinicRepository.findById(request.getClinic().getId())
+                    .orElseThrow(() -> new ItemNotFound("Clinic not found!"));
             // check if the clinic is different from the current one
             if (!newClinic.getId().equals(doctor.getClinic().getId())) {
                 logger.info("Doctor {} changing clinic from {} to {}",
@@ -1,9 +1,11 @@
 package nus.iss.backend.service.Implementation;
 
+import nus.iss.backend.dao.IntakeBatchItemResult;
 import nus.iss.backend.dao.IntakeLogResponseWeb;
 import nus.iss.backend.dao.IntakeReqMobile;
 import nus.iss.backend.dao.UpdateDoctorNotesReq;
 import nus.iss.backend.dto.IntakeHistoryResponse;    // ← DTO for patient intake history
+import nus.iss.backend.exceptions.DuplicationException;
 import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.model.IntakeHistory;
 import nus.iss.backend.model.Patient;
@@ -11,21 +13,40 @@ import nus.iss.backend.model.Schedule;
 import nus.iss.backend.repository.IntakeRepository;
 import nus.iss.backend.repository.PatientRepository;
 import nus.iss.backend.repository.ScheduleRepository;
+import nus.iss.backend.service.AdherenceService;
 import nus.iss.backend.service.IntakeHistoryService;
 import nus.iss.backend.util.LogSanitizer;
+import nus.iss.backend.util.RecentRequestCache;
+import nus.iss.backend.util.VerifiedPatient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;                       // ← for combining date + time
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;                         // ← for sorting DTOs
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
@@ -41,19 +62,228 @@ public class IntakeHistoryImpl implements IntakeHistoryService {
     @Autowired
     private ScheduleRepository scheduleRepo;
 
+    @Autowired
+    private AdherenceService adherenceService;
+
+    @Autowired
+    private RecentRequestCache recentRequestCache;
+
+    // name of the unique key on Medication_Intake_History.Client_Request_Id
+    private static final String CLIENT_REQUEST_KEY = "uk_intake_client_request";
+
     @Override
     public void createIntakeHistory(IntakeReqMobile intakeReqMobile) {
+        String clientRequestId = normaliseClientRequestId(intakeReqMobile.getClientRequestId());
+        if (clientRequestId != null) {
+            // retried request: answer from memory first, then from the persisted key
+            if (recentRequestCache.contains(clientRequestId)) {
+                logger.info("Duplicate intake request {} answered from cache", LogSanitizer.sanitizeForLog(clientRequestId));
+                return;
+            }
+            if (intakeRepo.existsByClientRequestId(clientRequestId)) {
+                recentRequestCache.add(clientRequestId);
+                logger.info("Duplicate intake request {} already stored", LogSanitizer.sanitizeForLog(clientRequestId));
+                return;
+            }
+        }
+
         Schedule schedule = scheduleRepo.findById(intakeReqMobile.getScheduleId())
                 .orElseThrow(() -> new RuntimeException("Schedule not found"));
-        Patient patient = patientRepo.findById(intakeReqMobile.getPatientId())
-            .orElseThrow(() -> new ItemNotFound("Patient not found!"));
+        Patient patient = patientFor(intakeReqMobile.getPatientId());
+        if (!belongsTo(schedule, patient)) {
+            throw new ItemNotFound("Schedule not found");
+        }
         IntakeHistory intakeHistory = new IntakeHistory();
         intakeHistory.setPatient(patient);
         intakeHistory.setLoggedDate(LocalDate.parse(intakeReqMobile.getLoggedDate()));
         intakeHistory.setDoctorNote("");
         intakeHistory.setTaken(intakeReqMobile.getIsTaken());
         intakeHistory.setSchedule(schedule);
-        intakeRepo.saveAndFlush(intakeHistory);
+        intakeHistory.setClientRequestId(clientRequestId);
+        try {
+            intakeRepo.saveAndFlush(intakeHistory);
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent retry won the race on the unique key
+            throw asDuplicate(e, clientRequestId);
+        }
+        // same transaction, so the rollup never drifts from the raw rows
+        adherenceService.recordIntake(schedule, intakeHistory.getLoggedDate(), intakeHistory.isTaken());
+        // no data-version bump: the missed-dose part of the /medications ETag is read from the rollup
+        if (clientRequestId != null) {
+            rememberAfterCommit(List.of(clientRequestId));
+        }
+    }
+
+    // The app's token proves its patient exists, so a reference does instead of loading the row.
+    // A token for another patient than the one named is answered like an unknown patient.
+    private Patient patientFor(UUID patientId) {
+        Optional<UUID> verified = VerifiedPatient.current();
+        if (verified.isPresent()) {
+            if (!verified.get().equals(patientId)) {
+                throw new ItemNotFound("Patient not found!");
+            }
+            return patientRepo.getReferenceById(patientId);
+        }
+        return patientRepo.findById(patientId)
+            .orElseThrow(() -> new ItemNotFound("Patient not found!"));
+    }
+
+    // Another patient's schedule is answered like an unknown one, so a token cannot log doses into
+    // someone else's rollup. Reads only the schedule's foreign key, the patient proxy stays uninitialised.
+    private static boolean belongsTo(Schedule schedule, Patient patient) {
+        return schedule.getPatient() != null && schedule.getPatient().getId().equals(patient.getId());
+    }
+
+    // Batch replay: schedules and patients are resolved with one query each, rows are inserted
+    // through Hibernate's JDBC batching, and the adherence rollup gets one update per (schedule, month).
+    @Override
+    public List<IntakeBatchItemResult> createIntakeHistoryBatch(List<IntakeReqMobile> requests) {
+        Map<UUID, Schedule> schedules = scheduleRepo.findAllById(requests.stream()
+                        .filter(Objects::nonNull).map(IntakeReqMobile::getScheduleId)
+                        .filter(Objects::nonNull).distinct().toList())
+                .stream().collect(Collectors.toMap(Schedule::getId, Function.identity()));
+        // with the app's token only its own patient can be logged for, and that one needs no lookup
+        Optional<UUID> verified = VerifiedPatient.current();
+        Map<UUID, Patient> patients = verified.isPresent()
+                ? Map.of(verified.get(), patientRepo.getReferenceById(verified.get()))
+                : patientRepo.findAllById(requests.stream()
+                        .filter(Objects::nonNull).map(IntakeReqMobile::getPatientId)
+                        .filter(Objects::nonNull).distinct().toList())
+                .stream().collect(Collectors.toMap(Patient::getId, Function.identity()));
+
+        // every clientRequestId already stored, found with one query (the cache answers the rest)
+        List<String> uncachedIds = requests.stream()
+                .filter(Objects::nonNull)
+                .map(req -> normaliseClientRequestId(req.getClientRequestId()))
+                .filter(id -> id != null && !recentRequestCache.contains(id))
+                .distinct().toList();
+        Set<String> storedIds = uncachedIds.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(intakeRepo.findExistingClientRequestIds(uncachedIds));
+        Set<String> seenIds = new HashSet<>();
+
+        List<IntakeBatchItemResult> results = new ArrayList<>(requests.size());
+        List<IntakeHistory> toInsert = new ArrayList<>();
+        List<IntakeBatchItemResult> insertedResults = new ArrayList<>();
+        Map<Schedule, Map<YearMonth, int[]>> rollupDeltas = new HashMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            IntakeReqMobile req = requests.get(i);
+            String error = validateBatchItem(req);
+            if (error != null) {
+                results.add(IntakeBatchItemResult.of(i, req, IntakeBatchItemResult.BAD_REQUEST, error));
+                continue;
+            }
+            String clientRequestId = normaliseClientRequestId(req.getClientRequestId());
+            if (clientRequestId != null && (recentRequestCache.contains(clientRequestId)
+                    || storedIds.contains(clientRequestId) || !seenIds.add(clientRequestId))) {
+                results.add(IntakeBatchItemResult.of(i, req, IntakeBatchItemResult.DUPLICATE, null));
+                continue;
+            }
+            LocalDate loggedDate;
+            try {
+                loggedDate = LocalDate.parse(req.getLoggedDate());
+            } catch (DateTimeParseException e) {
+                results.add(IntakeBatchItemResult.of(i, req, IntakeBatchItemResult.BAD_REQUEST,
+                        "loggedDate must be yyyy-MM-dd"));
+                continue;
+            }
+            Schedule schedule = schedules.get(req.getScheduleId());
+            if (schedule == null) {
+                results.add(IntakeBatchItemResult.of(i, req, IntakeBatchItemResult.NOT_FOUND, "Schedule not found"));
+                continue;
+            }
+            Patient patient = patients.get(req.getPatientId());
+            if (patient == null) {
+                results.add(IntakeBatchItemResult.of(i, req, IntakeBatchItemResult.NOT_FOUND, "Patient not found!"));
+                continue;
+            }
+            if (!belongsTo(schedule, patient)) {
+                results.add(IntakeBatchItemResult.of(i, req, IntakeBatchItemResult.NOT_FOUND, "Schedule not found"));
+                continue;
+            }
+
+            IntakeHistory intakeHistory = new IntakeHistory();
+            intakeHistory.setPatient(patient);
+            intakeHistory.setLoggedDate(loggedDate);
+            intakeHistory.setDoctorNote("");
+            intakeHistory.setTaken(req.getIsTaken());
+            intakeHistory.setSchedule(schedule);
+            intakeHistory.setClientRequestId(clientRequestId);
+            toInsert.add(intakeHistory);
+
+            int[] delta = rollupDeltas.computeIfAbsent(schedule, k -> new HashMap<>())
+                    .computeIfAbsent(YearMonth.from(loggedDate), k -> new int[2]);
+            delta[req.getIsTaken() ? 0 : 1]++;
+
+            IntakeBatchItemResult result = IntakeBatchItemResult.of(i, req, IntakeBatchItemResult.CREATED, null);
+            results.add(result);
+            insertedResults.add(result);
+        }
+
+        if (!toInsert.isEmpty()) {
+            try {
+                intakeRepo.saveAll(toInsert);
+                intakeRepo.flush();
+            } catch (DataIntegrityViolationException e) {
+                // a concurrent replay stored some of these first; the whole batch rolls back and
+                // the client's retry will see them as DUPLICATE
+                throw asDuplicate(e, null);
+            }
+            for (int i = 0; i < toInsert.size(); i++) {
+                insertedResults.get(i).setIntakeHistoryId(toInsert.get(i).getId());
+            }
+            rollupDeltas.forEach((schedule, byMonth) -> byMonth.forEach((month, delta) ->
+                    adherenceService.applyDelta(schedule, month, delta[0], delta[1])));
+            rememberAfterCommit(toInsert.stream().map(IntakeHistory::getClientRequestId).toList());
+        }
+        logger.info("Intake batch processed: {} submitted, {} created", requests.size(), toInsert.size());
+        return results;
+    }
+
+    private static String normaliseClientRequestId(String clientRequestId) {
+        if (clientRequestId == null || clientRequestId.isBlank()) {
+            return null;
+        }
+        return clientRequestId.trim();
+    }
+
+    private RuntimeException asDuplicate(DataIntegrityViolationException e, String clientRequestId) {
+        String cause = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        if (!cause.contains(CLIENT_REQUEST_KEY)) {
+            return e;
+        }
+        logger.info("Concurrent duplicate intake request {} rejected by unique key",
+                LogSanitizer.sanitizeForLog(clientRequestId));
+        return new DuplicationException("Intake request already recorded");
+    }
+
+    // only cache ids once the rows are really committed, so a rolled-back insert is never acknowledged
+    private void rememberAfterCommit(List<String> clientRequestIds) {
+        List<String> ids = clientRequestIds.stream().filter(Objects::nonNull).toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ids.forEach(recentRequestCache::add);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ids.forEach(recentRequestCache::add);
+            }
+        });
+    }
+
+    private String validateBatchItem(IntakeReqMobile req) {
+        if (req == null) return "Log entry cannot be null";
+        if (req.getPatientId() == null) return "patientId is required";
+        if (req.getMedicationId() == null) return "medicationId is required";
+        if (req.getScheduleId() == null) return "scheduleId is required";
+        if (req.getIsTaken() == null) return "isTaken is required";
+        if (req.getLoggedDate() == null) return "loggedDate is required";
+        return null;
     }
 
     @Override
@@ -77,6 +307,19 @@ public class IntakeHistoryImpl implements IntakeHistoryService {
         }).toList();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public long streamIntakeLogsForMedication(UUID medicationId, Consumer<IntakeLogResponseWeb> sink) {
+        long[] written = {0};
+        try (Stream<IntakeLogResponseWeb> rows = intakeRepo.streamLogsByMedicationId(medicationId)) {
+            rows.forEach(row -> {
+                sink.accept(row);
+                written[0]++;
+            });
+        }
+        return written[0];
+    }
+
     @Override
     public IntakeHistory updateCreateDoctorNote(UpdateDoctorNotesReq request) {
         Optional<IntakeHistory> lg = intakeRepo.findById(request.getIntakeHistoryId());
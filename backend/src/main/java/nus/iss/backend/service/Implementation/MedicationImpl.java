@@ -1,44 +1,47 @@
 package nus.iss.backend.service.Implementation;
 
 import nus.iss.backend.dto.newMedicationReq;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import nus.iss.backend.dao.ImageOutput;
+import nus.iss.backend.dao.PatientMedicationName;
+import nus.iss.backend.dao.PatientRef;
 import nus.iss.backend.dto.EditMedicationRequest;
+import nus.iss.backend.dto.PrescriptionImportItem;
 import nus.iss.backend.exceptions.DuplicationException;
-import nus.iss.backend.exceptions.InvalidTimeFormatException;
 import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
+import nus.iss.backend.model.PrescriptionImportError;
 import nus.iss.backend.model.Schedule;
+import nus.iss.backend.ocr.ContentHash;
+import nus.iss.backend.ocr.OcrClient;
+import nus.iss.backend.ocr.OcrResultCache;
 import nus.iss.backend.repository.MedicationRepository;
 import nus.iss.backend.repository.PatientRepository;
 import nus.iss.backend.service.MedicationService;
 import nus.iss.backend.service.PatientService;
 import nus.iss.backend.service.ScheduleService;
-import nus.iss.backend.util.ImageToApi;
+import nus.iss.backend.util.DrugNameMatcher;
+import nus.iss.backend.util.ImagePreprocessor;
+import nus.iss.backend.util.MedicationInput;
+import nus.iss.backend.util.PatientAgendaCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.http.HttpHeaders;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.stream.Collectors;
 
 @Service
@@ -53,7 +56,16 @@ public class MedicationImpl implements MedicationService {
     PatientRepository patientRepo;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private OcrClient ocrClient;
+
+    @Autowired
+    private OcrResultCache ocrResultCache;
+
+    @Autowired
+    private ImagePreprocessor imagePreprocessor;
+
+    @Autowired
+    private DrugNameMatcher drugNameMatcher;
 
     @Autowired
     ScheduleService scheduleService;
@@ -61,8 +73,14 @@ public class MedicationImpl implements MedicationService {
     @Autowired
     PatientService patientService;
 
-    private final DateTimeFormatter formatterNoColon = DateTimeFormatter.ofPattern("HHmm");
-    private final DateTimeFormatter formatterWithColon = DateTimeFormatter.ofPattern("HH:mm");
+    @Autowired
+    PatientAgendaCache agendaCache;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private static final String PATIENT_NOT_FOUND = "Patient not found!";
+    private static final String MEDICATION_EXISTS = "Medication already exists for this patient!";
 
     @Override
     public Boolean hasMedicineMissedDose(UUID medicationId) {
@@ -70,16 +88,13 @@ public class MedicationImpl implements MedicationService {
         if (meds == null) {
             throw new ItemNotFound("Medication with ID(" + medicationId + ") does not exist!");
         }
-        List<Schedule> scheduleList = meds.getSchedules();
-
-        // if no schedule means theres no missed dose
-        if (scheduleList == null || scheduleList.isEmpty()) {
-            return false;
-        }
-
-        return scheduleList.stream()
-                .anyMatch(schedule -> scheduleService.hasMissedDose(schedule.getId()));
+        // single aggregate query over all schedules of this medication
+        return findMedicationIdsWithMissedDose(List.of(medicationId)).contains(medicationId);
+    }
 
+    @Override
+    public Set<UUID> findMedicationIdsWithMissedDose(Collection<UUID> medicationIds) {
+        return scheduleService.findMedicationIdsWithMissedDose(medicationIds);
     }
 
     @Override
@@ -101,33 +116,26 @@ public class MedicationImpl implements MedicationService {
         return medicationRepo.save(medication);
     }
 
-    //ML model
+    //ML model: the call runs on OcrClient's HttpClient, not on this thread, and holds no transaction.
+    //A photo seen before (same bytes) is answered from OcrResultCache without calling the model; otherwise
+    //ImagePreprocessor shrinks it to what the model reads before it is uploaded. The name read is matched
+    //against the drug vocabulary.
     @Override
-    public ImageOutput sendToFastAPI(MultipartFile file) throws IOException {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        InputStreamResource fileResource = new ImageToApi(
-                file.getInputStream(), file.getOriginalFilename());
-        body.add("file", fileResource);
-
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-        String fastapiUrl = "http://localhost:8000/api/medication/predict_image";
-
-        ResponseEntity<String> response = restTemplate.postForEntity(fastapiUrl, requestEntity, String.class);
-
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode root = mapper.readTree(response.getBody());
-
-        ImageOutput result = new ImageOutput();
-        result.setMedicationName(root.path("medicationName").asText(""));
-        result.setIntakeQuantity(root.path("intakeQuantity").asText(""));
-        result.setFrequency(root.path("frequency").asInt());
-        result.setInstructions(root.path("instructions").asText(""));
-        result.setNotes(root.path("notes").asText(""));
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<ImageOutput> sendToFastAPI(MultipartFile file) throws IOException {
+        return ocrResultCache.get(ContentHash.of(file),
+                () -> imagePreprocessor.prepare(file, file.getSize(), file.getOriginalFilename(), file.getContentType())
+                        .thenCompose(image -> ocrClient.recognise(image.bytes(), image.filename(), image.contentType())))
+                .thenApply(output -> {
+                    drugNameMatcher.addSuggestedName(output);
+                    return output;
+                });
+    }
 
-        return result;
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<String> suggestMedicationNames(String prefix, int limit) {
+        return drugNameMatcher.complete(prefix, limit);
     }
 
 
@@ -146,37 +154,33 @@ public class MedicationImpl implements MedicationService {
         }
         Patient patient = patientOpt.get();
 
+        //the formatters are for HHMM and HH:MM; all times are checked before anything is written
+        List<LocalTime> times = new ArrayList<>();
+        for (String timeStr : req.getTimes()) {
+            times.add(MedicationInput.parseTime(timeStr));
+        }
+
         //every time will clean all inactive schedules(created more than 90 days) and related intakeHistory
+        //these are bulk statements, so the cost does not grow with the medication's history
         LocalDateTime cutoffDate = LocalDateTime.now().minusDays(90);
         scheduleService.deleteOldInactiveSchedules(med, cutoffDate);
 
         //then deactivate the active schedules before create new ones
-        List<Schedule> activeSchedules = scheduleService.findActiveSchedulesByMedication(med);
-        scheduleService.deactivateSchedules(activeSchedules);
+        List<UUID> deactivatedFor = scheduleService.deactivateSchedulesByMedicationUnmarked(med);
 
         //then update new frequency
         med.setFrequency(req.getFrequency());
         this.saveMedication(med);
 
-        //then create new schedules
-        //the formatters are for HHMM and HH:MM
-        for (String timeStr : req.getTimes()) {
-            if (!timeStr.matches("^\\d{4}$") && !timeStr.matches("^\\d{2}:\\d{2}$")) {
-                throw new InvalidTimeFormatException("Invalid time format: " + timeStr);
-            }
+        //then create new schedules (one insert batch)
+        scheduleService.createSchedulesUnmarked(med, patient, times);
 
-            LocalTime time;
-            try {
-                if (timeStr.contains(":")){
-                    time = LocalTime.parse(timeStr,formatterWithColon);
-                } else {
-                    time = LocalTime.parse(timeStr, formatterNoColon);
-                }
-            } catch (Exception e) {
-                throw new InvalidTimeFormatException("Invalid time format: " + timeStr);
-            }
-            scheduleService.createSchedule(med, patient, time);
-        }
+        // one data-version bump for everything the edit changed; the old schedules went inactive even
+        // when no new times were given
+        Set<UUID> affected = patientIds(med.getPatients());
+        affected.add(patient.getId());
+        affected.addAll(deactivatedFor);
+        markPatientIdsChanged(affected);
         return ResponseEntity.ok().build();
     }
 
@@ -184,20 +188,16 @@ public class MedicationImpl implements MedicationService {
     public Medication createMedication(newMedicationReq req) {
         Patient patient = patientRepo.findPatientById(req.getPatientId());
         if (patient == null) {
-            throw new ItemNotFound("Patient not found!");
+            throw new ItemNotFound(PATIENT_NOT_FOUND);
 
         }
         // check if medication already exists for the patient
         if( medicationExistsForPatient(req.getPatientId(), req.getMedicationName())) {
-            throw new DuplicationException("Medication already exists for this patient!");
+            throw new DuplicationException(MEDICATION_EXISTS);
         }
 
         // capitalize the first letter of each word in medication name to ensure consistency
-        String medicationName = req.getMedicationName().toLowerCase();
-        medicationName = Arrays.stream(medicationName.split(" "))
-                .map(word -> word.substring(0, 1).toUpperCase() + word.substring(1))
-                .collect(Collectors.joining(" "));
-
+        String medicationName = MedicationInput.normalizeName(req.getMedicationName());
 
         Medication med = new Medication();
         med.setMedicationName(medicationName);
@@ -214,14 +214,170 @@ public class MedicationImpl implements MedicationService {
         }
         patient.getMedications().add(med);
         patientRepo.save(patient);
+        markPatientsChanged(List.of(patient));
 
         return med;
     }
 
+    @Override
+    public void deactivateMedication(Medication medication) {
+        medication.setActive(false);
+        medicationRepo.save(medication);
+        scheduleService.deactivateSchedulesByMedication(medication);
+        markPatientsChanged(medication.getPatients());
+    }
+
+    // invalidates the ETags the mobile app holds for these patients' schedules and medication lists,
+    // and their cached agendas once this transaction commits
+    private void markPatientsChanged(Collection<Patient> patients) {
+        markPatientIdsChanged(patientIds(patients));
+    }
+
+    private void markPatientIdsChanged(Set<UUID> patientIds) {
+        if (!patientIds.isEmpty()) {
+            patientRepo.incrementDataVersion(patientIds);
+            agendaCache.invalidateAfterCommit(patientIds);
+        }
+    }
+
+    private static Set<UUID> patientIds(Collection<Patient> patients) {
+        if (patients == null) {
+            return new HashSet<>();
+        }
+        return patients.stream()
+                .filter(Objects::nonNull)
+                .map(Patient::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    @Override
+    public List<PrescriptionImportError> importPrescriptions(UUID clinicId, List<? extends PrescriptionImportItem> items) {
+        List<PrescriptionImportError> rejected = new ArrayList<>();
+        Map<String, UUID> patientIds = resolvePatients(clinicId, items);
+
+        // active names of every patient in the chunk in one query; the accepted items are added as we go,
+        // so a medication listed twice for one patient is caught as well
+        Set<String> taken = new HashSet<>();
+        Set<UUID> knownPatients = new HashSet<>(patientIds.values());
+        knownPatients.remove(null);
+        if (!knownPatients.isEmpty()) {
+            for (PatientMedicationName existing : medicationRepo.findActiveMedicationNames(knownPatients)) {
+                taken.add(medicationKey(existing.getPatientId(), existing.getMedicationName()));
+            }
+        }
+
+        List<Medication> medications = new ArrayList<>();
+        List<UUID> owners = new ArrayList<>();
+        List<PrescriptionImportItem> accepted = new ArrayList<>();
+        for (PrescriptionImportItem item : items) {
+            String ref = patientRef(item);
+            UUID patientId = patientIds.get(ref);
+            if (patientId == null) {
+                rejected.add(importError(item, patientIds.containsKey(ref)
+                        ? "NRIC matches more than one patient of the clinic" : PATIENT_NOT_FOUND));
+                continue;
+            }
+            if (!taken.add(medicationKey(patientId, item.getMedicationName()))) {
+                rejected.add(importError(item, MEDICATION_EXISTS));
+                continue;
+            }
+            Medication med = new Medication();
+            med.setMedicationName(item.getMedicationName());
+            med.setActive(true);
+            med.setIntakeQuantity(item.getDosage());
+            med.setFrequency(item.getFrequency());
+            med.setNotes(item.getNotes());
+            med.setInstructions(item.getInstructions());
+            medications.add(med);
+            owners.add(patientId);
+            accepted.add(item);
+        }
+        if (medications.isEmpty()) {
+            return rejected;
+        }
+
+        // flushed now: the link rows below reference the new ids
+        medicationRepo.saveAllAndFlush(medications);
+        // one JDBC batch for the links; adding to Patient.medications would load each patient's list and
+        // rewrite it as a whole
+        List<Object[]> links = new ArrayList<>();
+        for (int i = 0; i < medications.size(); i++) {
+            links.add(new Object[]{toBytes(owners.get(i)), toBytes(medications.get(i).getId())});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Patient_Medication (Patient_Id, Medication_Id) VALUES (?, ?)", links);
+
+        List<ScheduleService.NewSchedules> newSchedules = new ArrayList<>();
+        for (int i = 0; i < medications.size(); i++) {
+            newSchedules.add(new ScheduleService.NewSchedules(medications.get(i),
+                    patientRepo.getReferenceById(owners.get(i)), accepted.get(i).getTimes()));
+        }
+        // also bumps the data version and drops the cached agenda of every patient in it
+        scheduleService.createSchedules(newSchedules);
+        return rejected;
+    }
+
+    // Patient id per patient reference of the items; null for an NRIC shared by several patients of the
+    // clinic, no entry for references that match nobody.
+    private Map<String, UUID> resolvePatients(UUID clinicId, List<? extends PrescriptionImportItem> items) {
+        Set<UUID> ids = new HashSet<>();
+        Set<String> nrics = new HashSet<>();
+        for (PrescriptionImportItem item : items) {
+            if (item.getPatientId() != null) {
+                ids.add(item.getPatientId());
+            } else {
+                nrics.add(item.getNric());
+            }
+        }
+        Map<String, UUID> resolved = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (PatientRef ref : patientRepo.findRefsByClinicAndIds(clinicId, ids)) {
+                resolved.put(ref.getId().toString(), ref.getId());
+            }
+        }
+        if (!nrics.isEmpty()) {
+            for (PatientRef ref : patientRepo.findRefsByClinicAndNrics(clinicId, nrics)) {
+                String nric = ref.getNric().toUpperCase(Locale.ROOT);
+                resolved.put(nric, resolved.containsKey(nric) ? null : ref.getId());
+            }
+        }
+        return resolved;
+    }
+
+    private static String patientRef(PrescriptionImportItem item) {
+        return item.getPatientId() != null ? item.getPatientId().toString() : item.getNric();
+    }
+
+    // a drug known under several names (Paracetamol, Acetaminophen) has one key
+    private String medicationKey(UUID patientId, String medicationName) {
+        return patientId + "|" + drugNameMatcher.canonicalName(medicationName).orElse(medicationName).toLowerCase(Locale.ROOT);
+    }
+
+    private static PrescriptionImportError importError(PrescriptionImportItem item, String message) {
+        PrescriptionImportError error = new PrescriptionImportError();
+        error.setLineNumber(item.getLineNumber());
+        error.setPatient(item.getPatient());
+        error.setMedicationName(item.getMedicationName());
+        error.setMessage(message);
+        error.setCreatedAt(LocalDateTime.now());
+        return error;
+    }
+
+    // the BINARY(16) form of an id, for the plain JDBC insert
+    private static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+
     @Override
     public Boolean medicationExistsForPatient(UUID patientId, String medicationName) {
         List<Medication> medications = medicationRepo.findByPatientIdAndMedicationNameIgnoreCase(patientId, medicationName);
         //if medications is not empty, means that the medication alrd exists for the patient
-        return !medications.isEmpty();
+        if (!medications.isEmpty()) {
+            return true;
+        }
+        // the same drug under another of its names
+        Optional<String> drug = drugNameMatcher.canonicalName(medicationName);
+        return drug.isPresent() && medicationRepo.findActiveMedicationNames(Set.of(patientId)).stream()
+                .anyMatch(existing -> drug.equals(drugNameMatcher.canonicalName(existing.getMedicationName())));
     }
 }
@@ -1,30 +1,54 @@
 package nus.iss.backend.service.Implementation;
 
+import nus.iss.backend.dao.IntakeHistoryRow;
 import nus.iss.backend.dao.MissedDoseResponse;
+import nus.iss.backend.dao.PatientRosterRow;
+import nus.iss.backend.dto.IntakeHistoryPage;
 import nus.iss.backend.dto.IntakeHistoryResponse;
+import nus.iss.backend.dto.PatientRosterEntry;
+import nus.iss.backend.dto.PatientRosterPage;
+import nus.iss.backend.dto.PatientSummary;
+import nus.iss.backend.dto.RosterQuery;
+import nus.iss.backend.exceptions.BadRequestException;
 import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.exceptions.DuplicateEmailException;
-import nus.iss.backend.model.IntakeHistory;
+import nus.iss.backend.exceptions.ForbiddenException;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
 import nus.iss.backend.repository.DoctorRepository;
 import nus.iss.backend.model.Doctor;
+import nus.iss.backend.repository.IntakeArchiveRepository;
 import nus.iss.backend.repository.IntakeRepository;
+import nus.iss.backend.repository.MedicationRepository;
 import nus.iss.backend.repository.PatientRepository;
 import nus.iss.backend.service.PatientService;
+import nus.iss.backend.service.RetentionService;
 import nus.iss.backend.service.ScheduleService;
 import nus.iss.backend.util.LogSanitizer;
+import nus.iss.backend.util.VerifiedPatient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Period;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Locale; // NEW
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -33,6 +57,12 @@ public class PatientServiceImpl implements PatientService {
 
     private static final Logger logger = LoggerFactory.getLogger(PatientServiceImpl.class);
 
+    // the ORDER BY of the history queries; ids are BINARY(16), which sorts like the lower-case hex string
+    private static final Comparator<IntakeHistoryRow> HISTORY_ORDER = Comparator
+            .comparing(IntakeHistoryRow::getLoggedDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(IntakeHistoryRow::getScheduledTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(row -> row.getId().toString());
+
     @Autowired
     private PatientRepository patientRepo;
 
@@ -45,17 +75,51 @@ public class PatientServiceImpl implements PatientService {
     @Autowired
     private DoctorRepository doctorRepo;
 
+    @Autowired
+    private IntakeArchiveRepository archiveRepository;
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private MedicationRepository medicationRepo;
+
     @Override
     public Optional<Patient> findPatientById(UUID id) {
         return patientRepo.findById(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Long> findDataVersion(UUID patientId) {
+        return patientRepo.findDataVersionById(patientId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<UUID> findMissedDoseMedicationIds(UUID patientId) {
+        return scheduleService.findMedicationIdsWithMissedDoseByPatient(List.of(patientId))
+                .getOrDefault(patientId, Set.of());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<PatientSummary> findPatientSummary(UUID patientId) {
+        return patientRepo.findSummaryById(patientId);
+    }
+
     @Override
     public List<MissedDoseResponse> getPatientMedicationsWithMissedDose(UUID patientId) {
-        Patient patient = patientRepo.findById(patientId)
-            .orElseThrow(() -> new ItemNotFound("Patient not found!"));
+        List<Medication> medications = findMedications(patientId);
+        if (medications.isEmpty()) {
+            return List.of();
+        }
+
+        // one aggregate query for all of the patient's medications
+        Set<UUID> missedMedIds = scheduleService.findMedicationIdsWithMissedDose(
+            medications.stream().map(Medication::getId).toList());
 
-        return patient.getMedications().stream()
+        return medications.stream()
             .map(med -> {
                 MissedDoseResponse dto = new MissedDoseResponse();
                 dto.setId(med.getId());
@@ -66,11 +130,7 @@ public class PatientServiceImpl implements PatientService {
                 dto.setActive(med.isActive());
                 dto.setNotes(med.getNotes());
                 dto.setTiming(med.getTiming());
-
-                boolean hasMissed = med.getSchedules().stream()
-                    .anyMatch(sch -> scheduleService.hasMissedDose(sch.getId()));
-                dto.setMissedDose(hasMissed);
-
+                dto.setMissedDose(missedMedIds.contains(med.getId()));
                 return dto;
             })
             .toList();
@@ -124,42 +184,118 @@ public class PatientServiceImpl implements PatientService {
 
     @Override
     public List<Medication> getPatientMedications(UUID patientId) {
+        return findMedications(patientId);
+    }
+
+    // The app's token only opens its own patient's medications. A verified patient exists, so they are read
+    // without loading the patient first.
+    private List<Medication> findMedications(UUID patientId) {
+        Optional<UUID> verified = VerifiedPatient.current();
+        if (verified.isPresent()) {
+            if (!verified.get().equals(patientId)) {
+                throw new ForbiddenException("Token is for another patient");
+            }
+            return medicationRepo.findByPatientId(patientId);
+        }
         Patient patient = patientRepo.findById(patientId)
             .orElseThrow(() -> new ItemNotFound("Patient not found!"));
         return patient.getMedications();
     }
 
     @Override
-    public List<IntakeHistoryResponse> getIntakeHistoryByPatientId(UUID patientId) {
-        // 1. Load all history entries
-        List<IntakeHistory> records = intakeRepository.findByPatient_Id(patientId);
+    @Transactional(readOnly = true)
+    public IntakeHistoryPage getIntakeHistoryPage(UUID patientId, LocalDate from, LocalDate to, String cursor, int limit) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new BadRequestException("from must not be after to");
+        }
+        // one extra row tells us whether another page exists without a count query
+        Pageable window = PageRequest.of(0, limit + 1);
+        List<IntakeHistoryRow> rows;
+        IntakeHistoryRow after = cursor == null || cursor.isBlank() ? null : decodeHistoryCursor(cursor);
+        if (after == null) {
+            rows = intakeRepository.findHistoryRows(patientId, from, to, window);
+        } else {
+            rows = intakeRepository.findHistoryRowsAfter(patientId, from, to,
+                    after.getLoggedDate(), after.getScheduledTime(), after.getId(), window);
+        }
+        // Logs past the retention cutoff live in the archive; only ranges reaching back that far pay for
+        // the second query. Both sides come back in the same order, so a merge keeps the keyset intact.
+        LocalDate readFrom = after == null ? from : after.getLoggedDate();
+        if (retentionService.reachesArchive(readFrom)) {
+            List<IntakeHistoryRow> archived = after == null
+                    ? archiveRepository.findHistoryRows(patientId, from, to, window)
+                    : archiveRepository.findHistoryRowsAfter(patientId, from, to,
+                            after.getLoggedDate(), after.getScheduledTime(), after.getId(), window);
+            rows = mergeHistory(archived, rows, limit + 1);
+        }
 
-        // 2. Map each to a DTO, combining loggedDate + scheduledTime into a LocalDateTime
-        List<IntakeHistoryResponse> dtoList = records.stream()
-            .map(record -> {
-                // Build a LocalDateTime from the date the record was logged and the scheduled time-of-day
-                LocalDateTime scheduledDateTime =
-                    record.getLoggedDate().atTime(record.getSchedule().getScheduledTime());
+        IntakeHistoryPage page = new IntakeHistoryPage();
+        boolean hasMore = rows.size() > limit;
+        List<IntakeHistoryRow> pageRows = hasMore ? rows.subList(0, limit) : rows;
+        for (IntakeHistoryRow row : pageRows) {
+            // Build a LocalDateTime from the date the record was logged and the scheduled time-of-day
+            LocalDateTime scheduledDateTime = row.getLoggedDate().atTime(row.getScheduledTime());
+            page.getItems().add(new IntakeHistoryResponse(
+                row.getMedicationName(),
+                scheduledDateTime,
+                scheduledDateTime,
+                row.isTaken()
+            ));
+        }
+        if (hasMore) {
+            page.setNextCursor(encodeHistoryCursor(pageRows.get(pageRows.size() - 1)));
+        }
+        return page;
+    }
 
-                boolean isTaken = record.isTaken();
+    @Override
+    @Transactional(readOnly = true)
+    public List<IntakeHistoryResponse> getFullIntakeHistory(UUID patientId, int pageSize) {
+        List<IntakeHistoryResponse> history = new ArrayList<>();
+        String cursor = null;
+        do {
+            IntakeHistoryPage page = getIntakeHistoryPage(patientId, null, null, cursor, pageSize);
+            history.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return history;
+    }
 
-                String medName = record.getSchedule()
-                    .getMedication()
-                    .getMedicationName();
+    private static List<IntakeHistoryRow> mergeHistory(List<IntakeHistoryRow> a, List<IntakeHistoryRow> b, int max) {
+        if (a.isEmpty()) {
+            return b;
+        }
+        List<IntakeHistoryRow> merged = new ArrayList<>(Math.min(max, a.size() + b.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < max && (i < a.size() || j < b.size())) {
+            if (j >= b.size() || (i < a.size() && HISTORY_ORDER.compare(a.get(i), b.get(j)) <= 0)) {
+                merged.add(a.get(i++));
+            } else {
+                merged.add(b.get(j++));
+            }
+        }
+        return merged;
+    }
 
-                return new IntakeHistoryResponse(
-                    medName,
-                    scheduledDateTime,
-                    scheduledDateTime,
-                    isTaken
-                );
-            })
-            .toList();
+    // Cursor = base64url("loggedDate|scheduledTime|id") of the last row on the previous page.
+    private static String encodeHistoryCursor(IntakeHistoryRow row) {
+        String raw = row.getLoggedDate() + "|" + row.getScheduledTime() + "|" + row.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
 
-        // 3. Finally, sort by that scheduledDateTime and return
-        return dtoList.stream()
-            .sorted(Comparator.comparing(IntakeHistoryResponse::getScheduledTime))
-            .toList();
+    private static IntakeHistoryRow decodeHistoryCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new IntakeHistoryRow(UUID.fromString(parts[2]), LocalDate.parse(parts[0]),
+                    LocalTime.parse(parts[1]), null, false);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
     }
 
     /**
@@ -218,6 +354,48 @@ public class PatientServiceImpl implements PatientService {
         return patientRepo.findByClinic_IdAndDoctorIsNull(clinicUuid);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public PatientRosterPage getDoctorRoster(String mcr, boolean unassigned, RosterQuery query) {
+        if (query.getPage() < 0 || query.getSize() == null || query.getSize() < 1) {
+            throw new BadRequestException("page must not be negative and size must be positive");
+        }
+        Double adherenceBelow = query.getAdherenceBelow();
+        if (adherenceBelow != null && (adherenceBelow < 0 || adherenceBelow > 100)) {
+            throw new BadRequestException("adherenceBelow must be between 0 and 100");
+        }
+        // served from the query cache in production
+        Doctor doctor = doctorRepo.findDoctorByMcrNo(mcr);
+        if (doctor == null) {
+            throw new ItemNotFound("Doctor not found!");
+        }
+
+        Pageable pageable = PageRequest.of(query.getPage(), query.getSize(), rosterSort(query.getSort(), query.getDirection()));
+        LocalDate periodMonth = LocalDate.now().withDayOfMonth(1);
+        String namePrefix = likePrefix(query.getName());
+        Slice<PatientRosterRow> rows = unassigned
+                ? patientRepo.findUnassignedRoster(doctor.getClinic().getId(), periodMonth, namePrefix, adherenceBelow, pageable)
+                : patientRepo.findDoctorRoster(mcr, periodMonth, namePrefix, adherenceBelow, pageable);
+
+        LocalDate today = LocalDate.now();
+        PatientRosterPage page = new PatientRosterPage();
+        for (PatientRosterRow row : rows) {
+            PatientRosterEntry entry = new PatientRosterEntry();
+            entry.setId(row.getId());
+            entry.setFirstName(row.getFirstName());
+            entry.setLastName(row.getLastName());
+            entry.setAge(Period.between(row.getDob(), today).getYears());
+            entry.setLastLogDate(row.getLastLogDate());
+            entry.setAdherencePercent(row.getAdherence() == null ? null : (int) Math.round(row.getAdherence()));
+            entry.setMissedDose(row.getMissedCount() > 0);
+            page.getItems().add(entry);
+        }
+        page.setPage(query.getPage());
+        page.setSize(query.getSize());
+        page.setHasNext(rows.hasNext());
+        return page;
+    }
+
     @Override
     public void unassignAllPatientsFromDoctor(String mcrNo) {
         Doctor doctor = doctorRepo.findDoctorByMcrNo(mcrNo);
@@ -234,6 +412,37 @@ public class PatientServiceImpl implements PatientService {
     }
 
     // --- helpers ---
+
+    // Sort keys are the select aliases of PatientRepository.ROSTER_SELECT; id keeps the page boundaries stable.
+    private static Sort rosterSort(String sort, String direction) {
+        Sort.Direction dir;
+        try {
+            dir = Sort.Direction.fromString(direction == null ? "asc" : direction);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("direction must be asc or desc");
+        }
+        Sort order = switch (sort == null ? "name" : sort) {
+            case "name" -> Sort.by(dir, "lastName", "firstName");
+            // older patients have the earlier date of birth
+            case "age" -> Sort.by(dir == Sort.Direction.ASC ? Sort.Direction.DESC : Sort.Direction.ASC, "dob");
+            case "lastLog" -> Sort.by(dir, "lastLogDate");
+            case "adherence" -> Sort.by(dir, "adherence");
+            default -> throw new BadRequestException("sort must be one of name, age, lastLog, adherence");
+        };
+        return order.and(Sort.by(Sort.Direction.ASC, "id"));
+    }
+
+    // Lower-cased LIKE pattern for a name prefix; the user's own wildcards are escaped with '!'.
+    private static String likePrefix(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        String escaped = name.trim().toLowerCase(Locale.ROOT)
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        return escaped + "%";
+    }
     private static String normalizeEmail(String email) {
         return email.trim().toLowerCase(Locale.ROOT);
     }
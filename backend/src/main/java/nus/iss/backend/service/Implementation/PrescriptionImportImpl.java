@@ -0,0 +1,211 @@
+package nus.iss.backend.service.Implementation;
+
+import jakarta.annotation.PostConstruct;
+import nus.iss.backend.config.PrescriptionImportConfig;
+import nus.iss.backend.dto.PrescriptionImportReport;
+import nus.iss.backend.dto.PrescriptionImportRowError;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.exceptions.ItemNotFound;
+import nus.iss.backend.job.PrescriptionImportWriter;
+import nus.iss.backend.model.Doctor;
+import nus.iss.backend.model.PrescriptionImportError;
+import nus.iss.backend.repository.DoctorRepository;
+import nus.iss.backend.repository.PrescriptionImportErrorRepository;
+import nus.iss.backend.service.PrescriptionImportService;
+import nus.iss.backend.util.LogSanitizer;
+import nus.iss.backend.util.PrivateDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.JobParametersInvalidException;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+@Service
+public class PrescriptionImportImpl implements PrescriptionImportService {
+    private static final Logger logger = LoggerFactory.getLogger(PrescriptionImportImpl.class);
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Autowired
+    @Qualifier(PrescriptionImportConfig.JOB_NAME)
+    private Job prescriptionImportJob;
+
+    @Autowired
+    @Qualifier("virtualThreadExecutor")
+    private ExecutorService virtualThreadExecutor;
+
+    @Autowired
+    private DoctorRepository doctorRepo;
+
+    @Autowired
+    private PrescriptionImportErrorRepository errorRepo;
+
+    @Value("${app.import.prescriptions.dir:data/prescription-imports}")
+    private Path uploadDir;
+
+    // a launcher of our own rather than the context's synchronous one: the request returns once the
+    // execution is recorded, and the report endpoint shows the progress
+    private TaskExecutorJobLauncher launcher;
+
+    @PostConstruct
+    void initLauncher() throws Exception {
+        launcher = new TaskExecutorJobLauncher();
+        launcher.setJobRepository(jobRepository);
+        launcher.setTaskExecutor(new TaskExecutorAdapter(virtualThreadExecutor));
+        launcher.afterPropertiesSet();
+    }
+
+    @Override
+    public PrescriptionImportReport startImport(String mcrNo, MultipartFile file) {
+        Doctor doctor = doctorRepo.findDoctorByMcrNo(mcrNo);
+        if (doctor == null) {
+            throw new ItemNotFound("Doctor not found");
+        }
+        if (file == null || file.isEmpty()) {
+            throw new BadRequestException("A CSV file is required");
+        }
+        Path stored = store(file);
+        // the file path identifies the import; everything else is only carried along
+        JobParameters parameters = new JobParametersBuilder()
+                .addString("file", stored.toString())
+                .addString("clinicId", doctor.getClinic().getId().toString(), false)
+                .addString("mcrNo", mcrNo, false)
+                .addLong("rows", countRows(stored), false)
+                .toJobParameters();
+        JobExecution execution = launch(parameters);
+        logger.info("Prescription import {} started by {} ({} rows)", execution.getId(),
+                LogSanitizer.sanitizeForLog(mcrNo), parameters.getLong("rows"));
+        return report(execution);
+    }
+
+    @Override
+    public PrescriptionImportReport restartImport(long executionId) {
+        JobExecution previous = findExecution(executionId);
+        if (previous.getStatus() != BatchStatus.FAILED && previous.getStatus() != BatchStatus.STOPPED) {
+            throw new BadRequestException("Only a failed or stopped import can be restarted (status " + previous.getStatus() + ")");
+        }
+        // the same identifying parameters make Spring Batch continue the failed instance
+        JobExecution execution = launch(previous.getJobParameters());
+        logger.info("Prescription import {} restarted as {}", executionId, execution.getId());
+        return report(execution);
+    }
+
+    @Override
+    public PrescriptionImportReport getReport(long executionId) {
+        return report(findExecution(executionId));
+    }
+
+    private JobExecution findExecution(long executionId) {
+        JobExecution execution = jobExplorer.getJobExecution(executionId);
+        if (execution == null || !PrescriptionImportConfig.JOB_NAME.equals(execution.getJobInstance().getJobName())) {
+            throw new ItemNotFound("Import " + executionId + " not found");
+        }
+        return execution;
+    }
+
+    private JobExecution launch(JobParameters parameters) {
+        try {
+            return launcher.run(prescriptionImportJob, parameters);
+        } catch (JobExecutionAlreadyRunningException | JobInstanceAlreadyCompleteException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (JobRestartException | JobParametersInvalidException e) {
+            throw new IllegalStateException("Prescription import could not be launched", e);
+        }
+    }
+
+    private Path store(MultipartFile file) {
+        try {
+            // the CSV holds NRICs and prescriptions and outlives a failed job, so only the app's user may read it
+            PrivateDirectory.create(uploadDir);
+            Path stored = uploadDir.resolve(UUID.randomUUID() + ".csv").toAbsolutePath();
+            file.transferTo(stored);
+            return stored;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store the import file", e);
+        }
+    }
+
+    // data lines, without the header and blank lines
+    private static long countRows(Path file) {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return Math.max(0, reader.lines().filter(line -> !line.isBlank()).count() - 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the import file", e);
+        }
+    }
+
+    private PrescriptionImportReport report(JobExecution execution) {
+        JobInstance instance = execution.getJobInstance();
+        PrescriptionImportReport report = new PrescriptionImportReport();
+        report.setExecutionId(execution.getId());
+        report.setStatus(execution.getStatus().name());
+        report.setRestartable(execution.getStatus() == BatchStatus.FAILED || execution.getStatus() == BatchStatus.STOPPED);
+        report.setStartTime(execution.getStartTime());
+        report.setEndTime(execution.getEndTime());
+        Long rows = execution.getJobParameters().getLong("rows");
+        report.setTotalRows(rows == null ? 0 : rows);
+        report.setImported(imported(instance));
+
+        List<PrescriptionImportError> errors = errorRepo.findByJobInstanceIdOrderByLineNumber(instance.getInstanceId());
+        report.setFailed(errors.size());
+        for (PrescriptionImportError error : errors) {
+            PrescriptionImportRowError row = new PrescriptionImportRowError();
+            row.setLineNumber(error.getLineNumber());
+            row.setPatient(error.getPatient());
+            row.setMedicationName(error.getMedicationName());
+            row.setMessage(error.getMessage());
+            report.getErrors().add(row);
+        }
+        return report;
+    }
+
+    // Sum over the partitions, each taken from its latest run: a partition finished before a restart only
+    // appears in the earlier execution, and a resumed one carries its earlier count in its context.
+    private long imported(JobInstance instance) {
+        Map<String, StepExecution> latest = new HashMap<>();
+        for (JobExecution execution : jobExplorer.getJobExecutions(instance)) {
+            for (StepExecution step : execution.getStepExecutions()) {
+                if (!step.getExecutionContext().containsKey(PrescriptionImportWriter.IMPORTED)) {
+                    continue;
+                }
+                latest.merge(step.getStepName(), step, (a, b) -> a.getId() > b.getId() ? a : b);
+            }
+        }
+        return latest.values().stream()
+                .mapToLong(step -> step.getExecutionContext().getLong(PrescriptionImportWriter.IMPORTED))
+                .sum();
+    }
+}
@@ -0,0 +1,412 @@
+package nus.iss.backend.service.Implementation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nus.iss.backend.dao.ImageOutput;
+import nus.iss.backend.dto.RecognitionJobResponse;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.exceptions.ItemNotFound;
+import nus.iss.backend.model.RecognitionJob;
+import nus.iss.backend.ocr.ContentHash;
+import nus.iss.backend.ocr.OcrClient;
+import nus.iss.backend.ocr.OcrResultCache;
+import nus.iss.backend.repository.RecognitionJobRepository;
+import nus.iss.backend.service.RecognitionJobService;
+import nus.iss.backend.util.DrugNameMatcher;
+import nus.iss.backend.util.ImagePreprocessor;
+import nus.iss.backend.util.LogSanitizer;
+import nus.iss.backend.util.PrivateDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Recognition runs on a fixed pool of workers with a bounded queue. A job that finds the queue full stays
+// PENDING in the table and RecognitionJobSweeper hands it over later, as it does with retries and with jobs
+// an instance left RUNNING when it stopped; RecognitionJobRepository.claim makes sure one worker runs it.
+@Service
+public class RecognitionJobImpl implements RecognitionJobService {
+    private static final Logger logger = LoggerFactory.getLogger(RecognitionJobImpl.class);
+
+    @Autowired
+    private RecognitionJobRepository jobRepo;
+
+    @Autowired
+    private OcrClient ocrClient;
+
+    @Autowired
+    private OcrResultCache ocrResultCache;
+
+    @Autowired
+    private ImagePreprocessor imagePreprocessor;
+
+    @Autowired
+    private DrugNameMatcher drugNameMatcher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.ocr.jobs.dir:data/recognition-jobs}")
+    private Path imageDir;
+
+    @Value("${app.ocr.jobs.workers:4}")
+    private int workerCount;
+
+    @Value("${app.ocr.jobs.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.ocr.jobs.max-attempts:4}")
+    private int maxAttempts;
+
+    // before the 2nd attempt; doubled for every further one
+    @Value("${app.ocr.jobs.retry-delay:10s}")
+    private Duration retryDelay;
+
+    @Value("${app.ocr.jobs.lease:2m}")
+    private Duration lease;
+
+    @Value("${app.ocr.jobs.keep-for:1d}")
+    private Duration keepFor;
+
+    @Value("${app.ocr.jobs.events-timeout:2m}")
+    private Duration eventsTimeout;
+
+    @Value("${app.ocr.jobs.sweep-batch:100}")
+    private int sweepBatch;
+
+    private ThreadPoolExecutor workers;
+    private final AtomicInteger workerNumber = new AtomicInteger();
+    // jobs in the worker queue, so the sweeper does not queue them twice
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void start() throws IOException {
+        PrivateDirectory.create(imageDir);
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "recognition-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // a job interrupted here stays RUNNING until its lease runs out, then any instance takes it over
+    @PreDestroy
+    void stop() {
+        workers.shutdownNow();
+    }
+
+    @Override
+    public RecognitionJobResponse submit(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new BadRequestException("An image file is required");
+        }
+        Path upload = null;
+        try {
+            upload = Files.createTempFile(imageDir, "upload-", ".tmp");
+            String hash = copyAndHash(file, upload);
+            RecognitionJob existing = jobRepo.findByContentHash(hash).orElse(null);
+            if (existing != null && !RecognitionJob.FAILED.equals(existing.getStatus())) {
+                logger.info("Image upload matched recognition job {} ({})", existing.getId(), existing.getStatus());
+                return response(existing);
+            }
+            Files.move(upload, imagePath(hash), StandardCopyOption.REPLACE_EXISTING);
+            upload = null;
+
+            LocalDateTime now = LocalDateTime.now();
+            RecognitionJob job = existing != null ? existing : new RecognitionJob();
+            job.setContentHash(hash);
+            job.setFileName(file.getOriginalFilename());
+            job.setContentType(file.getContentType());
+            job.setStatus(RecognitionJob.PENDING);
+            job.setAttempts(0);
+            job.setNextAttemptAt(null);
+            job.setLeaseUntil(null);
+            job.setResult(null);
+            job.setError(null);
+            if (existing == null) {
+                job.setCreatedAt(now);
+            }
+            job.setUpdatedAt(now);
+            try {
+                job = jobRepo.saveAndFlush(job);
+            } catch (DataIntegrityViolationException e) {
+                // the same image uploaded twice at once: the other request created the job
+                return response(jobRepo.findByContentHash(hash).orElseThrow(() -> e));
+            }
+            dispatch(job.getId());
+            return response(job);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store the image", e);
+        } finally {
+            if (upload != null) {
+                deleteQuietly(upload);
+            }
+        }
+    }
+
+    @Override
+    public RecognitionJobResponse getJob(UUID jobId) {
+        return response(findJob(jobId));
+    }
+
+    @Override
+    public SseEmitter subscribe(UUID jobId) {
+        RecognitionJob job = findJob(jobId);
+        SseEmitter emitter = new SseEmitter(eventsTimeout.toMillis());
+        if (!send(emitter, job)) {
+            return emitter;
+        }
+        Set<SseEmitter> emitters = subscribers.computeIfAbsent(jobId, id -> new CopyOnWriteArraySet<>());
+        emitters.add(emitter);
+        emitter.onCompletion(() -> unsubscribe(jobId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe(jobId, emitter));
+        // it may have finished between the read above and the registration
+        jobRepo.findById(jobId).filter(RecognitionJob::isFinished).ifPresent(this::publish);
+        return emitter;
+    }
+
+    @Override
+    public int sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        int dispatched = 0;
+        for (UUID id : jobRepo.findDue(now, maxAttempts, PageRequest.of(0, sweepBatch))) {
+            if (!dispatch(id)) {
+                break;
+            }
+            dispatched++;
+        }
+        for (UUID id : jobRepo.findAbandoned(now, maxAttempts, PageRequest.of(0, sweepBatch))) {
+            if (jobRepo.failAbandoned(id, now, "Recognition did not complete, please upload the image again") > 0) {
+                jobRepo.findById(id).ifPresent(job -> {
+                    deleteQuietly(imagePath(job.getContentHash()));
+                    logger.warn("Recognition job {} abandoned after {} attempts", job.getId(), job.getAttempts());
+                    publish(job);
+                });
+            }
+        }
+        if (!subscribers.isEmpty()) {
+            jobRepo.findByIdInAndStatusIn(Set.copyOf(subscribers.keySet()), List.of(RecognitionJob.SUCCEEDED, RecognitionJob.FAILED))
+                    .forEach(this::publish);
+        }
+        int purged = jobRepo.deleteFinishedBefore(now.minus(keepFor));
+        if (dispatched > 0 || purged > 0) {
+            logger.info("Recognition sweep: {} jobs handed to workers, {} finished jobs purged", dispatched, purged);
+        }
+        return dispatched;
+    }
+
+    // false when the queue is full; the job stays PENDING for the next sweep. A job already queued is skipped.
+    private boolean dispatch(UUID jobId) {
+        if (!queued.add(jobId)) {
+            return true;
+        }
+        try {
+            workers.execute(() -> {
+                queued.remove(jobId);
+                run(jobId);
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            queued.remove(jobId);
+            logger.debug("Recognition queue full, job {} left for the sweeper", jobId);
+            return false;
+        }
+    }
+
+    private void run(UUID jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jobRepo.claim(jobId, now, now.plus(lease), maxAttempts) == 0) {
+            return;
+        }
+        RecognitionJob job = jobRepo.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        publish(job);
+        try {
+            attempt(job);
+        } catch (RuntimeException e) {
+            // a database error while saving the outcome, for one: the job must not stay RUNNING
+            logger.error("Recognition job {} attempt {} failed", job.getId(), job.getAttempts(), e);
+            job.setResult(null);
+            try {
+                if (job.getAttempts() >= maxAttempts) {
+                    finish(job, RecognitionJob.FAILED, "Recognition failed");
+                } else {
+                    retryLater(job, "Recognition failed");
+                }
+            } catch (RuntimeException again) {
+                logger.error("Recognition job {} left RUNNING until its lease runs out", job.getId(), again);
+            }
+        }
+    }
+
+    private void attempt(RecognitionJob job) {
+        Path imagePath = imagePath(job.getContentHash());
+        long size;
+        try {
+            size = Files.size(imagePath);
+        } catch (IOException e) {
+            finish(job, RecognitionJob.FAILED, "The uploaded image is no longer available, please upload it again");
+            return;
+        }
+        try {
+            ImageOutput output = ocrResultCache.get(job.getContentHash(),
+                    () -> imagePreprocessor.prepare(new FileSystemResource(imagePath), size, job.getFileName(), job.getContentType())
+                            .thenCompose(image -> ocrClient.recognise(image.bytes(), image.filename(), image.contentType()))).get();
+            drugNameMatcher.addSuggestedName(output);
+            job.setResult(objectMapper.writeValueAsString(output));
+            finish(job, RecognitionJob.SUCCEEDED, null);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            if (cause instanceof BadRequestException || job.getAttempts() >= maxAttempts) {
+                finish(job, RecognitionJob.FAILED, cause.getMessage());
+            } else {
+                retryLater(job, cause.getMessage());
+            }
+        } catch (JsonProcessingException e) {
+            finish(job, RecognitionJob.FAILED, "Unreadable OCR result");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void retryLater(RecognitionJob job, String error) {
+        Duration delay = retryDelay.multipliedBy(1L << Math.min(job.getAttempts() - 1, 16));
+        LocalDateTime now = LocalDateTime.now();
+        job.setStatus(RecognitionJob.PENDING);
+        job.setNextAttemptAt(now.plus(delay));
+        job.setLeaseUntil(null);
+        job.setError(truncate(error));
+        job.setUpdatedAt(now);
+        job = jobRepo.save(job);
+        logger.warn("Recognition job {} attempt {} failed, retry in {}: {}", job.getId(), job.getAttempts(), delay,
+                LogSanitizer.sanitizeForLog(error));
+        publish(job);
+    }
+
+    private void finish(RecognitionJob job, String status, String error) {
+        job.setStatus(status);
+        job.setNextAttemptAt(null);
+        job.setLeaseUntil(null);
+        job.setError(truncate(error));
+        job.setUpdatedAt(LocalDateTime.now());
+        job = jobRepo.save(job);
+        deleteQuietly(imagePath(job.getContentHash()));
+        if (RecognitionJob.FAILED.equals(status)) {
+            logger.warn("Recognition job {} failed after {} attempts: {}", job.getId(), job.getAttempts(),
+                    LogSanitizer.sanitizeForLog(error));
+        }
+        publish(job);
+    }
+
+    // sends the job's state to its subscribers; a finished job ends their streams
+    private void publish(RecognitionJob job) {
+        Set<SseEmitter> emitters = job.isFinished() ? subscribers.remove(job.getId()) : subscribers.get(job.getId());
+        if (emitters != null) {
+            emitters.forEach(emitter -> send(emitter, job));
+        }
+    }
+
+    // false once the stream is over, because the job finished or the client went away
+    private boolean send(SseEmitter emitter, RecognitionJob job) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(response(job)));
+            if (job.isFinished()) {
+                emitter.complete();
+                return false;
+            }
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private void unsubscribe(UUID jobId, SseEmitter emitter) {
+        subscribers.computeIfPresent(jobId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private RecognitionJob findJob(UUID jobId) {
+        return jobRepo.findById(jobId).orElseThrow(() -> new ItemNotFound("Recognition job not found"));
+    }
+
+    private RecognitionJobResponse response(RecognitionJob job) {
+        RecognitionJobResponse response = new RecognitionJobResponse();
+        response.setJobId(job.getId());
+        response.setStatus(job.getStatus());
+        response.setAttempts(job.getAttempts());
+        response.setError(job.getError());
+        response.setCreatedAt(job.getCreatedAt());
+        response.setUpdatedAt(job.getUpdatedAt());
+        if (job.getResult() != null) {
+            try {
+                response.setResult(objectMapper.readValue(job.getResult(), ImageOutput.class));
+            } catch (JsonProcessingException e) {
+                logger.error("Unreadable result of recognition job {}", job.getId());
+            }
+        }
+        return response;
+    }
+
+    private Path imagePath(String contentHash) {
+        return imageDir.resolve(contentHash + ".img");
+    }
+
+    private static String copyAndHash(MultipartFile file, Path target) throws IOException {
+        MessageDigest digest = ContentHash.sha256();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return ContentHash.hex(digest);
+    }
+
+    private static String truncate(String message) {
+        return message == null || message.length() <= 500 ? message : message.substring(0, 500);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", path, LogSanitizer.sanitizeForLog(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package nus.iss.backend.service.Implementation;
+
+import nus.iss.backend.repository.IntakeArchiveRepository;
+import nus.iss.backend.repository.IntakeRepository;
+import nus.iss.backend.repository.PatientRepository;
+import nus.iss.backend.repository.ScheduleRepository;
+import nus.iss.backend.service.RetentionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@Transactional
+public class RetentionImpl implements RetentionService {
+
+    @Autowired
+    private IntakeRepository intakeRepo;
+
+    @Autowired
+    private IntakeArchiveRepository archiveRepo;
+
+    @Autowired
+    private ScheduleRepository scheduleRepo;
+
+    @Autowired
+    private PatientRepository patientRepo;
+
+    @Value("${app.retention.intake-history.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.retention.intake-history.max-age-days:365}")
+    private int maxAgeDays;
+
+    // latest log date known to be archived; loaded on first use, LocalDate.MIN while the archive is empty
+    private final AtomicReference<LocalDate> archivedThrough = new AtomicReference<>();
+
+    @Override
+    public LocalDate archiveCutoff() {
+        if (!enabled) {
+            return null;
+        }
+        // whole months only, so a month's rollup row is backed either by hot rows or by archived ones
+        return LocalDate.now().minusDays(maxAgeDays).withDayOfMonth(1);
+    }
+
+    @Override
+    public int archiveChunk(LocalDate cutoff, int chunkSize) {
+        List<UUID> ids = intakeRepo.findIdsLoggedBefore(cutoff, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        archiveRepo.copyFromHistory(ids);
+        intakeRepo.deleteByIds(ids);
+        archivedThrough.accumulateAndGet(cutoff.minusDays(1), RetentionImpl::later);
+        return ids.size();
+    }
+
+    @Override
+    public int purgeSchedulesChunk(LocalDate cutoff, int chunkSize) {
+        List<Object[]> rows = scheduleRepo.findArchivedInactiveSchedules(cutoff.atStartOfDay(), PageRequest.of(0, chunkSize));
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<UUID> scheduleIds = rows.stream().map(row -> (UUID) row[0]).toList();
+        Set<UUID> patientIds = new HashSet<>();
+        rows.forEach(row -> patientIds.add((UUID) row[1]));
+        int deleted = scheduleRepo.deleteByIds(scheduleIds);
+        // medication lists expose their schedule ids, so the patients' ETags must change
+        patientRepo.incrementDataVersion(patientIds);
+        return deleted;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean reachesArchive(LocalDate from) {
+        LocalDate latest = archivedThrough.updateAndGet(current -> {
+            if (current != null) {
+                return current;
+            }
+            LocalDate stored = archiveRepo.findLatestLoggedDate();
+            return stored == null ? LocalDate.MIN : stored;
+        });
+        // Another instance may have archived more since we loaded `latest`, but never past the cutoff,
+        // and the cutoff alone misses rows archived while max-age was shorter, so take the later of the two.
+        LocalDate hotSince = latest.equals(LocalDate.MIN) ? null : latest.plusDays(1);
+        LocalDate cutoff = archiveCutoff();
+        if (cutoff != null && (hotSince == null || cutoff.isAfter(hotSince))) {
+            hotSince = cutoff;
+        }
+        return hotSince != null && (from == null || from.isBefore(hotSince));
+    }
+
+    // leaves an unloaded value alone, reachesArchive still has to read the stored maximum
+    private static LocalDate later(LocalDate a, LocalDate b) {
+        if (a == null) {
+            return null;
+        }
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -1,26 +1,34 @@
 package nus.iss.backend.service.Implementation;
 
+import nus.iss.backend.dao.AgendaItem;
+import nus.iss.backend.dao.ScheduleFindResponse;
 import nus.iss.backend.dto.ScheduleResponse; // added for Android API to use
 import nus.iss.backend.exceptions.ItemNotFound;
-import nus.iss.backend.model.IntakeHistory;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
 import nus.iss.backend.model.Schedule;
+import nus.iss.backend.repository.IntakeRepository;
+import nus.iss.backend.repository.PatientRepository;
 import nus.iss.backend.repository.ScheduleRepository;
+import nus.iss.backend.service.AdherenceService;
 import nus.iss.backend.service.ScheduleService;
+import nus.iss.backend.util.PatientAgendaCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -31,33 +39,37 @@ public class ScheduleImpl implements ScheduleService {
     @Autowired
     ScheduleRepository scheduleRepo;
 
+    @Autowired
+    AdherenceService adherenceService;
+
+    @Autowired
+    PatientRepository patientRepo;
+
+    @Autowired
+    IntakeRepository intakeRepo;
+
+    @Autowired
+    PatientAgendaCache agendaCache;
+
     @Override
     public Boolean hasMissedDose(UUID scheduleId) {
         Optional<Schedule> sch = findScheduleById(scheduleId);
         if (sch.isEmpty()) {
             throw new ItemNotFound("Schedule with ID("+ scheduleId+ ") does not exist!");
         }
-        Schedule schedule = sch.get();
-        List<IntakeHistory> historyList = schedule.getIntakeHistory();
-
-        // if there's no intake history, then there's no missed dose
-        if (historyList == null || historyList.isEmpty()) {
-            return false;
-        }
+        // single-row lookup in the monthly rollup instead of scanning the intake history
+        return adherenceService.hasMissedDose(scheduleId, YearMonth.now());
+    }
 
-        // getting any missed dose for the current month
-        LocalDate today = LocalDate.now();
-        int currentMonth = today.getMonthValue();
-        int currentYear = today.getYear();
+    // one aggregate query for the whole set instead of loading every schedule's intake history
+    @Override
+    public Set<UUID> findMedicationIdsWithMissedDose(Collection<UUID> medicationIds) {
+        return adherenceService.findMedicationIdsWithMissedDose(medicationIds, YearMonth.now());
+    }
 
-        // filter intake logs of current month/year and check if any isTaken == false
-        return historyList.stream()
-                .filter(hx ->
-                        hx.getLoggedDate() != null &&
-                        hx.getLoggedDate().getMonthValue() == currentMonth &&
-                        hx.getLoggedDate().getYear() == currentYear
-                )
-                .anyMatch(hx -> !hx.isTaken());
+    @Override
+    public Map<UUID, Set<UUID>> findMedicationIdsWithMissedDoseByPatient(Collection<UUID> patientIds) {
+        return adherenceService.findMedicationIdsWithMissedDoseByPatient(patientIds, YearMonth.now());
     }
 
     @Override
@@ -70,6 +82,15 @@ public class ScheduleImpl implements ScheduleService {
         return scheduleRepo.findSchedulesByPatientIdandScheduledTime(scheduledTime, patientId);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<ScheduleFindResponse> findScheduleSummariesByPatientIdAndScheduledTime(LocalTime scheduledTime, UUID patientId) {
+        return getAgenda(patientId).stream()
+                .filter(item -> item.getScheduledTime().equals(scheduledTime))
+                .map(item -> new ScheduleFindResponse(item.getScheduleId(), item.getScheduledTime(), true, item.getMedicationId()))
+                .toList();
+    }
+
     @Override
     public List<Schedule> findActiveSchedulesByMedication(Medication medication) {
         return scheduleRepo.findByMedicationAndIsActiveTrue(medication);
@@ -79,11 +100,11 @@ public class ScheduleImpl implements ScheduleService {
     // also make sure related intake history will be deleted at same time
     @Override
     public void deleteOldInactiveSchedules(Medication medication, LocalDateTime cutoffDate) {
-        List<Schedule> oldSchedules = scheduleRepo.findByMedicationAndIsActiveFalseAndCreationDateBefore(medication, cutoffDate);
-        for (Schedule s : oldSchedules) {
-            s.getIntakeHistory().size(); // force loading intake history
-            scheduleRepo.delete(s);
-        }
+        // rollup rows and intake logs go first, they reference the schedules being removed
+        adherenceService.removeOldInactiveSchedules(medication, cutoffDate);
+        int logs = intakeRepo.deleteByInactiveSchedulesCreatedBefore(medication, cutoffDate);
+        int removed = scheduleRepo.deleteInactiveByMedicationCreatedBefore(medication, cutoffDate);
+        logger.debug("Removed {} old inactive schedules and {} intake logs of medication {}", removed, logs, medication.getId());
     }
 
     @Override
@@ -92,35 +113,118 @@ public class ScheduleImpl implements ScheduleService {
             s.setIsActive(false);
             scheduleRepo.save(s);
         }
+        markPatientsChanged(schedules.stream()
+                .map(Schedule::getPatient)
+                .filter(Objects::nonNull)
+                .map(Patient::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList());
+    }
+
+    @Override
+    public int deactivateSchedulesByMedication(Medication medication) {
+        List<UUID> patientIds = scheduleRepo.findActivePatientIdsByMedication(medication);
+        if (patientIds.isEmpty()) {
+            return 0;
+        }
+        int deactivated = scheduleRepo.deactivateByMedication(medication);
+        markPatientsChanged(patientIds);
+        return deactivated;
+    }
+
+    @Override
+    public List<UUID> deactivateSchedulesByMedicationUnmarked(Medication medication) {
+        List<UUID> patientIds = scheduleRepo.findActivePatientIdsByMedication(medication);
+        if (!patientIds.isEmpty()) {
+            scheduleRepo.deactivateByMedication(medication);
+        }
+        return patientIds;
     }
 
     @Override
     public Schedule createSchedule(Medication medication, Patient patient, LocalTime scheduledTime) {
+        Schedule saved = scheduleRepo.save(newSchedule(medication, patient, scheduledTime));
+        // the patient's daily schedule changed, so the ETag the app holds for it must too
+        markPatientChanged(patient);
+        return saved;
+    }
+
+    @Override
+    public List<Schedule> createSchedules(Medication medication, Patient patient, Collection<LocalTime> scheduledTimes) {
+        return createSchedules(List.of(new NewSchedules(medication, patient, scheduledTimes)));
+    }
+
+    @Override
+    public List<Schedule> createSchedulesUnmarked(Medication medication, Patient patient, Collection<LocalTime> scheduledTimes) {
+        return insertSchedules(List.of(new NewSchedules(medication, patient, scheduledTimes)));
+    }
+
+    @Override
+    public List<Schedule> createSchedules(List<NewSchedules> newSchedules) {
+        List<Schedule> saved = insertSchedules(newSchedules);
+        List<UUID> patientIds = saved.stream()
+                .map(Schedule::getPatient)
+                .filter(Objects::nonNull)
+                .map(Patient::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        markPatientsChanged(patientIds);
+        return saved;
+    }
+
+    private List<Schedule> insertSchedules(List<NewSchedules> newSchedules) {
+        List<Schedule> schedules = newSchedules.stream()
+                .flatMap(n -> n.scheduledTimes().stream().map(time -> newSchedule(n.medication(), n.patient(), time)))
+                .toList();
+        return schedules.isEmpty() ? List.of() : scheduleRepo.saveAll(schedules);
+    }
+
+    private static Schedule newSchedule(Medication medication, Patient patient, LocalTime scheduledTime) {
         Schedule s = new Schedule();
         s.setMedication(medication);
         s.setPatient(patient);
         s.setScheduledTime(scheduledTime);
         s.setIsActive(true);
         s.setCreationDate(LocalDateTime.now());
-        return scheduleRepo.save(s);
+        return s;
+    }
+
+    private void markPatientChanged(Patient patient) {
+        if (patient != null && patient.getId() != null) {
+            markPatientsChanged(List.of(patient.getId()));
+        }
+    }
+
+    // the new version changes the ETags and is what other instances' agenda caches compare against
+    private void markPatientsChanged(List<UUID> patientIds) {
+        if (!patientIds.isEmpty()) {
+            patientRepo.incrementDataVersion(patientIds);
+            agendaCache.invalidateAfterCommit(patientIds);
+        }
     }
 
  // For Android API to get all active recurring daily schedules for a patient
     @Override
+    @Transactional(readOnly = true)
     public List<ScheduleResponse> getDailyScheduleForPatient(UUID patientId) {
-        List<Schedule> schedules = scheduleRepo.findActiveSchedulesByPatientId(patientId);
-
-        // Filter out schedules where the associated medication is inactive
-        return schedules.stream()
-            .filter(schedule -> schedule.getMedication() != null && schedule.getMedication().isActive())
-            .map(schedule -> {
-                ScheduleResponse dto = new ScheduleResponse();
-                dto.setScheduledTime(schedule.getScheduledTime().toString());
-                dto.setMedicationName(schedule.getMedication().getMedicationName());
-                dto.setQuantity(schedule.getMedication().getIntakeQuantity()); // if not available, use 1
-                dto.setIsActive(schedule.getIsActive());
-                return dto;
-            })
-            .collect(Collectors.toList());
+        return getDailyScheduleForPatient(patientId, patientRepo.findDataVersionById(patientId).orElse(null));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ScheduleResponse> getDailyScheduleForPatient(UUID patientId, Long dataVersion) {
+        // the agenda only holds active schedules; schedules of inactive medications are left out here
+        return agendaCache.get(patientId, dataVersion, scheduleRepo::findAgendaByPatientId).stream()
+                .filter(AgendaItem::isMedicationActive)
+                .map(item -> new ScheduleResponse(item.getScheduledTime(), item.getMedicationName(), item.getQuantity(), true))
+                .toList();
+    }
+
+    // the version lookup, plus the agenda query when a schedule or medication of theirs has changed
+    private List<AgendaItem> getAgenda(UUID patientId) {
+        return agendaCache.get(patientId, patientRepo.findDataVersionById(patientId).orElse(null),
+                scheduleRepo::findAgendaByPatientId);
     }
 }
@@ -1,5 +1,6 @@
 package nus.iss.backend.service;
 
+import nus.iss.backend.dao.IntakeBatchItemResult;
 import nus.iss.backend.dao.IntakeLogResponseWeb;
 import nus.iss.backend.dao.IntakeReqMobile;
 import nus.iss.backend.dao.UpdateDoctorNotesReq;
@@ -11,6 +12,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 @Transactional
@@ -21,11 +23,23 @@ public interface IntakeHistoryService {
      */
     void createIntakeHistory(IntakeReqMobile intakeReqMobile);
 
+    /**
+     * Create many intake-history entries in one transaction (offline replay from mobile).
+     * Returns one result per submitted log, in submission order.
+     */
+    List<IntakeBatchItemResult> createIntakeHistoryBatch(List<IntakeReqMobile> requests);
+
     /**
      * Retrieve all intake logs for a specific medication.
      */
     List<IntakeLogResponseWeb> getIntakeLogsForMedication(UUID medicationId);
 
+    /**
+     * Push every intake log for a medication to the sink as it is read, without building a list.
+     * Returns the number of logs written.
+     */
+    long streamIntakeLogsForMedication(UUID medicationId, Consumer<IntakeLogResponseWeb> sink);
+
     /**
      * Create or update doctor notes on an existing intake-history entry.
      */
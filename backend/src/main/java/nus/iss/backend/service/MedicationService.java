@@ -3,15 +3,20 @@ package nus.iss.backend.service;
 import nus.iss.backend.dto.newMedicationReq;
 import nus.iss.backend.dao.ImageOutput;
 import nus.iss.backend.dto.EditMedicationRequest;
+import nus.iss.backend.dto.PrescriptionImportItem;
 import nus.iss.backend.model.Medication;
+import nus.iss.backend.model.PrescriptionImportError;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Transactional
@@ -21,15 +26,41 @@ public interface MedicationService {
 
     Boolean hasMedicineMissedDose(UUID medicationId);
 
+    Set<UUID> findMedicationIdsWithMissedDose(Collection<UUID> medicationIds);
+
     Medication findMedicineById(UUID medicationId);
 
     Medication saveMedication(Medication medication);
 
     Medication createMedication(newMedicationReq req);
 
+    /**
+     * Marks the medication and all of its active schedules inactive in one transaction.
+     */
+    void deactivateMedication(Medication medication);
+
+    /**
+     * True when the patient has an active medication of this name, or of another name of the same drug
+     * (DrugNameMatcher).
+     */
     Boolean medicationExistsForPatient(UUID patientId, String medicationName);
 
-    // For ML model integration
-    ImageOutput sendToFastAPI(MultipartFile file) throws IOException;
+    /**
+     * Creates the medications of one chunk of a prescription import, with their Patient_Medication links and
+     * schedules, using the same rules as createMedication: the patient must exist (here: in the given clinic)
+     * and must not already have an active medication of that name, counting the earlier items of the chunk.
+     * Items that break a rule are left out and returned as errors (not yet saved); the rest are written.
+     */
+    List<PrescriptionImportError> importPrescriptions(UUID clinicId, List<? extends PrescriptionImportItem> items);
+
+    // For ML model integration: completes with the model's reading, or fails with OcrUnavailableException
+    // (model slow, down or saturated) or BadRequestException (image rejected)
+    CompletableFuture<ImageOutput> sendToFastAPI(MultipartFile file) throws IOException;
+
+    /**
+     * Drug names starting with the prefix, for autocomplete when a medication is entered by hand.
+     */
+    List<String> suggestMedicationNames(String prefix, int limit);
+
     ResponseEntity<?> processEditMedication(EditMedicationRequest req);
 }
@@ -1,14 +1,20 @@
 package nus.iss.backend.service;
 
 import nus.iss.backend.dao.MissedDoseResponse;
+import nus.iss.backend.dto.IntakeHistoryPage;
 import nus.iss.backend.dto.IntakeHistoryResponse;
+import nus.iss.backend.dto.PatientRosterPage;
+import nus.iss.backend.dto.PatientSummary;
+import nus.iss.backend.dto.RosterQuery;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -20,6 +26,23 @@ public interface PatientService {
      */
     Optional<Patient> findPatientById(UUID id);
 
+    /**
+     * Current change counter of the patient's medications and schedules (empty if no such patient).
+     * Used to build the ETags of the mobile polling endpoints.
+     */
+    Optional<Long> findDataVersion(UUID patientId);
+
+    /**
+     * Medications of the patient with a missed dose this month, from the adherence rollup.
+     * Intake logs leave the data version alone, so the /medications ETag also covers these.
+     */
+    Set<UUID> findMissedDoseMedicationIds(UUID patientId);
+
+    /**
+     * Profile summary of a patient (with clinic and doctor names) in a single query.
+     */
+    Optional<PatientSummary> findPatientSummary(UUID patientId);
+
     /**
      * Get all medications for a patient with missed dose info.
      */
@@ -51,10 +74,16 @@ public interface PatientService {
     List<Medication> getPatientMedications(UUID patientId);
 
     /**
-     * NEW: Get intake history for a patient.
-     * Returns medication name, scheduled time, taken time, and status.
+     * Get one page of a patient's intake history, oldest first, optionally limited to [from, to].
+     * Pass the previous page's nextCursor to continue; a null cursor starts from the beginning.
+     */
+    IntakeHistoryPage getIntakeHistoryPage(UUID patientId, LocalDate from, LocalDate to, String cursor, int limit);
+
+    /**
+     * A patient's whole intake history, oldest first, read pageSize rows at a time.
+     * For app versions that call the history endpoint without paging parameters.
      */
-    List<IntakeHistoryResponse> getIntakeHistoryByPatientId(UUID patientId);
+    List<IntakeHistoryResponse> getFullIntakeHistory(UUID patientId, int pageSize);
 
     /**
      * Assign a doctor to the patient (only if same clinic).
@@ -63,6 +92,12 @@ public interface PatientService {
 
     List<Patient> findUnassignedPatientsByDoctorClinic(String mcr);
 
+    /**
+     * One page of a doctor's patient roster (or, if unassigned is set, of the unassigned patients in the
+     * doctor's clinic) with last log date and this month's adherence, computed in a single aggregate query.
+     */
+    PatientRosterPage getDoctorRoster(String mcr, boolean unassigned, RosterQuery query);
+
     void unassignAllPatientsFromDoctor(String mcrNo);
 
 
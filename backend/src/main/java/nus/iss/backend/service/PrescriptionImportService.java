@@ -0,0 +1,28 @@
+package nus.iss.backend.service;
+
+import nus.iss.backend.dto.PrescriptionImportReport;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+// Deliberately not @Transactional: the import runs as a Spring Batch job with a transaction per chunk, and
+// the job repository refuses to launch a job inside an existing transaction.
+@Service
+public interface PrescriptionImportService {
+
+    /**
+     * Stores the CSV and starts importing it into the clinic of the given doctor in the background.
+     * Throws ItemNotFound for an unknown doctor and BadRequestException for an empty file.
+     */
+    PrescriptionImportReport startImport(String mcrNo, MultipartFile file);
+
+    /**
+     * Restarts a FAILED or STOPPED import where it stopped. Returns the report of the new execution.
+     * Throws ItemNotFound for an unknown execution and BadRequestException if it cannot be restarted.
+     */
+    PrescriptionImportReport restartImport(long executionId);
+
+    /**
+     * Progress, counts and per-line errors of an import. Throws ItemNotFound for an unknown execution.
+     */
+    PrescriptionImportReport getReport(long executionId);
+}
@@ -0,0 +1,39 @@
+package nus.iss.backend.service;
+
+import nus.iss.backend.dto.RecognitionJobResponse;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.UUID;
+
+// Deliberately not @Transactional: every state change of a job is its own short write, and the OCR call
+// in between must not hold a connection.
+@Service
+public interface RecognitionJobService {
+
+    /**
+     * Stores the image and queues its recognition; returns at once. An image already uploaded (same bytes)
+     * returns the existing job instead, and requeues it if it had failed. Throws BadRequestException for an
+     * empty file.
+     */
+    RecognitionJobResponse submit(MultipartFile file);
+
+    /**
+     * Current state of the job. Throws ItemNotFound for an unknown (or purged) job.
+     */
+    RecognitionJobResponse getJob(UUID jobId);
+
+    /**
+     * Server-sent events with the job's state: the current one at once, then every change until the job
+     * finishes. Throws ItemNotFound for an unknown job.
+     */
+    SseEmitter subscribe(UUID jobId);
+
+    /**
+     * Hands due jobs to the workers (queued while the pool was full, waiting for a retry, or left RUNNING by
+     * an instance that went away), tells subscribers about jobs that finished on another instance and purges
+     * finished jobs past their keep-for. Returns the number of jobs handed over.
+     */
+    int sweep();
+}
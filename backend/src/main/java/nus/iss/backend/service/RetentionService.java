@@ -0,0 +1,34 @@
+package nus.iss.backend.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+@Service
+@Transactional
+public interface RetentionService {
+
+    /**
+     * First day of the oldest month kept in Medication_Intake_History; logs dated before it belong in the archive.
+     * Null while retention is switched off.
+     */
+    LocalDate archiveCutoff();
+
+    /**
+     * Moves up to chunkSize intake logs dated before the cutoff (oldest first) into the archive,
+     * in one transaction. Returns the number moved.
+     */
+    int archiveChunk(LocalDate cutoff, int chunkSize);
+
+    /**
+     * Deletes up to chunkSize inactive schedules created before the cutoff that have no intake logs left
+     * in the hot table and no adherence rollup rows. Returns the number deleted.
+     */
+    int purgeSchedulesChunk(LocalDate cutoff, int chunkSize);
+
+    /**
+     * True if a history read starting at from (null = from the beginning) may need archived rows.
+     */
+    boolean reachesArchive(LocalDate from);
+}
@@ -1,5 +1,6 @@
 package nus.iss.backend.service;
 
+import nus.iss.backend.dao.ScheduleFindResponse;
 import nus.iss.backend.dto.ScheduleResponse; // Lewis: Added this import for Android
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
@@ -9,8 +10,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -18,18 +22,77 @@ import java.util.UUID;
 public interface ScheduleService {
     List<Schedule> findSchedulesByPatientIdandScheduledTime(LocalTime scheduledTime, UUID patientId);
 
+    /**
+     * Active schedules of a patient at the given time, already in the /find response shape (single query).
+     */
+    List<ScheduleFindResponse> findScheduleSummariesByPatientIdAndScheduledTime(LocalTime scheduledTime, UUID patientId);
+
     Boolean hasMissedDose(UUID scheduleId);
 
+    /**
+     * Missed-dose flags for many medications in one aggregate query.
+     * Returns the ids (out of the given ones) with any untaken dose logged this month.
+     */
+    Set<UUID> findMedicationIdsWithMissedDose(Collection<UUID> medicationIds);
+
+    /**
+     * Missed-dose flags for every medication of many patients in one aggregate query.
+     * Patients without any missed dose are left out of the map.
+     */
+    Map<UUID, Set<UUID>> findMedicationIdsWithMissedDoseByPatient(Collection<UUID> patientIds);
+
     Optional<Schedule> findScheduleById(UUID id);
 
     List<Schedule> findActiveSchedulesByMedication(Medication medication);
 
+    /**
+     * Deletes the medication's inactive schedules created before the cutoff, with their intake logs and
+     * rollup rows, in three set-based statements however long the history is.
+     */
     void deleteOldInactiveSchedules(Medication medication, LocalDateTime cutoffDate);
 
     void deactivateSchedules(List<Schedule> schedules);
 
+    /**
+     * Deactivates every active schedule of the medication with one bulk update. Returns the number deactivated.
+     */
+    int deactivateSchedulesByMedication(Medication medication);
+
+    /**
+     * Same bulk update, without the data-version bump, for a caller that changes more for the same patients in
+     * its transaction and bumps once at the end. Returns the patients whose schedules were deactivated.
+     */
+    List<UUID> deactivateSchedulesByMedicationUnmarked(Medication medication);
+
     Schedule createSchedule(Medication medication, Patient patient, LocalTime scheduledTime);
 
+    /**
+     * Creates one active schedule per time; the inserts go out as one JDBC batch at flush.
+     */
+    List<Schedule> createSchedules(Medication medication, Patient patient, Collection<LocalTime> scheduledTimes);
+
+    /**
+     * Same insert batch, without the data-version bump; the caller bumps the patient itself.
+     */
+    List<Schedule> createSchedulesUnmarked(Medication medication, Patient patient, Collection<LocalTime> scheduledTimes);
+
+    /**
+     * Same for several medications at once: one insert batch, and one data-version bump for all their patients.
+     */
+    List<Schedule> createSchedules(List<NewSchedules> newSchedules);
+
+    /**
+     * The times a medication is taken at by the patient it belongs to.
+     */
+    record NewSchedules(Medication medication, Patient patient, Collection<LocalTime> scheduledTimes) {
+    }
+
     // Lewis: New method for Android to get daily recurring medication schedule
     List<ScheduleResponse> getDailyScheduleForPatient(UUID patientId);
+
+    /**
+     * Same, for a caller that has already read the patient's data version (null if there is no such patient),
+     * so the schedule returned matches the ETag built from it.
+     */
+    List<ScheduleResponse> getDailyScheduleForPatient(UUID patientId, Long dataVersion);
 }
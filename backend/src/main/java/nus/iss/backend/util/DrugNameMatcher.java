@@ -0,0 +1,471 @@
+package nus.iss.backend.util;
+
+import nus.iss.backend.dao.ImageOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Drug names of the DrugBank vocabulary the OCR model also uses (ml/drugbank_vocabulary.csv, copied into the
+ * jar by the build), for suggesting the drug behind what OCR read and for autocomplete. ~17k names and ~26k
+ * synonyms are held in a few flat arrays, about 4 MB, instead of maps of strings:
+ * - every name and synonym normalised (lower case ASCII letters and digits, single spaces) and sorted in one
+ *   byte array: exact lookups and prefix searches are binary searches
+ * - a trigram index over the terms of up to 32 characters: a misread name is compared by edit distance only
+ *   with the terms in the rarest of its trigrams' lists, which any term within that distance must be in
+ * Names are returned the way MedicationInput stores them ("Acetylsalicylic Acid"). Without the vocabulary
+ * file the matcher is empty and names pass through unchanged.
+ */
+@Component
+public class DrugNameMatcher {
+    private static final Logger logger = LoggerFactory.getLogger(DrugNameMatcher.class);
+    private static final int MAX_FUZZY_LENGTH = 32;
+    // trigram letters: padding, space, a-z, 0-9
+    private static final int ALPHABET = 38;
+    // prefix matches looked at for one autocomplete
+    private static final int MAX_PREFIX_SCAN = 512;
+    // strength and form words on a label that are not part of the name ("Loratadine 10 mg tablets")
+    private static final Set<String> DOSE_WORDS = Set.of("mg", "mcg", "ug", "g", "ml", "iu", "tab", "tabs", "tablet",
+            "tablets", "cap", "caps", "capsule", "capsules", "syrup", "cream", "drops");
+
+    // salts and hydrates named after the drug ("Chlorpheniramine Maleate"), tried without when the whole is unknown
+    private static final Set<String> SALT_WORDS = Set.of("hydrochloride", "hcl", "hydrobromide", "maleate", "sodium",
+            "potassium", "calcium", "magnesium", "sulfate", "sulphate", "phosphate", "citrate", "acetate", "tartrate",
+            "besylate", "besilate", "mesylate", "succinate", "fumarate", "monohydrate", "dihydrate", "trihydrate");
+
+    public record Match(String name, int distance) {
+    }
+
+    private final byte[] names;
+    private final int[] nameStart;
+    private final byte[] keys;
+    private final int[] keyStart;
+    private final int[] keyName;
+    private final BitSet synonyms;
+    private final int[] gramStart;
+    private final int[] postings;
+
+    public DrugNameMatcher(@Value("${app.drugs.vocabulary:classpath:drugs/drugbank_vocabulary.csv}") Resource vocabulary,
+                           @Value("${app.drugs.max-synonym-length:40}") int maxSynonymLength) {
+        List<String> rawNames = new ArrayList<>();
+        // term -> name index * 2, + 1 for a synonym; names go in first, so a name wins over a synonym
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        read(vocabulary, maxSynonymLength, rawNames, terms);
+
+        ByteArrayBuilder nameBytes = new ByteArrayBuilder();
+        nameStart = new int[rawNames.size() + 1];
+        for (int i = 0; i < rawNames.size(); i++) {
+            nameStart[i] = nameBytes.size();
+            nameBytes.append(rawNames.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+        nameStart[rawNames.size()] = nameBytes.size();
+        names = nameBytes.toArray();
+
+        List<String> sorted = new ArrayList<>(terms.keySet());
+        sorted.sort(Comparator.naturalOrder());
+        ByteArrayBuilder keyBytes = new ByteArrayBuilder();
+        keyStart = new int[sorted.size() + 1];
+        keyName = new int[sorted.size()];
+        synonyms = new BitSet(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            keyStart[i] = keyBytes.size();
+            keyBytes.append(sorted.get(i).getBytes(StandardCharsets.US_ASCII));
+            int value = terms.get(sorted.get(i));
+            keyName[i] = value >> 1;
+            synonyms.set(i, (value & 1) == 1);
+        }
+        keyStart[sorted.size()] = keyBytes.size();
+        keys = keyBytes.toArray();
+
+        // trigram lists in term order, as one array: list g is postings[gramStart[g] .. gramStart[g + 1])
+        int[][] termGrams = new int[keyName.length][];
+        gramStart = new int[ALPHABET * ALPHABET * ALPHABET + 1];
+        for (int term = 0; term < keyName.length; term++) {
+            int length = keyStart[term + 1] - keyStart[term];
+            termGrams[term] = length > MAX_FUZZY_LENGTH ? new int[0] : grams(keys, keyStart[term], length);
+            for (int gram : termGrams[term]) {
+                gramStart[gram + 1]++;
+            }
+        }
+        for (int g = 1; g < gramStart.length; g++) {
+            gramStart[g] += gramStart[g - 1];
+        }
+        postings = new int[gramStart[gramStart.length - 1]];
+        int[] fill = Arrays.copyOf(gramStart, gramStart.length - 1);
+        for (int term = 0; term < keyName.length; term++) {
+            for (int gram : termGrams[term]) {
+                postings[fill[gram]++] = term;
+            }
+        }
+        logger.info("Drug vocabulary: {} names, {} terms, {} KB", rawNames.size(), keyName.length,
+                (names.length + keys.length + 4L * (nameStart.length + keyStart.length + keyName.length
+                        + gramStart.length + postings.length)) / 1024);
+    }
+
+    /**
+     * The drug the name or one of its synonyms stands for, spelled exactly (case and punctuation aside).
+     */
+    public Optional<String> canonicalName(String name) {
+        int term = find(normalize(name));
+        return term < 0 ? Optional.empty() : Optional.of(display(keyName[term]));
+    }
+
+    /**
+     * The drug a name read off a label most likely stands for: the same or a synonym, else the closest term
+     * within an edit distance that grows with the length (none for under 5 characters, up to 3). When the
+     * whole is unknown, it is tried without strength and form words, then also without salt words. Empty when
+     * nothing is close or two drugs are equally close.
+     */
+    public Optional<Match> correct(String name) {
+        String key = normalize(name);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+        String bare = strip(key, DOSE_WORDS);
+        String base = strip(bare, SALT_WORDS);
+        List<String> tries = new ArrayList<>(3);
+        for (String candidate : List.of(key, bare, base)) {
+            if (!candidate.isEmpty() && !tries.contains(candidate)) {
+                tries.add(candidate);
+            }
+        }
+        for (String candidate : tries) {
+            int term = find(candidate);
+            if (term >= 0) {
+                return Optional.of(new Match(display(keyName[term]), 0));
+            }
+        }
+        for (String candidate : tries) {
+            Match match = closest(candidate);
+            if (match != null) {
+                return Optional.of(match);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Adds the drug the OCR medication name stands for as suggestedName, with its edit distance, when it is
+     * not what was read. The name itself is left as read: a misread can land on a different drug, so only the
+     * user may accept the suggestion.
+     */
+    public void addSuggestedName(ImageOutput output) {
+        if (output == null || output.getMedicationName() == null) {
+            return;
+        }
+        correct(output.getMedicationName()).ifPresent(match -> {
+            if (match.name().equalsIgnoreCase(output.getMedicationName().trim())) {
+                return;
+            }
+            logger.debug("OCR medication name {} may be {}", LogSanitizer.sanitizeForLog(output.getMedicationName()), match.name());
+            output.setSuggestedName(match.name());
+            output.setMatchDistance(match.distance());
+        });
+    }
+
+    /**
+     * Up to limit drugs with a name or synonym starting with the prefix, shortest first; when there is none,
+     * the drug the prefix is a misspelling of.
+     */
+    public List<String> complete(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        byte[] query = key.getBytes(StandardCharsets.US_ASCII);
+        List<Integer> found = new ArrayList<>();
+        for (int term = lowerBound(query); term < keyName.length && found.size() < MAX_PREFIX_SCAN
+                && startsWith(term, query); term++) {
+            found.add(term);
+        }
+        if (found.isEmpty()) {
+            return correct(prefix).map(match -> List.of(match.name())).orElse(List.of());
+        }
+        found.sort(Comparator.<Integer>comparingInt(term -> keyStart[term + 1] - keyStart[term])
+                .thenComparing(term -> synonyms.get(term)));
+        Set<Integer> drugs = new LinkedHashSet<>();
+        for (int term : found) {
+            if (drugs.size() == limit) {
+                break;
+            }
+            drugs.add(keyName[term]);
+        }
+        return drugs.stream().map(this::display).toList();
+    }
+
+    public int size() {
+        return nameStart.length - 1;
+    }
+
+    // the closest term within the distance allowed for the length; null if none or a tie between two drugs
+    private Match closest(String key) {
+        int length = key.length();
+        int maxDistance = length < 5 ? 0 : length < 8 ? 1 : length < 12 ? 2 : 3;
+        if (maxDistance == 0 || length > MAX_FUZZY_LENGTH) {
+            return null;
+        }
+        byte[] query = key.getBytes(StandardCharsets.US_ASCII);
+        int[] grams = grams(query, 0, query.length);
+        // a term within maxDistance shares all but 3 * maxDistance of these grams, so it is in at least one
+        // of the rarest 3 * maxDistance + 1 lists
+        Integer[] byRarity = new Integer[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            byRarity[i] = grams[i];
+        }
+        Arrays.sort(byRarity, Comparator.comparingInt(gram -> gramStart[gram + 1] - gramStart[gram]));
+        int lists = Math.min(grams.length, 3 * maxDistance + 1);
+        int total = 0;
+        for (int i = 0; i < lists; i++) {
+            total += gramStart[byRarity[i] + 1] - gramStart[byRarity[i]];
+        }
+        int[] candidates = new int[total];
+        int n = 0;
+        for (int i = 0; i < lists; i++) {
+            for (int p = gramStart[byRarity[i]]; p < gramStart[byRarity[i] + 1]; p++) {
+                candidates[n++] = postings[p];
+            }
+        }
+        Arrays.sort(candidates);
+
+        int bestTerm = -1;
+        int bestDistance = maxDistance + 1;
+        boolean tie = false;
+        for (int i = 0; i < n; i++) {
+            int term = candidates[i];
+            if (i > 0 && term == candidates[i - 1]) {
+                continue;
+            }
+            int distance = distance(query, term, maxDistance);
+            if (distance > maxDistance) {
+                continue;
+            }
+            if (distance < bestDistance || distance == bestDistance && synonyms.get(bestTerm) && !synonyms.get(term)) {
+                tie = false;
+                bestTerm = term;
+                bestDistance = distance;
+            } else if (distance == bestDistance && keyName[term] != keyName[bestTerm] && synonyms.get(term) == synonyms.get(bestTerm)) {
+                tie = true;
+            }
+        }
+        return bestTerm < 0 || tie ? null : new Match(display(keyName[bestTerm]), bestDistance);
+    }
+
+    // optimal string alignment distance (substitutions, insertions, deletions, adjacent swaps), or
+    // maxDistance + 1 once it is certain to be more
+    private int distance(byte[] query, int term, int maxDistance) {
+        int from = keyStart[term];
+        int length = keyStart[term + 1] - from;
+        if (Math.abs(length - query.length) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] before = new int[length + 1];
+        int[] previous = new int[length + 1];
+        int[] current = new int[length + 1];
+        for (int j = 0; j <= length; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= query.length; i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= length; j++) {
+                int cost = query[i - 1] == keys[from + j - 1] ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && query[i - 1] == keys[from + j - 2] && query[i - 2] == keys[from + j - 1]) {
+                    value = Math.min(value, before[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] recycled = before;
+            before = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[length];
+    }
+
+    private int find(String key) {
+        if (key.isEmpty()) {
+            return -1;
+        }
+        byte[] query = key.getBytes(StandardCharsets.US_ASCII);
+        int term = lowerBound(query);
+        return term < keyName.length && compare(term, query) == 0 ? term : -1;
+    }
+
+    // first term not below the query
+    private int lowerBound(byte[] query) {
+        int low = 0;
+        int high = keyName.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, query) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int term, byte[] query) {
+        return Arrays.compare(keys, keyStart[term], keyStart[term + 1], query, 0, query.length);
+    }
+
+    private boolean startsWith(int term, byte[] query) {
+        int from = keyStart[term];
+        return keyStart[term + 1] - from >= query.length
+                && Arrays.equals(keys, from, from + query.length, query, 0, query.length);
+    }
+
+    private String display(int name) {
+        return MedicationInput.normalizeName(new String(names, nameStart[name], nameStart[name + 1] - nameStart[name],
+                StandardCharsets.UTF_8));
+    }
+
+    // distinct trigrams of the key padded with two marks at either end, sorted
+    private static int[] grams(byte[] key, int from, int length) {
+        int[] letters = new int[length + 4];
+        for (int i = 0; i < length; i++) {
+            byte c = key[from + i];
+            letters[i + 2] = c == ' ' ? 1 : c <= '9' ? 28 + c - '0' : 2 + c - 'a';
+        }
+        int[] grams = new int[letters.length - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = (letters[i] * ALPHABET + letters[i + 1]) * ALPHABET + letters[i + 2];
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Lower case ASCII letters and digits, anything else one space: "Co-Trimoxazole  480MG" -> "co trimoxazole 480mg".
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String plain = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder key = new StringBuilder(plain.length());
+        boolean space = false;
+        for (int i = 0; i < plain.length(); i++) {
+            char c = Character.toLowerCase(plain.charAt(i));
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                if (space && !key.isEmpty()) {
+                    key.append(' ');
+                }
+                key.append(c);
+                space = false;
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                space = true;
+            }
+        }
+        return key.toString();
+    }
+
+    // the key without the given words and without numbers ("500mg"); a digit inside a word is more likely a
+    // misread letter
+    private static String strip(String key, Set<String> words) {
+        StringBuilder bare = new StringBuilder(key.length());
+        for (String word : key.split(" ")) {
+            if (words.contains(word) || Character.isDigit(word.charAt(0))) {
+                continue;
+            }
+            if (!bare.isEmpty()) {
+                bare.append(' ');
+            }
+            bare.append(word);
+        }
+        return bare.toString();
+    }
+
+    private static void read(Resource vocabulary, int maxSynonymLength, List<String> rawNames, Map<String, Integer> terms) {
+        if (!vocabulary.exists()) {
+            logger.warn("Drug vocabulary {} not found, medication names are not matched", vocabulary.getDescription());
+            return;
+        }
+        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+        List<String[]> synonymsOf = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(vocabulary.getInputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                FieldSet fields = tokenizer.tokenize(line);
+                if (fields.getFieldCount() == 0) {
+                    continue;
+                }
+                String name = fields.readString(0).trim();
+                String key = normalize(name);
+                if (key.isEmpty() || terms.containsKey(key)) {
+                    continue;
+                }
+                terms.put(key, rawNames.size() << 1);
+                rawNames.add(name);
+                synonymsOf.add(fields.getFieldCount() > 1 ? fields.readString(1).split(" \\| ") : new String[0]);
+            }
+        } catch (IOException e) {
+            logger.warn("Drug vocabulary {} unreadable, medication names are not matched: {}", vocabulary.getDescription(),
+                    LogSanitizer.sanitizeForLog(e.getMessage()));
+            rawNames.clear();
+            terms.clear();
+            return;
+        }
+        for (int name = 0; name < synonymsOf.size(); name++) {
+            for (String synonym : synonymsOf.get(name)) {
+                String key = normalize(synonym);
+                if (!key.isEmpty() && key.length() <= maxSynonymLength) {
+                    terms.putIfAbsent(key, name << 1 | 1);
+                }
+            }
+        }
+    }
+
+    private static final class ByteArrayBuilder {
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+
+        void append(byte[] more) {
+            if (size + more.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + more.length));
+            }
+            System.arraycopy(more, 0, bytes, size, more.length);
+            size += more.length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package nus.iss.backend.util;
+
+import jakarta.annotation.PreDestroy;
+import nus.iss.backend.exceptions.OcrUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns a phone photo (often 4-12 MB) into what the OCR model works on before it is sent: decoded, turned
+ * upright by its EXIF orientation, scaled down to max-dimension on the long side, greyscale, JPEG at quality.
+ * - the original is read as a stream and never held as a byte array: the JPEG reader subsamples while it
+ *   decodes when the photo is more than twice the target size, so a 12 MP photo does not become a 12 MP bitmap
+ * - the work runs on a fixed pool with a bounded queue, which also bounds the heap taken by bitmaps; when it
+ *   is full the call fails with OcrUnavailableException, like a saturated OCR service
+ * - formats ImageIO cannot decode (HEIC, WebP, ...) and small upright images under pass-through-bytes are sent
+ *   as they are
+ */
+@Component
+public class ImagePreprocessor {
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessor.class);
+    // EXIF sits in the first segments of a JPEG; this much of the stream is kept to read it and rewind
+    private static final int EXIF_LOOKAHEAD = 128 * 1024;
+
+    public record Prepared(byte[] bytes, String filename, String contentType) {
+    }
+
+    private final boolean enabled;
+    private final int maxDimension;
+    private final float quality;
+    private final long passThroughBytes;
+    private final ThreadPoolExecutor pool;
+
+    public ImagePreprocessor(@Value("${app.ocr.preprocess.enabled:true}") boolean enabled,
+                             @Value("${app.ocr.preprocess.max-dimension:2000}") int maxDimension,
+                             @Value("${app.ocr.preprocess.quality:0.85}") float quality,
+                             @Value("${app.ocr.preprocess.pass-through-bytes:524288}") long passThroughBytes,
+                             @Value("${app.ocr.preprocess.threads:2}") int threads,
+                             @Value("${app.ocr.preprocess.queue-capacity:16}") int queueCapacity) {
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+        this.passThroughBytes = passThroughBytes;
+        AtomicInteger number = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-preprocess-" + number.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Prepares the image on the pool. size is the length of the original in bytes.
+     */
+    public CompletableFuture<Prepared> prepare(InputStreamSource source, long size, String filename, String contentType) {
+        try {
+            if (!enabled) {
+                return CompletableFuture.supplyAsync(() -> original(source, filename, contentType), pool);
+            }
+            return CompletableFuture.supplyAsync(() -> process(source, size, filename, contentType), pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new OcrUnavailableException("Image processing busy, try again later"));
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    Prepared process(InputStreamSource source, long size, String filename, String contentType) {
+        long start = System.nanoTime();
+        BufferedImage image;
+        int orientation;
+        try (BufferedInputStream in = new BufferedInputStream(source.getInputStream(), 64 * 1024)) {
+            in.mark(EXIF_LOOKAHEAD);
+            orientation = exifOrientation(in.readNBytes(EXIF_LOOKAHEAD));
+            in.reset();
+            image = decode(in, size, orientation);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the image", e);
+        }
+        if (image == null) {
+            logger.debug("Image {} sent as uploaded", LogSanitizer.sanitizeForLog(filename));
+            return original(source, filename, contentType);
+        }
+        byte[] encoded = encode(orient(toGrey(image), orientation));
+        logger.debug("Image {}: {} bytes -> {} bytes in {} ms", LogSanitizer.sanitizeForLog(filename), size, encoded.length,
+                (System.nanoTime() - start) / 1_000_000);
+        return new Prepared(encoded, jpegName(filename), "image/jpeg");
+    }
+
+    // null when no reader takes the format, or when the image is fine as it is
+    private BufferedImage decode(InputStream in, long size, int orientation) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                if (longSide <= maxDimension && orientation <= 1 && size <= passThroughBytes) {
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                // skip pixels while decoding, but stay at twice the target so the final scaling can smooth
+                int subsampling = Math.max(1, longSide / (2 * maxDimension));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // scales into a greyscale image of at most maxDimension, halving at a time so text edges stay smooth
+    private BufferedImage toGrey(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage current = image;
+        while (width / 2 >= targetWidth && height / 2 >= targetHeight) {
+            width /= 2;
+            height /= 2;
+            current = draw(current, width, height);
+        }
+        if (current == image || width != targetWidth || height != targetHeight) {
+            current = draw(current, targetWidth, targetHeight);
+        }
+        return current;
+    }
+
+    // EXIF orientation 1-8 (TIFF tag 274) applied, so the text is upright for the model
+    private static BufferedImage orient(BufferedImage image, int orientation) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { t.scale(-1, 1); t.translate(-w, 0); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.scale(1, -1); t.translate(0, -h); }
+            case 5 -> { t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.scale(-1, 1); t.translate(-h, 0); t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            case 8 -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            default -> { return image; }
+        }
+        boolean swap = orientation >= 5;
+        BufferedImage rotated = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = rotated.createGraphics();
+        try {
+            g.drawImage(image, t, null);
+        } finally {
+            g.dispose();
+        }
+        return rotated;
+    }
+
+    private static BufferedImage draw(BufferedImage image, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encode(BufferedImage image) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode the image", e);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static Prepared original(InputStreamSource source, String filename, String contentType) {
+        try (InputStream in = source.getInputStream()) {
+            return new Prepared(in.readAllBytes(), filename, contentType);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the image", e);
+        }
+    }
+
+    private static String jpegName(String filename) {
+        if (filename == null || filename.isBlank()) {
+            return "image.jpg";
+        }
+        int dot = filename.lastIndexOf('.');
+        return (dot > 0 ? filename.substring(0, dot) : filename) + ".jpg";
+    }
+
+    /**
+     * Orientation from the Exif APP1 segment of a JPEG header, 1 (upright) when there is none.
+     */
+    static int exifOrientation(byte[] head) {
+        if (head.length < 4 || (head[0] & 0xFF) != 0xFF || (head[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+        int pos = 2;
+        while (pos + 4 <= head.length && (head[pos] & 0xFF) == 0xFF) {
+            int marker = head[pos + 1] & 0xFF;
+            int length = ((head[pos + 2] & 0xFF) << 8) | (head[pos + 3] & 0xFF);
+            if (marker == 0xDA || marker == 0xD9) {
+                return 1;
+            }
+            int segment = pos + 4;
+            if (marker == 0xE1 && segment + 14 <= head.length && new String(head, segment, 4, StandardCharsets.US_ASCII).equals("Exif")) {
+                return tiffOrientation(head, segment + 6, Math.min(head.length, pos + 2 + length));
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    // offsets come from the file: anything pointing outside the segment means a corrupt header, read as upright
+    private static int tiffOrientation(byte[] b, int tiff, int end) {
+        if (tiff + 8 > end) {
+            return 1;
+        }
+        boolean little = b[tiff] == 'I';
+        // unsigned 32-bit in the file, so it reads negative above 2 GB
+        long offset = read(b, tiff + 4, 4, little) & 0xFFFFFFFFL;
+        if (offset < 8 || tiff + offset + 2 > end) {
+            return 1;
+        }
+        int ifd = tiff + (int) offset;
+        int entries = read(b, ifd, 2, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                return 1;
+            }
+            if (read(b, entry, 2, little) == 0x0112) {
+                int value = read(b, entry + 8, 2, little);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int read(byte[] b, int offset, int length, boolean little) {
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            int octet = b[offset + (little ? length - 1 - i : i)] & 0xFF;
+            value = (value << 8) | octet;
+        }
+        return value;
+    }
+}
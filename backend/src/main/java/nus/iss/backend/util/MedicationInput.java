@@ -0,0 +1,49 @@
+package nus.iss.backend.util;
+
+import nus.iss.backend.exceptions.InvalidTimeFormatException;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Normalisation of medication input shared by the single-medication endpoints and the bulk prescription import,
+ * so both store names the same way and accept the same time formats.
+ */
+public final class MedicationInput {
+
+    private static final DateTimeFormatter FORMATTER_NO_COLON = DateTimeFormatter.ofPattern("HHmm");
+    private static final DateTimeFormatter FORMATTER_WITH_COLON = DateTimeFormatter.ofPattern("HH:mm");
+
+    private MedicationInput() {
+    }
+
+    /**
+     * Capitalises the first letter of each word and lower-cases the rest ("PANADOL extra" -> "Panadol Extra"),
+     * so the same medication is always stored under one spelling.
+     */
+    public static String normalizeName(String medicationName) {
+        return Arrays.stream(medicationName.trim().toLowerCase(Locale.ROOT).split("\\s+"))
+                .filter(word -> !word.isEmpty())
+                .map(word -> word.substring(0, 1).toUpperCase(Locale.ROOT) + word.substring(1))
+                .collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Parses a time given as HHmm or HH:mm. Throws InvalidTimeFormatException for anything else.
+     */
+    public static LocalTime parseTime(String timeStr) {
+        if (timeStr == null || (!timeStr.matches("^\\d{4}$") && !timeStr.matches("^\\d{2}:\\d{2}$"))) {
+            throw new InvalidTimeFormatException("Invalid time format: " + timeStr);
+        }
+        try {
+            return timeStr.contains(":")
+                    ? LocalTime.parse(timeStr, FORMATTER_WITH_COLON)
+                    : LocalTime.parse(timeStr, FORMATTER_NO_COLON);
+        } catch (Exception e) {
+            throw new InvalidTimeFormatException("Invalid time format: " + timeStr);
+        }
+    }
+}
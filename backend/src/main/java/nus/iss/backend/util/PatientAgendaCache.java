@@ -0,0 +1,100 @@
+package nus.iss.backend.util;
+
+import nus.iss.backend.dao.AgendaItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded, least-recently-used map of patient id to that patient's precomputed agenda
+ * (active schedules with medication name and quantity), so the reminder-time burst of
+ * /api/schedule/daily and /api/schedule/find calls is answered from memory.
+ *
+ * Entries are stored with the Patient.dataVersion read before the load, and a read with a different version
+ * reloads. Every write path that changes schedules or medications bumps that version, so a change made on
+ * another instance is seen on the next read, and the body agrees with the ETag built from the same version.
+ * Local writes also call {@link #invalidateAfterCommit}; the TTL lets idle patients' agendas go.
+ */
+@Component
+public class PatientAgendaCache {
+
+    private final Map<UUID, Entry> entries;
+    private final long ttlMillis;
+    // bumped on every invalidation; a load that overlaps one is returned but not stored
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PatientAgendaCache(@Value("${app.schedule.agenda-cache.max-patients:50000}") int capacity,
+                              @Value("${app.schedule.agenda-cache.ttl:10m}") Duration ttl) {
+        this.ttlMillis = ttl.toMillis();
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    /**
+     * Cached agenda of the patient at dataVersion, or the loader's result (stored for the next caller at that
+     * version) on a miss. A null version, for a patient that does not exist, is loaded but never stored.
+     */
+    public List<AgendaItem> get(UUID patientId, Long dataVersion, Function<UUID, List<AgendaItem>> loader) {
+        long now = System.currentTimeMillis();
+        Entry cached = entries.get(patientId);
+        if (cached != null && cached.expiresAt > now && cached.dataVersion.equals(dataVersion)) {
+            return cached.items;
+        }
+        long seen = invalidations.get();
+        List<AgendaItem> items = List.copyOf(loader.apply(patientId));
+        // a write committed while we were reading may not be in items; leave it for the next caller
+        if (dataVersion != null && invalidations.get() == seen) {
+            entries.put(patientId, new Entry(items, dataVersion, now + ttlMillis));
+        }
+        return items;
+    }
+
+    public void invalidate(Collection<UUID> patientIds) {
+        invalidations.incrementAndGet();
+        patientIds.forEach(entries::remove);
+    }
+
+    /**
+     * Drops the patients' agendas once the current transaction commits (immediately if there is none),
+     * so a request racing the write cannot re-cache the old rows after the eviction.
+     */
+    public void invalidateAfterCommit(Collection<UUID> patientIds) {
+        List<UUID> ids = patientIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(ids);
+            }
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private record Entry(List<AgendaItem> items, Long dataVersion, long expiresAt) {
+    }
+}
@@ -0,0 +1,62 @@
+package nus.iss.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Strong ETags for the per-patient mobile endpoints, derived from Patient.dataVersion.
+ * The tag only changes when the counter is bumped, so the server can answer If-None-Match
+ * without building the response body.
+ */
+public final class PatientETag {
+
+    private PatientETag() {
+    }
+
+    /**
+     * ETag for a representation that depends only on the patient's data version.
+     * Extra qualifiers are appended for representations that also depend on something else
+     * (e.g. the current month for the missed-dose flags).
+     */
+    public static String of(long dataVersion, Object... qualifiers) {
+        StringBuilder tag = new StringBuilder("\"v").append(dataVersion);
+        for (Object qualifier : qualifiers) {
+            tag.append('-').append(qualifier);
+        }
+        return tag.append('"').toString();
+    }
+
+    /**
+     * Short, order-independent qualifier for a set of ids, e.g. the medications with a missed dose.
+     * Empty for an empty set, so the tag of the common case stays the plain version.
+     */
+    public static String digest(Collection<?> values) {
+        if (values == null || values.isEmpty()) {
+            return "";
+        }
+        String joined = values.stream().map(String::valueOf).sorted().collect(Collectors.joining(","));
+        return Long.toHexString(UUID.nameUUIDFromBytes(joined.getBytes(StandardCharsets.UTF_8)).getMostSignificantBits());
+    }
+
+    /**
+     * True if the If-None-Match header lists the given ETag (or is "*").
+     * If-None-Match uses weak comparison, so a W/ prefix added by a proxy is ignored.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
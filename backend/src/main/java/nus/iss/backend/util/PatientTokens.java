@@ -0,0 +1,118 @@
+package nus.iss.backend.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nus.iss.backend.exceptions.InvalidTokenException;
+import nus.iss.backend.model.Patient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Signed tokens for the Android app: a JWT (HS256) carrying the patient id (sub) and clinic id (cid),
+ * issued at login and checked by PatientTokenFilter on every call without a database or session lookup.
+ *
+ * Only this exact header is accepted, so a token cannot pick its own algorithm. The key comes from
+ * app.auth.token.secret (base64, at least 32 bytes) and must be the same on every instance; without one a
+ * random key is made at startup, and tokens then die with the instance.
+ */
+@Component
+public class PatientTokens {
+    private static final Logger logger = LoggerFactory.getLogger(PatientTokens.class);
+    // login response header carrying the token; the app sends it back as Authorization: Bearer
+    public static final String RESPONSE_HEADER = "X-Patient-Token";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final String HEADER = ENCODER.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+
+    public record Claims(UUID patientId, UUID clinicId, Instant expiresAt) {
+    }
+
+    public PatientTokens(@Value("${app.auth.token.secret:}") String secret,
+                         @Value("${app.auth.token.ttl:7d}") Duration ttl) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            logger.warn("app.auth.token.secret is not set; patient tokens are signed with a random key and end with this instance");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = Base64.getDecoder().decode(secret.trim());
+            if (keyBytes.length < 32) {
+                throw new IllegalStateException("app.auth.token.secret must be at least 32 bytes (base64)");
+            }
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttl = ttl;
+    }
+
+    public String issue(Patient patient) {
+        long now = Instant.now().getEpochSecond();
+        String payload = MAPPER.createObjectNode()
+                .put("sub", patient.getId().toString())
+                .put("cid", patient.getClinic() == null ? null : patient.getClinic().getId().toString())
+                .put("iat", now)
+                .put("exp", now + ttl.toSeconds())
+                .toString();
+        String unsigned = HEADER + "." + ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return unsigned + "." + ENCODER.encodeToString(sign(unsigned));
+    }
+
+    /**
+     * Claims of a token with a valid signature that has not expired; InvalidTokenException otherwise.
+     */
+    public Claims verify(String token) {
+        String[] parts = token == null ? new String[0] : token.split("\\.", -1);
+        if (parts.length != 3 || !parts[0].equals(HEADER)) {
+            throw new InvalidTokenException("Malformed token");
+        }
+        byte[] signature;
+        JsonNode payload;
+        try {
+            signature = DECODER.decode(parts[2]);
+            if (!MessageDigest.isEqual(signature, sign(parts[0] + "." + parts[1]))) {
+                throw new InvalidTokenException("Bad token signature");
+            }
+            payload = MAPPER.readTree(DECODER.decode(parts[1]));
+        } catch (IllegalArgumentException | IOException e) {
+            throw new InvalidTokenException("Malformed token");
+        }
+        Instant expiresAt = Instant.ofEpochSecond(payload.path("exp").asLong(0));
+        if (!Instant.now().isBefore(expiresAt)) {
+            throw new InvalidTokenException("Token expired");
+        }
+        try {
+            return new Claims(UUID.fromString(payload.path("sub").asText()),
+                    payload.hasNonNull("cid") ? UUID.fromString(payload.get("cid").asText()) : null, expiresAt);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTokenException("Malformed token");
+        }
+    }
+
+    private byte[] sign(String unsigned) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(unsigned.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package nus.iss.backend.util;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * Directories for files holding patient data (uploaded photos, import CSVs): created owner-only (rwx------)
+ * where the file system has POSIX permissions, and tightened to that if they already exist.
+ */
+public final class PrivateDirectory {
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private PrivateDirectory() {
+    }
+
+    public static Path create(Path dir) throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return Files.createDirectories(dir);
+        }
+        Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        // an existing directory, or one the umask widened, keeps whatever it had otherwise
+        Files.setPosixFilePermissions(dir, OWNER_ONLY);
+        return dir;
+    }
+}
@@ -0,0 +1,43 @@
+package nus.iss.backend.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used set of client request ids that have already been committed.
+ * Lets retried mobile requests be acknowledged without a database round trip.
+ * The persisted unique key stays the source of truth; this is only a fast path.
+ */
+@Component
+public class RecentRequestCache {
+
+    private final Map<String, Boolean> entries;
+
+    public RecentRequestCache(@Value("${app.intake.idempotency.cache-size:10000}") int capacity) {
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    public boolean contains(String requestId) {
+        // get() (not containsKey) so a hit refreshes the entry's LRU position
+        return requestId != null && entries.get(requestId) != null;
+    }
+
+    public void add(String requestId) {
+        if (requestId != null) {
+            entries.put(requestId, Boolean.TRUE);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,34 @@
+package nus.iss.backend.util;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The patient whose token PatientTokenFilter verified for the current request. A verified id is known to
+ * exist (the token was issued at login and cannot be forged), so services can use it as a reference
+ * instead of loading the patient first. Empty outside a request or when the call carried no token.
+ */
+public final class VerifiedPatient {
+
+    public static final String ATTRIBUTE = VerifiedPatient.class.getName();
+
+    private VerifiedPatient() {
+    }
+
+    public static Optional<UUID> current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Optional.empty();
+        }
+        return attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof PatientTokens.Claims claims
+                ? Optional.of(claims.patientId())
+                : Optional.empty();
+    }
+
+    public static boolean is(UUID patientId) {
+        return patientId != null && current().filter(patientId::equals).isPresent();
+    }
+}
@@ -0,0 +1,5 @@
+-- Idempotency key of intake logs sent by the app (IntakeHistory.clientRequestId); a retried request
+-- finds its first log by it instead of storing a second one.
+ALTER TABLE Medication_Intake_History ADD COLUMN Client_Request_Id VARCHAR(64);
+
+ALTER TABLE Medication_Intake_History ADD CONSTRAINT UK_Intake_Client_Request UNIQUE (Client_Request_Id);
@@ -0,0 +1,12 @@
+-- Taken/missed counts per schedule and month (ScheduleAdherence), kept in step with
+-- Medication_Intake_History; existing logs are counted in with app.adherence.backfill-on-startup=true.
+CREATE TABLE Schedule_Adherence_Monthly (
+    Id           VARCHAR(255) NOT NULL,
+    Period_Month DATE         NOT NULL,
+    Taken_Count  INT          NOT NULL,
+    Missed_Count INT          NOT NULL,
+    Schedule_Id  VARCHAR(255) NOT NULL,
+    CONSTRAINT PK_Adherence PRIMARY KEY (Id),
+    CONSTRAINT UK_Adherence_Schedule_Month UNIQUE (Schedule_Id, Period_Month),
+    CONSTRAINT FK_Adherence_Schedule FOREIGN KEY (Schedule_Id) REFERENCES Schedule (Id)
+);
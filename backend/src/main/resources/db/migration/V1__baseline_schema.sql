@@ -0,0 +1,82 @@
+-- Baseline schema: exactly what spring.jpa.hibernate.ddl-auto=update produced from the entities before
+-- migrations existed. Those databases are baselined at this version and skip this script, so anything
+-- added since goes in a later migration (V1_1 onwards run on them too).
+-- Kept to portable DDL so the same script runs on MySQL 8 and on H2 (MODE=MySQL) in tests.
+
+CREATE TABLE Clinic (
+    Clinic_UUID                VARCHAR(255) NOT NULL,
+    Clinic_Name                VARCHAR(255),
+    Email_Domain               VARCHAR(255),
+    Require_Email_Verification BOOLEAN      NOT NULL,
+    CONSTRAINT PK_Clinic PRIMARY KEY (Clinic_UUID)
+);
+
+CREATE TABLE Doctor (
+    MCR_No      VARCHAR(7)   NOT NULL,
+    Password    VARCHAR(255) NOT NULL,
+    FirstName   VARCHAR(255) NOT NULL,
+    LastName    VARCHAR(255) NOT NULL,
+    Email       VARCHAR(255) NOT NULL,
+    Clinic_UUID VARCHAR(255) NOT NULL,
+    CONSTRAINT PK_Doctor PRIMARY KEY (MCR_No),
+    CONSTRAINT FK_Doctor_Clinic FOREIGN KEY (Clinic_UUID) REFERENCES Clinic (Clinic_UUID)
+);
+
+CREATE TABLE Patient (
+    Id              VARCHAR(255) NOT NULL,
+    Email           VARCHAR(255),
+    Password        VARCHAR(255) NOT NULL,
+    NRIC            VARCHAR(255) NOT NULL,
+    FirstName       VARCHAR(255) NOT NULL,
+    LastName        VARCHAR(255) NOT NULL,
+    Gender          VARCHAR(255) NOT NULL,
+    DOB             DATE         NOT NULL,
+    Assigned_Doctor VARCHAR(7),
+    Clinic_UUID     VARCHAR(255) NOT NULL,
+    CONSTRAINT PK_Patient PRIMARY KEY (Id),
+    CONSTRAINT FK_Patient_Doctor FOREIGN KEY (Assigned_Doctor) REFERENCES Doctor (MCR_No),
+    CONSTRAINT FK_Patient_Clinic FOREIGN KEY (Clinic_UUID) REFERENCES Clinic (Clinic_UUID)
+);
+
+CREATE TABLE Medication (
+    Id              VARCHAR(255) NOT NULL,
+    Medication_Name VARCHAR(255) NOT NULL,
+    Intake_Quantity VARCHAR(255) NOT NULL,
+    Frequency       INT          NOT NULL,
+    Timing          VARCHAR(255),
+    Instructions    VARCHAR(255),
+    Notes           VARCHAR(255),
+    Is_Active       BOOLEAN      NOT NULL,
+    CONSTRAINT PK_Medication PRIMARY KEY (Id)
+);
+
+CREATE TABLE Patient_Medication (
+    Patient_Id    VARCHAR(255) NOT NULL,
+    Medication_Id VARCHAR(255) NOT NULL,
+    CONSTRAINT FK_PatientMedication_Patient FOREIGN KEY (Patient_Id) REFERENCES Patient (Id),
+    CONSTRAINT FK_PatientMedication_Medication FOREIGN KEY (Medication_Id) REFERENCES Medication (Id)
+);
+
+CREATE TABLE Schedule (
+    Id             VARCHAR(255) NOT NULL,
+    Scheduled_Time TIME,
+    Is_Active      BOOLEAN,
+    CreationDate   DATETIME(6),
+    Medication_Id  VARCHAR(255) NOT NULL,
+    Patient_Id     VARCHAR(255) NOT NULL,
+    CONSTRAINT PK_Schedule PRIMARY KEY (Id),
+    CONSTRAINT FK_Schedule_Medication FOREIGN KEY (Medication_Id) REFERENCES Medication (Id),
+    CONSTRAINT FK_Schedule_Patient FOREIGN KEY (Patient_Id) REFERENCES Patient (Id)
+);
+
+CREATE TABLE Medication_Intake_History (
+    Id          VARCHAR(255) NOT NULL,
+    Logged_Date DATE,
+    Is_Taken    BOOLEAN      NOT NULL,
+    Doctor_Note VARCHAR(255),
+    Patient_Id  VARCHAR(255) NOT NULL,
+    Schedule_Id VARCHAR(255) NOT NULL,
+    CONSTRAINT PK_Intake PRIMARY KEY (Id),
+    CONSTRAINT FK_Intake_Patient FOREIGN KEY (Patient_Id) REFERENCES Patient (Id),
+    CONSTRAINT FK_Intake_Schedule FOREIGN KEY (Schedule_Id) REFERENCES Schedule (Id)
+);
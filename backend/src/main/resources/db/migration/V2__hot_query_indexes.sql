@@ -0,0 +1,39 @@
+-- Index plan for the ScheduleRepository, IntakeRepository and PatientRepository queries.
+-- InnoDB secondary indexes carry the primary key, so "covering" below includes the Id column.
+-- QueryPlanTest runs EXPLAIN on every one of those queries and fails on a full scan.
+
+-- Schedule
+--   findActiveSchedulesByPatientId / findDailyScheduleByPatientId: Patient_Id = ? AND Is_Active ORDER BY Scheduled_Time
+--   findSchedulesByPatientIdandScheduledTime / findScheduleSummaries...: Patient_Id = ? AND Is_Active AND Scheduled_Time = ?
+--   Is_Active sits before Scheduled_Time so one index serves both the equality lookup and the ordered feed;
+--   Medication_Id makes the /find projection covering.
+CREATE INDEX IDX_Schedule_Patient_Active_Time ON Schedule (Patient_Id, Is_Active, Scheduled_Time, Medication_Id);
+
+--   findByMedicationAndIsActiveTrue, findByMedicationAndIsActiveFalseAndCreationDateBefore,
+--   and the schedule side of the per-medication intake log queries
+CREATE INDEX IDX_Schedule_Medication_Active ON Schedule (Medication_Id, Is_Active, CreationDate);
+
+-- Medication_Intake_History
+--   findByPatient_Id, findHistoryRows, findHistoryRowsAfter (keyset on Logged_Date);
+--   Schedule_Id and Is_Taken make the history projection covering on this table
+CREATE INDEX IDX_Intake_Patient_Date ON Medication_Intake_History (Patient_Id, Logged_Date, Schedule_Id, Is_Taken);
+
+--   findBySchedule_Medication_Id, streamLogsByMedicationId (joined from Schedule),
+--   and the per-(schedule, month) adherence backfill and consistency aggregates
+CREATE INDEX IDX_Intake_Schedule_Date ON Medication_Intake_History (Schedule_Id, Logged_Date, Is_Taken);
+
+--   existsByClientRequestId / findExistingClientRequestIds use UK_Intake_Client_Request
+
+-- Patient
+--   findByDoctorMcrNo, findByDoctor
+CREATE INDEX IDX_Patient_Doctor ON Patient (Assigned_Doctor);
+
+--   findByClinic_IdAndDoctorIsNull
+CREATE INDEX IDX_Patient_Clinic_Doctor ON Patient (Clinic_UUID, Assigned_Doctor);
+
+--   findByEmailAndPassword, existsEmailIgnoreCase, existsEmailIgnoreCaseExcludingId
+CREATE INDEX IDX_Patient_Email ON Patient (Email);
+
+-- The email lookups now compare the raw column (so the index is usable) against a lower-cased
+-- parameter; savePatient already stores emails trimmed and lower-cased, this brings older rows in line.
+UPDATE Patient SET Email = LOWER(TRIM(Email)) WHERE Email IS NOT NULL;
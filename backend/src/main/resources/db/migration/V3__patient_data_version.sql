@@ -0,0 +1,3 @@
+-- Per-patient change counter behind the ETags of the Android polling endpoints
+-- (/api/schedule/daily/{patientId}, /api/patient/{id}/medList, /api/patient/{patientId}/medications).
+ALTER TABLE Patient ADD COLUMN Data_Version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,28 @@
+-- Cold storage for intake logs older than app.retention.intake-history.max-age-days, filled in chunks by
+-- IntakeRetentionJob. Medication name and scheduled time are copied in and there are no foreign keys, so
+-- archived rows outlive the schedule clean-up in processEditMedication and reads need no joins.
+CREATE TABLE Medication_Intake_History_Archive (
+    Id              VARCHAR(255) NOT NULL,
+    Patient_Id      VARCHAR(255) NOT NULL,
+    Schedule_Id     VARCHAR(255) NOT NULL,
+    Medication_Id   VARCHAR(255) NOT NULL,
+    Medication_Name VARCHAR(255),
+    Scheduled_Time  TIME,
+    Logged_Date     DATE         NOT NULL,
+    Is_Taken        BOOLEAN      NOT NULL,
+    Doctor_Note     VARCHAR(255),
+    Archived_At     DATETIME(6)  NOT NULL,
+    CONSTRAINT PK_Intake_Archive PRIMARY KEY (Id)
+);
+
+--   IntakeArchiveRepository.findHistoryRows / findHistoryRowsAfter (same keyset as the hot table)
+CREATE INDEX IDX_Intake_Archive_Patient_Date ON Medication_Intake_History_Archive (Patient_Id, Logged_Date, Scheduled_Time);
+
+--   findLatestLoggedDate: where the archive ends, for the adherence backfill and the read path
+CREATE INDEX IDX_Intake_Archive_Date ON Medication_Intake_History_Archive (Logged_Date);
+
+--   IntakeRepository.findIdsLoggedBefore: the retention job walks the hot table oldest first
+CREATE INDEX IDX_Intake_Logged_Date ON Medication_Intake_History (Logged_Date);
+
+--   ScheduleRepository.findArchivedInactiveSchedules: inactive schedules past the cutoff
+CREATE INDEX IDX_Schedule_Active_Created ON Schedule (Is_Active, CreationDate);
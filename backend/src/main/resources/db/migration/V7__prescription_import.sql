@@ -0,0 +1,112 @@
+-- Spring Batch job repository (spring-batch-core schema-mysql.sql, 5.x) for the prescription import job.
+-- Kept here rather than in spring.batch.jdbc.initialize-schema so Flyway owns every table; IF NOT EXISTS
+-- because the tables may have been created by hand on databases that tried Spring Batch before.
+CREATE TABLE IF NOT EXISTS BATCH_JOB_INSTANCE (
+    JOB_INSTANCE_ID BIGINT       NOT NULL PRIMARY KEY,
+    VERSION         BIGINT,
+    JOB_NAME        VARCHAR(100) NOT NULL,
+    JOB_KEY         VARCHAR(32)  NOT NULL,
+    CONSTRAINT JOB_INST_UN UNIQUE (JOB_NAME, JOB_KEY)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_JOB_EXECUTION (
+    JOB_EXECUTION_ID BIGINT        NOT NULL PRIMARY KEY,
+    VERSION          BIGINT,
+    JOB_INSTANCE_ID  BIGINT        NOT NULL,
+    CREATE_TIME      DATETIME(6)   NOT NULL,
+    START_TIME       DATETIME(6) DEFAULT NULL,
+    END_TIME         DATETIME(6) DEFAULT NULL,
+    STATUS           VARCHAR(10),
+    EXIT_CODE        VARCHAR(2500),
+    EXIT_MESSAGE     VARCHAR(2500),
+    LAST_UPDATED     DATETIME(6),
+    CONSTRAINT JOB_INST_EXEC_FK FOREIGN KEY (JOB_INSTANCE_ID) REFERENCES BATCH_JOB_INSTANCE (JOB_INSTANCE_ID)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_JOB_EXECUTION_PARAMS (
+    JOB_EXECUTION_ID BIGINT        NOT NULL,
+    PARAMETER_NAME   VARCHAR(100)  NOT NULL,
+    PARAMETER_TYPE   VARCHAR(100)  NOT NULL,
+    PARAMETER_VALUE  VARCHAR(2500),
+    IDENTIFYING      CHAR(1)       NOT NULL,
+    CONSTRAINT JOB_EXEC_PARAMS_FK FOREIGN KEY (JOB_EXECUTION_ID) REFERENCES BATCH_JOB_EXECUTION (JOB_EXECUTION_ID)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_STEP_EXECUTION (
+    STEP_EXECUTION_ID  BIGINT        NOT NULL PRIMARY KEY,
+    VERSION            BIGINT        NOT NULL,
+    STEP_NAME          VARCHAR(100)  NOT NULL,
+    JOB_EXECUTION_ID   BIGINT        NOT NULL,
+    CREATE_TIME        DATETIME(6)   NOT NULL,
+    START_TIME         DATETIME(6) DEFAULT NULL,
+    END_TIME           DATETIME(6) DEFAULT NULL,
+    STATUS             VARCHAR(10),
+    COMMIT_COUNT       BIGINT,
+    READ_COUNT         BIGINT,
+    FILTER_COUNT       BIGINT,
+    WRITE_COUNT        BIGINT,
+    READ_SKIP_COUNT    BIGINT,
+    WRITE_SKIP_COUNT   BIGINT,
+    PROCESS_SKIP_COUNT BIGINT,
+    ROLLBACK_COUNT     BIGINT,
+    EXIT_CODE          VARCHAR(2500),
+    EXIT_MESSAGE       VARCHAR(2500),
+    LAST_UPDATED       DATETIME(6),
+    CONSTRAINT JOB_EXEC_STEP_FK FOREIGN KEY (JOB_EXECUTION_ID) REFERENCES BATCH_JOB_EXECUTION (JOB_EXECUTION_ID)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_STEP_EXECUTION_CONTEXT (
+    STEP_EXECUTION_ID  BIGINT        NOT NULL PRIMARY KEY,
+    SHORT_CONTEXT      VARCHAR(2500) NOT NULL,
+    SERIALIZED_CONTEXT TEXT,
+    CONSTRAINT STEP_EXEC_CTX_FK FOREIGN KEY (STEP_EXECUTION_ID) REFERENCES BATCH_STEP_EXECUTION (STEP_EXECUTION_ID)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_JOB_EXECUTION_CONTEXT (
+    JOB_EXECUTION_ID   BIGINT        NOT NULL PRIMARY KEY,
+    SHORT_CONTEXT      VARCHAR(2500) NOT NULL,
+    SERIALIZED_CONTEXT TEXT,
+    CONSTRAINT JOB_EXEC_CTX_FK FOREIGN KEY (JOB_EXECUTION_ID) REFERENCES BATCH_JOB_EXECUTION (JOB_EXECUTION_ID)
+);
+
+-- id sequences, emulated with single-row tables on MySQL (constraint names made unique, as H2 keeps them per schema)
+CREATE TABLE IF NOT EXISTS BATCH_STEP_EXECUTION_SEQ (
+    ID         BIGINT  NOT NULL,
+    UNIQUE_KEY CHAR(1) NOT NULL,
+    CONSTRAINT STEP_EXECUTION_SEQ_UN UNIQUE (UNIQUE_KEY)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_JOB_EXECUTION_SEQ (
+    ID         BIGINT  NOT NULL,
+    UNIQUE_KEY CHAR(1) NOT NULL,
+    CONSTRAINT JOB_EXECUTION_SEQ_UN UNIQUE (UNIQUE_KEY)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_JOB_SEQ (
+    ID         BIGINT  NOT NULL,
+    UNIQUE_KEY CHAR(1) NOT NULL,
+    CONSTRAINT JOB_SEQ_UN UNIQUE (UNIQUE_KEY)
+);
+
+INSERT INTO BATCH_STEP_EXECUTION_SEQ (ID, UNIQUE_KEY)
+SELECT 0, '0' FROM DUAL WHERE NOT EXISTS (SELECT * FROM BATCH_STEP_EXECUTION_SEQ);
+INSERT INTO BATCH_JOB_EXECUTION_SEQ (ID, UNIQUE_KEY)
+SELECT 0, '0' FROM DUAL WHERE NOT EXISTS (SELECT * FROM BATCH_JOB_EXECUTION_SEQ);
+INSERT INTO BATCH_JOB_SEQ (ID, UNIQUE_KEY)
+SELECT 0, '0' FROM DUAL WHERE NOT EXISTS (SELECT * FROM BATCH_JOB_SEQ);
+
+-- Per-row error report of the prescription import, one row per rejected CSV line. Keyed by job instance
+-- rather than execution, so the report of a restarted import still includes the rows skipped before.
+CREATE TABLE Prescription_Import_Error (
+    Id              BINARY(16)   NOT NULL,
+    Job_Instance_Id BIGINT       NOT NULL,
+    Line_Number     BIGINT       NOT NULL,
+    Patient         VARCHAR(255),
+    Medication_Name VARCHAR(255),
+    Message         VARCHAR(500) NOT NULL,
+    Created_At      DATETIME(6)  NOT NULL,
+    CONSTRAINT PK_Prescription_Import_Error PRIMARY KEY (Id)
+);
+
+--   PrescriptionImportErrorRepository.findByJobInstanceIdOrderByLineNumber / countByJobInstanceId
+CREATE INDEX IDX_Prescription_Import_Error_Job ON Prescription_Import_Error (Job_Instance_Id, Line_Number);
@@ -0,0 +1,21 @@
+-- Prescription-image recognition jobs (POST /api/medication/predict_image/jobs). The upload itself is kept in
+-- app.ocr.jobs.dir until the job finishes; a re-upload of the same bytes finds its job by Content_Hash.
+CREATE TABLE Recognition_Job (
+    Id              BINARY(16)    NOT NULL,
+    Content_Hash    VARCHAR(64)   NOT NULL,
+    File_Name       VARCHAR(255),
+    Content_Type    VARCHAR(100),
+    Status          VARCHAR(16)   NOT NULL,
+    Attempts        INT           NOT NULL,
+    Next_Attempt_At DATETIME(6),
+    Lease_Until     DATETIME(6),
+    Result          VARCHAR(2000),
+    Error           VARCHAR(500),
+    Created_At      DATETIME(6)   NOT NULL,
+    Updated_At      DATETIME(6)   NOT NULL,
+    CONSTRAINT PK_Recognition_Job PRIMARY KEY (Id),
+    CONSTRAINT UK_Recognition_Job_Content_Hash UNIQUE (Content_Hash)
+);
+
+--   RecognitionJobRepository.findDue (sweeper) and deleteFinishedBefore (purge)
+CREATE INDEX IDX_Recognition_Job_Status ON Recognition_Job (Status, Next_Attempt_At);
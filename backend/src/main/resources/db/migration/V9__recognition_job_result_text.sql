@@ -0,0 +1,3 @@
+-- Recognition_Job.Result holds the OCR model's output as JSON, whose instructions and notes are free text
+-- copied off the label; VARCHAR(2000) made saving a long one fail and left the job RUNNING.
+ALTER TABLE Recognition_Job MODIFY Result TEXT;
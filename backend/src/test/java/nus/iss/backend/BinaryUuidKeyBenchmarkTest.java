@@ -0,0 +1,198 @@
+package nus.iss.backend;
+
+import nus.iss.backend.model.TimeOrderedUuidGenerator;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark for the intake table keys: random VARCHAR(255) UUIDs (the old mapping) against time-ordered
+ * BINARY(16) ones, same columns and indexes as Medication_Intake_History.
+ *
+ * By default it loads a small table into in-memory H2, which only shows that both variants work; H2 sizes
+ * say nothing about InnoDB, so they are not reported. For the real numbers point it at a scratch MySQL
+ * schema with a multi-million-row run:
+ *   mvn test -Dtest=BinaryUuidKeyBenchmarkTest -Dbenchmark.rows=5000000 \
+ *       -Dbenchmark.jdbc.url=jdbc:mysql://host/scratch?rewriteBatchedStatements=true \
+ *       -Dbenchmark.jdbc.user=... -Dbenchmark.jdbc.password=...
+ * which logs rows/s and data/index sizes per variant and checks the binary indexes come out smaller.
+ */
+class BinaryUuidKeyBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryUuidKeyBenchmarkTest.class);
+    private static final int BATCH = 1000;
+    private static final int PATIENTS = 2000;
+    private static final int SCHEDULES_PER_PATIENT = 3;
+
+    @Test
+    void generatedIdsAreVersion7AndIncreasing() throws Exception {
+        String previous = "";
+        for (int i = 0; i < 100_000; i++) {
+            UUID id = TimeOrderedUuidGenerator.next();
+            assertEquals(7, id.version());
+            assertEquals(2, id.variant());
+            // BINARY(16) compares like the lower-case hex form
+            assertTrue(id.toString().compareTo(previous) > 0, "not increasing at " + i);
+            previous = id.toString();
+        }
+
+        Set<UUID> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        seen.add(TimeOrderedUuidGenerator.next());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(8 * 20_000, seen.size());
+    }
+
+    @Test
+    void intakeTableWriteThroughputAndIndexSize() throws SQLException {
+        int rows = Integer.getInteger("benchmark.rows", 20_000);
+        String url = System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:uuidbench;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("benchmark.jdbc.user", "sa"), System.getProperty("benchmark.jdbc.password", ""))) {
+            boolean mySql = connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+
+            Run varchar = load(connection, "Bench_Intake_Varchar", "VARCHAR(255)", rows,
+                    () -> UUID.randomUUID().toString());
+            Run binary = load(connection, "Bench_Intake_Binary", "BINARY(16)", rows,
+                    () -> toBytes(TimeOrderedUuidGenerator.next()));
+
+            if (mySql) {
+                sizes(connection, varchar);
+                sizes(connection, binary);
+            }
+            for (Run run : List.of(varchar, binary)) {
+                logger.info("UUID key benchmark {}: {} rows in {} ms ({} rows/s), data {} KiB, indexes {} KiB",
+                        run.table, rows, run.millis, rows * 1000L / Math.max(1, run.millis),
+                        run.dataBytes < 0 ? "n/a" : run.dataBytes / 1024, run.indexBytes < 0 ? "n/a" : run.indexBytes / 1024);
+                assertEquals(rows, count(connection, run.table));
+            }
+            if (mySql) {
+                assertTrue(binary.indexBytes < varchar.indexBytes, "binary keys should give smaller indexes");
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE Bench_Intake_Varchar");
+                statement.execute("DROP TABLE Bench_Intake_Binary");
+            }
+        }
+    }
+
+    // Inserts in id order of generation, as the application does: one log per schedule per day, batched and
+    // committed every BATCH rows. Patient and schedule ids come from the same generator as the row ids.
+    private Run load(Connection connection, String table, String keyType, int rows, Supplier<Object> ids) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+            statement.execute("CREATE TABLE " + table + " (" +
+                    "Id " + keyType + " NOT NULL, Logged_Date DATE, Is_Taken BOOLEAN NOT NULL, " +
+                    "Patient_Id " + keyType + " NOT NULL, Schedule_Id " + keyType + " NOT NULL, " +
+                    "CONSTRAINT PK_" + table + " PRIMARY KEY (Id))");
+            statement.execute("CREATE INDEX IDX_" + table + "_Patient_Date ON " + table + " (Patient_Id, Logged_Date, Schedule_Id, Is_Taken)");
+            statement.execute("CREATE INDEX IDX_" + table + "_Schedule_Date ON " + table + " (Schedule_Id, Logged_Date, Is_Taken)");
+        }
+        Object[] patients = new Object[PATIENTS];
+        Object[] schedules = new Object[PATIENTS * SCHEDULES_PER_PATIENT];
+        for (int i = 0; i < schedules.length; i++) {
+            if (i < PATIENTS) {
+                patients[i] = ids.get();
+            }
+            schedules[i] = ids.get();
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table +
+                " (Id, Logged_Date, Is_Taken, Patient_Id, Schedule_Id) VALUES (?, ?, ?, ?, ?)")) {
+            LocalDate firstDay = LocalDate.now().minusDays(rows / schedules.length + 1);
+            for (int i = 0; i < rows; i++) {
+                int schedule = i % schedules.length;
+                insert.setObject(1, ids.get());
+                insert.setObject(2, firstDay.plusDays(i / schedules.length));
+                insert.setBoolean(3, i % 7 != 0);
+                insert.setObject(4, patients[schedule / SCHEDULES_PER_PATIENT]);
+                insert.setObject(5, schedules[schedule]);
+                insert.addBatch();
+                if ((i + 1) % BATCH == 0 || i == rows - 1) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return new Run(table, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void sizes(Connection connection, Run run) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // refresh the persistent statistics that information_schema reads from
+            statement.execute("ANALYZE TABLE " + run.table);
+        }
+        try (PreparedStatement query = connection.prepareStatement("SELECT DATA_LENGTH, INDEX_LENGTH " +
+                "FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?")) {
+            query.setString(1, run.table);
+            try (ResultSet rs = query.executeQuery()) {
+                assertTrue(rs.next());
+                run.dataBytes = rs.getLong(1);
+                run.indexBytes = rs.getLong(2);
+            }
+        }
+    }
+
+    private long count(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+
+    private static final class Run {
+        final String table;
+        final long millis;
+        long dataBytes = -1;
+        long indexBytes = -1;
+
+        Run(String table, long millis) {
+            this.table = table;
+            this.millis = millis;
+        }
+    }
+}
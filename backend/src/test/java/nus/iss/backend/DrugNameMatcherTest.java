@@ -0,0 +1,142 @@
+package nus.iss.backend;
+
+import nus.iss.backend.dao.ImageOutput;
+import nus.iss.backend.util.DrugNameMatcher;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DrugNameMatcherTest {
+    private static final Logger logger = LoggerFactory.getLogger(DrugNameMatcherTest.class);
+
+    // the layout of ml/drugbank_vocabulary.csv
+    static final String VOCABULARY = """
+            name,Synonyms,CONU\s
+            acetaminophen,"paracetamol | apap | n-acetyl-p-aminophenol",
+            acetylsalicylic acid,"aspirin | asa",
+            amoxicillin,"amoxycillin | amoxicilline",
+            amoxapine,,
+            chlorpheniramine,chlorphenamine,
+            dexchlorpheniramine maleate,,
+            loratadine,,
+            lorazepam,,
+            cetirizine,,
+            """;
+
+    private final DrugNameMatcher matcher = new DrugNameMatcher(
+            new ByteArrayResource(VOCABULARY.getBytes(StandardCharsets.UTF_8)), 40);
+
+    @Test
+    void namesAndSynonymsGiveTheDrug() {
+        assertEquals(9, matcher.size());
+        assertEquals(Optional.of("Acetaminophen"), matcher.canonicalName("PARACETAMOL"));
+        assertEquals(Optional.of("Acetylsalicylic Acid"), matcher.canonicalName("Aspirin"));
+        assertEquals(Optional.of("Amoxicillin"), matcher.canonicalName("amoxicillin"));
+        assertEquals(Optional.empty(), matcher.canonicalName("Panadol"));
+        // no guessing here
+        assertEquals(Optional.empty(), matcher.canonicalName("Loratadlne"));
+    }
+
+    @Test
+    void misreadNamesAreCorrected() {
+        assertEquals(new DrugNameMatcher.Match("Loratadine", 1), matcher.correct("Loratadlne").orElseThrow());
+        assertEquals(new DrugNameMatcher.Match("Acetaminophen", 1), matcher.correct("paracetamo1").orElseThrow());
+        assertEquals(new DrugNameMatcher.Match("Amoxicillin", 0), matcher.correct("AMOXYCILLIN 250 mg capsules").orElseThrow());
+        assertEquals(new DrugNameMatcher.Match("Chlorpheniramine", 0), matcher.correct("Chlorpheniramine Maleate").orElseThrow());
+        assertEquals(new DrugNameMatcher.Match("Cetirizine", 2), matcher.correct("Cetrizlne").orElseThrow());
+        assertTrue(matcher.correct("Panadol").isEmpty());
+        // too short to guess
+        assertTrue(matcher.correct("Lora").isEmpty());
+
+    }
+
+    @Test
+    void ocrNameIsKeptAndTheDrugSuggested() {
+        ImageOutput output = new ImageOutput();
+        output.setMedicationName("Loratadlne 10mg");
+        matcher.addSuggestedName(output);
+        assertEquals("Loratadlne 10mg", output.getMedicationName());
+        assertEquals("Loratadine", output.getSuggestedName());
+        assertEquals(1, output.getMatchDistance());
+
+        ImageOutput exact = new ImageOutput();
+        exact.setMedicationName("Loratadine");
+        matcher.addSuggestedName(exact);
+        assertNull(exact.getSuggestedName());
+        assertNull(exact.getMatchDistance());
+
+        ImageOutput unknown = new ImageOutput();
+        unknown.setMedicationName("Panadol");
+        matcher.addSuggestedName(unknown);
+        assertEquals("Panadol", unknown.getMedicationName());
+        assertNull(unknown.getSuggestedName());
+    }
+
+    @Test
+    void completesPrefixesShortestFirst() {
+        assertEquals(List.of("Amoxapine", "Amoxicillin"), matcher.complete("amox", 10));
+        assertEquals(List.of("Amoxapine"), matcher.complete("Amox", 1));
+        assertEquals(List.of("Lorazepam", "Loratadine"), matcher.complete("lora", 10));
+        // by synonym
+        assertEquals(List.of("Acetaminophen"), matcher.complete("para", 10));
+        // misspelt, nothing starts with it
+        assertEquals(List.of("Cetirizine"), matcher.complete("cetrizine", 10));
+        assertEquals(List.of(), matcher.complete("  ", 10));
+    }
+
+    @Test
+    void withoutVocabularyNamesPassThrough() {
+        DrugNameMatcher empty = new DrugNameMatcher(new ClassPathResource("drugs/missing.csv"), 40);
+        assertEquals(0, empty.size());
+        assertTrue(empty.correct("Loratadine").isEmpty());
+        assertEquals(List.of(), empty.complete("lor", 10));
+    }
+
+    // The shipped vocabulary (copied into target/classes by the build): lookups stay well under a millisecond.
+    @Test
+    void shippedVocabularyLookupLatency() {
+        ClassPathResource vocabulary = new ClassPathResource("drugs/drugbank_vocabulary.csv");
+        assumeTrue(vocabulary.exists(), "vocabulary not copied by the build");
+        long start = System.nanoTime();
+        DrugNameMatcher shipped = new DrugNameMatcher(vocabulary, 40);
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(shipped.size() > 10_000);
+        assertEquals("Acetaminophen", shipped.correct("Paracetamo1 500mg").orElseThrow().name());
+        assertEquals("Amoxicillin", shipped.correct("Amoxicilin").orElseThrow().name());
+        assertTrue(shipped.complete("ibup", 10).contains("Ibuprofen"));
+
+        String[] misread = {"paracetamo1", "Amoxicilin", "Loratadlne", "metformn", "ibuprufen", "omeprazol",
+                "amlodipin", "simvastatine", "Panadol", "Zyrtec", "cetrizine", "atorvastatn"};
+        String[] prefixes = {"a", "am", "amo", "par", "lor", "met", "ib", "ce", "si", "o"};
+        Random random = new Random(1);
+        long[] nanos = new long[40_000];
+        for (int i = 0; i < nanos.length; i++) {
+            long begin = System.nanoTime();
+            if (i % 2 == 0) {
+                shipped.correct(misread[random.nextInt(misread.length)]);
+            } else {
+                shipped.complete(prefixes[random.nextInt(prefixes.length)], 10);
+            }
+            nanos[i] = System.nanoTime() - begin;
+        }
+        // the first half warms the JIT up
+        long[] measured = Arrays.copyOfRange(nanos, nanos.length / 2, nanos.length);
+        Arrays.sort(measured);
+        long p50 = measured[measured.length / 2] / 1000;
+        long p99 = measured[measured.length * 99 / 100] / 1000;
+        logger.info("Drug vocabulary of {} names loaded in {} ms; lookups p50 {} us, p99 {} us", shipped.size(), loadMillis, p50, p99);
+        // the target is under 1 ms; the bound leaves room for a busy build machine
+        assertTrue(p99 < 5_000, "p99 " + p99 + " us");
+    }
+}
@@ -0,0 +1,120 @@
+package nus.iss.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import nus.iss.backend.ocr.OcrClient;
+import nus.iss.backend.util.ImagePreprocessor;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end predict latency and upload size for a 12 MP phone photo, sent as taken and after
+ * ImagePreprocessor. The stub model does what ml/app.py does before Tesseract (decode the upload) and holds
+ * each request for the time its bytes need on the link to the model, benchmark.link-mbps (default 100).
+ * Tesseract's own time also grows with the pixel count, which the stub leaves out, so the real gap is wider:
+ *   mvn test -Dtest=ImagePreprocessingBenchmarkTest -Dbenchmark.runs=20 -Dbenchmark.link-mbps=50
+ */
+class ImagePreprocessingBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessingBenchmarkTest.class);
+    // ml/app.py answers 413 above this
+    private static final int MODEL_LIMIT = 8 * 1024 * 1024;
+
+    @Test
+    void preparedPhotosUploadAFractionOfTheBytes() throws Exception {
+        int runs = Integer.getInteger("benchmark.runs", 5);
+        long linkMbps = Long.getLong("benchmark.link-mbps", 100);
+        AtomicLong lastUpload = new AtomicLong();
+        HttpServer model = startModelStub(linkMbps, lastUpload);
+        OcrClient client = new OcrClient(new ObjectMapper(), "http://127.0.0.1:" + model.getAddress().getPort() + "/predict",
+                Duration.ofSeconds(2), Duration.ofSeconds(60), 4, 5, Duration.ofSeconds(30));
+        ImagePreprocessor preprocessor = new ImagePreprocessor(true, 2000, 0.85f, 512 * 1024, 2, 16);
+        try {
+            byte[] photo = ImagePreprocessorTest.photo(4032, 3024);
+
+            long[] raw = time(runs, () -> client.recognise(photo, "photo.jpg", "image/jpeg").get(60, TimeUnit.SECONDS));
+            long rawUpload = lastUpload.get();
+            long[] prepared = time(runs, () -> preprocessor.prepare(new ByteArrayResource(photo), photo.length, "photo.jpg", "image/jpeg")
+                    .thenCompose(image -> client.recognise(image.bytes(), image.filename(), image.contentType()))
+                    .get(60, TimeUnit.SECONDS));
+            long preparedUpload = lastUpload.get();
+
+            logger.info("12 MP photo over {} Mbps, {} runs: as taken {} KB upload, p50 {} ms, max {} ms; "
+                            + "prepared {} KB upload, p50 {} ms, max {} ms",
+                    linkMbps, runs, rawUpload / 1024, raw[runs / 2], raw[runs - 1],
+                    preparedUpload / 1024, prepared[runs / 2], prepared[runs - 1]);
+            assertTrue(preparedUpload * 4 < rawUpload, preparedUpload + " vs " + rawUpload);
+            assertTrue(preparedUpload < MODEL_LIMIT);
+        } finally {
+            preprocessor.close();
+            client.close();
+            model.stop(0);
+        }
+    }
+
+    private static long[] time(int runs, Callable<?> call) throws Exception {
+        call.call();
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            assertNotNull(call.call());
+            millis[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    private static HttpServer startModelStub(long linkMbps, AtomicLong lastUpload) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService threads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "model-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/predict", exchange -> {
+            byte[] upload = exchange.getRequestBody().readAllBytes();
+            lastUpload.set(upload.length);
+            try {
+                Thread.sleep(upload.length * 8L / (linkMbps * 1000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int jpeg = indexOf(upload, new byte[]{(byte) 0xFF, (byte) 0xD8});
+            ImageIO.read(new ByteArrayInputStream(upload, jpeg, upload.length - jpeg));
+            byte[] body = "{\"medicationName\":\"Panadol\",\"frequency\":3}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(threads);
+        server.start();
+        return server;
+    }
+
+    // start of the image inside the multipart body
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            if (bytes[i] == part[0] && bytes[i + 1] == part[1]) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,231 @@
+package nus.iss.backend;
+
+import nus.iss.backend.exceptions.OcrUnavailableException;
+import nus.iss.backend.util.ImagePreprocessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePreprocessorTest {
+
+    private ImagePreprocessor preprocessor;
+
+    @AfterEach
+    void close() {
+        if (preprocessor != null) {
+            preprocessor.close();
+        }
+    }
+
+    @Test
+    void largePhotoIsScaledDownToGreyJpeg() throws Exception {
+        preprocessor = new ImagePreprocessor(true, 1000, 0.85f, 0, 1, 4);
+        byte[] photo = photo(4000, 3000);
+
+        ImagePreprocessor.Prepared prepared = prepare(photo, "label.png", "image/png");
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(prepared.bytes()));
+        assertEquals(1000, result.getWidth());
+        assertEquals(750, result.getHeight());
+        assertEquals(1, result.getColorModel().getNumComponents());
+        assertEquals("label.jpg", prepared.filename());
+        assertEquals("image/jpeg", prepared.contentType());
+        assertTrue(prepared.bytes().length * 10 < photo.length, prepared.bytes().length + " of " + photo.length);
+    }
+
+    @Test
+    void exifOrientationIsApplied() throws Exception {
+        preprocessor = new ImagePreprocessor(true, 1000, 0.9f, 0, 1, 4);
+        // left half dark; orientation 6 means the camera was turned, the left edge is the top
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 400, 200);
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, 200, 200);
+        g.dispose();
+
+        byte[] rotated = prepare(withOrientation(jpeg(image, 0.9f), 6), "box.jpg", "image/jpeg").bytes();
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(rotated));
+        assertEquals(200, result.getWidth());
+        assertEquals(400, result.getHeight());
+        assertTrue(grey(result, 100, 50) < 64, "top should be dark");
+        assertTrue(grey(result, 100, 350) > 192, "bottom should be light");
+    }
+
+    @Test
+    void corruptExifIsReadAsUpright() throws Exception {
+        preprocessor = new ImagePreprocessor(true, 1000, 0.9f, 0, 1, 4);
+        byte[] image = jpeg(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), 0.9f);
+        byte[] corrupt = withOrientation(image, 6);
+        // IFD offset 0xFFFFFFF8, negative as a signed int
+        int tiff = indexOf(corrupt, "Exif".getBytes(StandardCharsets.US_ASCII)) + 6;
+        corrupt[tiff + 4] = (byte) 0xFF;
+        corrupt[tiff + 5] = (byte) 0xFF;
+        corrupt[tiff + 6] = (byte) 0xFF;
+        corrupt[tiff + 7] = (byte) 0xF8;
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(prepare(corrupt, "box.jpg", "image/jpeg").bytes()));
+        assertEquals(400, result.getWidth());
+        assertEquals(200, result.getHeight());
+    }
+
+    @Test
+    void smallUprightAndUndecodableImagesGoAsUploaded() throws Exception {
+        preprocessor = new ImagePreprocessor(true, 1000, 0.85f, 512 * 1024, 1, 4);
+        byte[] small = jpeg(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB), 0.9f);
+        ImagePreprocessor.Prepared unchanged = prepare(small, "small.jpg", "image/jpeg");
+        assertArrayEquals(small, unchanged.bytes());
+        assertEquals("small.jpg", unchanged.filename());
+
+        byte[] heic = "ftypheic not for ImageIO".getBytes(StandardCharsets.UTF_8);
+        ImagePreprocessor.Prepared passed = prepare(heic, "box.heic", "image/heic");
+        assertArrayEquals(heic, passed.bytes());
+        assertEquals("image/heic", passed.contentType());
+    }
+
+    @Test
+    void fullPoolFailsFast() throws Exception {
+        preprocessor = new ImagePreprocessor(true, 1000, 0.85f, 0, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStreamSource blocking = () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return InputStream.nullInputStream();
+        };
+        CompletableFuture<ImagePreprocessor.Prepared> running = preprocessor.prepare(blocking, 0, "a.jpg", "image/jpeg");
+        CompletableFuture<ImagePreprocessor.Prepared> queued = preprocessor.prepare(blocking, 0, "b.jpg", "image/jpeg");
+
+        CompletableFuture<ImagePreprocessor.Prepared> rejected = preprocessor.prepare(blocking, 0, "c.jpg", "image/jpeg");
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(OcrUnavailableException.class, e.getCause());
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void fullPoolFailsFastWhenDisabled() throws Exception {
+        preprocessor = new ImagePreprocessor(false, 1000, 0.85f, 0, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStreamSource blocking = () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return InputStream.nullInputStream();
+        };
+        preprocessor.prepare(blocking, 0, "a.jpg", "image/jpeg");
+        preprocessor.prepare(blocking, 0, "b.jpg", "image/jpeg");
+
+        CompletableFuture<ImagePreprocessor.Prepared> rejected = preprocessor.prepare(blocking, 0, "c.jpg", "image/jpeg");
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(OcrUnavailableException.class, e.getCause());
+        release.countDown();
+    }
+
+    private ImagePreprocessor.Prepared prepare(byte[] bytes, String filename, String contentType) throws Exception {
+        return preprocessor.prepare(new ByteArrayResource(bytes), bytes.length, filename, contentType).get(30, TimeUnit.SECONDS);
+    }
+
+    // a noisy photo, which compresses about as badly as a real one
+    static byte[] photo(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int base = 96 + (x * 64 / width) + (y * 64 / height);
+                int r = Math.min(255, base + random.nextInt(40));
+                int gr = Math.min(255, base + random.nextInt(40));
+                int b = Math.min(255, base + random.nextInt(40));
+                image.setRGB(x, y, (r << 16) | (gr << 8) | b);
+            }
+        }
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLACK);
+        g.setFont(g.getFont().deriveFont(height / 12f));
+        g.drawString("PANADOL 500mg", width / 10, height / 3);
+        g.drawString("Take 2 tablets 3 times a day", width / 10, height / 2);
+        g.dispose();
+        return jpeg(image, 0.95f);
+    }
+
+    static byte[] jpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    // inserts an Exif APP1 segment holding only the orientation tag after the JFIF APP0 segment
+    private static byte[] withOrientation(byte[] jpeg, int orientation) {
+        byte[] exif = {
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+        int insertAt = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, insertAt);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write((exif.length + 2) >> 8);
+        out.write((exif.length + 2) & 0xFF);
+        out.write(exif, 0, exif.length);
+        out.write(jpeg, insertAt, jpeg.length - insertAt);
+        return out.toByteArray();
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        outer:
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            for (int j = 0; j < part.length; j++) {
+                if (bytes[i + j] != part[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int grey(BufferedImage image, int x, int y) {
+        return image.getRGB(x, y) & 0xFF;
+    }
+}
@@ -0,0 +1,144 @@
+package nus.iss.backend;
+
+import jakarta.persistence.EntityManagerFactory;
+import nus.iss.backend.dao.IntakeBatchItemResult;
+import nus.iss.backend.dao.IntakeReqMobile;
+import nus.iss.backend.model.Schedule;
+import nus.iss.backend.repository.ScheduleRepository;
+import nus.iss.backend.service.IntakeHistoryService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark for an offline replay: the same day of logs sent one call per log and as one batch call. Statement
+ * counts are asserted; per-replay p50/p99 and throughput are logged. The 10x throughput target is for MySQL,
+ * where every statement is a network round trip; against in-memory H2 only a loose speed-up is asserted.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // as in production, so the batch goes out as one insert batch
+        "spring.jpa.properties.hibernate.jdbc.batch_size=100",
+        "spring.jpa.properties.hibernate.order_inserts=true"
+})
+class IntakeBatchBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(IntakeBatchBenchmarkTest.class);
+    private static final int LOGS_PER_REPLAY = 50;
+    private static final int WARM_UP = 10;
+    private static final int REPLAYS = 40;
+
+    @Autowired
+    private IntakeHistoryService intakeHistoryService;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private List<Schedule> schedules;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        schedules = scheduleRepository.findAll(PageRequest.of(0, 10)).getContent();
+        assertFalse(schedules.isEmpty(), "seed data has no schedule");
+    }
+
+    @Test
+    void batchReplayBeatsOneCallPerLog() {
+        Run single = measure(this::replayOneByOne);
+        Run batch = measure(this::replayAsBatch);
+        logger.info("Replay of {} logs, one call per log: {} statements, p50 {} ms, p99 {} ms, {} logs/s",
+                LOGS_PER_REPLAY, single.statements, single.p50 / 1000.0, single.p99 / 1000.0, single.logsPerSecond());
+        logger.info("Replay of {} logs, one batch call: {} statements, p50 {} ms, p99 {} ms, {} logs/s",
+                LOGS_PER_REPLAY, batch.statements, batch.p50 / 1000.0, batch.p99 / 1000.0, batch.logsPerSecond());
+
+        // per log: the duplicate check, schedule and patient lookups, the insert and the rollup upsert;
+        // the batch shares the lookups and sends one insert batch
+        assertTrue(single.statements >= 4L * LOGS_PER_REPLAY, "single " + single.statements);
+        assertTrue(batch.statements * 2 < single.statements, "batch " + batch.statements);
+        assertTrue(batch.logsPerSecond() > single.logsPerSecond(),
+                batch.logsPerSecond() + " against " + single.logsPerSecond() + " logs/s");
+    }
+
+    private void replayOneByOne(List<IntakeReqMobile> logs) {
+        for (IntakeReqMobile log : logs) {
+            intakeHistoryService.createIntakeHistory(log);
+        }
+    }
+
+    private void replayAsBatch(List<IntakeReqMobile> logs) {
+        List<IntakeBatchItemResult> results = intakeHistoryService.createIntakeHistoryBatch(logs);
+        assertTrue(results.stream().allMatch(r -> IntakeBatchItemResult.CREATED.equals(r.getStatus())));
+    }
+
+    private Run measure(Replay replay) {
+        // warm-up, so query compilation and the JIT are not measured
+        for (int i = 0; i < WARM_UP; i++) {
+            replay.send(offlineDay());
+        }
+        List<IntakeReqMobile> first = offlineDay();
+        statistics.clear();
+        replay.send(first);
+        long statements = statistics.getPrepareStatementCount();
+
+        long[] nanos = new long[REPLAYS];
+        for (int i = 0; i < REPLAYS; i++) {
+            // built outside the timing, as the phone would have them ready
+            List<IntakeReqMobile> logs = offlineDay();
+            long start = System.nanoTime();
+            replay.send(logs);
+            nanos[i] = System.nanoTime() - start;
+        }
+        long total = Arrays.stream(nanos).sum();
+        Arrays.sort(nanos);
+        return new Run(statements, nanos[REPLAYS / 2] / 1000, nanos[REPLAYS * 99 / 100] / 1000, total);
+    }
+
+    // a day without signal: the logs queued on the phone, each with its own clientRequestId
+    private List<IntakeReqMobile> offlineDay() {
+        List<IntakeReqMobile> logs = new ArrayList<>(LOGS_PER_REPLAY);
+        for (int i = 0; i < LOGS_PER_REPLAY; i++) {
+            Schedule schedule = schedules.get(i % schedules.size());
+            IntakeReqMobile req = new IntakeReqMobile();
+            req.setScheduleId(schedule.getId());
+            req.setPatientId(schedule.getPatient().getId());
+            req.setMedicationId(schedule.getMedication().getId());
+            req.setLoggedDate(LocalDate.now().minusDays(i / schedules.size()).toString());
+            req.setIsTaken(i % 5 != 0);
+            req.setClientRequestId(UUID.randomUUID().toString());
+            logs.add(req);
+        }
+        return logs;
+    }
+
+    @FunctionalInterface
+    private interface Replay {
+        void send(List<IntakeReqMobile> logs);
+    }
+
+    private record Run(long statements, long p50, long p99, long totalNanos) {
+        long logsPerSecond() {
+            return (long) REPLAYS * LOGS_PER_REPLAY * 1_000_000_000L / Math.max(1, totalNanos);
+        }
+    }
+}
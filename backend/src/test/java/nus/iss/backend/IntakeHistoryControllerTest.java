@@ -2,9 +2,13 @@ package nus.iss.backend;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import nus.iss.backend.controller.IntakeHistoryController;
+import nus.iss.backend.dao.IntakeBatchItemResult;
 import nus.iss.backend.dao.IntakeReqMobile;
 import nus.iss.backend.dao.UpdateDoctorNotesReq;
+import nus.iss.backend.dto.IntakeHistoryPage;
 import nus.iss.backend.dto.IntakeHistoryResponse;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.exceptions.DuplicationException;
 import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.model.IntakeHistory;
 import nus.iss.backend.service.IntakeHistoryService;
@@ -17,11 +21,15 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -92,23 +100,71 @@ class IntakeHistoryControllerTest {
     void getIntakeHistory_success() throws Exception {
         UUID patientId = UUID.randomUUID();
         IntakeHistoryResponse resp = new IntakeHistoryResponse("Med", null, null, true);
+        IntakeHistoryPage page = new IntakeHistoryPage();
+        page.getItems().add(resp);
 
-        Mockito.when(patientService.getIntakeHistoryByPatientId(eq(patientId)))
-                .thenReturn(List.of(resp));
+        Mockito.when(patientService.getIntakeHistoryPage(eq(patientId), eq(LocalDate.of(2024, 1, 1)), isNull(), isNull(), eq(100)))
+                .thenReturn(page);
+
+        mockMvc.perform(get("/api/patients/" + patientId + "/intake-history").param("from", "2024-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].medicationName").value("Med"))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void getIntakeHistory_withoutParametersReturnsEverything() throws Exception {
+        UUID patientId = UUID.randomUUID();
+        Mockito.when(patientService.getFullIntakeHistory(patientId, 500))
+                .thenReturn(List.of(new IntakeHistoryResponse("Old", null, null, true),
+                        new IntakeHistoryResponse("Recent", null, null, true)));
 
         mockMvc.perform(get("/api/patients/" + patientId + "/intake-history"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].medicationName").value("Med"));
+                .andExpect(jsonPath("$[1].medicationName").value("Recent"))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+        Mockito.verify(patientService, Mockito.never()).getIntakeHistoryPage(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getIntakeHistory_nextPage() throws Exception {
+        UUID patientId = UUID.randomUUID();
+        IntakeHistoryPage page = new IntakeHistoryPage();
+        page.getItems().add(new IntakeHistoryResponse("Med", null, null, false));
+        page.setNextCursor("next");
+
+        Mockito.when(patientService.getIntakeHistoryPage(eq(patientId), eq(LocalDate.of(2024, 1, 1)),
+                        eq(LocalDate.of(2024, 1, 31)), eq("prev"), eq(500)))
+                .thenReturn(page);
+
+        mockMvc.perform(get("/api/patients/" + patientId + "/intake-history")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31")
+                        .param("cursor", "prev")
+                        .param("limit", "5000"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "next"))
+                .andExpect(jsonPath("$[0].status").value("NOT_TAKEN"));
+    }
+
+    @Test
+    void getIntakeHistory_badCursor() throws Exception {
+        UUID patientId = UUID.randomUUID();
+        Mockito.when(patientService.getIntakeHistoryPage(eq(patientId), any(), any(), eq("junk"), anyInt()))
+                .thenThrow(new BadRequestException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/patients/" + patientId + "/intake-history").param("cursor", "junk"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
     void getIntakeHistory_notFound() throws Exception {
         UUID patientId = UUID.randomUUID();
 
-        Mockito.when(patientService.getIntakeHistoryByPatientId(eq(patientId)))
+        Mockito.when(patientService.getIntakeHistoryPage(eq(patientId), any(), any(), any(), anyInt()))
                 .thenThrow(new ItemNotFound("Not found"));
 
-        mockMvc.perform(get("/api/patients/" + patientId + "/intake-history"))
+        mockMvc.perform(get("/api/patients/" + patientId + "/intake-history").param("limit", "10"))
                 .andExpect(status().isNotFound());
     }
 
@@ -116,10 +172,10 @@ class IntakeHistoryControllerTest {
     void getIntakeHistory_serverError() throws Exception {
         UUID patientId = UUID.randomUUID();
 
-        Mockito.when(patientService.getIntakeHistoryByPatientId(eq(patientId)))
+        Mockito.when(patientService.getIntakeHistoryPage(eq(patientId), any(), any(), any(), anyInt()))
                 .thenThrow(new RuntimeException("DB error"));
 
-        mockMvc.perform(get("/api/patients/" + patientId + "/intake-history"))
+        mockMvc.perform(get("/api/patients/" + patientId + "/intake-history").param("limit", "10"))
                 .andExpect(status().isInternalServerError());
     }
 
@@ -153,4 +209,80 @@ class IntakeHistoryControllerTest {
                         .content(objectMapper.writeValueAsString(req)))
                 .andExpect(status().isInternalServerError());
     }
-}
\ No newline at end of file
+
+    @Test
+    void createMedicationLog_duplicateAcknowledged() throws Exception {
+        IntakeReqMobile req = new IntakeReqMobile();
+        req.setPatientId(UUID.randomUUID());
+        req.setMedicationId(UUID.randomUUID());
+        req.setLoggedDate("2024-06-01");
+        req.setIsTaken(true);
+        req.setClientRequestId("abc");
+
+        Mockito.doThrow(new DuplicationException("Intake request already recorded"))
+                .when(intakeHistoryService).createIntakeHistory(any(IntakeReqMobile.class));
+
+        mockMvc.perform(post("/api/intakeHistory/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void createMedicationLogBatch_success() throws Exception {
+        IntakeReqMobile req = new IntakeReqMobile();
+        req.setPatientId(UUID.randomUUID());
+        req.setMedicationId(UUID.randomUUID());
+        req.setScheduleId(UUID.randomUUID());
+        req.setLoggedDate("2024-06-01");
+        req.setIsTaken(true);
+        req.setClientRequestId("abc");
+
+        IntakeBatchItemResult result = IntakeBatchItemResult.of(0, req, IntakeBatchItemResult.CREATED, null);
+        Mockito.when(intakeHistoryService.createIntakeHistoryBatch(anyList())).thenReturn(List.of(result));
+
+        mockMvc.perform(post("/api/intakeHistory/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(req))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[0].clientRequestId").value("abc"));
+    }
+
+    @Test
+    void createMedicationLogBatch_emptyBatch() throws Exception {
+        mockMvc.perform(post("/api/intakeHistory/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void createMedicationLogBatch_serverError() throws Exception {
+        IntakeReqMobile req = new IntakeReqMobile();
+        req.setPatientId(UUID.randomUUID());
+
+        Mockito.when(intakeHistoryService.createIntakeHistoryBatch(anyList()))
+                .thenThrow(new RuntimeException("DB error"));
+
+        mockMvc.perform(post("/api/intakeHistory/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(req))))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    void createMedicationLogBatch_conflict() throws Exception {
+        IntakeReqMobile req = new IntakeReqMobile();
+        req.setPatientId(UUID.randomUUID());
+        req.setClientRequestId("abc");
+
+        Mockito.when(intakeHistoryService.createIntakeHistoryBatch(anyList()))
+                .thenThrow(new DuplicationException("Intake request already recorded"));
+
+        mockMvc.perform(post("/api/intakeHistory/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(req))))
+                .andExpect(status().isConflict());
+    }
+}
@@ -0,0 +1,113 @@
+package nus.iss.backend;
+
+import nus.iss.backend.dao.IntakeReqMobile;
+import nus.iss.backend.exceptions.DuplicationException;
+import nus.iss.backend.model.Schedule;
+import nus.iss.backend.repository.ScheduleRepository;
+import nus.iss.backend.service.IntakeHistoryService;
+import nus.iss.backend.util.RecentRequestCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fires the same clientRequestId from many threads at once, the way a flaky mobile
+ * connection replays a log, and checks exactly one intake row survives. Losers of the race
+ * must come back as a DuplicationException (acknowledged by the controller), nothing else.
+ */
+@SpringBootTest
+class IntakeIdempotencyStressTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 5;
+
+    @Autowired
+    private IntakeHistoryService intakeHistoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private RecentRequestCache recentRequestCache;
+
+    @Test
+    void concurrentRetriesStoreOneRow() throws Exception {
+        Schedule schedule = scheduleRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+        String clientRequestId = UUID.randomUUID().toString();
+
+        IntakeReqMobile req = new IntakeReqMobile();
+        req.setScheduleId(schedule.getId());
+        req.setPatientId(schedule.getPatient().getId());
+        req.setMedicationId(schedule.getMedication().getId());
+        req.setLoggedDate(LocalDate.now().toString());
+        req.setIsTaken(true);
+        req.setClientRequestId(clientRequestId);
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger acknowledged = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        Queue<RuntimeException> unexpected = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                        try {
+                            intakeHistoryService.createIntakeHistory(req);
+                            acknowledged.incrementAndGet();
+                        } catch (DuplicationException e) {
+                            // lost the race on the unique key
+                            duplicates.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            unexpected.add(e);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(unexpected.isEmpty(), () -> "unexpected failures: " + unexpected);
+        assertEquals(THREADS * ATTEMPTS_PER_THREAD, acknowledged.get() + duplicates.get());
+        assertTrue(acknowledged.get() > 0);
+        assertEquals(1, countRows(clientRequestId));
+        assertTrue(recentRequestCache.contains(clientRequestId));
+
+        // a late sequential retry is answered without a second row
+        intakeHistoryService.createIntakeHistory(req);
+        assertEquals(1, countRows(clientRequestId));
+    }
+
+    private long countRows(String clientRequestId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM Medication_Intake_History WHERE Client_Request_Id = ?", Long.class, clientRequestId);
+    }
+}
@@ -0,0 +1,126 @@
+package nus.iss.backend;
+
+import nus.iss.backend.seeder.LoadDataGenerator;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the load data generator twice, with several threads, into two freshly migrated H2 databases and checks
+ * that it writes the same rows both times and that the rows hang together.
+ */
+class LoadDataGeneratorTest {
+
+    private static final int CLINICS = 2;
+    private static final int PATIENTS_PER_CLINIC = 30;
+    private static final int MEDICATIONS_PER_PATIENT = 4;
+
+    @Test
+    void sameSeedGivesSameRows() throws Exception {
+        DataSource first = migrated("loadgen1");
+        DataSource second = migrated("loadgen2");
+
+        long rows = generator().generate(first);
+        assertEquals(rows, generator().generate(second));
+        assertTrue(rows > 0);
+
+        for (String query : new String[]{
+                "SELECT MCR_No, FirstName, Email, Clinic_UUID FROM Doctor ORDER BY MCR_No",
+                "SELECT Id, NRIC, Email, FirstName, DOB, Assigned_Doctor FROM Patient ORDER BY Id",
+                "SELECT Id, Medication_Name, Frequency, Is_Active FROM Medication ORDER BY Id",
+                "SELECT Id, Scheduled_Time, CreationDate, Patient_Id FROM Schedule ORDER BY Id",
+                "SELECT Id, Logged_Date, Is_Taken, Schedule_Id FROM Medication_Intake_History ORDER BY Id",
+                "SELECT Schedule_Id, Period_Month, Taken_Count, Missed_Count FROM Schedule_Adherence_Monthly ORDER BY Id"}) {
+            assertEquals(digest(first, query), digest(second, query), query);
+        }
+
+        // a second run leaves the filled database alone
+        assertEquals(0, generator().generate(first));
+    }
+
+    @Test
+    void rowsAreConsistent() throws Exception {
+        DataSource dataSource = migrated("loadgen3");
+        long rows = generator().generate(dataSource);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        assertEquals(CLINICS, count(jdbc, "SELECT COUNT(*) FROM Clinic"));
+        assertEquals(CLINICS * 3, count(jdbc, "SELECT COUNT(*) FROM Doctor"));
+        assertEquals(CLINICS * PATIENTS_PER_CLINIC, count(jdbc, "SELECT COUNT(DISTINCT NRIC) FROM Patient"));
+        assertEquals(CLINICS * PATIENTS_PER_CLINIC, count(jdbc, "SELECT COUNT(DISTINCT Email) FROM Patient"));
+        assertEquals(CLINICS * PATIENTS_PER_CLINIC * MEDICATIONS_PER_PATIENT, count(jdbc, "SELECT COUNT(*) FROM Patient_Medication"));
+        assertEquals(rows, count(jdbc, "SELECT COUNT(*) FROM Medication_Intake_History"));
+
+        // the rollup agrees with the log, schedule by schedule and month by month
+        assertEquals(rows, count(jdbc, "SELECT SUM(Taken_Count + Missed_Count) FROM Schedule_Adherence_Monthly"));
+        assertEquals(0, count(jdbc, "SELECT COUNT(*) FROM Schedule_Adherence_Monthly a WHERE a.Taken_Count <> " +
+                "(SELECT COUNT(*) FROM Medication_Intake_History h WHERE h.Schedule_Id = a.Schedule_Id AND h.Is_Taken = TRUE " +
+                "AND h.Logged_Date >= a.Period_Month AND h.Logged_Date < DATEADD(MONTH, 1, a.Period_Month))"));
+
+        // no log before its schedule was created, and at most one per schedule and day
+        assertEquals(0, count(jdbc, "SELECT COUNT(*) FROM Medication_Intake_History h JOIN Schedule s ON s.Id = h.Schedule_Id " +
+                "WHERE h.Logged_Date < CAST(s.CreationDate AS DATE) OR h.Patient_Id <> s.Patient_Id"));
+        assertEquals(0, count(jdbc, "SELECT COUNT(*) FROM (SELECT Schedule_Id, Logged_Date FROM Medication_Intake_History " +
+                "GROUP BY Schedule_Id, Logged_Date HAVING COUNT(*) > 1)"));
+
+        // a patient has each medication active at most once
+        assertEquals(0, count(jdbc, "SELECT COUNT(*) FROM (SELECT pm.Patient_Id, m.Medication_Name FROM Patient_Medication pm " +
+                "JOIN Medication m ON m.Id = pm.Medication_Id WHERE m.Is_Active = TRUE " +
+                "GROUP BY pm.Patient_Id, m.Medication_Name HAVING COUNT(*) > 1)"));
+
+        double taken = count(jdbc, "SELECT COUNT(*) FROM Medication_Intake_History WHERE Is_Taken = TRUE") / (double) rows;
+        assertTrue(taken > 0.7 && taken < 0.9, "overall adherence " + taken);
+    }
+
+    private static LoadDataGenerator generator() {
+        LoadDataGenerator generator = new LoadDataGenerator();
+        ReflectionTestUtils.setField(generator, "seed", 20250808L);
+        ReflectionTestUtils.setField(generator, "clinics", CLINICS);
+        ReflectionTestUtils.setField(generator, "doctorsPerClinic", 3);
+        ReflectionTestUtils.setField(generator, "patientsPerClinic", PATIENTS_PER_CLINIC);
+        ReflectionTestUtils.setField(generator, "unassignedPatientRatio", 0.2);
+        ReflectionTestUtils.setField(generator, "medicationsPerPatient", MEDICATIONS_PER_PATIENT);
+        ReflectionTestUtils.setField(generator, "activeMedicationRatio", 0.6);
+        ReflectionTestUtils.setField(generator, "historyYears", 0.25);
+        ReflectionTestUtils.setField(generator, "endDate", "2025-03-15");
+        ReflectionTestUtils.setField(generator, "adherenceMean", 0.8);
+        ReflectionTestUtils.setField(generator, "adherenceConcentration", 8.0);
+        ReflectionTestUtils.setField(generator, "threads", 3);
+        // uneven blocks and batches smaller than a block, so commits fall mid-block
+        ReflectionTestUtils.setField(generator, "patientsPerBlock", 7);
+        ReflectionTestUtils.setField(generator, "batchSize", 50);
+        return generator;
+    }
+
+    private static DataSource migrated(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        return dataSource;
+    }
+
+    private static long count(JdbcTemplate jdbc, String sql) {
+        Long value = jdbc.queryForObject(sql, Long.class);
+        return value == null ? 0 : value;
+    }
+
+    private static String digest(DataSource dataSource, String query) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        new JdbcTemplate(dataSource).query(query, rs -> {
+            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                Object value = rs.getObject(i);
+                digest.update(value instanceof byte[] bytes ? bytes : String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '|');
+            }
+        });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
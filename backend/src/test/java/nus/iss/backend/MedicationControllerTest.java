@@ -4,15 +4,20 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import nus.iss.backend.controller.MedicationController;
 import nus.iss.backend.dao.*;
 import nus.iss.backend.dto.EditMedicationRequest;
+import nus.iss.backend.dto.PrescriptionImportReport;
+import nus.iss.backend.dto.RecognitionJobResponse;
 import nus.iss.backend.dto.newMedicationReq;
 import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.exceptions.InvalidTimeFormatException;
+import nus.iss.backend.exceptions.OcrUnavailableException;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
 import nus.iss.backend.model.Schedule;
 import nus.iss.backend.service.IntakeHistoryService;
 import nus.iss.backend.service.MedicationService;
 import nus.iss.backend.service.PatientService;
+import nus.iss.backend.service.PrescriptionImportService;
+import nus.iss.backend.service.RecognitionJobService;
 import nus.iss.backend.service.ScheduleService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -23,8 +28,11 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -48,6 +56,12 @@ class MedicationControllerTest {
     @MockBean
     private IntakeHistoryService intakeHistoryService;
 
+    @MockBean
+    private PrescriptionImportService prescriptionImportService;
+
+    @MockBean
+    private RecognitionJobService recognitionJobService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -189,6 +203,45 @@ class MedicationControllerTest {
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    void streamMedicationLog_success() throws Exception {
+        UUID medId = UUID.randomUUID();
+        IntakeLogResponseWeb first = new IntakeLogResponseWeb();
+        first.setDoctorNotes("note");
+        IntakeLogResponseWeb second = new IntakeLogResponseWeb();
+        second.setTaken(true);
+        Mockito.when(intakeHistoryService.streamIntakeLogsForMedication(eq(medId), any())).thenAnswer(inv -> {
+            Consumer<IntakeLogResponseWeb> sink = inv.getArgument(1);
+            sink.accept(first);
+            sink.accept(second);
+            return 2L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/medication/" + medId + "/logs/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].doctorNotes").value("note"))
+                .andExpect(jsonPath("$[1].taken").value(true));
+    }
+
+    @Test
+    void streamMedicationLog_empty() throws Exception {
+        UUID medId = UUID.randomUUID();
+        Mockito.when(intakeHistoryService.streamIntakeLogsForMedication(eq(medId), any())).thenReturn(0L);
+
+        MvcResult result = mockMvc.perform(get("/api/medication/" + medId + "/logs/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+    }
+
     @Test
     void saveMedication_success() throws Exception {
         newMedicationReq req = new newMedicationReq();
@@ -242,10 +295,11 @@ class MedicationControllerTest {
         med.setId(medId);
         med.setActive(true);
         Mockito.when(medicationService.findMedicineById(eq(medId))).thenReturn(med);
-        Mockito.when(scheduleService.findActiveSchedulesByMedication(any())).thenReturn(List.of(new Schedule()));
 
         mockMvc.perform(put("/api/medication/" + medId + "/deactivate"))
                 .andExpect(status().isOk());
+
+        Mockito.verify(medicationService).deactivateMedication(med);
     }
 
     @Test
@@ -262,10 +316,89 @@ class MedicationControllerTest {
         MockMultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", "test".getBytes());
         ImageOutput output = new ImageOutput();
         output.setMedicationName("Panadol");
-        Mockito.when(medicationService.sendToFastAPI(any())).thenReturn(output);
+        Mockito.when(medicationService.sendToFastAPI(any())).thenReturn(CompletableFuture.completedFuture(output));
 
-        mockMvc.perform(multipart("/api/medication/predict_image").file(file))
+        MvcResult result = mockMvc.perform(multipart("/api/medication/predict_image").file(file))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.medicationName").value("Panadol"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void predict_ocrUnavailable() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", "test".getBytes());
+        Mockito.when(medicationService.sendToFastAPI(any()))
+                .thenReturn(CompletableFuture.failedFuture(new OcrUnavailableException("OCR service busy, try again later")));
+
+        MvcResult result = mockMvc.perform(multipart("/api/medication/predict_image").file(file))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void suggestMedicationNames_limitIsCapped() throws Exception {
+        Mockito.when(medicationService.suggestMedicationNames("amox", 50)).thenReturn(List.of("Amoxapine", "Amoxicillin"));
+
+        mockMvc.perform(get("/api/medication/names").param("q", "amox").param("limit", "500"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=3600"))
+                .andExpect(jsonPath("$[1]").value("Amoxicillin"));
+    }
+
+    @Test
+    void submitRecognitionJob_accepted() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", "test".getBytes());
+        RecognitionJobResponse job = new RecognitionJobResponse();
+        job.setJobId(UUID.randomUUID());
+        job.setStatus("PENDING");
+        Mockito.when(recognitionJobService.submit(any())).thenReturn(job);
+
+        mockMvc.perform(multipart("/api/medication/predict_image/jobs").file(file))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/medication/predict_image/jobs/" + job.getJobId()))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+    }
+
+    @Test
+    void getRecognitionJob_notFound() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        Mockito.when(recognitionJobService.getJob(jobId)).thenThrow(new ItemNotFound("Recognition job not found"));
+
+        mockMvc.perform(get("/api/medication/predict_image/jobs/" + jobId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void importPrescriptions_accepted() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "prescriptions.csv", "text/csv", "patient\n".getBytes());
+        PrescriptionImportReport report = new PrescriptionImportReport();
+        report.setExecutionId(42L);
+        report.setStatus("STARTING");
+        Mockito.when(prescriptionImportService.startImport(eq("M12345A"), any())).thenReturn(report);
+
+        mockMvc.perform(multipart("/api/medication/import/M12345A").file(file))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.executionId").value(42));
+    }
+
+    @Test
+    void importPrescriptions_unknownDoctor() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "prescriptions.csv", "text/csv", "patient\n".getBytes());
+        Mockito.when(prescriptionImportService.startImport(eq("M00000X"), any())).thenThrow(new ItemNotFound("Doctor not found"));
+
+        mockMvc.perform(multipart("/api/medication/import/M00000X").file(file))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getImportReport_notFound() throws Exception {
+        Mockito.when(prescriptionImportService.getReport(7L)).thenThrow(new ItemNotFound("Import 7 not found"));
+
+        mockMvc.perform(get("/api/medication/import/7"))
+                .andExpect(status().isNotFound());
+    }
+}
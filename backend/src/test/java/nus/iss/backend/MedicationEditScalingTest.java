@@ -0,0 +1,166 @@
+package nus.iss.backend;
+
+import jakarta.persistence.EntityManagerFactory;
+import nus.iss.backend.dto.EditMedicationRequest;
+import nus.iss.backend.model.IntakeHistory;
+import nus.iss.backend.model.Medication;
+import nus.iss.backend.model.Patient;
+import nus.iss.backend.model.Schedule;
+import nus.iss.backend.repository.IntakeRepository;
+import nus.iss.backend.repository.MedicationRepository;
+import nus.iss.backend.repository.PatientRepository;
+import nus.iss.backend.repository.ScheduleRepository;
+import nus.iss.backend.service.MedicationService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark for medication edits: the same edit against a short and a long schedule history must issue
+ * the same fixed set of statements (the clean-up, deactivation and inserts are set-based, the patients'
+ * data version is bumped once), and the timings are logged for comparison. Wall-clock times are not
+ * asserted, they are too noisy on shared runners.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // as in production, so the new schedules go out as one insert batch
+        "spring.jpa.properties.hibernate.jdbc.batch_size=100",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.order_updates=true"
+})
+class MedicationEditScalingTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MedicationEditScalingTest.class);
+    private static final int LOGS_PER_SCHEDULE = 5;
+    private static final long EDIT_STATEMENTS = 11;
+
+    @Autowired
+    private MedicationService medicationService;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private IntakeRepository intakeRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Patient patient;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        patient = patientRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+    }
+
+    @Test
+    void editCostDoesNotGrowWithHistory() {
+        // warm-up, so the first measured edit does not pay for query compilation
+        measureEdit(seedMedicationWithHistory(5));
+
+        Medication shortHistory = seedMedicationWithHistory(10);
+        Medication longHistory = seedMedicationWithHistory(400);
+
+        EditRun small = measureEdit(shortHistory);
+        EditRun large = measureEdit(longHistory);
+        logger.info("Medication edit: {} old schedules -> {} statements, {} ms; {} old schedules -> {} statements, {} ms",
+                10, small.statements, small.millis, 400, large.statements, large.millis);
+
+        assertEquals(small.statements, large.statements);
+        // medication and patient (its doctor and clinic joined), the rollup/log/schedule clean-up, the active
+        // schedules' patients and their bulk deactivation, the medication's patients, the schedule insert batch,
+        // the medication update and one data-version bump
+        assertEquals(EDIT_STATEMENTS, large.statements);
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(90);
+        assertTrue(scheduleRepository.findByMedicationAndIsActiveFalseAndCreationDateBefore(longHistory, cutoff).isEmpty());
+        assertTrue(intakeRepository.findBySchedule_Medication_Id(longHistory.getId()).isEmpty());
+        assertEquals(2, scheduleRepository.findByMedicationAndIsActiveTrue(longHistory).size());
+    }
+
+    private EditRun measureEdit(Medication medication) {
+        EditMedicationRequest req = new EditMedicationRequest();
+        req.setMedicationId(medication.getId());
+        req.setPatientId(patient.getId());
+        req.setFrequency(2);
+        req.setTimes(List.of("08:00", "2000"));
+
+        statistics.clear();
+        long start = System.nanoTime();
+        medicationService.processEditMedication(req);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new EditRun(statistics.getPrepareStatementCount(), millis);
+    }
+
+    // a medication with one active schedule and the given number of inactive schedules created 200 days ago,
+    // each with a few intake logs: the rows the edit has to clean up
+    private Medication seedMedicationWithHistory(int oldSchedules) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Medication med = new Medication();
+            med.setMedicationName("Scaling " + UUID.randomUUID());
+            med.setIntakeQuantity("1 tablet");
+            med.setFrequency(1);
+            med.setActive(true);
+            medicationRepository.save(med);
+
+            List<Schedule> schedules = new ArrayList<>();
+            LocalDateTime created = LocalDateTime.now().minusDays(200);
+            for (int i = 0; i <= oldSchedules; i++) {
+                Schedule s = new Schedule();
+                s.setMedication(med);
+                s.setPatient(patient);
+                s.setScheduledTime(LocalTime.of(8, 0));
+                s.setIsActive(i == oldSchedules);
+                s.setCreationDate(i == oldSchedules ? LocalDateTime.now() : created);
+                schedules.add(s);
+            }
+            scheduleRepository.saveAll(schedules);
+
+            List<IntakeHistory> logs = new ArrayList<>();
+            for (Schedule s : schedules.subList(0, oldSchedules)) {
+                for (int day = 0; day < LOGS_PER_SCHEDULE; day++) {
+                    IntakeHistory log = new IntakeHistory();
+                    log.setSchedule(s);
+                    log.setPatient(patient);
+                    log.setLoggedDate(LocalDate.now().minusDays(150 + day));
+                    log.setTaken(day % 2 == 0);
+                    logs.add(log);
+                }
+            }
+            intakeRepository.saveAll(logs);
+            return med;
+        });
+    }
+
+    private record EditRun(long statements, long millis) {
+    }
+}
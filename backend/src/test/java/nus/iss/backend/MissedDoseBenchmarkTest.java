@@ -0,0 +1,249 @@
+package nus.iss.backend;
+
+import jakarta.persistence.EntityManagerFactory;
+import nus.iss.backend.dao.MissedDoseResponse;
+import nus.iss.backend.model.IntakeHistory;
+import nus.iss.backend.model.Medication;
+import nus.iss.backend.model.Patient;
+import nus.iss.backend.model.Schedule;
+import nus.iss.backend.repository.IntakeRepository;
+import nus.iss.backend.repository.MedicationRepository;
+import nus.iss.backend.repository.PatientRepository;
+import nus.iss.backend.repository.ScheduleRepository;
+import nus.iss.backend.service.AdherenceService;
+import nus.iss.backend.service.PatientService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark for the medication list's missed-dose flags: the per-schedule walk it replaced (one lazy intake
+ * history load per schedule, filtered in Java) against the rollup lookup, on a patient with three schedules per
+ * medication and 90 days of logs each. Statement counts are asserted; p50/p99 are only logged, wall-clock times
+ * are too noisy on shared runners. The patient is the test's own and is deleted with everything it was given,
+ * so the seeded patients other tests pick stay as they were.
+ */
+@SpringBootTest
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class MissedDoseBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MissedDoseBenchmarkTest.class);
+    private static final int TIMES_PER_DAY = 3;
+    private static final int DAYS_OF_HISTORY = 90;
+    private static final int RUNS = 200;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private AdherenceService adherenceService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private IntakeRepository intakeRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private UUID patientId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Patient seeded = patientRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+        Patient patient = new Patient();
+        patient.setFirstName("Benchmark");
+        patient.setLastName("Patient");
+        patient.setEmail("benchmark-" + UUID.randomUUID() + "@example.com");
+        patient.setPassword("not-used");
+        patient.setNric("S0000000B");
+        patient.setGender("Female");
+        patient.setDob(LocalDate.of(1950, 1, 1));
+        patient.setClinic(seeded.getClinic());
+        patientId = patientRepository.save(patient).getId();
+    }
+
+    // foreign keys first: rollup rows, logs, schedules, the medication links, the medications, the patient
+    @AfterEach
+    void deletePatient() {
+        byte[] id = toBytes(patientId);
+        List<byte[]> medicationIds = jdbcTemplate.query(
+                "SELECT Medication_Id FROM Patient_Medication WHERE Patient_Id = ?", (rs, row) -> rs.getBytes(1), id);
+        jdbcTemplate.update("DELETE FROM Schedule_Adherence_Monthly WHERE Schedule_Id IN "
+                + "(SELECT Id FROM Schedule WHERE Patient_Id = ?)", id);
+        jdbcTemplate.update("DELETE FROM Medication_Intake_History WHERE Patient_Id = ?", id);
+        jdbcTemplate.update("DELETE FROM Schedule WHERE Patient_Id = ?", id);
+        jdbcTemplate.update("DELETE FROM Patient_Medication WHERE Patient_Id = ?", id);
+        for (byte[] medicationId : medicationIds) {
+            jdbcTemplate.update("DELETE FROM Medication WHERE Id = ?", (Object) medicationId);
+        }
+        jdbcTemplate.update("DELETE FROM Patient WHERE Id = ?", (Object) id);
+    }
+
+    @Test
+    void flagsComeFromAConstantNumberOfStatements() {
+        Set<UUID> missed = new HashSet<>();
+        List<UUID> seeded = new ArrayList<>(seedMedications(5, missed));
+        Run smallBefore = measure(this::perScheduleWalk);
+        Run smallAfter = measure(this::rollupLookup);
+
+        seeded.addAll(seedMedications(5, missed));
+        Run before = measure(this::perScheduleWalk);
+        Run after = measure(this::rollupLookup);
+        logger.info("Missed-dose flags, per-schedule walk: {} -> {} statements, p50 {} us, p99 {} us",
+                smallBefore.statements, before.statements, before.p50, before.p99);
+        logger.info("Missed-dose flags, rollup lookup: {} -> {} statements, p50 {} us, p99 {} us",
+                smallAfter.statements, after.statements, after.p50, after.p99);
+
+        // the same answer for every seeded medication
+        for (UUID medicationId : seeded) {
+            assertEquals(missed.contains(medicationId), before.missed.contains(medicationId), medicationId.toString());
+            assertEquals(missed.contains(medicationId), after.missed.contains(medicationId), medicationId.toString());
+        }
+        assertTrue(before.statements > smallBefore.statements);
+        assertEquals(smallAfter.statements, after.statements);
+        assertTrue(after.statements < before.statements);
+    }
+
+    // what getPatientMedicationsWithMissedDose did before: every schedule's whole history, filtered in Java
+    private Set<UUID> perScheduleWalk() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Patient patient = patientRepository.findById(patientId).orElseThrow();
+            YearMonth month = YearMonth.now();
+            Set<UUID> missed = new HashSet<>();
+            for (Medication med : patient.getMedications()) {
+                boolean hasMissed = med.getSchedules().stream()
+                        .map(s -> scheduleRepository.findById(s.getId()).orElseThrow())
+                        .anyMatch(s -> s.getIntakeHistory().stream()
+                                .anyMatch(h -> YearMonth.from(h.getLoggedDate()).equals(month) && !h.isTaken()));
+                if (hasMissed) {
+                    missed.add(med.getId());
+                }
+            }
+            return missed;
+        });
+    }
+
+    private Set<UUID> rollupLookup() {
+        Set<UUID> missed = new HashSet<>();
+        for (MissedDoseResponse med : patientService.getPatientMedicationsWithMissedDose(patientId)) {
+            if (med.isMissedDose()) {
+                missed.add(med.getId());
+            }
+        }
+        return missed;
+    }
+
+    private Run measure(Supplier<Set<UUID>> flags) {
+        // warm-up, so query compilation and the JIT are not measured
+        for (int i = 0; i < RUNS / 4; i++) {
+            flags.get();
+        }
+        statistics.clear();
+        Set<UUID> missed = flags.get();
+        long statements = statistics.getPrepareStatementCount();
+
+        long[] nanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            flags.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return new Run(missed, statements, nanos[RUNS / 2] / 1000, nanos[RUNS * 99 / 100] / 1000);
+    }
+
+    // medications for the patient, each with TIMES_PER_DAY schedules and DAYS_OF_HISTORY days of logs counted
+    // into the rollup the way the intake endpoints do; every other medication has today's first dose missed
+    private List<UUID> seedMedications(int count, Set<UUID> missed) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Patient patient = patientRepository.findById(patientId).orElseThrow();
+            LocalDate today = LocalDate.now();
+            List<UUID> ids = new ArrayList<>();
+            for (int m = 0; m < count; m++) {
+                Medication med = new Medication();
+                med.setMedicationName("Benchmark " + UUID.randomUUID());
+                med.setIntakeQuantity("1 tablet");
+                med.setFrequency(TIMES_PER_DAY);
+                med.setActive(true);
+                medicationRepository.save(med);
+                patient.getMedications().add(med);
+                boolean missesToday = m % 2 == 0;
+                if (missesToday) {
+                    missed.add(med.getId());
+                }
+
+                List<IntakeHistory> logs = new ArrayList<>();
+                for (int t = 0; t < TIMES_PER_DAY; t++) {
+                    Schedule schedule = new Schedule();
+                    schedule.setMedication(med);
+                    schedule.setPatient(patient);
+                    schedule.setScheduledTime(LocalTime.of(8 + 6 * t, 0));
+                    schedule.setIsActive(true);
+                    schedule.setCreationDate(today.minusDays(DAYS_OF_HISTORY).atStartOfDay());
+                    scheduleRepository.saveAndFlush(schedule);
+                    for (int day = 0; day < DAYS_OF_HISTORY; day++) {
+                        IntakeHistory log = new IntakeHistory();
+                        log.setSchedule(schedule);
+                        log.setPatient(patient);
+                        log.setLoggedDate(today.minusDays(day));
+                        log.setTaken(!(missesToday && day == 0 && t == 0));
+                        logs.add(log);
+                        adherenceService.recordIntake(schedule, log.getLoggedDate(), log.isTaken());
+                    }
+                }
+                intakeRepository.saveAll(logs);
+                ids.add(med.getId());
+            }
+            patientRepository.save(patient);
+            return ids;
+        });
+    }
+
+    private static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+
+    private record Run(Set<UUID> missed, long statements, long p50, long p99) {
+    }
+}
@@ -0,0 +1,162 @@
+package nus.iss.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import nus.iss.backend.dao.ImageOutput;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.exceptions.OcrUnavailableException;
+import nus.iss.backend.ocr.CircuitBreaker;
+import nus.iss.backend.ocr.OcrClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OcrClient against a local stub of the FastAPI model whose latency and status the tests set: timeouts,
+ * the bulkhead and the circuit breaker have to answer well before a slow model would.
+ */
+class OcrClientTest {
+
+    private static final byte[] IMAGE = "not really a jpeg".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile long delayMillis;
+    private volatile int status = 200;
+    private volatile String lastBody;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/medication/predict_image", exchange -> {
+            calls.incrementAndGet();
+            lastBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = (status == 200
+                    ? "{\"medicationName\":\"Panadol\",\"intakeQuantity\":\"2 tablets\",\"frequency\":3,\"instructions\":\"After food\"}"
+                    : "{\"detail\":\"error\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void readsTheModelsAnswer() throws Exception {
+        OcrClient client = client(Duration.ofSeconds(5), 4, 3, Duration.ofSeconds(30));
+
+        ImageOutput output = client.recognise(IMAGE, "label.jpg", "image/jpeg").get(10, TimeUnit.SECONDS);
+        assertEquals("Panadol", output.getMedicationName());
+        assertEquals("2 tablets", output.getIntakeQuantity());
+        assertEquals(3, output.getFrequency());
+        assertEquals("After food", output.getInstructions());
+        assertEquals("", output.getNotes());
+        assertTrue(lastBody.contains("name=\"file\"; filename=\"label.jpg\""), lastBody);
+        assertTrue(lastBody.contains("not really a jpeg"));
+        assertEquals(4, client.availableSlots());
+    }
+
+    @Test
+    void slowModelTimesOut() {
+        OcrClient client = client(Duration.ofMillis(300), 4, 3, Duration.ofSeconds(30));
+        delayMillis = 3000;
+
+        long start = System.nanoTime();
+        assertInstanceOf(OcrUnavailableException.class, failure(client.recognise(IMAGE, "label.jpg", "image/jpeg")));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(millis < 2000, "gave up after " + millis + " ms");
+        assertEquals(4, client.availableSlots());
+    }
+
+    @Test
+    void bulkheadRejectsBeyondMaxConcurrent() throws Exception {
+        OcrClient client = client(Duration.ofSeconds(5), 2, 3, Duration.ofSeconds(30));
+        delayMillis = 500;
+
+        List<CompletableFuture<ImageOutput>> running = new ArrayList<>();
+        running.add(client.recognise(IMAGE, "a.jpg", "image/jpeg"));
+        running.add(client.recognise(IMAGE, "b.jpg", "image/jpeg"));
+        long start = System.nanoTime();
+        CompletableFuture<ImageOutput> rejected = client.recognise(IMAGE, "c.jpg", "image/jpeg");
+        assertTrue(rejected.isCompletedExceptionally(), "should fail without waiting for a slot");
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        assertInstanceOf(OcrUnavailableException.class, failure(rejected));
+
+        for (CompletableFuture<ImageOutput> call : running) {
+            assertEquals("Panadol", call.get(10, TimeUnit.SECONDS).getMedicationName());
+        }
+        assertEquals(2, client.availableSlots());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void breakerOpensOnFailuresAndRecovers() throws Exception {
+        OcrClient client = client(Duration.ofSeconds(5), 4, 2, Duration.ofMillis(300));
+        status = 500;
+
+        assertInstanceOf(OcrUnavailableException.class, failure(client.recognise(IMAGE, "a.jpg", "image/jpeg")));
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitState());
+        assertInstanceOf(OcrUnavailableException.class, failure(client.recognise(IMAGE, "a.jpg", "image/jpeg")));
+        assertEquals(CircuitBreaker.State.OPEN, client.circuitState());
+
+        // open: fails fast, the model is not called
+        CompletableFuture<ImageOutput> fastFail = client.recognise(IMAGE, "a.jpg", "image/jpeg");
+        assertTrue(fastFail.isCompletedExceptionally());
+        assertEquals(2, calls.get());
+
+        Thread.sleep(350);
+        status = 200;
+        assertEquals("Panadol", client.recognise(IMAGE, "a.jpg", "image/jpeg").get(10, TimeUnit.SECONDS).getMedicationName());
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitState());
+    }
+
+    @Test
+    void rejectedImageIsABadRequestNotAnOutage() {
+        OcrClient client = client(Duration.ofSeconds(5), 4, 1, Duration.ofSeconds(30));
+        status = 422;
+
+        assertInstanceOf(BadRequestException.class, failure(client.recognise(IMAGE, "a.jpg", "image/jpeg")));
+        assertInstanceOf(BadRequestException.class, failure(client.recognise(IMAGE, "a.jpg", "image/jpeg")));
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitState());
+    }
+
+    private OcrClient client(Duration readTimeout, int maxConcurrent, int failureThreshold, Duration openFor) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/medication/predict_image";
+        return new OcrClient(new ObjectMapper(), url, Duration.ofSeconds(1), readTimeout, maxConcurrent, failureThreshold, openFor);
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        return e.getCause();
+    }
+}
@@ -0,0 +1,150 @@
+package nus.iss.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nus.iss.backend.dao.ImageOutput;
+import nus.iss.backend.exceptions.OcrUnavailableException;
+import nus.iss.backend.ocr.OcrResultCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OcrResultCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger modelCalls = new AtomicInteger();
+
+    @Test
+    void repeatUploadIsAnsweredFromMemory() throws Exception {
+        OcrResultCache cache = cache("v1", Duration.ofDays(1), 10);
+
+        assertEquals("Panadol", cache.get("a", model("Panadol")).get().getMedicationName());
+        ImageOutput again = cache.get("a", model("Panadol")).get();
+        assertEquals("Panadol", again.getMedicationName());
+        assertEquals(1, modelCalls.get());
+
+        // callers get copies
+        again.setMedicationName("changed");
+        assertEquals("Panadol", cache.get("a", model("Panadol")).get().getMedicationName());
+        assertEquals(2.0, requests("memory"));
+        assertEquals(1.0, requests("miss"));
+    }
+
+    @Test
+    void evictedEntriesSpillToDiskAndSurviveARestart() throws Exception {
+        OcrResultCache cache = cache("v1", Duration.ofDays(1), 2);
+        cache.get("a", model("A")).get();
+        cache.get("b", model("B")).get();
+        cache.get("c", model("C")).get();
+        assertEquals(2, cache.memorySize());
+        assertEquals(1, cache.diskSize());
+        assertTrue(Files.exists(dir.resolve("v1").resolve("a.json")));
+
+        assertEquals("A", cache.get("a", model("wrong")).get().getMedicationName());
+        assertEquals(1.0, requests("disk"));
+        assertEquals(3, modelCalls.get());
+
+        // a came back into memory and pushed b out
+        OcrResultCache restarted = cache("v1", Duration.ofDays(1), 2);
+        assertEquals(2, restarted.diskSize());
+        assertEquals("A", restarted.get("a", model("wrong")).get().getMedicationName());
+        assertEquals(3, modelCalls.get());
+    }
+
+    @Test
+    void newModelVersionStartsEmpty() throws Exception {
+        OcrResultCache cache = cache("v1", Duration.ofDays(1), 1);
+        cache.get("a", model("A")).get();
+        cache.get("b", model("B")).get();
+        assertTrue(Files.exists(dir.resolve("v1").resolve("a.json")));
+
+        OcrResultCache retrained = cache("v2", Duration.ofDays(1), 1);
+        assertEquals("A2", retrained.get("a", model("A2")).get().getMedicationName());
+        assertFalse(Files.exists(dir.resolve("v1")));
+        assertEquals(3, modelCalls.get());
+    }
+
+    @Test
+    void expiredEntriesAreReloaded() throws Exception {
+        OcrResultCache cache = cache("v1", Duration.ofMillis(50), 10);
+        cache.get("a", model("A")).get();
+        Thread.sleep(100);
+        assertEquals("A2", cache.get("a", model("A2")).get().getMedicationName());
+        assertEquals(2, modelCalls.get());
+    }
+
+    @Test
+    void sweepDeletesExpiredFilesFromAnOwnerOnlyDirectory() throws Exception {
+        OcrResultCache cache = cache("v1", Duration.ofMillis(500), 1);
+        cache.get("a", model("A")).get();
+        cache.get("b", model("B")).get();
+        Path spilled = dir.resolve("v1").resolve("a.json");
+        assertTrue(Files.exists(spilled));
+        if (Files.getFileAttributeView(dir, PosixFileAttributeView.class) != null) {
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(dir.resolve("v1"))));
+        }
+
+        assertEquals(0, cache.sweepDisk());
+        Thread.sleep(600);
+        assertEquals(1, cache.sweepDisk());
+        assertFalse(Files.exists(spilled));
+        assertEquals(0, cache.diskSize());
+    }
+
+    @Test
+    void failuresAreNotKeptAndConcurrentMissesShareOneCall() throws Exception {
+        OcrResultCache cache = cache("v1", Duration.ofDays(1), 10);
+        CompletableFuture<ImageOutput> failing = cache.get("a",
+                () -> CompletableFuture.failedFuture(new OcrUnavailableException("down")));
+        assertTrue(failing.isCompletedExceptionally());
+
+        CompletableFuture<ImageOutput> slow = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<CompletableFuture<ImageOutput>> loader = () -> {
+            loads.incrementAndGet();
+            return slow;
+        };
+        CompletableFuture<ImageOutput> first = cache.get("a", loader);
+        CompletableFuture<ImageOutput> second = cache.get("a", loader);
+        slow.complete(output("A"));
+        assertEquals("A", first.get(1, TimeUnit.SECONDS).getMedicationName());
+        assertEquals("A", second.get(1, TimeUnit.SECONDS).getMedicationName());
+        assertEquals(1, loads.get());
+    }
+
+    private OcrResultCache cache(String modelVersion, Duration ttl, int maxEntries) {
+        return new OcrResultCache(new ObjectMapper(), registry, true, modelVersion, ttl, maxEntries, dir, 100);
+    }
+
+    private Supplier<CompletableFuture<ImageOutput>> model(String medicationName) {
+        return () -> {
+            modelCalls.incrementAndGet();
+            return CompletableFuture.completedFuture(output(medicationName));
+        };
+    }
+
+    private static ImageOutput output(String medicationName) {
+        ImageOutput output = new ImageOutput();
+        output.setMedicationName(medicationName);
+        output.setFrequency(2);
+        return output;
+    }
+
+    private double requests(String result) {
+        return registry.get("ocr.cache.requests").tag("result", result).counter().count();
+    }
+}
@@ -3,12 +3,20 @@ package nus.iss.backend;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import nus.iss.backend.controller.PatientController;
 import nus.iss.backend.dao.MissedDoseResponse;
+import nus.iss.backend.dto.DashboardSection;
+import nus.iss.backend.dto.PatientDashboard;
+import nus.iss.backend.dto.PatientRosterPage;
 import nus.iss.backend.dto.RegisterPatientRequest;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.model.Clinic;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
+import nus.iss.backend.service.DashboardService;
 import nus.iss.backend.service.PatientService;
 import nus.iss.backend.repository.ClinicRepository;
+import nus.iss.backend.util.PatientETag;
+import nus.iss.backend.util.PatientTokens;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +26,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -36,9 +45,42 @@ class PatientControllerTest {
     @MockBean
     private ClinicRepository clinicRepository;
 
+    @MockBean
+    private DashboardService dashboardService;
+
+    @MockBean
+    private PatientTokens patientTokens;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Test
+    void loginPatient_returnsToken() throws Exception {
+        Patient patient = new Patient();
+        patient.setId(UUID.randomUUID());
+        Mockito.when(patientService.findPatientByEmailAndPassword("a@b.com", "pw")).thenReturn(Optional.of(patient));
+        Mockito.when(patientTokens.issue(patient)).thenReturn("signed.token.value");
+
+        mockMvc.perform(post("/api/patient/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"a@b.com\",\"password\":\"pw\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(PatientTokens.RESPONSE_HEADER, "signed.token.value"))
+                .andExpect(jsonPath("$.id").value(patient.getId().toString()));
+    }
+
+    @Test
+    void loginPatient_badCredentials() throws Exception {
+        Mockito.when(patientService.findPatientByEmailAndPassword(any(), any())).thenReturn(Optional.empty());
+
+        mockMvc.perform(post("/api/patient/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"a@b.com\",\"password\":\"wrong\"}"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().doesNotExist(PatientTokens.RESPONSE_HEADER));
+        Mockito.verifyNoInteractions(patientTokens);
+    }
+
     @Test
     void getPatientById_success() throws Exception {
         UUID id = UUID.randomUUID();
@@ -69,6 +111,43 @@ class PatientControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void getPatientMedication_etagIncludesMonth() throws Exception {
+        UUID id = UUID.randomUUID();
+        Mockito.when(patientService.findDataVersion(id)).thenReturn(Optional.of(3L));
+        Mockito.when(patientService.getPatientMedicationsWithMissedDose(id)).thenReturn(List.of(new MissedDoseResponse()));
+
+        mockMvc.perform(get("/api/patient/" + id + "/medications"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v3-" + YearMonth.now() + "\""));
+    }
+
+    @Test
+    void getPatientMedication_etagChangesWithMissedDoses() throws Exception {
+        UUID id = UUID.randomUUID();
+        UUID missed = UUID.randomUUID();
+        Mockito.when(patientService.findDataVersion(id)).thenReturn(Optional.of(3L));
+        Mockito.when(patientService.findMissedDoseMedicationIds(id)).thenReturn(Set.of(missed));
+        Mockito.when(patientService.getPatientMedicationsWithMissedDose(id)).thenReturn(List.of(new MissedDoseResponse()));
+
+        mockMvc.perform(get("/api/patient/" + id + "/medications")
+                        .header("If-None-Match", "\"v3-" + YearMonth.now() + "\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v3-" + YearMonth.now() + "-" + PatientETag.digest(Set.of(missed)) + "\""));
+    }
+
+    @Test
+    void getPatientMedication_notModified() throws Exception {
+        UUID id = UUID.randomUUID();
+        Mockito.when(patientService.findDataVersion(id)).thenReturn(Optional.of(3L));
+
+        mockMvc.perform(get("/api/patient/" + id + "/medications")
+                        .header("If-None-Match", "\"v3-" + YearMonth.now() + "\""))
+                .andExpect(status().isNotModified());
+
+        Mockito.verify(patientService, Mockito.never()).getPatientMedicationsWithMissedDose(any());
+    }
+
     @Test
     void getPatientMedication_itemNotFound() throws Exception {
         UUID id = UUID.randomUUID();
@@ -110,4 +189,115 @@ class PatientControllerTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void getMedList_returnsETag() throws Exception {
+        UUID id = UUID.randomUUID();
+        Medication med = new Medication();
+        med.setMedicationName("Panadol");
+        Mockito.when(patientService.findDataVersion(id)).thenReturn(Optional.of(5L));
+        Mockito.when(patientService.getPatientMedications(id)).thenReturn(List.of(med));
+
+        mockMvc.perform(get("/api/patient/" + id + "/medList"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v5\""))
+                .andExpect(jsonPath("$[0].medicationName").value("Panadol"));
+    }
+
+    @Test
+    void getMedList_notModified() throws Exception {
+        UUID id = UUID.randomUUID();
+        Mockito.when(patientService.findDataVersion(id)).thenReturn(Optional.of(5L));
+
+        mockMvc.perform(get("/api/patient/" + id + "/medList").header("If-None-Match", "W/\"v5\""))
+                .andExpect(status().isNotModified());
+
+        Mockito.verify(patientService, Mockito.never()).getPatientMedications(any());
+    }
+
+    @Test
+    void getDashboard_allSectionsByDefault() throws Exception {
+        UUID id = UUID.randomUUID();
+        PatientDashboard dashboard = new PatientDashboard();
+        dashboard.setTodaySchedule(List.of());
+        Mockito.when(dashboardService.getDashboard(eq(id), any())).thenReturn(dashboard);
+
+        mockMvc.perform(get("/api/patient/" + id + "/dashboard"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.todaySchedule").isArray())
+                .andExpect(jsonPath("$.profile").doesNotExist());
+
+        Mockito.verify(dashboardService).getDashboard(id, EnumSet.allOf(DashboardSection.class));
+    }
+
+    @Test
+    void getDashboard_includeSelectsSections() throws Exception {
+        UUID id = UUID.randomUUID();
+        Mockito.when(dashboardService.getDashboard(eq(id), any())).thenReturn(new PatientDashboard());
+
+        mockMvc.perform(get("/api/patient/" + id + "/dashboard").param("include", "schedule,Medications"))
+                .andExpect(status().isOk());
+
+        Mockito.verify(dashboardService).getDashboard(id, EnumSet.of(DashboardSection.MEDICATIONS, DashboardSection.SCHEDULE));
+    }
+
+    @Test
+    void getDashboard_unknownSection() throws Exception {
+        mockMvc.perform(get("/api/patient/" + UUID.randomUUID() + "/dashboard").param("include", "billing"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verifyNoInteractions(dashboardService);
+    }
+
+    @Test
+    void getDashboard_patientNotFound() throws Exception {
+        UUID id = UUID.randomUUID();
+        Mockito.when(dashboardService.getDashboard(eq(id), any())).thenThrow(new ItemNotFound("Patient not found!"));
+
+        mockMvc.perform(get("/api/patient/" + id + "/dashboard"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getDoctorRoster_bindsQueryAndDefaultsSize() throws Exception {
+        PatientRosterPage page = new PatientRosterPage();
+        page.setSize(25);
+        Mockito.when(patientService.getDoctorRoster(eq("M12345A"), eq(false), any())).thenReturn(page);
+
+        mockMvc.perform(get("/api/patients/by-doctor/M12345A/roster")
+                        .param("name", "ta").param("adherenceBelow", "80").param("sort", "adherence"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(25));
+
+        Mockito.verify(patientService).getDoctorRoster(eq("M12345A"), eq(false), argThat(q ->
+                "ta".equals(q.getName()) && q.getAdherenceBelow() == 80.0
+                        && "adherence".equals(q.getSort()) && q.getSize() == 25));
+    }
+
+    @Test
+    void getUnassignedRoster_capsPageSize() throws Exception {
+        Mockito.when(patientService.getDoctorRoster(eq("M12345A"), eq(true), any())).thenReturn(new PatientRosterPage());
+
+        mockMvc.perform(get("/api/patients/unassigned/M12345A/roster").param("size", "5000"))
+                .andExpect(status().isOk());
+
+        Mockito.verify(patientService).getDoctorRoster(eq("M12345A"), eq(true), argThat(q -> q.getSize() == 100));
+    }
+
+    @Test
+    void getDoctorRoster_badRequest() throws Exception {
+        Mockito.when(patientService.getDoctorRoster(any(), anyBoolean(), any()))
+                .thenThrow(new BadRequestException("sort must be one of name, age, lastLog, adherence"));
+
+        mockMvc.perform(get("/api/patients/by-doctor/M12345A/roster").param("sort", "nric"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getDoctorRoster_doctorNotFound() throws Exception {
+        Mockito.when(patientService.getDoctorRoster(any(), anyBoolean(), any()))
+                .thenThrow(new ItemNotFound("Doctor not found!"));
+
+        mockMvc.perform(get("/api/patients/by-doctor/M0000000/roster"))
+                .andExpect(status().isNotFound());
+    }
+}
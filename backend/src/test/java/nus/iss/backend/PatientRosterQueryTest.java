@@ -0,0 +1,102 @@
+package nus.iss.backend;
+
+import jakarta.persistence.EntityManagerFactory;
+import nus.iss.backend.dto.PatientRosterEntry;
+import nus.iss.backend.dto.PatientRosterPage;
+import nus.iss.backend.dto.RosterQuery;
+import nus.iss.backend.model.Patient;
+import nus.iss.backend.repository.PatientRepository;
+import nus.iss.backend.service.PatientService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The roster page must come from a single aggregate statement (plus the doctor lookup),
+ * however many patients and schedules the doctor has.
+ */
+@SpringBootTest
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class PatientRosterQueryTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private String mcrNo;
+    private long patientCount;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Patient patient = patientRepository.findAll().stream()
+                .filter(p -> p.getDoctor() != null)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("seed data has no assigned patient"));
+        mcrNo = patient.getDoctor().getMcrNo();
+        patientCount = patientRepository.findByDoctorMcrNo(mcrNo).size();
+        statistics.clear();
+    }
+
+    @Test
+    void rosterIsOneAggregateStatement() {
+        RosterQuery query = new RosterQuery();
+        query.setSize(100);
+
+        PatientRosterPage page = patientService.getDoctorRoster(mcrNo, false, query);
+
+        assertEquals(patientCount, page.getItems().size());
+        assertFalse(page.isHasNext());
+        List<String> names = page.getItems().stream().map(PatientRosterEntry::getLastName).toList();
+        assertEquals(names.stream().sorted(Comparator.naturalOrder()).toList(), names);
+        // the doctor lookup and its eager clinic (served from the L2 cache in production), then the roster
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void rosterPagesWithoutOverlap() {
+        RosterQuery first = new RosterQuery();
+        first.setSize(1);
+        first.setSort("adherence");
+        first.setDirection("desc");
+        RosterQuery second = new RosterQuery();
+        second.setSize(1);
+        second.setPage(1);
+        second.setSort("adherence");
+        second.setDirection("desc");
+
+        PatientRosterPage one = patientService.getDoctorRoster(mcrNo, false, first);
+        PatientRosterPage two = patientService.getDoctorRoster(mcrNo, false, second);
+
+        assertEquals(patientCount > 1, one.isHasNext());
+        if (patientCount > 1) {
+            assertNotEquals(one.getItems().get(0).getId(), two.getItems().get(0).getId());
+        }
+    }
+
+    @Test
+    void adherenceThresholdFiltersOnTheServer() {
+        RosterQuery query = new RosterQuery();
+        query.setSize(100);
+        query.setAdherenceBelow(0.0);
+
+        PatientRosterPage page = patientService.getDoctorRoster(mcrNo, false, query);
+
+        assertTrue(page.getItems().isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package nus.iss.backend;
+
+import nus.iss.backend.exceptions.InvalidTokenException;
+import nus.iss.backend.model.Patient;
+import nus.iss.backend.repository.PatientRepository;
+import nus.iss.backend.util.PatientTokens;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Logs a seeded patient in and replays the token on the app's endpoints with app.auth.token.required set:
+ * the patient's own calls go through, another patient's path is forbidden, a missing, tampered or expired
+ * token is unauthorized.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "app.auth.token.required=true",
+        "app.auth.token.secret=dGVzdC1vbmx5LXBhdGllbnQtdG9rZW4tc2VjcmV0LWtleQ=="
+})
+class PatientTokenAuthTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Test
+    void tokenFromLoginOpensOwnEndpointsOnly() throws Exception {
+        List<Patient> patients = patientRepository.findAll(PageRequest.of(0, 2)).getContent();
+        Patient patient = patients.get(0);
+        Patient other = patients.get(1);
+
+        String token = mockMvc.perform(post("/api/patient/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + patient.getEmail() + "\",\"password\":\"" + patient.getPassword() + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(PatientTokens.RESPONSE_HEADER);
+        assertNotNull(token);
+
+        mockMvc.perform(get("/api/patient/" + patient.getId() + "/medList").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/patient/" + patient.getId() + "/dashboard").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/patient/" + other.getId() + "/medList").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isForbidden());
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        mockMvc.perform(get("/api/patient/" + patient.getId() + "/medList").header(HttpHeaders.AUTHORIZATION, "Bearer " + tampered))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/patient/" + patient.getId() + "/medList"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void tokensAreCheckedInMemory() {
+        Patient patient = patientRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+        PatientTokens tokens = new PatientTokens("dGVzdC1vbmx5LXBhdGllbnQtdG9rZW4tc2VjcmV0LWtleQ==", Duration.ofMinutes(5));
+
+        PatientTokens.Claims claims = tokens.verify(tokens.issue(patient));
+        assertEquals(patient.getId(), claims.patientId());
+        assertEquals(patient.getClinic().getId(), claims.clinicId());
+
+        // another key, an expired token, a different algorithm header
+        PatientTokens otherKey = new PatientTokens("b3RoZXItcGF0aWVudC10b2tlbi1zZWNyZXQta2V5LWZvci10ZXN0cw==", Duration.ofMinutes(5));
+        assertThrows(InvalidTokenException.class, () -> otherKey.verify(tokens.issue(patient)));
+        PatientTokens expired = new PatientTokens("dGVzdC1vbmx5LXBhdGllbnQtdG9rZW4tc2VjcmV0LWtleQ==", Duration.ZERO);
+        assertThrows(InvalidTokenException.class, () -> tokens.verify(expired.issue(patient)));
+        String token = tokens.issue(patient);
+        String none = "eyJhbGciOiJub25lIiwidHlwIjoiSldUIn0" + token.substring(token.indexOf('.'));
+        assertThrows(InvalidTokenException.class, () -> tokens.verify(none));
+    }
+}
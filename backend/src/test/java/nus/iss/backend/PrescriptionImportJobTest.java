@@ -0,0 +1,148 @@
+package nus.iss.backend;
+
+import nus.iss.backend.dto.PrescriptionImportReport;
+import nus.iss.backend.dto.PrescriptionImportRowError;
+import nus.iss.backend.dto.newMedicationReq;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.exceptions.ItemNotFound;
+import nus.iss.backend.model.Doctor;
+import nus.iss.backend.model.Medication;
+import nus.iss.backend.model.Patient;
+import nus.iss.backend.model.Schedule;
+import nus.iss.backend.repository.DoctorRepository;
+import nus.iss.backend.repository.MedicationRepository;
+import nus.iss.backend.repository.PatientRepository;
+import nus.iss.backend.repository.ScheduleRepository;
+import nus.iss.backend.service.MedicationService;
+import nus.iss.backend.service.PrescriptionImportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the prescription import job end to end on H2: several partitions, chunks smaller than the file,
+ * good lines written with their links and schedules, bad ones skipped into the error report.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "app.import.prescriptions.partitions=3",
+        "app.import.prescriptions.chunk-size=2"
+})
+class PrescriptionImportJobTest {
+
+    @Autowired
+    private PrescriptionImportService importService;
+
+    @Autowired
+    private MedicationService medicationService;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Test
+    void importsGoodLinesAndReportsTheRest() throws Exception {
+        Doctor doctor = doctorRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+        List<Patient> clinicPatients = patientRepository.findAll().stream()
+                .filter(p -> p.getClinic().getId().equals(doctor.getClinic().getId()))
+                .limit(2)
+                .toList();
+        assertEquals(2, clinicPatients.size(), "seeder should give the clinic at least two patients");
+        Patient first = clinicPatients.get(0);
+        Patient second = clinicPatients.get(1);
+
+        newMedicationReq existing = new newMedicationReq();
+        existing.setPatientId(first.getId());
+        existing.setMedicationName("Importtest Existing");
+        existing.setDosage("1");
+        existing.setFrequency(1);
+        medicationService.createMedication(existing);
+        long versionBefore = patientRepository.findDataVersionById(first.getId()).orElseThrow();
+
+        String csv = String.join("\n",
+                "patient,medication,dosage,frequency,times,instructions,notes",
+                first.getId() + ",importtest alpha,1 tablet,2,08:00;2000,After food,",
+                second.getNric().toLowerCase() + ",IMPORTTEST   beta,5 ml,1,0900",
+                first.getId() + ",Importtest Existing,1,1,08:00",
+                first.getId() + ",importtest alpha,1,1,09:00",
+                UUID.randomUUID() + ",importtest gamma,1,1,08:00",
+                second.getId() + ",importtest delta,1,often,08:00",
+                second.getId() + ",importtest epsilon,1,1,25:00",
+                second.getId() + ",importtest zeta,1,1,",
+                // line 3 by id: the same partition, so the duplicate is caught
+                second.getId() + ",Importtest Beta,5 ml,1,0900");
+        MockMultipartFile file = new MockMultipartFile("file", "prescriptions.csv", "text/csv",
+                csv.getBytes(StandardCharsets.UTF_8));
+
+        PrescriptionImportReport started = importService.startImport(doctor.getMcrNo(), file);
+        PrescriptionImportReport report = awaitFinished(started.getExecutionId());
+
+        assertEquals("COMPLETED", report.getStatus());
+        assertFalse(report.isRestartable());
+        assertEquals(9, report.getTotalRows());
+        assertEquals(2, report.getImported());
+        assertEquals(7, report.getFailed());
+        Map<Long, String> errors = report.getErrors().stream()
+                .collect(Collectors.toMap(PrescriptionImportRowError::getLineNumber, PrescriptionImportRowError::getMessage));
+        assertEquals(List.of(4L, 5L, 6L, 7L, 8L, 9L, 10L), report.getErrors().stream().map(PrescriptionImportRowError::getLineNumber).toList());
+        assertEquals("Medication already exists for this patient!", errors.get(4L));
+        assertEquals("Medication already exists for this patient!", errors.get(5L));
+        assertEquals("Patient not found!", errors.get(6L));
+        assertTrue(errors.get(7L).contains("frequency"), errors.get(7L));
+        assertEquals("Invalid time format: 25:00", errors.get(8L));
+        assertEquals("times is required", errors.get(9L));
+        assertEquals("Medication already exists for this patient!", errors.get(10L));
+
+        List<Medication> alpha = medicationRepository.findByPatientIdAndMedicationNameIgnoreCase(first.getId(), "Importtest Alpha");
+        assertEquals(1, alpha.size());
+        assertEquals("Importtest Alpha", alpha.get(0).getMedicationName());
+        assertEquals("After food", alpha.get(0).getInstructions());
+        assertEquals(List.of(LocalTime.of(8, 0), LocalTime.of(20, 0)), scheduleRepository.findByMedicationAndIsActiveTrue(alpha.get(0))
+                .stream().map(Schedule::getScheduledTime).sorted().toList());
+        List<Medication> beta = medicationRepository.findByPatientIdAndMedicationNameIgnoreCase(second.getId(), "Importtest Beta");
+        assertEquals(1, beta.size());
+        assertEquals(1, scheduleRepository.findByMedicationAndIsActiveTrue(beta.get(0)).size());
+        assertTrue(patientRepository.findDataVersionById(first.getId()).orElseThrow() > versionBefore);
+
+        assertThrows(BadRequestException.class, () -> importService.restartImport(report.getExecutionId()));
+    }
+
+    @Test
+    void unknownDoctorOrImportIsNotFound() {
+        MockMultipartFile file = new MockMultipartFile("file", "prescriptions.csv", "text/csv", "patient\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(ItemNotFound.class, () -> importService.startImport("M0000000", file));
+        assertThrows(ItemNotFound.class, () -> importService.getReport(Long.MAX_VALUE));
+    }
+
+    private PrescriptionImportReport awaitFinished(long executionId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (true) {
+            PrescriptionImportReport report = importService.getReport(executionId);
+            if (!report.getStatus().equals("STARTING") && !report.getStatus().equals("STARTED")) {
+                return report;
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "import did not finish in time");
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package nus.iss.backend;
+
+import nus.iss.backend.model.Doctor;
+import nus.iss.backend.model.Medication;
+import nus.iss.backend.model.Patient;
+import nus.iss.backend.model.Schedule;
+import nus.iss.backend.repository.DoctorRepository;
+import nus.iss.backend.repository.IntakeArchiveRepository;
+import nus.iss.backend.repository.IntakeRepository;
+import nus.iss.backend.repository.MedicationRepository;
+import nus.iss.backend.repository.PatientRepository;
+import nus.iss.backend.repository.PrescriptionImportErrorRepository;
+import nus.iss.backend.repository.ScheduleRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Builds the schema from the Flyway migrations (instead of Hibernate's create-drop) and checks that
+ * every SQL statement issued by the hot repository methods is answered from an index.
+ * H2 in MySQL mode stands in for MySQL here, so this catches missing indexes, not MySQL-specific plan choices.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migrationdb;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.session.jdbc.initialize-schema=never",
+        // the Spring Batch tables come from V7 here
+        "spring.batch.jdbc.initialize-schema=never",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=nus.iss.backend.QueryPlanTest$CapturingInspector"
+})
+class QueryPlanTest {
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private IntakeRepository intakeRepository;
+
+    @Autowired
+    private IntakeArchiveRepository intakeArchiveRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private PrescriptionImportErrorRepository prescriptionImportErrorRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private Schedule schedule;
+    private Doctor doctor;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        schedule = scheduleRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+        doctor = doctorRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+        // refresh column selectivity so the optimizer costs the seeded data rather than its defaults
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+        CapturingInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void hotQueriesUseIndexes() throws SQLException {
+        Patient patient = schedule.getPatient();
+        Medication medication = schedule.getMedication();
+        UUID patientId = patient.getId();
+        LocalDate today = LocalDate.now();
+
+        scheduleRepository.findSchedulesByPatientIdandScheduledTime(schedule.getScheduledTime(), patientId);
+        scheduleRepository.findByMedicationAndIsActiveTrue(medication);
+        scheduleRepository.findByMedicationAndIsActiveFalseAndCreationDateBefore(medication, LocalDateTime.now());
+        scheduleRepository.findActiveSchedulesByPatientId(patientId);
+        scheduleRepository.findAgendaByPatientId(patientId);
+
+        intakeRepository.findBySchedule_Medication_Id(medication.getId());
+        intakeRepository.findByPatient_Id(patientId);
+        intakeRepository.existsByClientRequestId("plan-check");
+        intakeRepository.findExistingClientRequestIds(List.of("plan-check-1", "plan-check-2"));
+        intakeRepository.findHistoryRows(patientId, today.minusDays(30), today, PageRequest.of(0, 100));
+        intakeRepository.findHistoryRowsAfter(patientId, null, null, today.minusDays(30),
+                schedule.getScheduledTime(), UUID.randomUUID(), PageRequest.of(0, 100));
+        intakeRepository.findIdsLoggedBefore(today.minusDays(365), PageRequest.of(0, 1000));
+        intakeArchiveRepository.findHistoryRows(patientId, today.minusDays(400), today, PageRequest.of(0, 100));
+        intakeArchiveRepository.findHistoryRowsAfter(patientId, null, null, today.minusDays(400),
+                schedule.getScheduledTime(), UUID.randomUUID(), PageRequest.of(0, 100));
+        scheduleRepository.findArchivedInactiveSchedules(LocalDateTime.now().minusDays(365), PageRequest.of(0, 1000));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try (var logs = intakeRepository.streamLogsByMedicationId(medication.getId())) {
+                logs.count();
+            }
+        });
+
+        patientRepository.findPatientById(patientId);
+        patientRepository.findSummaryById(patientId);
+        patientRepository.findByEmailAndPassword(patient.getEmail(), "plan-check");
+        patientRepository.findByDoctorMcrNo(doctor.getMcrNo());
+        patientRepository.findByClinic_IdAndDoctorIsNull(patient.getClinic().getId());
+        patientRepository.findByDoctor(doctor);
+        patientRepository.existsEmailIgnoreCase(patient.getEmail());
+        patientRepository.existsEmailIgnoreCaseExcludingId(patient.getEmail(), patientId);
+        LocalDate month = today.withDayOfMonth(1);
+        patientRepository.findDoctorRoster(doctor.getMcrNo(), month, null, null, PageRequest.of(0, 25, Sort.by("lastName")));
+        patientRepository.findUnassignedRoster(patient.getClinic().getId(), month, "a%", 50.0, PageRequest.of(0, 25));
+
+        // prescription import chunk
+        patientRepository.findRefsByClinicAndIds(patient.getClinic().getId(), List.of(patientId));
+        patientRepository.findRefsByClinicAndNrics(patient.getClinic().getId(), List.of("S0000000A"));
+        medicationRepository.findActiveMedicationNames(List.of(patientId));
+        prescriptionImportErrorRepository.findByJobInstanceIdOrderByLineNumber(1L);
+
+        Set<String> selects = new LinkedHashSet<>();
+        for (String sql : CapturingInspector.STATEMENTS) {
+            if (sql.trim().toLowerCase().startsWith("select")) {
+                selects.add(sql);
+            }
+        }
+        assertFalse(selects.isEmpty(), "no statements were captured");
+
+        List<String> scans = new ArrayList<>();
+        for (String sql : selects) {
+            String plan = explain(sql);
+            if (plan.contains(".tableScan")) {
+                scans.add(sql + "\n  -> " + plan);
+            }
+        }
+        assertTrue(scans.isEmpty(), "full table scans:\n" + String.join("\n\n", scans));
+    }
+
+    // H2 marks a full scan as "/* PUBLIC.TABLE.tableScan */"; an index lookup names the index instead.
+    private String explain(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            int parameters = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                statement.setObject(i, null);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1));
+                }
+                return plan.toString();
+            }
+        }
+    }
+
+    public static class CapturingInspector implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package nus.iss.backend;
+
+import com.sun.net.httpserver.HttpServer;
+import nus.iss.backend.dto.RecognitionJobResponse;
+import nus.iss.backend.exceptions.ItemNotFound;
+import nus.iss.backend.model.RecognitionJob;
+import nus.iss.backend.repository.RecognitionJobRepository;
+import nus.iss.backend.service.RecognitionJobService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Recognition jobs end to end on H2 against a stub of the OCR model: the upload returns before the model
+ * answers, a re-upload finds the same job, failed attempts are retried by the sweep, rejected images are not.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class RecognitionJobTest {
+
+    private static final HttpServer OCR = startOcrStub();
+    private static final AtomicInteger calls = new AtomicInteger();
+    private static volatile int status = 200;
+    private static volatile long delayMillis;
+
+    @Autowired
+    private RecognitionJobService recognitionJobService;
+
+    @Autowired
+    private RecognitionJobRepository jobRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void ocrProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.ocr.url", () -> "http://127.0.0.1:" + OCR.getAddress().getPort() + "/api/medication/predict_image");
+        registry.add("app.ocr.jobs.retry-delay", () -> "0s");
+        registry.add("app.ocr.jobs.max-attempts", () -> "3");
+        // the tests sweep by hand
+        registry.add("app.ocr.jobs.sweep-interval", () -> "1h");
+    }
+
+    @AfterAll
+    static void stopOcrStub() {
+        OCR.stop(0);
+    }
+
+    @BeforeEach
+    void resetStub() {
+        calls.set(0);
+        status = 200;
+        delayMillis = 0;
+    }
+
+    @Test
+    void uploadReturnsAtOnceAndReuploadFindsTheJob() throws Exception {
+        delayMillis = 1000;
+        MockMultipartFile image = image();
+
+        long start = System.nanoTime();
+        RecognitionJobResponse submitted = recognitionJobService.submit(image);
+        assertTrue(System.nanoTime() - start < 900_000_000L, "the upload waited for the model");
+        assertTrue(submitted.getStatus().equals(RecognitionJob.PENDING) || submitted.getStatus().equals(RecognitionJob.RUNNING));
+
+        RecognitionJobResponse again = recognitionJobService.submit(image);
+        assertEquals(submitted.getJobId(), again.getJobId());
+
+        RecognitionJobResponse done = awaitFinished(submitted.getJobId());
+        assertEquals(RecognitionJob.SUCCEEDED, done.getStatus());
+        assertEquals("Panadol", done.getResult().getMedicationName());
+        assertEquals(1, done.getAttempts());
+        assertEquals(1, calls.get());
+
+        // finished: answered from the job, the model is not asked again
+        RecognitionJobResponse cached = recognitionJobService.submit(image);
+        assertEquals(submitted.getJobId(), cached.getJobId());
+        assertEquals("Panadol", cached.getResult().getMedicationName());
+        assertEquals(1, calls.get());
+
+        String events = mockMvc.perform(get("/api/medication/predict_image/jobs/" + submitted.getJobId() + "/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(events.contains("event:status") && events.contains("SUCCEEDED"), events);
+    }
+
+    @Test
+    void failedAttemptsAreRetriedBySweep() throws Exception {
+        status = 500;
+        RecognitionJobResponse submitted = recognitionJobService.submit(image());
+        RecognitionJobResponse waiting = awaitStatus(submitted.getJobId(), RecognitionJob.PENDING, 1);
+        assertNotNull(waiting.getError());
+
+        status = 200;
+        assertEquals(1, recognitionJobService.sweep());
+        RecognitionJobResponse done = awaitFinished(submitted.getJobId());
+        assertEquals(RecognitionJob.SUCCEEDED, done.getStatus());
+        assertEquals(2, done.getAttempts());
+        assertNull(done.getError());
+    }
+
+    @Test
+    void givesUpAfterMaxAttemptsAndRequeuesOnReupload() throws Exception {
+        status = 503;
+        MockMultipartFile image = image();
+        UUID jobId = recognitionJobService.submit(image).getJobId();
+        awaitStatus(jobId, RecognitionJob.PENDING, 1);
+        recognitionJobService.sweep();
+        awaitStatus(jobId, RecognitionJob.PENDING, 2);
+        recognitionJobService.sweep();
+        RecognitionJobResponse failed = awaitFinished(jobId);
+        assertEquals(RecognitionJob.FAILED, failed.getStatus());
+        assertEquals(3, failed.getAttempts());
+        assertEquals(0, recognitionJobService.sweep());
+
+        status = 200;
+        RecognitionJobResponse requeued = recognitionJobService.submit(image);
+        assertEquals(jobId, requeued.getJobId());
+        assertEquals(RecognitionJob.SUCCEEDED, awaitFinished(jobId).getStatus());
+    }
+
+    @Test
+    void jobLeftRunningOnItsLastAttemptIsFailedBySweep() {
+        // its worker died on every attempt, so the lease is not taken over again
+        LocalDateTime now = LocalDateTime.now();
+        RecognitionJob job = new RecognitionJob();
+        job.setContentHash(UUID.randomUUID().toString().replace("-", ""));
+        job.setStatus(RecognitionJob.RUNNING);
+        job.setAttempts(3);
+        job.setLeaseUntil(now.minusMinutes(1));
+        job.setCreatedAt(now.minusMinutes(10));
+        job.setUpdatedAt(now.minusMinutes(3));
+        UUID jobId = jobRepository.saveAndFlush(job).getId();
+
+        assertEquals(0, recognitionJobService.sweep());
+        RecognitionJobResponse failed = recognitionJobService.getJob(jobId);
+        assertEquals(RecognitionJob.FAILED, failed.getStatus());
+        assertEquals(3, failed.getAttempts());
+        assertNotNull(failed.getError());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void rejectedImageFailsWithoutRetry() throws Exception {
+        status = 422;
+        RecognitionJobResponse done = awaitFinished(recognitionJobService.submit(image()).getJobId());
+        assertEquals(RecognitionJob.FAILED, done.getStatus());
+        assertEquals(1, done.getAttempts());
+        assertEquals(1, calls.get());
+        assertThrows(ItemNotFound.class, () -> recognitionJobService.getJob(UUID.randomUUID()));
+    }
+
+    // distinct bytes per test, so no test finds another's job
+    private static MockMultipartFile image() {
+        return new MockMultipartFile("file", "box.jpg", "image/jpeg",
+                ("pill box " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private RecognitionJobResponse awaitFinished(UUID jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (true) {
+            RecognitionJobResponse job = recognitionJobService.getJob(jobId);
+            if (job.getStatus().equals(RecognitionJob.SUCCEEDED) || job.getStatus().equals(RecognitionJob.FAILED)) {
+                return job;
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "job did not finish in time");
+            Thread.sleep(50);
+        }
+    }
+
+    private RecognitionJobResponse awaitStatus(UUID jobId, String expected, int attempts) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (true) {
+            RecognitionJob job = jobRepository.findById(jobId).orElseThrow();
+            if (job.getStatus().equals(expected) && job.getAttempts() == attempts) {
+                return recognitionJobService.getJob(jobId);
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "job did not reach " + expected + " in time");
+            Thread.sleep(50);
+        }
+    }
+
+    private static HttpServer startOcrStub() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/api/medication/predict_image", exchange -> {
+                calls.incrementAndGet();
+                exchange.getRequestBody().readAllBytes();
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = (status == 200 ? "{\"medicationName\":\"Panadol\",\"frequency\":2}" : "{\"detail\":\"error\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            });
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
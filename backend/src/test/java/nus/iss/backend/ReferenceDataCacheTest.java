@@ -0,0 +1,117 @@
+package nus.iss.backend;
+
+import jakarta.persistence.EntityManagerFactory;
+import nus.iss.backend.dao.DoctorUpdateReqWeb;
+import nus.iss.backend.model.Clinic;
+import nus.iss.backend.model.Doctor;
+import nus.iss.backend.repository.ClinicRepository;
+import nus.iss.backend.repository.DoctorRepository;
+import nus.iss.backend.service.ClinicService;
+import nus.iss.backend.service.DoctorService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs with the production second-level cache settings (the other tests leave it off) on its own database,
+ * since it changes a doctor's clinic.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachedb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=org.ehcache.jsr107.EhcacheCachingProvider",
+        "spring.jpa.properties.hibernate.javax.cache.uri=classpath:ehcache.xml",
+        "spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=fail",
+        "spring.jpa.properties.jakarta.persistence.sharedCache.mode=ENABLE_SELECTIVE",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class ReferenceDataCacheTest {
+
+    @Autowired
+    private ClinicService clinicService;
+
+    @Autowired
+    private DoctorService doctorService;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private ClinicRepository clinicRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void clinicListIsServedFromQueryCache() {
+        clinicService.getAllClinics();
+        statistics.clear();
+
+        List<Clinic> clinics = clinicService.getAllClinics();
+
+        assertFalse(clinics.isEmpty());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getQueryCacheHitCount() > 0);
+    }
+
+    @Test
+    void doctorLookupIsServedFromCache() {
+        String mcrNo = anyDoctor().getMcrNo();
+        doctorService.findDoctorByMcrNo(mcrNo);
+        statistics.clear();
+
+        Doctor doctor = doctorService.findDoctorByMcrNo(mcrNo);
+
+        assertEquals(mcrNo, doctor.getMcrNo());
+        assertNotNull(doctor.getClinic().getClinicName());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getDomainDataRegionStatistics(Doctor.class.getName()).getHitCount() > 0);
+    }
+
+    @Test
+    void clinicChangeInvalidatesCachedDoctor() {
+        Doctor doctor = anyDoctor();
+        Clinic target = clinicRepository.findAll().stream()
+                .filter(c -> !c.getId().equals(doctor.getClinic().getId()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("seed data has a single clinic"));
+        // warm the query and entity caches with the old assignment
+        doctorService.findDoctorByMcrNo(doctor.getMcrNo());
+
+        Clinic clinicRef = new Clinic();
+        clinicRef.setId(target.getId());
+        DoctorUpdateReqWeb req = new DoctorUpdateReqWeb();
+        req.setMcrNo(doctor.getMcrNo());
+        req.setClinic(clinicRef);
+        req.setEmail("cache.check@" + (target.getEmailDomain() == null ? "example.com" : target.getEmailDomain()));
+        doctorService.updateDoctor(req);
+
+        Doctor reloaded = doctorService.findDoctorByMcrNo(doctor.getMcrNo());
+
+        assertEquals(target.getId(), reloaded.getClinic().getId());
+        assertEquals(target.getClinicName(), reloaded.getClinic().getClinicName());
+    }
+
+    private Doctor anyDoctor() {
+        return doctorRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+    }
+}
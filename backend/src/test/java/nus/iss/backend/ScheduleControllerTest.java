@@ -8,6 +8,7 @@ import nus.iss.backend.dto.ScheduleResponse;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
 import nus.iss.backend.model.Schedule;
+import nus.iss.backend.service.PatientService;
 import nus.iss.backend.service.ScheduleService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -20,6 +21,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -35,6 +37,9 @@ class ScheduleControllerTest {
     @MockBean
     private ScheduleService scheduleService;
 
+    @MockBean
+    private PatientService patientService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -42,15 +47,11 @@ class ScheduleControllerTest {
     void getSchedulesByTime_success() throws Exception {
         UUID patientId = UUID.randomUUID();
         LocalTime time = LocalTime.of(8, 0);
-        Schedule schedule = new Schedule();
-        schedule.setId(UUID.randomUUID());
-        schedule.setScheduledTime(time);
-        Medication med = new Medication();
-        med.setId(UUID.randomUUID());
-        schedule.setMedication(med);
-        schedule.setIsActive(true);
-
-        Mockito.when(scheduleService.findSchedulesByPatientIdandScheduledTime(eq(time), eq(patientId)))
+        UUID scheduleId = UUID.randomUUID();
+        UUID medicationId = UUID.randomUUID();
+        ScheduleFindResponse schedule = new ScheduleFindResponse(scheduleId, time, true, medicationId);
+
+        Mockito.when(scheduleService.findScheduleSummariesByPatientIdAndScheduledTime(eq(time), eq(patientId)))
                 .thenReturn(List.of(schedule));
 
         ScheduleListReq req = new ScheduleListReq();
@@ -61,9 +62,9 @@ class ScheduleControllerTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(req)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].scheduleId").value(schedule.getId().toString()))
+                .andExpect(jsonPath("$[0].scheduleId").value(scheduleId.toString()))
                 .andExpect(jsonPath("$[0].active").value(true))
-                .andExpect(jsonPath("$[0].medicineId").value(med.getId().toString()));
+                .andExpect(jsonPath("$[0].medicineId").value(medicationId.toString()));
     }
 
     @Test
@@ -71,7 +72,7 @@ class ScheduleControllerTest {
         UUID patientId = UUID.randomUUID();
         LocalTime time = LocalTime.of(8, 0);
 
-        Mockito.when(scheduleService.findSchedulesByPatientIdandScheduledTime(eq(time), eq(patientId)))
+        Mockito.when(scheduleService.findScheduleSummariesByPatientIdAndScheduledTime(eq(time), eq(patientId)))
                 .thenReturn(List.of());
 
         ScheduleListReq req = new ScheduleListReq();
@@ -93,7 +94,7 @@ class ScheduleControllerTest {
         resp.setQuantity("1");
         resp.setIsActive(true);
 
-        Mockito.when(scheduleService.getDailyScheduleForPatient(eq(patientId)))
+        Mockito.when(scheduleService.getDailyScheduleForPatient(eq(patientId), isNull()))
                 .thenReturn(List.of(resp));
 
         mockMvc.perform(get("/api/schedule/daily/" + patientId))
@@ -106,10 +107,48 @@ class ScheduleControllerTest {
     @Test
     void getDailySchedule_noContent() throws Exception {
         UUID patientId = UUID.randomUUID();
-        Mockito.when(scheduleService.getDailyScheduleForPatient(eq(patientId)))
+        Mockito.when(scheduleService.getDailyScheduleForPatient(eq(patientId), isNull()))
                 .thenReturn(List.of());
 
         mockMvc.perform(get("/api/schedule/daily/" + patientId))
                 .andExpect(status().isNoContent());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getDailySchedule_returnsETagFromDataVersion() throws Exception {
+        UUID patientId = UUID.randomUUID();
+        Mockito.when(patientService.findDataVersion(eq(patientId))).thenReturn(Optional.of(7L));
+        Mockito.when(scheduleService.getDailyScheduleForPatient(eq(patientId), eq(7L)))
+                .thenReturn(List.of(new ScheduleResponse(LocalTime.of(8, 0), "Panadol", "1 tablet", true)));
+
+        mockMvc.perform(get("/api/schedule/daily/" + patientId))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v7\""))
+                .andExpect(header().string("Cache-Control", "no-cache"));
+    }
+
+    @Test
+    void getDailySchedule_notModifiedSkipsQuery() throws Exception {
+        UUID patientId = UUID.randomUUID();
+        Mockito.when(patientService.findDataVersion(eq(patientId))).thenReturn(Optional.of(7L));
+
+        mockMvc.perform(get("/api/schedule/daily/" + patientId).header("If-None-Match", "\"v7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"v7\""));
+
+        Mockito.verify(scheduleService, Mockito.never()).getDailyScheduleForPatient(any(), any());
+    }
+
+    @Test
+    void getDailySchedule_staleETagGetsFreshBody() throws Exception {
+        UUID patientId = UUID.randomUUID();
+        Mockito.when(patientService.findDataVersion(eq(patientId))).thenReturn(Optional.of(8L));
+        Mockito.when(scheduleService.getDailyScheduleForPatient(eq(patientId), eq(8L)))
+                .thenReturn(List.of(new ScheduleResponse(LocalTime.of(8, 0), "Panadol", "1 tablet", true)));
+
+        mockMvc.perform(get("/api/schedule/daily/" + patientId).header("If-None-Match", "\"v7\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v8\""))
+                .andExpect(jsonPath("$[0].medicationName").value("Panadol"));
+    }
+}
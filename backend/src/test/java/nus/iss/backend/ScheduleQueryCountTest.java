@@ -0,0 +1,126 @@
+package nus.iss.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import nus.iss.backend.dao.ScheduleListReq;
+import nus.iss.backend.model.Schedule;
+import nus.iss.backend.repository.ScheduleRepository;
+import nus.iss.backend.util.PatientAgendaCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * The Android schedule endpoints are polled constantly; a cold request must be answered with a single
+ * SQL statement rather than one per schedule for its medication (plus the data-version lookup for the ETag),
+ * and a warm one from the per-patient agenda cache.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ScheduleQueryCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PatientAgendaCache agendaCache;
+
+    private Statistics statistics;
+    private Schedule schedule;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        schedule = scheduleRepository.findAll(PageRequest.of(0, 200)).stream()
+                .filter(s -> Boolean.TRUE.equals(s.getIsActive()) && s.getMedication().isActive())
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("seed data has no active schedule"));
+        statistics.clear();
+    }
+
+    @Test
+    void dailyScheduleIsOneStatementPlusVersion() throws Exception {
+        agendaCache.invalidate(List.of(schedule.getPatient().getId()));
+
+        mockMvc.perform(get("/api/schedule/daily/" + schedule.getPatient().getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].medicationName").exists());
+
+        // the data-version lookup behind the ETag, then the agenda query
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void cachedDailyScheduleOnlyReadsVersion() throws Exception {
+        mockMvc.perform(get("/api/schedule/daily/" + schedule.getPatient().getId()))
+                .andExpect(status().isOk());
+        statistics.clear();
+
+        mockMvc.perform(get("/api/schedule/daily/" + schedule.getPatient().getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].medicationName").exists());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void unchangedDailyScheduleOnlyReadsVersion() throws Exception {
+        String etag = mockMvc.perform(get("/api/schedule/daily/" + schedule.getPatient().getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        statistics.clear();
+
+        mockMvc.perform(get("/api/schedule/daily/" + schedule.getPatient().getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findByTimeIsServedFromTheAgenda() throws Exception {
+        ScheduleListReq req = new ScheduleListReq();
+        req.setPatientId(schedule.getPatient().getId());
+        req.setTime(schedule.getScheduledTime());
+        agendaCache.invalidate(List.of(schedule.getPatient().getId()));
+
+        mockMvc.perform(post("/api/schedule/find")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].medicineId").exists());
+        // the data-version lookup the cached agenda is checked against, then the agenda query
+        assertEquals(2, statistics.getPrepareStatementCount());
+        statistics.clear();
+
+        mockMvc.perform(post("/api/schedule/find")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].medicineId").exists());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
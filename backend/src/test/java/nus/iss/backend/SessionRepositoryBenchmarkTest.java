@@ -0,0 +1,169 @@
+package nus.iss.backend;
+
+import jakarta.servlet.http.Cookie;
+import nus.iss.backend.config.WriteBehindSessionRepository;
+import nus.iss.backend.model.Doctor;
+import nus.iss.backend.repository.DoctorRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * WriteBehindSessionRepository against the stock JDBC session repository, on the Flyway schema.
+ *
+ * The benchmark replays what the session filter does for each portal request (find the session, touch it,
+ * read doctorMcr, save) from several threads and logs requests/s per node for both repositories. In-memory
+ * H2 answers in microseconds, so the gap it shows is the CPU cost of the stock path only; against MySQL every
+ * avoided round trip adds network latency on top. For those numbers point it at a scratch schema:
+ *   mvn test -Dtest=SessionRepositoryBenchmarkTest -Dbenchmark.requests=200000 \
+ *       -Dspring.datasource.url=jdbc:mysql://host/scratch -Dspring.datasource.username=... -Dspring.datasource.password=...
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sessiondb;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.session.jdbc.initialize-schema=never",
+        "spring.batch.jdbc.initialize-schema=never",
+        // the tests flush by hand
+        "app.session.write-behind.flush-interval=1h"
+})
+class SessionRepositoryBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(SessionRepositoryBenchmarkTest.class);
+    private static final int THREADS = 8;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WriteBehindSessionRepository writeBehind;
+
+    @Autowired
+    private JdbcIndexedSessionRepository stock;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void portalRequestsAreServedFromTheCache() throws Exception {
+        Doctor doctor = doctorRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+        Cookie cookie = mockMvc.perform(post("/api/web/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mcrNo\":\"" + doctor.getMcrNo() + "\",\"password\":\"" + doctor.getPassword() + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookie("SESSION");
+        assertNotNull(cookie);
+        String sessionId = new String(Base64.getDecoder().decode(cookie.getValue()), StandardCharsets.UTF_8);
+
+        // the login was written through, attribute included
+        long loggedInAt = lastAccess(sessionId);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_SESSION_ATTRIBUTES a " +
+                "JOIN SPRING_SESSION s ON s.PRIMARY_ID = a.SESSION_PRIMARY_ID " +
+                "WHERE s.SESSION_ID = ? AND a.ATTRIBUTE_NAME = 'doctorMcr'", Integer.class, sessionId));
+
+        Thread.sleep(5);
+        mockMvc.perform(get("/api/web/session-info").cookie(cookie))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mcrNo").value(doctor.getMcrNo()));
+        assertEquals(loggedInAt, lastAccess(sessionId), "the access time should only be queued");
+        assertTrue(writeBehind.pendingAccessCount() >= 1);
+
+        writeBehind.flushAccessTimes();
+        assertTrue(lastAccess(sessionId) > loggedInAt);
+        assertEquals(0, writeBehind.pendingAccessCount());
+
+        mockMvc.perform(post("/api/web/logout").cookie(cookie)).andExpect(status().isOk());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_SESSION WHERE SESSION_ID = ?",
+                Integer.class, sessionId));
+        mockMvc.perform(get("/api/web/session-info").cookie(cookie)).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void requestsPerSecondAgainstStockRepository() throws Exception {
+        int sessions = Integer.getInteger("benchmark.sessions", 200);
+        int requests = Integer.getInteger("benchmark.requests", 20_000);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            WriteBehindSessionRepository.CachedSession session = writeBehind.createSession();
+            session.setAttribute("doctorMcr", String.format("M%05dB", i));
+            writeBehind.save(session);
+            ids.add(session.getId());
+        }
+        // the stock repository's session class is not public
+        SessionRepository<Session> stockRepository = (SessionRepository) stock;
+        SessionRepository<Session> writeBehindRepository = (SessionRepository) writeBehind;
+
+        requestsPerSecond(stockRepository, ids, Math.min(requests, 2000));
+        requestsPerSecond(writeBehindRepository, ids, Math.min(requests, 2000));
+        long stockRate = requestsPerSecond(stockRepository, ids, requests);
+        long writeBehindRate = requestsPerSecond(writeBehindRepository, ids, requests);
+        logger.info("Session repository benchmark, {} sessions, {} threads: stock JDBC {} requests/s, write-behind {} requests/s",
+                sessions, THREADS, stockRate, writeBehindRate);
+        assertTrue(writeBehindRate > stockRate, "write-behind " + writeBehindRate + "/s, stock " + stockRate + "/s");
+
+        // one queued access time per session, written in one go
+        assertEquals(sessions, writeBehind.pendingAccessCount());
+        assertEquals(sessions, writeBehind.flushAccessTimes());
+        ids.forEach(writeBehind::deleteById);
+    }
+
+    private long requestsPerSecond(SessionRepository<Session> repository, List<String> ids, int requests) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = thread; i < requests; i += THREADS) {
+                        Session session = repository.findById(ids.get(i % ids.size()));
+                        session.setLastAccessedTime(Instant.now());
+                        assertNotNull(session.getAttribute("doctorMcr"));
+                        repository.save(session);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return requests * 1_000_000_000L / Math.max(1, System.nanoTime() - start);
+    }
+
+    private long lastAccess(String sessionId) {
+        return jdbcTemplate.queryForObject("SELECT LAST_ACCESS_TIME FROM SPRING_SESSION WHERE SESSION_ID = ?", Long.class, sessionId);
+    }
+}
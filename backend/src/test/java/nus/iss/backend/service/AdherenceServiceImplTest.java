@@ -0,0 +1,205 @@
+package nus.iss.backend.service;
+
+import nus.iss.backend.dto.AdherenceConsistencyReport;
+import nus.iss.backend.model.Schedule;
+import nus.iss.backend.model.ScheduleAdherence;
+import nus.iss.backend.repository.IntakeArchiveRepository;
+import nus.iss.backend.repository.ScheduleAdherenceRepository;
+import nus.iss.backend.service.Implementation.AdherenceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdherenceServiceImplTest {
+
+    @Mock
+    private ScheduleAdherenceRepository adherenceRepository;
+
+    @Mock
+    private IntakeArchiveRepository archiveRepository;
+
+    @InjectMocks
+    private AdherenceImpl adherenceService;
+
+    private Schedule testSchedule;
+
+    @BeforeEach
+    void setUp() {
+        testSchedule = new Schedule();
+        testSchedule.setId(UUID.randomUUID());
+    }
+
+    @Test
+    void testRecordIntake_UpsertsMonthRow() {
+        // Arrange
+        LocalDate logged = LocalDate.of(2025, 8, 14);
+
+        // Act
+        adherenceService.recordIntake(testSchedule, logged, false);
+
+        // Assert
+        ArgumentCaptor<byte[]> scheduleId = ArgumentCaptor.forClass(byte[].class);
+        verify(adherenceRepository, times(1)).upsertCounts(any(byte[].class), scheduleId.capture(),
+                eq(LocalDate.of(2025, 8, 1)), eq(0), eq(1));
+        ByteBuffer bytes = ByteBuffer.wrap(scheduleId.getValue());
+        assertEquals(testSchedule.getId(), new UUID(bytes.getLong(), bytes.getLong()));
+        verify(adherenceRepository, never()).saveAndFlush(any(ScheduleAdherence.class));
+    }
+
+    @Test
+    void testApplyDelta_NewRowsGetDistinctIds() {
+        // Act
+        adherenceService.applyDelta(testSchedule, YearMonth.of(2025, 9), 1, 0);
+        adherenceService.applyDelta(testSchedule, YearMonth.of(2025, 10), 2, 1);
+
+        // Assert
+        ArgumentCaptor<byte[]> ids = ArgumentCaptor.forClass(byte[].class);
+        verify(adherenceRepository, times(2)).upsertCounts(ids.capture(), any(byte[].class),
+                any(LocalDate.class), anyInt(), anyInt());
+        assertEquals(16, ids.getAllValues().get(0).length);
+        assertFalse(Arrays.equals(ids.getAllValues().get(0), ids.getAllValues().get(1)));
+    }
+
+    @Test
+    void testRecordIntake_NullDateIgnored() {
+        // Act
+        adherenceService.recordIntake(testSchedule, null, true);
+
+        // Assert
+        verifyNoInteractions(adherenceRepository);
+    }
+
+    @Test
+    void testHasMissedDose_SingleRowLookup() {
+        // Arrange
+        YearMonth month = YearMonth.of(2025, 8);
+        ScheduleAdherence row = new ScheduleAdherence();
+        row.setMissedCount(2);
+        when(adherenceRepository.findBySchedule_IdAndPeriodMonth(testSchedule.getId(), month.atDay(1)))
+                .thenReturn(Optional.of(row));
+
+        // Act & Assert
+        assertTrue(adherenceService.hasMissedDose(testSchedule.getId(), month));
+    }
+
+    @Test
+    void testHasMissedDose_NoRow() {
+        // Arrange
+        YearMonth month = YearMonth.of(2025, 8);
+        when(adherenceRepository.findBySchedule_IdAndPeriodMonth(testSchedule.getId(), month.atDay(1)))
+                .thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertFalse(adherenceService.hasMissedDose(testSchedule.getId(), month));
+    }
+
+    @Test
+    void testFindMedicationIdsWithMissedDoseByPatient_GroupsRows() {
+        // Arrange
+        YearMonth month = YearMonth.of(2025, 8);
+        UUID patientId = UUID.randomUUID();
+        UUID medA = UUID.randomUUID();
+        UUID medB = UUID.randomUUID();
+        List<Object[]> rows = List.of(new Object[]{patientId, medA}, new Object[]{patientId, medB});
+        when(adherenceRepository.findPatientMedicationIdsWithMissedDose(List.of(patientId), month.atDay(1))).thenReturn(rows);
+
+        // Act
+        Map<UUID, Set<UUID>> result = adherenceService.findMedicationIdsWithMissedDoseByPatient(List.of(patientId), month);
+
+        // Assert
+        assertEquals(Map.of(patientId, Set.of(medA, medB)), result);
+    }
+
+    @Test
+    void testFindMedicationIdsWithMissedDose_EmptyInputSkipsQuery() {
+        // Act
+        Set<UUID> result = adherenceService.findMedicationIdsWithMissedDose(List.of(), YearMonth.now());
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(adherenceRepository);
+    }
+
+    @Test
+    void testBackfill_RebuildsFromHistory() {
+        // Arrange
+        LocalDate epoch = LocalDate.of(1970, 1, 1);
+        when(adherenceRepository.deleteRowsSince(epoch)).thenReturn(3);
+        when(adherenceRepository.insertFromHistorySince(epoch)).thenReturn(5);
+
+        // Act
+        int written = adherenceService.backfill();
+
+        // Assert
+        assertEquals(5, written);
+        InOrder order = inOrder(adherenceRepository);
+        order.verify(adherenceRepository).lockHistorySince(epoch);
+        order.verify(adherenceRepository).deleteRowsSince(epoch);
+        order.verify(adherenceRepository).insertFromHistorySince(epoch);
+    }
+
+    @Test
+    void testBackfill_KeepsArchivedMonths() {
+        // Arrange
+        when(archiveRepository.findLatestLoggedDate()).thenReturn(LocalDate.of(2024, 6, 30));
+        LocalDate since = LocalDate.of(2024, 7, 1);
+        when(adherenceRepository.insertFromHistorySince(since)).thenReturn(2);
+
+        // Act
+        adherenceService.backfill();
+
+        // Assert
+        verify(adherenceRepository, times(1)).deleteRowsSince(since);
+        verify(adherenceRepository, times(1)).insertFromHistorySince(since);
+    }
+
+    @Test
+    void testCheckConsistency_ReportsDrift() {
+        // Arrange
+        LocalDate epoch = LocalDate.of(1970, 1, 1);
+        List<Object[]> mismatched = List.<Object[]>of(new Object[]{testSchedule.getId().toString(), "2025-08-01"});
+        when(adherenceRepository.findMismatchedRowsSince(epoch)).thenReturn(mismatched);
+        when(adherenceRepository.countOrphanRowsSince(epoch)).thenReturn(0L);
+
+        // Act
+        AdherenceConsistencyReport report = adherenceService.checkConsistency();
+
+        // Assert
+        assertFalse(report.isConsistent());
+        assertEquals(List.of(testSchedule.getId() + "@2025-08-01"), report.getMismatched());
+    }
+
+    @Test
+    void testCheckConsistency_Clean() {
+        // Arrange
+        LocalDate since = LocalDate.of(2024, 7, 1);
+        when(archiveRepository.findLatestLoggedDate()).thenReturn(LocalDate.of(2024, 6, 30));
+        when(adherenceRepository.findMismatchedRowsSince(since)).thenReturn(List.of());
+        when(adherenceRepository.countOrphanRowsSince(since)).thenReturn(0L);
+
+        // Act & Assert
+        assertTrue(adherenceService.checkConsistency().isConsistent());
+    }
+}
@@ -0,0 +1,195 @@
+package nus.iss.backend.service;
+
+import nus.iss.backend.dao.MissedDoseResponse;
+import nus.iss.backend.dto.DashboardSection;
+import nus.iss.backend.dto.IntakeHistoryPage;
+import nus.iss.backend.dto.PatientDashboard;
+import nus.iss.backend.dto.PatientSummary;
+import nus.iss.backend.dto.ScheduleResponse;
+import nus.iss.backend.exceptions.ItemNotFound;
+import nus.iss.backend.service.Implementation.DashboardImpl;
+import nus.iss.backend.util.PatientTokens;
+import nus.iss.backend.util.VerifiedPatient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DashboardServiceImplTest {
+
+    @Mock
+    private PatientService patientService;
+
+    @Mock
+    private ScheduleService scheduleService;
+
+    @InjectMocks
+    private DashboardImpl dashboardService;
+
+    private ExecutorService executor;
+    private UUID patientId;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        ReflectionTestUtils.setField(dashboardService, "executor", executor);
+        ReflectionTestUtils.setField(dashboardService, "recentIntakeDays", 7);
+        ReflectionTestUtils.setField(dashboardService, "recentIntakeLimit", 500);
+        ReflectionTestUtils.setField(dashboardService, "sectionPermits", new Semaphore(4));
+        patientId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void getDashboard_allSections() {
+        PatientSummary summary = new PatientSummary(patientId, "Ann", "Tan", "ann@example.com", "F",
+                LocalDate.of(1950, 1, 1), "M12345", "Bob", "Lim", "Test Clinic");
+        when(patientService.findPatientSummary(patientId)).thenReturn(Optional.of(summary));
+        when(patientService.getPatientMedicationsWithMissedDose(patientId))
+                .thenReturn(List.of(medication("Panadol", true), medication("Aspirin", false)));
+        when(scheduleService.getDailyScheduleForPatient(patientId))
+                .thenReturn(List.of(new ScheduleResponse(LocalTime.of(8, 0), "Panadol", "1", true)));
+        when(patientService.getIntakeHistoryPage(eq(patientId), any(), any(), isNull(), anyInt()))
+                .thenReturn(new IntakeHistoryPage());
+
+        PatientDashboard dashboard = dashboardService.getDashboard(patientId, EnumSet.allOf(DashboardSection.class));
+
+        assertEquals("Bob Lim", dashboard.getProfile().getDoctorName());
+        assertEquals(1, dashboard.getMedications().size());
+        assertEquals("Panadol", dashboard.getMedications().get(0).getMedicationName());
+        assertEquals(1, dashboard.getTodaySchedule().size());
+        assertTrue(dashboard.getRecentIntake().isEmpty());
+        LocalDate today = LocalDate.now();
+        verify(patientService).getIntakeHistoryPage(patientId, today.minusDays(6), today, null, 500);
+        verify(patientService, never()).findDataVersion(any());
+    }
+
+    @Test
+    void getDashboard_onlyRequestedSections() {
+        when(patientService.findDataVersion(patientId)).thenReturn(Optional.of(3L));
+        when(scheduleService.getDailyScheduleForPatient(patientId)).thenReturn(List.of());
+
+        PatientDashboard dashboard = dashboardService.getDashboard(patientId, EnumSet.of(DashboardSection.SCHEDULE));
+
+        assertNotNull(dashboard.getTodaySchedule());
+        assertNull(dashboard.getProfile());
+        assertNull(dashboard.getMedications());
+        assertNull(dashboard.getRecentIntake());
+        verify(patientService, never()).getPatientMedicationsWithMissedDose(any());
+        verify(patientService, never()).getIntakeHistoryPage(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getDashboard_unknownPatient() {
+        when(patientService.findDataVersion(patientId)).thenReturn(Optional.empty());
+        when(scheduleService.getDailyScheduleForPatient(patientId)).thenReturn(List.of());
+
+        assertThrows(ItemNotFound.class,
+                () -> dashboardService.getDashboard(patientId, EnumSet.of(DashboardSection.SCHEDULE)));
+    }
+
+    @Test
+    void getDashboard_sectionErrorIsRethrown() {
+        when(patientService.findPatientSummary(patientId)).thenReturn(Optional.empty());
+        when(patientService.getPatientMedicationsWithMissedDose(patientId)).thenThrow(new ItemNotFound("Patient not found!"));
+
+        assertThrows(ItemNotFound.class, () -> dashboardService.getDashboard(patientId,
+                EnumSet.of(DashboardSection.PROFILE, DashboardSection.MEDICATIONS)));
+    }
+
+    @Test
+    void getDashboard_sectionsLoadConcurrently() {
+        // each loader waits for the other to start, which only completes if both run at the same time
+        CountDownLatch started = new CountDownLatch(2);
+        when(patientService.findDataVersion(patientId)).thenAnswer(inv -> {
+            awaitPeer(started);
+            return Optional.of(1L);
+        });
+        when(scheduleService.getDailyScheduleForPatient(patientId)).thenAnswer(inv -> {
+            awaitPeer(started);
+            return List.of();
+        });
+
+        PatientDashboard dashboard = dashboardService.getDashboard(patientId, EnumSet.of(DashboardSection.SCHEDULE));
+
+        assertNotNull(dashboard.getTodaySchedule());
+    }
+
+    @Test
+    void getDashboard_runsOnRequestThreadWhenNoPermitIsFree() {
+        Semaphore permits = new Semaphore(0);
+        ReflectionTestUtils.setField(dashboardService, "sectionPermits", permits);
+        Thread requestThread = Thread.currentThread();
+        when(patientService.findDataVersion(patientId)).thenAnswer(inv -> {
+            assertSame(requestThread, Thread.currentThread());
+            return Optional.of(1L);
+        });
+        when(scheduleService.getDailyScheduleForPatient(patientId)).thenAnswer(inv -> {
+            assertSame(requestThread, Thread.currentThread());
+            return List.of();
+        });
+
+        assertNotNull(dashboardService.getDashboard(patientId, EnumSet.of(DashboardSection.SCHEDULE)).getTodaySchedule());
+        assertEquals(0, permits.availablePermits());
+    }
+
+    @Test
+    void getDashboard_sectionsSeeTheVerifiedPatient() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(VerifiedPatient.ATTRIBUTE, new PatientTokens.Claims(patientId, UUID.randomUUID(), Instant.now()));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        when(scheduleService.getDailyScheduleForPatient(patientId)).thenAnswer(inv -> {
+            assertTrue(VerifiedPatient.is(patientId));
+            return List.of();
+        });
+
+        assertNotNull(dashboardService.getDashboard(patientId, EnumSet.of(DashboardSection.SCHEDULE)).getTodaySchedule());
+        verify(patientService, never()).findDataVersion(any());
+        assertEquals(4, ((Semaphore) ReflectionTestUtils.getField(dashboardService, "sectionPermits")).availablePermits());
+    }
+
+    private static void awaitPeer(CountDownLatch started) throws InterruptedException {
+        started.countDown();
+        assertTrue(started.await(5, TimeUnit.SECONDS), "sections were loaded one after the other");
+    }
+
+    private static MissedDoseResponse medication(String name, boolean active) {
+        MissedDoseResponse dto = new MissedDoseResponse();
+        dto.setId(UUID.randomUUID());
+        dto.setMedicationName(name);
+        dto.setActive(active);
+        return dto;
+    }
+}
@@ -30,6 +30,9 @@ class DoctorServiceImplTest {
     @Mock
     private ClinicRepository clinicRepository;
 
+    @Mock
+    private PatientService patientService;
+
     @InjectMocks
     private DoctorImpl doctorService;
 
@@ -216,4 +219,41 @@ class DoctorServiceImplTest {
         verify(doctorRepository, times(1)).findDoctorByMcrNo("M12345A");
         verify(doctorRepository, times(1)).saveAndFlush(any(Doctor.class));
     }
+
+    @Test
+    void testUpdateDoctor_ClinicChangeUsesStoredClinic() {
+        // Arrange
+        Clinic storedClinic = new Clinic();
+        storedClinic.setId(java.util.UUID.randomUUID());
+        storedClinic.setClinicName("New Clinic");
+        Clinic requestClinic = new Clinic();
+        requestClinic.setId(storedClinic.getId());
+        requestClinic.setClinicName("stale name from the request");
+        updateRequest.setClinic(requestClinic);
+        when(doctorRepository.findDoctorByMcrNo("M12345A")).thenReturn(testDoctor);
+        when(clinicRepository.findById(storedClinic.getId())).thenReturn(java.util.Optional.of(storedClinic));
+        when(doctorRepository.saveAndFlush(any(Doctor.class))).thenReturn(testDoctor);
+
+        // Act
+        Doctor result = doctorService.updateDoctor(updateRequest);
+
+        // Assert
+        assertSame(storedClinic, result.getClinic());
+        verify(patientService, times(1)).unassignAllPatientsFromDoctor("M12345A");
+    }
+
+    @Test
+    void testUpdateDoctor_UnknownClinic() {
+        // Arrange
+        Clinic requestClinic = new Clinic();
+        requestClinic.setId(java.util.UUID.randomUUID());
+        updateRequest.setClinic(requestClinic);
+        when(doctorRepository.findDoctorByMcrNo("M12345A")).thenReturn(testDoctor);
+        when(clinicRepository.findById(requestClinic.getId())).thenReturn(java.util.Optional.empty());
+
+        // Act & Assert
+        assertThrows(ItemNotFound.class, () -> doctorService.updateDoctor(updateRequest));
+        verify(patientService, never()).unassignAllPatientsFromDoctor(any());
+        verify(doctorRepository, never()).saveAndFlush(any(Doctor.class));
+    }
 }
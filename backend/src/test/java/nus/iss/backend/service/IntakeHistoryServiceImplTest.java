@@ -1,8 +1,10 @@
 package nus.iss.backend.service;
 
+import nus.iss.backend.dao.IntakeBatchItemResult;
 import nus.iss.backend.dao.IntakeLogResponseWeb;
 import nus.iss.backend.dao.IntakeReqMobile;
 import nus.iss.backend.dao.UpdateDoctorNotesReq;
+import nus.iss.backend.exceptions.DuplicationException;
 import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.model.Clinic;
 import nus.iss.backend.model.Doctor;
@@ -14,23 +16,40 @@ import nus.iss.backend.repository.IntakeRepository;
 import nus.iss.backend.repository.PatientRepository;
 import nus.iss.backend.repository.ScheduleRepository;
 import nus.iss.backend.service.Implementation.IntakeHistoryImpl;
+import nus.iss.backend.util.PatientTokens;
+import nus.iss.backend.util.RecentRequestCache;
+import nus.iss.backend.util.VerifiedPatient;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,6 +64,12 @@ class IntakeHistoryServiceImplTest {
     @Mock
     private ScheduleRepository scheduleRepository;
 
+    @Mock
+    private AdherenceService adherenceService;
+
+    @Spy
+    private RecentRequestCache recentRequestCache = new RecentRequestCache(100);
+
     @InjectMocks
     private IntakeHistoryImpl intakeHistoryService;
 
@@ -133,6 +158,81 @@ class IntakeHistoryServiceImplTest {
         verify(scheduleRepository, times(1)).findById(testSchedule.getId());
         verify(patientRepository, times(1)).findById(testPatient.getId());
         verify(intakeRepository, times(1)).saveAndFlush(any(IntakeHistory.class));
+        verify(adherenceService, times(1)).recordIntake(testSchedule, LocalDate.now(), true);
+        // logging an intake must not lock the patient row
+        verify(patientRepository, never()).incrementDataVersion(any());
+    }
+
+    @AfterEach
+    void clearRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void testCreateIntakeHistory_VerifiedPatientSkipsLookup() {
+        verifyAs(testPatient.getId());
+        when(scheduleRepository.findById(testSchedule.getId())).thenReturn(Optional.of(testSchedule));
+        when(patientRepository.getReferenceById(testPatient.getId())).thenReturn(testPatient);
+        when(intakeRepository.saveAndFlush(any(IntakeHistory.class))).thenReturn(testIntakeHistory);
+
+        intakeHistoryService.createIntakeHistory(testIntakeReqMobile);
+
+        verify(patientRepository).getReferenceById(testPatient.getId());
+        verify(patientRepository, never()).findById(any(UUID.class));
+        verify(intakeRepository, times(1)).saveAndFlush(any(IntakeHistory.class));
+    }
+
+    @Test
+    void testCreateIntakeHistory_OtherPatientThanToken() {
+        verifyAs(UUID.randomUUID());
+        when(scheduleRepository.findById(testSchedule.getId())).thenReturn(Optional.of(testSchedule));
+
+        assertThrows(ItemNotFound.class, () -> intakeHistoryService.createIntakeHistory(testIntakeReqMobile));
+        verify(patientRepository, never()).findById(any(UUID.class));
+        verify(patientRepository, never()).getReferenceById(any(UUID.class));
+        verify(intakeRepository, never()).saveAndFlush(any(IntakeHistory.class));
+    }
+
+    @Test
+    void testCreateIntakeHistory_TokenPatientOnOtherPatientsSchedule() {
+        Patient other = new Patient();
+        other.setId(UUID.randomUUID());
+        testSchedule.setPatient(other);
+        verifyAs(testPatient.getId());
+        when(scheduleRepository.findById(testSchedule.getId())).thenReturn(Optional.of(testSchedule));
+        when(patientRepository.getReferenceById(testPatient.getId())).thenReturn(testPatient);
+
+        assertThrows(ItemNotFound.class, () -> intakeHistoryService.createIntakeHistory(testIntakeReqMobile));
+        verify(intakeRepository, never()).saveAndFlush(any(IntakeHistory.class));
+        verifyNoInteractions(adherenceService);
+    }
+
+    @Test
+    void testCreateIntakeHistoryBatch_TokenPatientOnOtherPatientsSchedule() {
+        Patient other = new Patient();
+        other.setId(UUID.randomUUID());
+        Schedule othersSchedule = new Schedule();
+        othersSchedule.setId(UUID.randomUUID());
+        othersSchedule.setMedication(testMedication);
+        othersSchedule.setPatient(other);
+        testIntakeReqMobile.setMedicationId(testMedication.getId());
+        IntakeReqMobile foreign = new IntakeReqMobile();
+        foreign.setScheduleId(othersSchedule.getId());
+        foreign.setPatientId(testPatient.getId());
+        foreign.setMedicationId(testMedication.getId());
+        foreign.setLoggedDate(LocalDate.now().toString());
+        foreign.setIsTaken(false);
+        verifyAs(testPatient.getId());
+        when(scheduleRepository.findAllById(anyList())).thenReturn(List.of(testSchedule, othersSchedule));
+        when(patientRepository.getReferenceById(testPatient.getId())).thenReturn(testPatient);
+
+        List<IntakeBatchItemResult> results = intakeHistoryService.createIntakeHistoryBatch(
+                List.of(testIntakeReqMobile, foreign));
+
+        assertEquals(IntakeBatchItemResult.CREATED, results.get(0).getStatus());
+        assertEquals(IntakeBatchItemResult.NOT_FOUND, results.get(1).getStatus());
+        verify(adherenceService, times(1)).applyDelta(eq(testSchedule), any(YearMonth.class), anyInt(), anyInt());
+        verify(adherenceService, never()).applyDelta(eq(othersSchedule), any(YearMonth.class), anyInt(), anyInt());
     }
 
     @Test
@@ -147,6 +247,7 @@ class IntakeHistoryServiceImplTest {
         verify(scheduleRepository, times(1)).findById(testSchedule.getId());
         verify(patientRepository, never()).findById(any(UUID.class));
         verify(intakeRepository, never()).saveAndFlush(any(IntakeHistory.class));
+        verifyNoInteractions(adherenceService);
     }
 
     @Test
@@ -202,6 +303,29 @@ class IntakeHistoryServiceImplTest {
         verify(intakeRepository, times(1)).findBySchedule_Medication_Id(medicationId);
     }
 
+    @Test
+    void testStreamIntakeLogsForMedication_PushesEachRow() {
+        // Arrange
+        UUID medicationId = testMedication.getId();
+        IntakeLogResponseWeb first = new IntakeLogResponseWeb(LocalDate.now(), LocalTime.of(9, 0), true, "",
+                testSchedule.getId(), UUID.randomUUID());
+        IntakeLogResponseWeb second = new IntakeLogResponseWeb(LocalDate.now(), LocalTime.of(9, 0), false, "",
+                testSchedule.getId(), UUID.randomUUID());
+        AtomicBoolean closed = new AtomicBoolean();
+        when(intakeRepository.streamLogsByMedicationId(medicationId))
+                .thenReturn(Stream.of(first, second).onClose(() -> closed.set(true)));
+        List<IntakeLogResponseWeb> received = new ArrayList<>();
+
+        // Act
+        long count = intakeHistoryService.streamIntakeLogsForMedication(medicationId, received::add);
+
+        // Assert
+        assertEquals(2, count);
+        assertEquals(List.of(first, second), received);
+        assertTrue(closed.get());
+        verify(intakeRepository, never()).findBySchedule_Medication_Id(any());
+    }
+
     @Test
     void testUpdateCreateDoctorNote_Success() {
         // Arrange
@@ -230,4 +354,197 @@ class IntakeHistoryServiceImplTest {
         verify(intakeRepository, times(1)).findById(testIntakeHistory.getId());
         verify(intakeRepository, never()).saveAndFlush(any(IntakeHistory.class));
     }
+
+    @Test
+    void testCreateIntakeHistoryBatch_ResolvesInBulk() {
+        // Arrange
+        IntakeReqMobile missed = new IntakeReqMobile();
+        missed.setScheduleId(testSchedule.getId());
+        missed.setPatientId(testPatient.getId());
+        missed.setMedicationId(testMedication.getId());
+        missed.setLoggedDate(LocalDate.now().toString());
+        missed.setIsTaken(false);
+        missed.setClientRequestId("req-2");
+        testIntakeReqMobile.setMedicationId(testMedication.getId());
+        testIntakeReqMobile.setClientRequestId("req-1");
+
+        when(scheduleRepository.findAllById(anyList())).thenReturn(List.of(testSchedule));
+        when(patientRepository.findAllById(anyList())).thenReturn(List.of(testPatient));
+
+        // Act
+        List<IntakeBatchItemResult> results = intakeHistoryService.createIntakeHistoryBatch(
+                List.of(testIntakeReqMobile, missed));
+
+        // Assert
+        assertEquals(2, results.size());
+        assertEquals(IntakeBatchItemResult.CREATED, results.get(0).getStatus());
+        assertEquals("req-1", results.get(0).getClientRequestId());
+        assertEquals(IntakeBatchItemResult.CREATED, results.get(1).getStatus());
+        verify(scheduleRepository, times(1)).findAllById(anyList());
+        verify(patientRepository, times(1)).findAllById(anyList());
+        verify(scheduleRepository, never()).findById(any(UUID.class));
+        verify(intakeRepository, times(1)).saveAll(anyList());
+        verify(intakeRepository, never()).saveAndFlush(any(IntakeHistory.class));
+        // both logs fall in the same (schedule, month), so the rollup is touched once
+        verify(adherenceService, times(1)).applyDelta(testSchedule, YearMonth.now(), 1, 1);
+        verify(patientRepository, never()).incrementDataVersion(any());
+    }
+
+    @Test
+    void testCreateIntakeHistoryBatch_PerItemErrors() {
+        // Arrange
+        testIntakeReqMobile.setMedicationId(testMedication.getId());
+
+        IntakeReqMobile unknownSchedule = new IntakeReqMobile();
+        unknownSchedule.setScheduleId(UUID.randomUUID());
+        unknownSchedule.setPatientId(testPatient.getId());
+        unknownSchedule.setMedicationId(testMedication.getId());
+        unknownSchedule.setLoggedDate(LocalDate.now().toString());
+        unknownSchedule.setIsTaken(true);
+
+        IntakeReqMobile badDate = new IntakeReqMobile();
+        badDate.setScheduleId(testSchedule.getId());
+        badDate.setPatientId(testPatient.getId());
+        badDate.setMedicationId(testMedication.getId());
+        badDate.setLoggedDate("not-a-date");
+        badDate.setIsTaken(true);
+
+        IntakeReqMobile missingField = new IntakeReqMobile();
+        missingField.setScheduleId(testSchedule.getId());
+
+        when(scheduleRepository.findAllById(anyList())).thenReturn(List.of(testSchedule));
+        when(patientRepository.findAllById(anyList())).thenReturn(List.of(testPatient));
+
+        // Act
+        List<IntakeBatchItemResult> results = intakeHistoryService.createIntakeHistoryBatch(
+                Arrays.asList(testIntakeReqMobile, unknownSchedule, badDate, missingField));
+
+        // Assert
+        assertEquals(IntakeBatchItemResult.CREATED, results.get(0).getStatus());
+        assertEquals(IntakeBatchItemResult.NOT_FOUND, results.get(1).getStatus());
+        assertEquals(IntakeBatchItemResult.BAD_REQUEST, results.get(2).getStatus());
+        assertEquals(IntakeBatchItemResult.BAD_REQUEST, results.get(3).getStatus());
+        assertEquals(3, results.get(3).getIndex());
+        verify(adherenceService, times(1)).applyDelta(eq(testSchedule), any(YearMonth.class), anyInt(), anyInt());
+    }
+
+    @Test
+    void testCreateIntakeHistoryBatch_NothingValidSkipsInsert() {
+        // Arrange
+        IntakeReqMobile missingField = new IntakeReqMobile();
+
+        // Act
+        List<IntakeBatchItemResult> results = intakeHistoryService.createIntakeHistoryBatch(List.of(missingField));
+
+        // Assert
+        assertEquals(IntakeBatchItemResult.BAD_REQUEST, results.get(0).getStatus());
+        verify(intakeRepository, never()).saveAll(anyList());
+        verifyNoInteractions(adherenceService);
+    }
+
+    @Test
+    void testCreateIntakeHistory_DuplicateAnsweredFromCache() {
+        // Arrange
+        testIntakeReqMobile.setClientRequestId("req-1");
+        recentRequestCache.add("req-1");
+
+        // Act
+        intakeHistoryService.createIntakeHistory(testIntakeReqMobile);
+
+        // Assert
+        verifyNoInteractions(intakeRepository, scheduleRepository, patientRepository, adherenceService);
+    }
+
+    @Test
+    void testCreateIntakeHistory_DuplicateAlreadyStored() {
+        // Arrange
+        testIntakeReqMobile.setClientRequestId(" req-1 ");
+        when(intakeRepository.existsByClientRequestId("req-1")).thenReturn(true);
+
+        // Act
+        intakeHistoryService.createIntakeHistory(testIntakeReqMobile);
+
+        // Assert
+        verify(intakeRepository, never()).saveAndFlush(any(IntakeHistory.class));
+        verifyNoInteractions(adherenceService);
+        assertTrue(recentRequestCache.contains("req-1"));
+    }
+
+    @Test
+    void testCreateIntakeHistory_StoresClientRequestId() {
+        // Arrange
+        testIntakeReqMobile.setClientRequestId("req-1");
+        when(scheduleRepository.findById(testSchedule.getId())).thenReturn(Optional.of(testSchedule));
+        when(patientRepository.findById(testPatient.getId())).thenReturn(Optional.of(testPatient));
+        when(intakeRepository.saveAndFlush(any(IntakeHistory.class))).thenReturn(testIntakeHistory);
+
+        // Act
+        intakeHistoryService.createIntakeHistory(testIntakeReqMobile);
+
+        // Assert
+        verify(intakeRepository).saveAndFlush(argThat(h -> "req-1".equals(h.getClientRequestId())));
+        assertTrue(recentRequestCache.contains("req-1"));
+    }
+
+    @Test
+    void testCreateIntakeHistory_ConcurrentDuplicateRejected() {
+        // Arrange
+        testIntakeReqMobile.setClientRequestId("req-1");
+        when(scheduleRepository.findById(testSchedule.getId())).thenReturn(Optional.of(testSchedule));
+        when(patientRepository.findById(testPatient.getId())).thenReturn(Optional.of(testPatient));
+        when(intakeRepository.saveAndFlush(any(IntakeHistory.class))).thenThrow(new DataIntegrityViolationException(
+                "Duplicate entry 'req-1' for key 'medication_intake_history.UK_Intake_Client_Request'"));
+
+        // Act & Assert
+        assertThrows(DuplicationException.class, () -> intakeHistoryService.createIntakeHistory(testIntakeReqMobile));
+        verifyNoInteractions(adherenceService);
+        assertFalse(recentRequestCache.contains("req-1"));
+    }
+
+    @Test
+    void testCreateIntakeHistoryBatch_SkipsDuplicates() {
+        // Arrange
+        testIntakeReqMobile.setMedicationId(testMedication.getId());
+        testIntakeReqMobile.setClientRequestId("req-1");
+        IntakeReqMobile stored = copyOf(testIntakeReqMobile, "req-2");
+        IntakeReqMobile cached = copyOf(testIntakeReqMobile, "req-3");
+        IntakeReqMobile repeated = copyOf(testIntakeReqMobile, "req-1");
+        recentRequestCache.add("req-3");
+
+        when(scheduleRepository.findAllById(anyList())).thenReturn(List.of(testSchedule));
+        when(patientRepository.findAllById(anyList())).thenReturn(List.of(testPatient));
+        when(intakeRepository.findExistingClientRequestIds(List.of("req-1", "req-2"))).thenReturn(List.of("req-2"));
+
+        // Act
+        List<IntakeBatchItemResult> results = intakeHistoryService.createIntakeHistoryBatch(
+                List.of(testIntakeReqMobile, stored, cached, repeated));
+
+        // Assert
+        assertEquals(IntakeBatchItemResult.CREATED, results.get(0).getStatus());
+        assertEquals(IntakeBatchItemResult.DUPLICATE, results.get(1).getStatus());
+        assertEquals(IntakeBatchItemResult.DUPLICATE, results.get(2).getStatus());
+        assertEquals(IntakeBatchItemResult.DUPLICATE, results.get(3).getStatus());
+        verify(intakeRepository, times(1)).findExistingClientRequestIds(anyList());
+        verify(intakeRepository).saveAll(argThat((List<IntakeHistory> rows) -> rows.size() == 1));
+        verify(adherenceService, times(1)).applyDelta(testSchedule, YearMonth.now(), 1, 0);
+    }
+
+    private IntakeReqMobile copyOf(IntakeReqMobile source, String clientRequestId) {
+        IntakeReqMobile copy = new IntakeReqMobile();
+        copy.setScheduleId(source.getScheduleId());
+        copy.setPatientId(source.getPatientId());
+        copy.setMedicationId(source.getMedicationId());
+        copy.setLoggedDate(source.getLoggedDate());
+        copy.setIsTaken(source.getIsTaken());
+        copy.setClientRequestId(clientRequestId);
+        return copy;
+    }
+
+    // what PatientTokenFilter leaves on the request for a valid token
+    private static void verifyAs(UUID patientId) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(VerifiedPatient.ATTRIBUTE,
+                new PatientTokens.Claims(patientId, UUID.randomUUID(), Instant.now().plusSeconds(60)));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
 }
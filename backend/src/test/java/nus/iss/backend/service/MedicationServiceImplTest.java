@@ -1,24 +1,48 @@
 package nus.iss.backend.service;
 
+import nus.iss.backend.dao.PatientMedicationName;
+import nus.iss.backend.dao.PatientRef;
+import nus.iss.backend.dto.EditMedicationRequest;
+import nus.iss.backend.dto.PrescriptionImportItem;
+import nus.iss.backend.exceptions.InvalidTimeFormatException;
 import nus.iss.backend.model.Medication;
+import nus.iss.backend.model.Patient;
+import nus.iss.backend.model.PrescriptionImportError;
 import nus.iss.backend.model.Schedule;
 import nus.iss.backend.repository.MedicationRepository;
+import nus.iss.backend.repository.PatientRepository;
 import nus.iss.backend.service.Implementation.MedicationImpl;
 import nus.iss.backend.service.ScheduleService;
 import nus.iss.backend.exceptions.ItemNotFound;
+import nus.iss.backend.util.DrugNameMatcher;
+import nus.iss.backend.util.PatientAgendaCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +54,25 @@ class MedicationServiceImplTest {
     @Mock
     private ScheduleService scheduleService;
 
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private PatientService patientService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Spy
+    private PatientAgendaCache agendaCache = new PatientAgendaCache(100, Duration.ofMinutes(10));
+
+    @Spy
+    private DrugNameMatcher drugNameMatcher = new DrugNameMatcher(new ByteArrayResource("""
+            name,Synonyms,CONU
+            acetaminophen,"paracetamol | apap",
+            acetylsalicylic acid,"aspirin | asa",
+            """.getBytes(StandardCharsets.UTF_8)), 40);
+
     @InjectMocks
     private MedicationImpl medicationService;
 
@@ -116,12 +159,11 @@ class MedicationServiceImplTest {
     }
 
     @Test
-    void testHasMedicineMissedDose_WithSchedules() {
+    void testHasMedicineMissedDose_WithMissedDoses() {
         // Arrange
         UUID medicationId = testMedication.getId();
-        testMedication.setSchedules(Arrays.asList(testSchedule));
         when(medicationRepository.findById(medicationId)).thenReturn(java.util.Optional.of(testMedication));
-        when(scheduleService.hasMissedDose(testSchedule.getId())).thenReturn(true);
+        when(scheduleService.findMedicationIdsWithMissedDose(List.of(medicationId))).thenReturn(Set.of(medicationId));
 
         // Act
         Boolean result = medicationService.hasMedicineMissedDose(medicationId);
@@ -129,7 +171,8 @@ class MedicationServiceImplTest {
         // Assert
         assertTrue(result);
         verify(medicationRepository, times(1)).findById(medicationId);
-        verify(scheduleService, times(1)).hasMissedDose(testSchedule.getId());
+        verify(scheduleService, times(1)).findMedicationIdsWithMissedDose(List.of(medicationId));
+        verify(scheduleService, never()).hasMissedDose(any(UUID.class));
     }
 
     @Test
@@ -138,22 +181,7 @@ class MedicationServiceImplTest {
         UUID medicationId = testMedication.getId();
         testMedication.setSchedules(Arrays.asList());
         when(medicationRepository.findById(medicationId)).thenReturn(java.util.Optional.of(testMedication));
-
-        // Act
-        Boolean result = medicationService.hasMedicineMissedDose(medicationId);
-
-        // Assert
-        assertFalse(result);
-        verify(medicationRepository, times(1)).findById(medicationId);
-        verify(scheduleService, never()).hasMissedDose(any(UUID.class));
-    }
-
-    @Test
-    void testHasMedicineMissedDose_NullSchedules() {
-        // Arrange
-        UUID medicationId = testMedication.getId();
-        testMedication.setSchedules(null);
-        when(medicationRepository.findById(medicationId)).thenReturn(java.util.Optional.of(testMedication));
+        when(scheduleService.findMedicationIdsWithMissedDose(List.of(medicationId))).thenReturn(Set.of());
 
         // Act
         Boolean result = medicationService.hasMedicineMissedDose(medicationId);
@@ -175,7 +203,7 @@ class MedicationServiceImplTest {
             medicationService.hasMedicineMissedDose(medicationId);
         });
         verify(medicationRepository, times(1)).findById(medicationId);
-        verify(scheduleService, never()).hasMissedDose(any(UUID.class));
+        verify(scheduleService, never()).findMedicationIdsWithMissedDose(any());
     }
 
     @Test
@@ -184,7 +212,7 @@ class MedicationServiceImplTest {
         UUID medicationId = testMedication.getId();
         testMedication.setSchedules(Arrays.asList(testSchedule));
         when(medicationRepository.findById(medicationId)).thenReturn(java.util.Optional.of(testMedication));
-        when(scheduleService.hasMissedDose(testSchedule.getId())).thenReturn(false);
+        when(scheduleService.findMedicationIdsWithMissedDose(List.of(medicationId))).thenReturn(Set.of());
 
         // Act
         Boolean result = medicationService.hasMedicineMissedDose(medicationId);
@@ -192,6 +220,183 @@ class MedicationServiceImplTest {
         // Assert
         assertFalse(result);
         verify(medicationRepository, times(1)).findById(medicationId);
-        verify(scheduleService, times(1)).hasMissedDose(testSchedule.getId());
+        verify(scheduleService, times(1)).findMedicationIdsWithMissedDose(List.of(medicationId));
+    }
+
+    @Test
+    void testDeactivateMedication_DeactivatesSchedulesAndBumpsPatients() {
+        // Arrange
+        Patient patient = new Patient();
+        patient.setId(UUID.randomUUID());
+        testMedication.getPatients().add(patient);
+
+        // Act
+        medicationService.deactivateMedication(testMedication);
+
+        // Assert
+        assertFalse(testMedication.isActive());
+        verify(medicationRepository).save(testMedication);
+        verify(scheduleService).deactivateSchedulesByMedication(testMedication);
+        verify(patientRepository).incrementDataVersion(Set.of(patient.getId()));
+        verify(agendaCache).invalidateAfterCommit(Set.of(patient.getId()));
+    }
+
+    @Test
+    void testProcessEditMedication_UsesBulkStatements() {
+        // Arrange
+        Patient patient = new Patient();
+        patient.setId(UUID.randomUUID());
+        EditMedicationRequest req = editRequest(patient, List.of("0800", "20:00"));
+        when(medicationRepository.findById(testMedication.getId())).thenReturn(Optional.of(testMedication));
+        when(patientService.findPatientById(patient.getId())).thenReturn(Optional.of(patient));
+        UUID previousPatient = UUID.randomUUID();
+        when(scheduleService.deactivateSchedulesByMedicationUnmarked(testMedication)).thenReturn(List.of(previousPatient));
+
+        // Act
+        medicationService.processEditMedication(req);
+
+        // Assert
+        InOrder order = inOrder(scheduleService, medicationRepository);
+        order.verify(scheduleService).deleteOldInactiveSchedules(eq(testMedication), any(LocalDateTime.class));
+        order.verify(scheduleService).deactivateSchedulesByMedicationUnmarked(testMedication);
+        order.verify(medicationRepository).save(testMedication);
+        order.verify(scheduleService).createSchedulesUnmarked(testMedication, patient, List.of(LocalTime.of(8, 0), LocalTime.of(20, 0)));
+        assertEquals(3, testMedication.getFrequency());
+        verify(scheduleService, never()).createSchedule(any(), any(), any());
+        verify(scheduleService, never()).deactivateSchedulesByMedication(any());
+        verify(scheduleService, never()).createSchedules(any(), any(), any());
+        // one bump for the edit, covering the patients of the old schedules too
+        verify(patientRepository, times(1)).incrementDataVersion(anyCollection());
+        verify(patientRepository).incrementDataVersion(Set.of(patient.getId(), previousPatient));
+    }
+
+    @Test
+    void testProcessEditMedication_InvalidTimeWritesNothing() {
+        // Arrange
+        Patient patient = new Patient();
+        patient.setId(UUID.randomUUID());
+        EditMedicationRequest req = editRequest(patient, List.of("0800", "25:61x"));
+        when(medicationRepository.findById(testMedication.getId())).thenReturn(Optional.of(testMedication));
+        when(patientService.findPatientById(patient.getId())).thenReturn(Optional.of(patient));
+
+        // Act & Assert
+        assertThrows(InvalidTimeFormatException.class, () -> medicationService.processEditMedication(req));
+        verifyNoInteractions(scheduleService);
+        verify(medicationRepository, never()).save(any());
+    }
+
+    @Test
+    void testImportPrescriptions_WritesValidItemsAndReturnsTheRest() {
+        // Arrange
+        UUID clinicId = UUID.randomUUID();
+        UUID patientId = UUID.randomUUID();
+        PrescriptionImportItem alpha = importItem(2, patientId, null, "Alpha");
+        PrescriptionImportItem unknown = importItem(3, null, "S0000000X", "Beta");
+        PrescriptionImportItem existing = importItem(4, patientId, null, "Aspirin");
+        PrescriptionImportItem again = importItem(5, patientId, null, "Alpha");
+        when(patientRepository.findRefsByClinicAndIds(clinicId, Set.of(patientId))).thenReturn(List.of(patientRef(patientId)));
+        when(patientRepository.findRefsByClinicAndNrics(clinicId, Set.of("S0000000X"))).thenReturn(List.of());
+        when(medicationRepository.findActiveMedicationNames(Set.of(patientId)))
+                .thenReturn(List.of(medicationName(patientId, "ASPIRIN")));
+        when(medicationRepository.saveAllAndFlush(anyList())).thenAnswer(inv -> {
+            List<Medication> meds = inv.getArgument(0);
+            meds.forEach(m -> m.setId(UUID.randomUUID()));
+            return meds;
+        });
+        Patient patient = new Patient();
+        patient.setId(patientId);
+        when(patientRepository.getReferenceById(patientId)).thenReturn(patient);
+
+        // Act
+        List<PrescriptionImportError> errors = medicationService.importPrescriptions(clinicId,
+                List.of(alpha, unknown, existing, again));
+
+        // Assert
+        assertEquals(List.of(3L, 4L, 5L), errors.stream().map(PrescriptionImportError::getLineNumber).toList());
+        assertEquals("Patient not found!", errors.get(0).getMessage());
+        assertEquals("Medication already exists for this patient!", errors.get(1).getMessage());
+        assertEquals("Medication already exists for this patient!", errors.get(2).getMessage());
+        verify(medicationRepository).saveAllAndFlush(argThat((List<Medication> meds) -> meds.size() == 1));
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> links) -> links.size() == 1));
+        verify(scheduleService).createSchedules(argThat((List<ScheduleService.NewSchedules> batch) ->
+                batch.size() == 1 && batch.get(0).patient() == patient && batch.get(0).scheduledTimes().size() == 1));
+    }
+
+    @Test
+    void testMedicationExistsForPatient_OtherNameOfTheSameDrug() {
+        UUID patientId = UUID.randomUUID();
+        when(medicationRepository.findByPatientIdAndMedicationNameIgnoreCase(patientId, "Paracetamol")).thenReturn(List.of());
+        when(medicationRepository.findActiveMedicationNames(Set.of(patientId)))
+                .thenReturn(List.of(medicationName(patientId, "Aspirin"), medicationName(patientId, "Acetaminophen")));
+
+        assertTrue(medicationService.medicationExistsForPatient(patientId, "Paracetamol"));
+    }
+
+    @Test
+    void testMedicationExistsForPatient_UnknownNameNeedsExactMatch() {
+        UUID patientId = UUID.randomUUID();
+        when(medicationRepository.findByPatientIdAndMedicationNameIgnoreCase(patientId, "Panadol")).thenReturn(List.of());
+
+        assertFalse(medicationService.medicationExistsForPatient(patientId, "Panadol"));
+        verify(medicationRepository, never()).findActiveMedicationNames(any());
+    }
+
+    @Test
+    void testImportPrescriptions_NothingValidWritesNothing() {
+        UUID clinicId = UUID.randomUUID();
+        PrescriptionImportItem unknown = importItem(2, UUID.randomUUID(), null, "Alpha");
+        when(patientRepository.findRefsByClinicAndIds(any(), any())).thenReturn(List.of());
+
+        List<PrescriptionImportError> errors = medicationService.importPrescriptions(clinicId, List.of(unknown));
+
+        assertEquals(1, errors.size());
+        verify(medicationRepository, never()).saveAllAndFlush(any());
+        verifyNoInteractions(jdbcTemplate, scheduleService);
+    }
+
+    private static PrescriptionImportItem importItem(long line, UUID patientId, String nric, String name) {
+        PrescriptionImportItem item = new PrescriptionImportItem();
+        item.setLineNumber(line);
+        item.setPatientId(patientId);
+        item.setNric(nric);
+        item.setPatient(patientId != null ? patientId.toString() : nric);
+        item.setMedicationName(name);
+        item.setDosage("1");
+        item.setFrequency(1);
+        item.setTimes(List.of(LocalTime.of(8, 0)));
+        return item;
+    }
+
+    private static PatientRef patientRef(UUID id) {
+        return new PatientRef() {
+            public UUID getId() {
+                return id;
+            }
+
+            public String getNric() {
+                return "S1234567A";
+            }
+        };
+    }
+
+    private static PatientMedicationName medicationName(UUID patientId, String name) {
+        return new PatientMedicationName() {
+            public UUID getPatientId() {
+                return patientId;
+            }
+
+            public String getMedicationName() {
+                return name;
+            }
+        };
+    }
+
+    private EditMedicationRequest editRequest(Patient patient, List<String> times) {
+        EditMedicationRequest req = new EditMedicationRequest();
+        req.setMedicationId(testMedication.getId());
+        req.setPatientId(patient.getId());
+        req.setFrequency(3);
+        req.setTimes(times);
+        return req;
     }
 }
@@ -7,26 +7,49 @@ import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Schedule;
 import nus.iss.backend.repository.PatientRepository;
 import nus.iss.backend.repository.DoctorRepository;
+import nus.iss.backend.repository.IntakeArchiveRepository;
+import nus.iss.backend.repository.IntakeRepository;
 import nus.iss.backend.service.Implementation.PatientServiceImpl;
 import nus.iss.backend.service.ScheduleService;
+import nus.iss.backend.exceptions.ForbiddenException;
 import nus.iss.backend.exceptions.ItemNotFound;
+import nus.iss.backend.dao.IntakeHistoryRow;
 import nus.iss.backend.dao.MissedDoseResponse;
+import nus.iss.backend.dao.PatientRosterRow;
+import nus.iss.backend.dto.IntakeHistoryPage;
 import nus.iss.backend.dto.IntakeHistoryResponse;
+import nus.iss.backend.dto.PatientRosterEntry;
+import nus.iss.backend.dto.PatientRosterPage;
+import nus.iss.backend.dto.RosterQuery;
+import nus.iss.backend.exceptions.BadRequestException;
+import nus.iss.backend.util.PatientTokens;
+import nus.iss.backend.util.VerifiedPatient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,6 +64,15 @@ class PatientServiceImplTest {
     @Mock
     private ScheduleService scheduleService;
 
+    @Mock
+    private IntakeRepository intakeRepository;
+
+    @Mock
+    private IntakeArchiveRepository archiveRepository;
+
+    @Mock
+    private RetentionService retentionService;
+
     @InjectMocks
     private PatientServiceImpl patientService;
 
@@ -189,7 +221,8 @@ class PatientServiceImplTest {
         // Arrange
         UUID patientId = testPatient.getId();
         when(patientRepository.findById(patientId)).thenReturn(Optional.of(testPatient));
-        when(scheduleService.hasMissedDose(testSchedule.getId())).thenReturn(true);
+        when(scheduleService.findMedicationIdsWithMissedDose(List.of(testMedication.getId())))
+            .thenReturn(Set.of(testMedication.getId()));
 
         // Act
         List<MissedDoseResponse> result = patientService.getPatientMedicationsWithMissedDose(patientId);
@@ -200,7 +233,8 @@ class PatientServiceImplTest {
         assertEquals("Aspirin", result.get(0).getMedicationName());
         assertTrue(result.get(0).isMissedDose());
         verify(patientRepository, times(1)).findById(patientId);
-        verify(scheduleService, times(1)).hasMissedDose(testSchedule.getId());
+        verify(scheduleService, times(1)).findMedicationIdsWithMissedDose(List.of(testMedication.getId()));
+        verify(scheduleService, never()).hasMissedDose(any(UUID.class));
     }
 
     @Test
@@ -208,7 +242,8 @@ class PatientServiceImplTest {
         // Arrange
         UUID patientId = testPatient.getId();
         when(patientRepository.findById(patientId)).thenReturn(Optional.of(testPatient));
-        when(scheduleService.hasMissedDose(testSchedule.getId())).thenReturn(false);
+        when(scheduleService.findMedicationIdsWithMissedDose(List.of(testMedication.getId())))
+            .thenReturn(Set.of());
 
         // Act
         List<MissedDoseResponse> result = patientService.getPatientMedicationsWithMissedDose(patientId);
@@ -219,7 +254,8 @@ class PatientServiceImplTest {
         assertEquals("Aspirin", result.get(0).getMedicationName());
         assertFalse(result.get(0).isMissedDose());
         verify(patientRepository, times(1)).findById(patientId);
-        verify(scheduleService, times(1)).hasMissedDose(testSchedule.getId());
+        verify(scheduleService, times(1)).findMedicationIdsWithMissedDose(List.of(testMedication.getId()));
+        verify(scheduleService, never()).hasMissedDose(any(UUID.class));
     }
 
     @Test
@@ -233,7 +269,21 @@ class PatientServiceImplTest {
             patientService.getPatientMedicationsWithMissedDose(patientId);
         });
         verify(patientRepository, times(1)).findById(patientId);
-        verify(scheduleService, never()).hasMissedDose(any(UUID.class));
+        verify(scheduleService, never()).findMedicationIdsWithMissedDose(any());
+    }
+
+    @Test
+    void testGetPatientMedications_TokenForAnotherPatientIsForbidden() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(VerifiedPatient.ATTRIBUTE,
+                new PatientTokens.Claims(UUID.randomUUID(), UUID.randomUUID(), Instant.now().plusSeconds(60)));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            assertThrows(ForbiddenException.class, () -> patientService.getPatientMedications(testPatient.getId()));
+            verify(patientRepository, never()).findById(any());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
     }
 
     @Test
@@ -250,7 +300,7 @@ class PatientServiceImplTest {
         assertNotNull(result);
         assertTrue(result.isEmpty());
         verify(patientRepository, times(1)).findById(patientId);
-        verify(scheduleService, never()).hasMissedDose(any(UUID.class));
+        verify(scheduleService, never()).findMedicationIdsWithMissedDose(any());
     }
 
     @Test
@@ -330,4 +380,199 @@ class PatientServiceImplTest {
         verify(doctorRepository, times(1)).findDoctorByMcrNo("INVALID");
         verify(patientRepository, never()).save(any(Patient.class));
     }
+
+    @Test
+    void testGetIntakeHistoryPage_FirstPageHasCursor() {
+        // Arrange
+        LocalDate day = LocalDate.of(2024, 6, 1);
+        IntakeHistoryRow first = new IntakeHistoryRow(UUID.randomUUID(), day, LocalTime.of(8, 0), "Aspirin", true);
+        IntakeHistoryRow second = new IntakeHistoryRow(UUID.randomUUID(), day, LocalTime.of(20, 0), "Aspirin", false);
+        IntakeHistoryRow extra = new IntakeHistoryRow(UUID.randomUUID(), day.plusDays(1), LocalTime.of(8, 0), "Aspirin", true);
+        when(intakeRepository.findHistoryRows(testPatient.getId(), null, null, PageRequest.of(0, 3)))
+                .thenReturn(List.of(first, second, extra));
+
+        // Act
+        IntakeHistoryPage page = patientService.getIntakeHistoryPage(testPatient.getId(), null, null, null, 2);
+
+        // Assert
+        assertEquals(2, page.getItems().size());
+        IntakeHistoryResponse missed = page.getItems().get(1);
+        assertEquals("Aspirin", missed.getMedicationName());
+        assertEquals(day.atTime(20, 0), missed.getScheduledTime());
+        assertEquals("NOT_TAKEN", missed.getStatus());
+        assertNotNull(page.getNextCursor());
+        verify(intakeRepository, never()).findByPatient_Id(any());
+    }
+
+    @Test
+    void testGetIntakeHistoryPage_CursorSeeksPastLastRow() {
+        // Arrange
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 12, 31);
+        UUID lastId = UUID.randomUUID();
+        IntakeHistoryRow last = new IntakeHistoryRow(lastId, LocalDate.of(2024, 6, 1), LocalTime.of(20, 0), "Aspirin", true);
+        IntakeHistoryRow next = new IntakeHistoryRow(UUID.randomUUID(), LocalDate.of(2024, 6, 2), LocalTime.of(8, 0), "Aspirin", true);
+        when(intakeRepository.findHistoryRows(testPatient.getId(), from, to, PageRequest.of(0, 2)))
+                .thenReturn(List.of(last, next));
+        String cursor = patientService.getIntakeHistoryPage(testPatient.getId(), from, to, null, 1).getNextCursor();
+        when(intakeRepository.findHistoryRowsAfter(eq(testPatient.getId()), eq(from), eq(to),
+                eq(LocalDate.of(2024, 6, 1)), eq(LocalTime.of(20, 0)), eq(lastId), eq(PageRequest.of(0, 3))))
+                .thenReturn(List.of(next));
+
+        // Act
+        IntakeHistoryPage page = patientService.getIntakeHistoryPage(testPatient.getId(), from, to, cursor, 2);
+
+        // Assert
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetFullIntakeHistory_FollowsCursorsToTheEnd() {
+        // Arrange
+        LocalDate day = LocalDate.of(2024, 6, 1);
+        UUID firstId = UUID.randomUUID();
+        IntakeHistoryRow first = new IntakeHistoryRow(firstId, day, LocalTime.of(8, 0), "Aspirin", true);
+        IntakeHistoryRow second = new IntakeHistoryRow(UUID.randomUUID(), day, LocalTime.of(20, 0), "Aspirin", false);
+        when(intakeRepository.findHistoryRows(testPatient.getId(), null, null, PageRequest.of(0, 2)))
+                .thenReturn(List.of(first, second));
+        when(intakeRepository.findHistoryRowsAfter(eq(testPatient.getId()), isNull(), isNull(),
+                eq(day), eq(LocalTime.of(8, 0)), eq(firstId), eq(PageRequest.of(0, 2))))
+                .thenReturn(List.of(second));
+
+        // Act
+        List<IntakeHistoryResponse> history = patientService.getFullIntakeHistory(testPatient.getId(), 1);
+
+        // Assert
+        assertEquals(2, history.size());
+        assertEquals(day.atTime(8, 0), history.get(0).getScheduledTime());
+        assertEquals(day.atTime(20, 0), history.get(1).getScheduledTime());
+    }
+
+    @Test
+    void testGetIntakeHistoryPage_MergesArchivedRows() {
+        // Arrange
+        LocalDate from = LocalDate.of(2023, 1, 1);
+        IntakeHistoryRow archivedFirst = new IntakeHistoryRow(UUID.randomUUID(), LocalDate.of(2023, 3, 1), LocalTime.of(8, 0), "Aspirin", true);
+        IntakeHistoryRow archivedSecond = new IntakeHistoryRow(UUID.randomUUID(), LocalDate.of(2023, 3, 2), LocalTime.of(8, 0), "Aspirin", false);
+        IntakeHistoryRow hot = new IntakeHistoryRow(UUID.randomUUID(), LocalDate.of(2024, 6, 1), LocalTime.of(8, 0), "Aspirin", true);
+        when(retentionService.reachesArchive(from)).thenReturn(true);
+        when(intakeRepository.findHistoryRows(testPatient.getId(), from, null, PageRequest.of(0, 3)))
+                .thenReturn(List.of(hot));
+        when(archiveRepository.findHistoryRows(testPatient.getId(), from, null, PageRequest.of(0, 3)))
+                .thenReturn(List.of(archivedFirst, archivedSecond));
+
+        // Act
+        IntakeHistoryPage page = patientService.getIntakeHistoryPage(testPatient.getId(), from, null, null, 2);
+
+        // Assert
+        assertEquals(2, page.getItems().size());
+        assertEquals(LocalDate.of(2023, 3, 1).atTime(8, 0), page.getItems().get(0).getScheduledTime());
+        assertEquals("NOT_TAKEN", page.getItems().get(1).getStatus());
+        assertNotNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetIntakeHistoryPage_RecentRangeSkipsArchive() {
+        // Arrange
+        LocalDate from = LocalDate.now().minusDays(7);
+        when(intakeRepository.findHistoryRows(testPatient.getId(), from, null, PageRequest.of(0, 11)))
+                .thenReturn(List.of());
+
+        // Act
+        patientService.getIntakeHistoryPage(testPatient.getId(), from, null, null, 10);
+
+        // Assert
+        verifyNoInteractions(archiveRepository);
+    }
+
+    @Test
+    void testGetIntakeHistoryPage_InvalidCursor() {
+        assertThrows(BadRequestException.class,
+                () -> patientService.getIntakeHistoryPage(testPatient.getId(), null, null, "not-a-cursor", 10));
+        verifyNoInteractions(intakeRepository);
+    }
+
+    @Test
+    void testGetIntakeHistoryPage_FromAfterTo() {
+        assertThrows(BadRequestException.class,
+                () -> patientService.getIntakeHistoryPage(testPatient.getId(),
+                        LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1), null, 10));
+        verifyNoInteractions(intakeRepository);
+    }
+
+    @Test
+    void testGetDoctorRoster_MapsRowsAndSortsByName() {
+        PatientRosterRow row = mock(PatientRosterRow.class);
+        when(row.getId()).thenReturn(testPatient.getId());
+        when(row.getFirstName()).thenReturn("Jane");
+        when(row.getLastName()).thenReturn("Smith");
+        when(row.getDob()).thenReturn(LocalDate.now().minusYears(70).minusDays(1));
+        when(row.getLastLogDate()).thenReturn(LocalDate.of(2024, 6, 1));
+        when(row.getMissedCount()).thenReturn(2L);
+        when(row.getAdherence()).thenReturn(66.666);
+        when(doctorRepository.findDoctorByMcrNo("M12345A")).thenReturn(testDoctor);
+        Pageable expected = PageRequest.of(1, 10, Sort.by("lastName", "firstName").and(Sort.by("id")));
+        when(patientRepository.findDoctorRoster(eq("M12345A"), eq(LocalDate.now().withDayOfMonth(1)),
+                eq("sm!_it!%h%"), eq(80.0), eq(expected)))
+                .thenReturn(new SliceImpl<>(List.of(row), expected, true));
+
+        RosterQuery query = rosterQuery(1, 10);
+        query.setName(" Sm_it%H ");
+        query.setAdherenceBelow(80.0);
+        PatientRosterPage page = patientService.getDoctorRoster("M12345A", false, query);
+
+        assertTrue(page.isHasNext());
+        assertEquals(1, page.getItems().size());
+        PatientRosterEntry entry = page.getItems().get(0);
+        assertEquals(70, entry.getAge());
+        assertEquals(67, entry.getAdherencePercent());
+        assertTrue(entry.isMissedDose());
+        verify(patientRepository, never()).findUnassignedRoster(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testGetDoctorRoster_UnassignedUsesDoctorClinic() {
+        when(doctorRepository.findDoctorByMcrNo("M12345A")).thenReturn(testDoctor);
+        when(patientRepository.findUnassignedRoster(eq(testClinic.getId()), any(), isNull(), isNull(), any()))
+                .thenReturn(new SliceImpl<>(List.of()));
+
+        RosterQuery query = rosterQuery(0, 25);
+        query.setSort("age");
+        PatientRosterPage page = patientService.getDoctorRoster("M12345A", true, query);
+
+        assertTrue(page.getItems().isEmpty());
+        assertFalse(page.isHasNext());
+        // youngest first means latest date of birth first
+        verify(patientRepository).findUnassignedRoster(eq(testClinic.getId()), any(), isNull(), isNull(),
+                eq(PageRequest.of(0, 25, Sort.by(Sort.Direction.DESC, "dob").and(Sort.by("id")))));
+    }
+
+    @Test
+    void testGetDoctorRoster_DoctorNotFound() {
+        when(doctorRepository.findDoctorByMcrNo("M0000000")).thenReturn(null);
+
+        assertThrows(ItemNotFound.class, () -> patientService.getDoctorRoster("M0000000", false, rosterQuery(0, 25)));
+        verifyNoInteractions(patientRepository);
+    }
+
+    @Test
+    void testGetDoctorRoster_InvalidSortAndThreshold() {
+        RosterQuery badSort = rosterQuery(0, 25);
+        badSort.setSort("nric");
+        RosterQuery badThreshold = rosterQuery(0, 25);
+        badThreshold.setAdherenceBelow(120.0);
+        when(doctorRepository.findDoctorByMcrNo("M12345A")).thenReturn(testDoctor);
+
+        assertThrows(BadRequestException.class, () -> patientService.getDoctorRoster("M12345A", false, badSort));
+        assertThrows(BadRequestException.class, () -> patientService.getDoctorRoster("M12345A", false, badThreshold));
+        verifyNoInteractions(patientRepository);
+    }
+
+    private static RosterQuery rosterQuery(int page, int size) {
+        RosterQuery query = new RosterQuery();
+        query.setPage(page);
+        query.setSize(size);
+        return query;
+    }
 }
@@ -0,0 +1,138 @@
+package nus.iss.backend.service;
+
+import nus.iss.backend.repository.IntakeArchiveRepository;
+import nus.iss.backend.repository.IntakeRepository;
+import nus.iss.backend.repository.PatientRepository;
+import nus.iss.backend.repository.ScheduleRepository;
+import nus.iss.backend.service.Implementation.RetentionImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionServiceImplTest {
+
+    @Mock
+    private IntakeRepository intakeRepository;
+
+    @Mock
+    private IntakeArchiveRepository archiveRepository;
+
+    @Mock
+    private ScheduleRepository scheduleRepository;
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @InjectMocks
+    private RetentionImpl retentionService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(retentionService, "enabled", true);
+        ReflectionTestUtils.setField(retentionService, "maxAgeDays", 365);
+    }
+
+    @Test
+    void testArchiveCutoff_WholeMonth() {
+        assertEquals(LocalDate.now().minusDays(365).withDayOfMonth(1), retentionService.archiveCutoff());
+    }
+
+    @Test
+    void testArchiveCutoff_Disabled() {
+        ReflectionTestUtils.setField(retentionService, "enabled", false);
+
+        assertNull(retentionService.archiveCutoff());
+    }
+
+    @Test
+    void testArchiveChunk_CopiesThenDeletes() {
+        // Arrange
+        LocalDate cutoff = LocalDate.of(2024, 7, 1);
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID());
+        when(intakeRepository.findIdsLoggedBefore(cutoff, PageRequest.of(0, 500))).thenReturn(ids);
+
+        // Act
+        int moved = retentionService.archiveChunk(cutoff, 500);
+
+        // Assert
+        assertEquals(2, moved);
+        var order = inOrder(archiveRepository, intakeRepository);
+        order.verify(archiveRepository).copyFromHistory(ids);
+        order.verify(intakeRepository).deleteByIds(ids);
+    }
+
+    @Test
+    void testArchiveChunk_NothingLeft() {
+        LocalDate cutoff = LocalDate.of(2024, 7, 1);
+        when(intakeRepository.findIdsLoggedBefore(cutoff, PageRequest.of(0, 500))).thenReturn(List.of());
+
+        assertEquals(0, retentionService.archiveChunk(cutoff, 500));
+        verifyNoInteractions(archiveRepository);
+        verify(intakeRepository, never()).deleteByIds(any());
+    }
+
+    @Test
+    void testPurgeSchedulesChunk_BumpsPatientVersions() {
+        // Arrange
+        LocalDate cutoff = LocalDate.of(2024, 7, 1);
+        UUID scheduleId = UUID.randomUUID();
+        UUID patientId = UUID.randomUUID();
+        List<Object[]> rows = List.<Object[]>of(new Object[]{scheduleId, patientId});
+        when(scheduleRepository.findArchivedInactiveSchedules(cutoff.atStartOfDay(), PageRequest.of(0, 100))).thenReturn(rows);
+        when(scheduleRepository.deleteByIds(List.of(scheduleId))).thenReturn(1);
+
+        // Act
+        int deleted = retentionService.purgeSchedulesChunk(cutoff, 100);
+
+        // Assert
+        assertEquals(1, deleted);
+        verify(patientRepository, times(1)).incrementDataVersion(Set.of(patientId));
+    }
+
+    @Test
+    void testReachesArchive_EmptyArchive() {
+        ReflectionTestUtils.setField(retentionService, "enabled", false);
+        when(archiveRepository.findLatestLoggedDate()).thenReturn(null);
+
+        assertFalse(retentionService.reachesArchive(null));
+        assertFalse(retentionService.reachesArchive(LocalDate.of(2000, 1, 1)));
+    }
+
+    @Test
+    void testReachesArchive_ComparesWithCutoff() {
+        when(archiveRepository.findLatestLoggedDate()).thenReturn(null);
+        LocalDate cutoff = retentionService.archiveCutoff();
+
+        assertTrue(retentionService.reachesArchive(null));
+        assertTrue(retentionService.reachesArchive(cutoff.minusDays(1)));
+        assertFalse(retentionService.reachesArchive(cutoff));
+    }
+
+    @Test
+    void testReachesArchive_LoadsLatestArchivedDateOnce() {
+        // Arrange: archived under an older, shorter max-age, so the stored date is past the current cutoff
+        ReflectionTestUtils.setField(retentionService, "enabled", false);
+        LocalDate latest = LocalDate.now().minusDays(30);
+        when(archiveRepository.findLatestLoggedDate()).thenReturn(latest);
+
+        // Act & Assert
+        assertTrue(retentionService.reachesArchive(latest));
+        assertFalse(retentionService.reachesArchive(latest.plusDays(1)));
+        verify(archiveRepository, times(1)).findLatestLoggedDate();
+    }
+}
@@ -1,5 +1,7 @@
 package nus.iss.backend.service;
 
+import nus.iss.backend.dao.AgendaItem;
+import nus.iss.backend.dao.ScheduleFindResponse;
 import nus.iss.backend.dto.ScheduleResponse;
 import nus.iss.backend.exceptions.ItemNotFound;
 import nus.iss.backend.model.Clinic;
@@ -8,26 +10,36 @@ import nus.iss.backend.model.IntakeHistory;
 import nus.iss.backend.model.Medication;
 import nus.iss.backend.model.Patient;
 import nus.iss.backend.model.Schedule;
+import nus.iss.backend.repository.IntakeRepository;
+import nus.iss.backend.repository.PatientRepository;
 import nus.iss.backend.repository.ScheduleRepository;
 import nus.iss.backend.service.Implementation.ScheduleImpl;
+import nus.iss.backend.util.PatientAgendaCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +48,18 @@ class ScheduleServiceImplTest {
     @Mock
     private ScheduleRepository scheduleRepository;
 
+    @Mock
+    private AdherenceService adherenceService;
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private IntakeRepository intakeRepository;
+
+    @Spy
+    private PatientAgendaCache agendaCache = new PatientAgendaCache(100, Duration.ofMinutes(10));
+
     @InjectMocks
     private ScheduleImpl scheduleService;
 
@@ -112,11 +136,11 @@ class ScheduleServiceImplTest {
     }
 
     @Test
-    void testHasMissedDose_NoIntakeHistory() {
+    void testHasMissedDose_NoMissedDoses() {
         // Arrange
         UUID scheduleId = testSchedule.getId();
-        testSchedule.setIntakeHistory(null);
         when(scheduleRepository.findById(scheduleId)).thenReturn(Optional.of(testSchedule));
+        when(adherenceService.hasMissedDose(scheduleId, YearMonth.now())).thenReturn(false);
 
         // Act
         Boolean result = scheduleService.hasMissedDose(scheduleId);
@@ -124,52 +148,52 @@ class ScheduleServiceImplTest {
         // Assert
         assertFalse(result);
         verify(scheduleRepository, times(1)).findById(scheduleId);
+        verify(adherenceService, times(1)).hasMissedDose(scheduleId, YearMonth.now());
     }
 
     @Test
-    void testHasMissedDose_EmptyIntakeHistory() {
+    void testHasMissedDose_WithMissedDoses() {
         // Arrange
         UUID scheduleId = testSchedule.getId();
-        testSchedule.setIntakeHistory(Arrays.asList());
         when(scheduleRepository.findById(scheduleId)).thenReturn(Optional.of(testSchedule));
+        when(adherenceService.hasMissedDose(scheduleId, YearMonth.now())).thenReturn(true);
 
         // Act
         Boolean result = scheduleService.hasMissedDose(scheduleId);
 
         // Assert
-        assertFalse(result);
+        assertTrue(result);
         verify(scheduleRepository, times(1)).findById(scheduleId);
+        verify(adherenceService, times(1)).hasMissedDose(scheduleId, YearMonth.now());
     }
 
     @Test
-    void testHasMissedDose_NoMissedDoses() {
+    void testFindMedicationIdsWithMissedDose_UsesCurrentMonthRollup() {
         // Arrange
-        UUID scheduleId = testSchedule.getId();
-        testSchedule.setIntakeHistory(Arrays.asList(testIntakeHistory));
-        when(scheduleRepository.findById(scheduleId)).thenReturn(Optional.of(testSchedule));
+        UUID missedMedId = testMedication.getId();
+        List<UUID> medIds = List.of(missedMedId, UUID.randomUUID());
+        when(adherenceService.findMedicationIdsWithMissedDose(medIds, YearMonth.now())).thenReturn(Set.of(missedMedId));
 
         // Act
-        Boolean result = scheduleService.hasMissedDose(scheduleId);
+        Set<UUID> result = scheduleService.findMedicationIdsWithMissedDose(medIds);
 
         // Assert
-        assertFalse(result);
-        verify(scheduleRepository, times(1)).findById(scheduleId);
+        assertEquals(Set.of(missedMedId), result);
+        verify(scheduleRepository, never()).findById(any(UUID.class));
     }
 
     @Test
-    void testHasMissedDose_WithMissedDoses() {
+    void testFindMedicationIdsWithMissedDoseByPatient_UsesCurrentMonthRollup() {
         // Arrange
-        UUID scheduleId = testSchedule.getId();
-        testIntakeHistory.setTaken(false);
-        testSchedule.setIntakeHistory(Arrays.asList(testIntakeHistory));
-        when(scheduleRepository.findById(scheduleId)).thenReturn(Optional.of(testSchedule));
+        List<UUID> patientIds = List.of(testPatient.getId());
+        Map<UUID, Set<UUID>> expected = Map.of(testPatient.getId(), Set.of(testMedication.getId()));
+        when(adherenceService.findMedicationIdsWithMissedDoseByPatient(patientIds, YearMonth.now())).thenReturn(expected);
 
         // Act
-        Boolean result = scheduleService.hasMissedDose(scheduleId);
+        Map<UUID, Set<UUID>> result = scheduleService.findMedicationIdsWithMissedDoseByPatient(patientIds);
 
         // Assert
-        assertTrue(result);
-        verify(scheduleRepository, times(1)).findById(scheduleId);
+        assertEquals(expected, result);
     }
 
     @Test
@@ -240,16 +264,101 @@ class ScheduleServiceImplTest {
     void testDeleteOldInactiveSchedules() {
         // Arrange
         LocalDateTime cutoffDate = LocalDateTime.now().minusDays(30);
-        List<Schedule> oldSchedules = Arrays.asList(testSchedule);
-        when(scheduleRepository.findByMedicationAndIsActiveFalseAndCreationDateBefore(testMedication, cutoffDate))
-            .thenReturn(oldSchedules);
 
         // Act
         scheduleService.deleteOldInactiveSchedules(testMedication, cutoffDate);
 
+        // Assert: rollups and logs before the schedules they reference, nothing loaded row by row
+        InOrder order = inOrder(adherenceService, intakeRepository, scheduleRepository);
+        order.verify(adherenceService).removeOldInactiveSchedules(testMedication, cutoffDate);
+        order.verify(intakeRepository).deleteByInactiveSchedulesCreatedBefore(testMedication, cutoffDate);
+        order.verify(scheduleRepository).deleteInactiveByMedicationCreatedBefore(testMedication, cutoffDate);
+        verify(scheduleRepository, never()).findByMedicationAndIsActiveFalseAndCreationDateBefore(any(), any());
+        verify(scheduleRepository, never()).delete(any(Schedule.class));
+    }
+
+    @Test
+    void testDeactivateSchedulesByMedication() {
+        // Arrange
+        UUID patientId = testPatient.getId();
+        when(patientRepository.findDataVersionById(patientId)).thenReturn(Optional.of(1L));
+        when(scheduleRepository.findAgendaByPatientId(patientId)).thenReturn(List.of());
+        scheduleService.getDailyScheduleForPatient(patientId);
+        when(scheduleRepository.findActivePatientIdsByMedication(testMedication)).thenReturn(List.of(patientId));
+        when(scheduleRepository.deactivateByMedication(testMedication)).thenReturn(2);
+
+        // Act
+        int deactivated = scheduleService.deactivateSchedulesByMedication(testMedication);
+
         // Assert
-        verify(scheduleRepository, times(1)).findByMedicationAndIsActiveFalseAndCreationDateBefore(testMedication, cutoffDate);
-        verify(scheduleRepository, times(1)).delete(testSchedule);
+        assertEquals(2, deactivated);
+        assertEquals(0, agendaCache.size());
+        verify(patientRepository).incrementDataVersion(List.of(patientId));
+        verify(scheduleRepository, never()).save(any(Schedule.class));
+    }
+
+    @Test
+    void testDeactivateSchedulesByMedication_NoneActive() {
+        when(scheduleRepository.findActivePatientIdsByMedication(testMedication)).thenReturn(List.of());
+
+        assertEquals(0, scheduleService.deactivateSchedulesByMedication(testMedication));
+        verify(scheduleRepository, never()).deactivateByMedication(any());
+    }
+
+    @Test
+    void testCreateSchedules_SavesAllAndBumpsOnce() {
+        // Arrange
+        when(scheduleRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        List<Schedule> created = scheduleService.createSchedules(testMedication, testPatient,
+                List.of(LocalTime.of(8, 0), LocalTime.of(20, 0)));
+
+        // Assert
+        assertEquals(2, created.size());
+        assertTrue(created.stream().allMatch(s -> s.getIsActive() && s.getPatient() == testPatient));
+        verify(scheduleRepository, times(1)).saveAll(anyList());
+        verify(scheduleRepository, never()).save(any(Schedule.class));
+        verify(patientRepository, times(1)).incrementDataVersion(List.of(testPatient.getId()));
+    }
+
+    @Test
+    void testUnmarkedVariantsLeaveTheBumpToTheCaller() {
+        // Arrange
+        UUID patientId = testPatient.getId();
+        when(scheduleRepository.findActivePatientIdsByMedication(testMedication)).thenReturn(List.of(patientId));
+        when(scheduleRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        List<UUID> deactivatedFor = scheduleService.deactivateSchedulesByMedicationUnmarked(testMedication);
+        List<Schedule> created = scheduleService.createSchedulesUnmarked(testMedication, testPatient,
+                List.of(LocalTime.of(8, 0)));
+
+        // Assert
+        assertEquals(List.of(patientId), deactivatedFor);
+        assertEquals(1, created.size());
+        verify(scheduleRepository).deactivateByMedication(testMedication);
+        verify(patientRepository, never()).incrementDataVersion(any());
+    }
+
+    @Test
+    void testCreateSchedules_SeveralMedicationsInOneBatch() {
+        // Arrange
+        Patient otherPatient = new Patient();
+        otherPatient.setId(UUID.randomUUID());
+        Medication otherMedication = new Medication();
+        otherMedication.setId(UUID.randomUUID());
+        when(scheduleRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        List<Schedule> created = scheduleService.createSchedules(List.of(
+                new ScheduleService.NewSchedules(testMedication, testPatient, List.of(LocalTime.of(8, 0), LocalTime.of(20, 0))),
+                new ScheduleService.NewSchedules(otherMedication, otherPatient, List.of(LocalTime.of(9, 0)))));
+
+        // Assert
+        assertEquals(3, created.size());
+        verify(scheduleRepository, times(1)).saveAll(anyList());
+        verify(patientRepository, times(1)).incrementDataVersion(List.of(testPatient.getId(), otherPatient.getId()));
     }
 
     @Test
@@ -264,6 +373,7 @@ class ScheduleServiceImplTest {
         // Assert
         assertFalse(testSchedule.getIsActive());
         verify(scheduleRepository, times(1)).save(testSchedule);
+        verify(patientRepository).incrementDataVersion(List.of(testPatient.getId()));
     }
 
     @Test
@@ -283,14 +393,14 @@ class ScheduleServiceImplTest {
         assertTrue(result.getIsActive());
         assertNotNull(result.getCreationDate());
         verify(scheduleRepository, times(1)).save(any(Schedule.class));
+        verify(patientRepository).incrementDataVersion(List.of(testPatient.getId()));
     }
 
     @Test
     void testGetDailyScheduleForPatient() {
         // Arrange
         UUID patientId = testPatient.getId();
-        List<Schedule> schedules = Arrays.asList(testSchedule);
-        when(scheduleRepository.findActiveSchedulesByPatientId(patientId)).thenReturn(schedules);
+        when(scheduleRepository.findAgendaByPatientId(patientId)).thenReturn(List.of(agendaItem(testSchedule)));
 
         // Act
         List<ScheduleResponse> result = scheduleService.getDailyScheduleForPatient(patientId);
@@ -302,41 +412,124 @@ class ScheduleServiceImplTest {
         assertEquals(testSchedule.getScheduledTime().toString(), response.getScheduledTime());
         assertEquals(testMedication.getMedicationName(), response.getMedicationName());
         assertEquals(testMedication.getIntakeQuantity(), response.getQuantity());
-        assertEquals(testSchedule.getIsActive(), response.getIsActive());
-        verify(scheduleRepository, times(1)).findActiveSchedulesByPatientId(patientId);
+        assertTrue(response.getIsActive());
+        verify(scheduleRepository, times(1)).findAgendaByPatientId(patientId);
+        // the agenda is a projection, the entities are never loaded
+        verify(scheduleRepository, never()).findActiveSchedulesByPatientId(any());
     }
 
     @Test
-    void testGetDailyScheduleForPatient_WithInactiveMedication() {
+    void testGetDailyScheduleForPatient_SkipsInactiveMedication() {
         // Arrange
         UUID patientId = testPatient.getId();
         testMedication.setActive(false);
-        List<Schedule> schedules = Arrays.asList(testSchedule);
-        when(scheduleRepository.findActiveSchedulesByPatientId(patientId)).thenReturn(schedules);
+        when(scheduleRepository.findAgendaByPatientId(patientId)).thenReturn(List.of(agendaItem(testSchedule)));
 
         // Act
         List<ScheduleResponse> result = scheduleService.getDailyScheduleForPatient(patientId);
 
         // Assert
-        assertNotNull(result);
-        assertEquals(0, result.size()); // Should filter out inactive medication
-        verify(scheduleRepository, times(1)).findActiveSchedulesByPatientId(patientId);
+        assertTrue(result.isEmpty());
     }
 
     @Test
-    void testGetDailyScheduleForPatient_WithNullMedication() {
+    void testGetDailyScheduleForPatient_Empty() {
         // Arrange
         UUID patientId = testPatient.getId();
-        testSchedule.setMedication(null);
-        List<Schedule> schedules = Arrays.asList(testSchedule);
-        when(scheduleRepository.findActiveSchedulesByPatientId(patientId)).thenReturn(schedules);
+        when(scheduleRepository.findAgendaByPatientId(patientId)).thenReturn(List.of());
 
         // Act
         List<ScheduleResponse> result = scheduleService.getDailyScheduleForPatient(patientId);
 
         // Assert
         assertNotNull(result);
-        assertEquals(0, result.size()); // Should filter out null medication
-        verify(scheduleRepository, times(1)).findActiveSchedulesByPatientId(patientId);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void testFindScheduleSummariesByPatientIdAndScheduledTime() {
+        // Arrange
+        UUID patientId = testPatient.getId();
+        LocalTime scheduledTime = testSchedule.getScheduledTime();
+        Schedule evening = new Schedule();
+        evening.setId(UUID.randomUUID());
+        evening.setMedication(testMedication);
+        evening.setScheduledTime(LocalTime.of(21, 0));
+        when(scheduleRepository.findAgendaByPatientId(patientId))
+                .thenReturn(List.of(agendaItem(testSchedule), agendaItem(evening)));
+
+        // Act
+        List<ScheduleFindResponse> result = scheduleService.findScheduleSummariesByPatientIdAndScheduledTime(scheduledTime, patientId);
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals(testSchedule.getId(), result.get(0).getScheduleId());
+        assertEquals(testMedication.getId(), result.get(0).getMedicineId());
+        verify(scheduleRepository, never()).findSchedulesByPatientIdandScheduledTime(any(), any());
+    }
+
+    @Test
+    void testAgendaIsCachedUntilScheduleChanges() {
+        // Arrange
+        UUID patientId = testPatient.getId();
+        when(patientRepository.findDataVersionById(patientId)).thenReturn(Optional.of(1L));
+        when(scheduleRepository.findAgendaByPatientId(patientId)).thenReturn(List.of(agendaItem(testSchedule)));
+        when(scheduleRepository.save(any(Schedule.class))).thenReturn(testSchedule);
+
+        // Act
+        scheduleService.getDailyScheduleForPatient(patientId);
+        scheduleService.findScheduleSummariesByPatientIdAndScheduledTime(testSchedule.getScheduledTime(), patientId);
+        scheduleService.deactivateSchedules(List.of(testSchedule));
+        scheduleService.getDailyScheduleForPatient(patientId);
+
+        // Assert: one load for the first two reads, one more after the invalidation
+        verify(scheduleRepository, times(2)).findAgendaByPatientId(patientId);
+    }
+
+    @Test
+    void testAgendaIsReloadedWhenVersionChanged() {
+        // Arrange: another instance changed the schedule, so only the stored version tells
+        UUID patientId = testPatient.getId();
+        when(scheduleRepository.findAgendaByPatientId(patientId)).thenReturn(List.of(agendaItem(testSchedule)));
+        scheduleService.getDailyScheduleForPatient(patientId, 3L);
+        scheduleService.getDailyScheduleForPatient(patientId, 3L);
+
+        // Act
+        scheduleService.getDailyScheduleForPatient(patientId, 4L);
+
+        // Assert
+        verify(scheduleRepository, times(2)).findAgendaByPatientId(patientId);
+        verify(patientRepository, never()).findDataVersionById(any());
+    }
+
+    @Test
+    void testAgendaOfUnknownPatientIsNotCached() {
+        UUID patientId = UUID.randomUUID();
+        when(scheduleRepository.findAgendaByPatientId(patientId)).thenReturn(List.of());
+
+        assertTrue(scheduleService.getDailyScheduleForPatient(patientId).isEmpty());
+        assertEquals(0, agendaCache.size());
+    }
+
+    @Test
+    void testCreateScheduleInvalidatesAgenda() {
+        // Arrange
+        UUID patientId = testPatient.getId();
+        when(patientRepository.findDataVersionById(patientId)).thenReturn(Optional.of(1L));
+        when(scheduleRepository.findAgendaByPatientId(patientId)).thenReturn(List.of());
+        when(scheduleRepository.save(any(Schedule.class))).thenReturn(testSchedule);
+        scheduleService.getDailyScheduleForPatient(patientId);
+
+        // Act
+        scheduleService.createSchedule(testMedication, testPatient, LocalTime.of(13, 0));
+
+        // Assert
+        assertEquals(0, agendaCache.size());
+    }
+
+    private static AgendaItem agendaItem(Schedule schedule) {
+        Medication med = schedule.getMedication();
+        return new AgendaItem(schedule.getId(), schedule.getScheduledTime(), med.getId(), med.getMedicationName(),
+                med.getIntakeQuantity(), med.isActive());
     }
 }